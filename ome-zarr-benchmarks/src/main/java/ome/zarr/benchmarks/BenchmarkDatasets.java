@@ -0,0 +1,96 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Resolves the {@code dataset} parameters of the benchmarks.
+ * <p>
+ * A dataset is given either as a path relative to the {@code test-shared}
+ * test data, e.g. {@code 5d_testing/5d_dataset_v5.ome.zarr}, as an absolute
+ * path, or as a URI such as {@code https://...}. The test data directory is
+ * recorded in {@code benchmark.properties} at build time and can be overridden
+ * with the system property {@value #TESTDATA_PROPERTY}, which has to be passed
+ * to the forked benchmark JVMs with {@code -jvmArgsAppend}.
+ */
+public final class BenchmarkDatasets
+{
+	/** System property overriding the directory of the relative datasets. */
+	public static final String TESTDATA_PROPERTY = "ome.zarr.benchmark.testdata";
+
+	private BenchmarkDatasets()
+	{}
+
+	/**
+	 * Returns the location of {@code dataset}, as passed to
+	 * {@link ome.zarr.imglib2.PyramidBackend#load(URI)}.
+	 *
+	 * @throws IllegalArgumentException if a local dataset does not exist
+	 */
+	public static URI resolve( final String dataset )
+	{
+		if ( dataset.contains( "://" ) )
+			return URI.create( dataset );
+		final Path given = Paths.get( dataset );
+		final Path path = given.isAbsolute() ? given : testdata().resolve( given );
+		if ( !Files.isDirectory( path ) )
+			throw new IllegalArgumentException( "No dataset at " + path );
+		return path.toUri();
+	}
+
+	/**
+	 * The directory holding the {@code test-shared} datasets.
+	 */
+	public static Path testdata()
+	{
+		final String override = System.getProperty( TESTDATA_PROPERTY );
+		if ( override != null )
+			return Paths.get( override );
+		final Properties properties = new Properties();
+		try (InputStream in = BenchmarkDatasets.class.getResourceAsStream( "benchmark.properties" ))
+		{
+			if ( in == null )
+				throw new IllegalStateException( "benchmark.properties not found, set " + TESTDATA_PROPERTY );
+			properties.load( in );
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+		return Paths.get( properties.getProperty( "testdata" ) );
+	}
+}
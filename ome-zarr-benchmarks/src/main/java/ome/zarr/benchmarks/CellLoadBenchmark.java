@@ -0,0 +1,125 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.cell.Cell;
+
+import ome.zarr.imglib2.PyramidContents;
+
+/**
+ * Throughput of reading and decoding cells: loads every cell of one
+ * resolution level with an emptied cache, so each cell is read from the store
+ * and decoded.
+ * <p>
+ * Besides the level loads per second, the secondary results {@code cells} and
+ * {@code bytes} give the cells and decoded bytes per second. The data type and
+ * codec are those of the {@code dataset}; the {@code test-shared} datasets are
+ * all {@code uint8}, compressed with zstd (Zarr v3) or blosc/zstd (Zarr v2).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+public class CellLoadBenchmark extends PyramidBenchmarkBase
+{
+	/** Resolution level to load, clamped to the coarsest one. */
+	@Param( "0" )
+	public int level;
+
+	private PyramidContents< ? > contents;
+
+	private CachedCellImg< ?, ? > img;
+
+	private long bytesPerPixel;
+
+	/**
+	 * Cells and bytes loaded, reported as rates next to the primary result.
+	 */
+	@State( Scope.Thread )
+	@AuxCounters( AuxCounters.Type.OPERATIONS )
+	public static class Loaded
+	{
+		public long cells;
+
+		public long bytes;
+
+		@Setup( Level.Iteration )
+		public void reset()
+		{
+			cells = 0;
+			bytes = 0;
+		}
+	}
+
+	@Setup
+	public void setup()
+	{
+		contents = load();
+		img = contents.cachedCellImg( Math.min( level, contents.numResolutionLevels() - 1 ) );
+		bytesPerPixel = Math.max( 1, contents.type.getBitsPerPixel() / 8 );
+	}
+
+	@Setup( Level.Invocation )
+	public void emptyCache()
+	{
+		img.getCache().invalidateAll();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		contents.close();
+	}
+
+	@Benchmark
+	public void loadLevel( final Loaded loaded, final Blackhole blackhole )
+	{
+		for ( final Cell< ? > cell : img.getCells() )
+		{
+			blackhole.consume( cell.getData() );
+			loaded.cells++;
+			loaded.bytes += cell.size() * bytesPerPixel;
+		}
+	}
+}
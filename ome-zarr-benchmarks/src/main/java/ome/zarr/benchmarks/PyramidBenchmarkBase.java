@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+import ome.zarr.imglib2.PyramidContents;
+
+/**
+ * Parameters shared by all benchmarks: every benchmark runs for both
+ * {@link Backend}s on each of the {@code test-shared} datasets, unless
+ * restricted with {@code -p backend=...} or {@code -p dataset=...}.
+ * Datasets are resolved by {@link BenchmarkDatasets}.
+ * <p>
+ * The test data are small, so one second per iteration collects plenty of
+ * invocations; {@code -wi}, {@code -i} and {@code -f} raise the defaults for
+ * larger datasets.
+ */
+@Fork( value = 1, jvmArgsAppend = { "-Xmx4g", "-da" } )
+@Warmup( iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS )
+@Measurement( iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS )
+public abstract class PyramidBenchmarkBase
+{
+	@Param
+	public Backend backend;
+
+	@Param( {
+			"2d_testing/2d_dataset_v4.ome.zarr",
+			"2d_testing/2d_dataset_v5.ome.zarr",
+			"3d_testing/xyz/3d_dataset_v4.ome.zarr",
+			"3d_testing/xyz/3d_dataset_v5.ome.zarr",
+			"5d_testing/5d_dataset_v4.ome.zarr",
+			"5d_testing/5d_dataset_v5.ome.zarr",
+			"pyramid_testing/pyramid_v4.zarr",
+			"pyramid_testing/pyramid_v5.zarr" } )
+	public String dataset;
+
+	protected URI location()
+	{
+		return BenchmarkDatasets.resolve( dataset );
+	}
+
+	/**
+	 * Loads the {@link #dataset} with the {@link #backend}; the caller closes
+	 * the returned contents.
+	 */
+	protected < T extends NativeType< T > & RealType< T > > PyramidContents< T > load()
+	{
+		return backend.create().load( location() );
+	}
+}
@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ome.zarr.imglib2.PyramidBackend;
+import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.PyramidDescription;
+
+/**
+ * Latency of opening a dataset: {@link PyramidBackend#load(URI)}, which reads
+ * the metadata and prepares the levels, and {@link PyramidBackend#inspect(URI)},
+ * which reads the metadata only. No cells are loaded.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class PyramidLoadBenchmark extends PyramidBenchmarkBase
+{
+	private PyramidBackend pyramidBackend;
+
+	private URI uri;
+
+	/** Contents of the last {@link #load()}, closed after each invocation. */
+	private PyramidContents< ? > loaded;
+
+	@Setup
+	public void setup()
+	{
+		pyramidBackend = backend.create();
+		uri = location();
+	}
+
+	@TearDown( Level.Invocation )
+	public void closeLoaded()
+	{
+		if ( loaded != null )
+			loaded.close();
+		loaded = null;
+	}
+
+	@Benchmark
+	public PyramidContents< ? > loadContents()
+	{
+		loaded = pyramidBackend.load( uri );
+		return loaded;
+	}
+
+	@Benchmark
+	public PyramidDescription inspect()
+	{
+		return pyramidBackend.inspect( uri );
+	}
+}
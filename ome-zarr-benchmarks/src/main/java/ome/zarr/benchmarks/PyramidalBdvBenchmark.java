@@ -0,0 +1,92 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.scijava.Context;
+
+import bdv.cache.SharedQueue;
+import ome.zarr.fiji.FetchScheduler;
+import ome.zarr.fiji.PyramidalBdv;
+import ome.zarr.imglib2.PyramidContents;
+
+/**
+ * Time to build the BigDataViewer sources of an opened dataset, i.e. the
+ * {@link PyramidalBdv} constructor. The levels are opened by the first
+ * construction, during warm-up, so this measures wrapping them into volatile,
+ * multi-resolution sources per channel.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class PyramidalBdvBenchmark extends PyramidBenchmarkBase
+{
+	private Context context;
+
+	private PyramidContents< ? > contents;
+
+	/**
+	 * Keeps the fetch queue running between invocations, so that its threads
+	 * are not started by every construction.
+	 */
+	private SharedQueue fetchQueue;
+
+	@Setup
+	public void setup()
+	{
+		context = new Context();
+		contents = load();
+		fetchQueue = FetchScheduler.getInstance().acquire();
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		FetchScheduler.getInstance().release( fetchQueue );
+		contents.close();
+		context.dispose();
+	}
+
+	@Benchmark
+	public void createSources( final Blackhole blackhole )
+	{
+		final PyramidalBdv< ? > bdv = new PyramidalBdv<>( context, contents );
+		blackhole.consume( bdv.asSources() );
+	}
+}
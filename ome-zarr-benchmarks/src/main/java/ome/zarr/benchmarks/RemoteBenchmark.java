@@ -0,0 +1,179 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.imglib2.img.cell.Cell;
+
+import ome.zarr.ZarrTestServer;
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.ZarrUtils;
+
+/**
+ * Latency of the remote code paths over a simulated wide-area link: the
+ * {@code dataset} is served over HTTP by a local {@link ZarrTestServer} that
+ * holds back every request by {@code latency} milliseconds and sends at most
+ * {@code bandwidth} bytes per second ({@code 0} for unlimited).
+ * <ul>
+ *   <li>{@code probe}: {@link ZarrUtils#isZarr(URI)}, with an emptied probe cache</li>
+ *   <li>{@code open}: probing and then opening the dataset with the probed
+ *       metadata, as when a URL is opened in Fiji</li>
+ *   <li>{@code loadLevel}: reading all cells of level {@code 0} with an emptied cache</li>
+ * </ul>
+ * Every invocation is measured on its own, and the secondary results
+ * {@code requests} and {@code bytes} give the requests made and the bytes
+ * received per invocation, so that changes to the number of round trips show
+ * up even without latency.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, batchSize = 1 )
+@Measurement( iterations = 10, batchSize = 1 )
+public class RemoteBenchmark extends PyramidBenchmarkBase
+{
+	/** Delay of every request, in milliseconds. */
+	@Param( { "0", "20", "100" } )
+	public long latency;
+
+	/** Bytes per second sent per response, {@code 0} for unlimited. */
+	@Param( "0" )
+	public long bandwidth;
+
+	private ZarrTestServer server;
+
+	private URI uri;
+
+	/** Opened at setup, for {@link #loadLevel}. */
+	private PyramidContents< ? > contents;
+
+	/** Contents of the last {@link #open}, closed after each invocation. */
+	private PyramidContents< ? > opened;
+
+	/**
+	 * Requests made and bytes received by the measured invocation.
+	 */
+	@State( Scope.Thread )
+	@AuxCounters( AuxCounters.Type.EVENTS )
+	public static class Requests
+	{
+		public long requests;
+
+		public long bytes;
+	}
+
+	@Setup
+	public void setup() throws IOException
+	{
+		final URI local = location();
+		if ( !"file".equals( local.getScheme() ) )
+			throw new IllegalArgumentException( "Only local datasets can be served: " + dataset );
+		final Path path = Paths.get( local );
+		server = ZarrTestServer.serve( path.getParent() ).latency( latency ).bandwidth( bandwidth );
+		uri = server.httpUri( path.getFileName().toString() );
+		contents = backend.create().load( uri );
+	}
+
+	@Setup( Level.Invocation )
+	public void reset()
+	{
+		ZarrUtils.clearProbeCache();
+		contents.cachedCellImg( 0 ).getCache().invalidateAll();
+		server.resetCounts();
+	}
+
+	@TearDown( Level.Invocation )
+	public void closeOpened()
+	{
+		if ( opened != null )
+			opened.close();
+		opened = null;
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		contents.close();
+		server.close();
+		ZarrUtils.clearProbeCache();
+	}
+
+	@Benchmark
+	public boolean probe( final Requests requests )
+	{
+		final boolean isZarr = ZarrUtils.isZarr( uri );
+		count( requests );
+		return isZarr;
+	}
+
+	@Benchmark
+	public PyramidContents< ? > open( final Requests requests )
+	{
+		if ( !ZarrUtils.isZarr( uri ) )
+			throw new IllegalStateException( "Not a Zarr dataset: " + uri );
+		opened = backend.create().load( uri, new LoadMonitor(), ZarrUtils.prefetchedMetadata( uri ) );
+		count( requests );
+		return opened;
+	}
+
+	@Benchmark
+	public void loadLevel( final Requests requests, final Blackhole blackhole )
+	{
+		for ( final Cell< ? > cell : contents.cachedCellImg( 0 ).getCells() )
+			blackhole.consume( cell.getData() );
+		count( requests );
+	}
+
+	private void count( final Requests requests )
+	{
+		requests.requests = server.count();
+		requests.bytes = server.bytesSent();
+	}
+}
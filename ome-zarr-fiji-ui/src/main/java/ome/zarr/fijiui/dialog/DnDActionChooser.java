@@ -191,11 +191,11 @@ public class DnDActionChooser
 		zarrToBDVDialog.setToolTipText( "Open OME-Zarr/N5 BDV Viewer dialog" );
 
 		// FIJI button
-		zarrIJHighestResolution.addActionListener( e -> disposeAndRun( dialog, actions::openIJWithImage ) );
+		zarrIJHighestResolution.addActionListener( e -> disposeAndOpen( dialog, actions::openIJWithImageInBackground ) );
 		zarrIJHighestResolution.setToolTipText( "Open OME-Zarr in ImageJ at highest resolution level" );
 
 		// BDV button
-		zarrBDVHighestResolution.addActionListener( e -> disposeAndRun( dialog, actions::openBDVWithImage ) );
+		zarrBDVHighestResolution.addActionListener( e -> disposeAndOpen( dialog, actions::openBDVWithImageInBackground ) );
 		zarrBDVHighestResolution.setToolTipText( "Open OME-Zarr in BDV at highest resolution level" );
 
 		// script button
@@ -217,6 +217,16 @@ public class DnDActionChooser
 		new Thread( action ).start();
 	}
 
+	/**
+	 * Disposes the dialog and starts {@code open}, which loads in the
+	 * background and shows its progress.
+	 */
+	private void disposeAndOpen( final JDialog dialog, final Runnable open )
+	{
+		dialog.dispose();
+		open.run();
+	}
+
 	private Point getMouseLocation()
 	{
 		try
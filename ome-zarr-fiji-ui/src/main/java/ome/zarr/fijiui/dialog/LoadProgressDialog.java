@@ -0,0 +1,203 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fijiui.dialog;
+
+import java.awt.BorderLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import ome.zarr.imglib2.LoadMonitor;
+
+/**
+ * Small non-modal window showing the progress of opening an OME-Zarr dataset,
+ * with a button that cancels it.
+ * <p>
+ * The window only appears if opening takes longer than {@link #SHOW_DELAY_MILLIS},
+ * so that fast (e.g. local) opens do not flash it, and never in headless mode.
+ */
+public class LoadProgressDialog implements LoadMonitor.Listener
+{
+	/** Delay before the window appears. */
+	static final int SHOW_DELAY_MILLIS = 500;
+
+	private final String location;
+
+	private final LoadMonitor monitor;
+
+	/** Accessed on the event dispatch thread only. */
+	private JDialog dialog;
+
+	/** Accessed on the event dispatch thread only. */
+	private JLabel message;
+
+	/** Accessed on the event dispatch thread only. */
+	private JProgressBar progressBar;
+
+	/** Accessed on the event dispatch thread only. */
+	private Timer showTimer;
+
+	/** Accessed on the event dispatch thread only. */
+	private boolean closed = false;
+
+	/** Last reported progress, {@code null} before the first report. Accessed on the event dispatch thread only. */
+	private String status;
+
+	/** Accessed on the event dispatch thread only. */
+	private int percent;
+
+	private LoadProgressDialog( final String location, final LoadMonitor monitor )
+	{
+		this.location = location;
+		this.monitor = monitor;
+	}
+
+	/**
+	 * Follows the progress of {@code monitor}, showing the window after
+	 * {@link #SHOW_DELAY_MILLIS} unless {@link #close()} is called before.
+	 *
+	 * @param location the dataset being opened, as shown to the user
+	 */
+	public static LoadProgressDialog show( final String location, final LoadMonitor monitor )
+	{
+		final LoadProgressDialog progress = new LoadProgressDialog( location, monitor );
+		if ( !GraphicsEnvironment.isHeadless() )
+		{
+			monitor.addListener( progress );
+			SwingUtilities.invokeLater( progress::startTimer );
+		}
+		return progress;
+	}
+
+	/**
+	 * Stops following the progress and disposes the window, if shown.
+	 */
+	public void close()
+	{
+		monitor.removeListener( this );
+		SwingUtilities.invokeLater( () -> {
+			closed = true;
+			if ( showTimer != null )
+				showTimer.stop();
+			if ( dialog != null )
+				dialog.dispose();
+		} );
+	}
+
+	@Override
+	public void progress( final LoadMonitor.Stage stage, final int done, final int total )
+	{
+		SwingUtilities.invokeLater( () -> {
+			status = describe( stage, done, total );
+			percent = 100 * ( stage.ordinal() * total + done ) / ( LoadMonitor.Stage.values().length * total );
+			if ( dialog != null )
+				update();
+		} );
+	}
+
+	private void update()
+	{
+		if ( status == null || monitor.isCanceled() )
+			return;
+		message.setText( status );
+		progressBar.setIndeterminate( false );
+		progressBar.setValue( percent );
+	}
+
+	static String describe( final LoadMonitor.Stage stage, final int done, final int total )
+	{
+		switch ( stage )
+		{
+		case METADATA:
+			return "Read multiscales metadata";
+		case LEVELS:
+			return "Read resolution levels (" + done + "/" + total + ")";
+		case OMERO:
+		default:
+			return "Read OMERO metadata";
+		}
+	}
+
+	private void startTimer()
+	{
+		if ( closed )
+			return;
+		showTimer = new Timer( SHOW_DELAY_MILLIS, e -> createAndShow() );
+		showTimer.setRepeats( false );
+		showTimer.start();
+	}
+
+	private void createAndShow()
+	{
+		if ( closed )
+			return;
+		dialog = new JDialog();
+		dialog.setTitle( "Opening " + location );
+		dialog.setModal( false );
+		dialog.setDefaultCloseOperation( JDialog.DISPOSE_ON_CLOSE );
+		dialog.addWindowListener( new WindowAdapter()
+		{
+			@Override
+			public void windowClosing( final WindowEvent e )
+			{
+				monitor.cancel();
+			}
+		} );
+
+		message = new JLabel( "Connecting..." );
+		progressBar = new JProgressBar( 0, 100 );
+		progressBar.setIndeterminate( true );
+		final JButton cancel = new JButton( "Cancel" );
+		cancel.addActionListener( e -> {
+			monitor.cancel();
+			message.setText( "Canceling..." );
+			cancel.setEnabled( false );
+		} );
+
+		final JPanel panel = new JPanel( new BorderLayout( 5, 5 ) );
+		panel.setBorder( BorderFactory.createEmptyBorder( 10, 10, 10, 10 ) );
+		panel.add( message, BorderLayout.NORTH );
+		panel.add( progressBar, BorderLayout.CENTER );
+		panel.add( cancel, BorderLayout.EAST );
+		dialog.getContentPane().add( panel );
+		update();
+		dialog.pack();
+		dialog.setLocationRelativeTo( null );
+		dialog.setVisible( true );
+	}
+}
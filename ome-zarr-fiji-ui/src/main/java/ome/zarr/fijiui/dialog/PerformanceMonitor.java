@@ -0,0 +1,261 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fijiui.dialog;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GraphicsEnvironment;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import ome.zarr.fiji.plugins.LoadMetricsService;
+import ome.zarr.imglib2.metrics.LevelMetrics;
+
+/**
+ * Window showing the live rates of the cell loads of all open OME-Zarr
+ * images, per dataset and resolution level, to tell whether browsing is bound
+ * by the network, by decoding or by the cell cache. The rates are computed
+ * over the last {@link #REFRESH_MILLIS}, from the {@link LoadMetricsService}.
+ * <p>
+ * There is at most one window; showing it again brings it to the front. It is
+ * never shown in headless mode.
+ */
+public class PerformanceMonitor
+{
+	/** Interval between refreshes of the rates. */
+	static final int REFRESH_MILLIS = 1000;
+
+	static final String TITLE = "OME-Zarr Performance Monitor";
+
+	/** Accessed on the event dispatch thread only. */
+	private static PerformanceMonitor instance;
+
+	private final LoadMetricsService service;
+
+	private final RatesModel model = new RatesModel();
+
+	private final JFrame frame;
+
+	private final Timer timer;
+
+	private PerformanceMonitor( final LoadMetricsService service )
+	{
+		this.service = service;
+
+		final JTable table = new JTable( model );
+		table.setAutoCreateRowSorter( true );
+		table.getColumnModel().getColumn( 0 ).setPreferredWidth( 300 );
+
+		final JCheckBox record = new JCheckBox( "Record metrics", service.isEnabled() );
+		record.addActionListener( e -> service.setEnabled( record.isSelected() ) );
+		final JButton reset = new JButton( "Reset" );
+		reset.addActionListener( e -> {
+			service.reset();
+			model.clear();
+			refresh();
+		} );
+		final JPanel buttons = new JPanel( new FlowLayout( FlowLayout.RIGHT ) );
+		buttons.add( record );
+		buttons.add( reset );
+
+		final JPanel panel = new JPanel( new BorderLayout( 5, 5 ) );
+		panel.setBorder( BorderFactory.createEmptyBorder( 10, 10, 10, 10 ) );
+		panel.add( new JScrollPane( table ), BorderLayout.CENTER );
+		panel.add( buttons, BorderLayout.SOUTH );
+
+		frame = new JFrame( TITLE );
+		frame.setDefaultCloseOperation( JFrame.DISPOSE_ON_CLOSE );
+		frame.getContentPane().add( panel );
+		frame.setSize( 1000, 300 );
+		frame.setLocationRelativeTo( null );
+
+		timer = new Timer( REFRESH_MILLIS, e -> refresh() );
+		frame.addWindowListener( new WindowAdapter()
+		{
+			@Override
+			public void windowClosed( final WindowEvent e )
+			{
+				timer.stop();
+				if ( instance == PerformanceMonitor.this )
+					instance = null;
+			}
+		} );
+	}
+
+	/**
+	 * Shows the window, or brings it to the front if already shown.
+	 */
+	public static void show( final LoadMetricsService service )
+	{
+		if ( GraphicsEnvironment.isHeadless() )
+			return;
+		SwingUtilities.invokeLater( () -> {
+			if ( instance == null )
+			{
+				instance = new PerformanceMonitor( service );
+				instance.refresh();
+				instance.timer.start();
+				instance.frame.setVisible( true );
+			}
+			else
+				instance.frame.toFront();
+		} );
+	}
+
+	private void refresh()
+	{
+		model.update( service.snapshot(), System.nanoTime() );
+	}
+
+	/**
+	 * The rates of each level since the previous {@link #update}.
+	 */
+	static final class RatesModel extends AbstractTableModel
+	{
+		private static final long serialVersionUID = 1L;
+
+		static final String[] COLUMNS = { "Dataset", "Level", "Requests/s", "MB/s fetched", "Fetch p50 (ms)",
+				"Fetch p95 (ms)", "Cells/s", "Decode p50 (ms)", "Cache hit rate", "Evictions/s", "Shard index hit rate" };
+
+		/** Totals at the previous update, per dataset and level. */
+		private final Map< String, LevelMetrics.Snapshot > previous = new HashMap<>();
+
+		private long previousNanos;
+
+		private List< String[] > rows = new ArrayList<>();
+
+		/**
+		 * Computes the rates from the totals {@code snapshots} taken at
+		 * {@code nanos}. Levels seen for the first time, or whose totals were
+		 * reset, only show rates from the next update on. Levels no longer
+		 * reported, e.g. of closed datasets, are forgotten.
+		 */
+		void update( final List< LevelMetrics.Snapshot > snapshots, final long nanos )
+		{
+			final double seconds = ( nanos - previousNanos ) / 1e9;
+			final List< String[] > updated = new ArrayList<>( snapshots.size() );
+			final Set< String > reported = new HashSet<>();
+			for ( final LevelMetrics.Snapshot snapshot : snapshots )
+			{
+				final String key = snapshot.level + " " + snapshot.dataset;
+				reported.add( key );
+				final LevelMetrics.Snapshot before = previous.put( key, snapshot );
+				if ( before == null || seconds <= 0 || isReset( snapshot, before ) )
+					updated.add( row( snapshot, null, 0 ) );
+				else
+					updated.add( row( snapshot, snapshot.minus( before ), seconds ) );
+			}
+			previous.keySet().retainAll( reported );
+			previousNanos = nanos;
+			rows = updated;
+			fireTableDataChanged();
+		}
+
+		/** Forgets the totals of the previous update, e.g. after a reset. */
+		void clear()
+		{
+			previous.clear();
+		}
+
+		private static boolean isReset( final LevelMetrics.Snapshot snapshot, final LevelMetrics.Snapshot before )
+		{
+			return snapshot.requests < before.requests || snapshot.cellsLoaded < before.cellsLoaded
+					|| snapshot.cacheHits < before.cacheHits || snapshot.cacheMisses < before.cacheMisses
+					|| snapshot.evictions < before.evictions || snapshot.shardIndexHits < before.shardIndexHits
+					|| snapshot.shardIndexMisses < before.shardIndexMisses;
+		}
+
+		private static String[] row( final LevelMetrics.Snapshot snapshot, final LevelMetrics.Snapshot delta, final double seconds )
+		{
+			final String level = snapshot.level == LevelMetrics.NO_LEVEL ? "other" : Integer.toString( snapshot.level );
+			if ( delta == null )
+				return new String[] { snapshot.dataset, level, "", "", "", "", "", "", "", "", "" };
+			return new String[] {
+					snapshot.dataset,
+					level,
+					format( delta.requests / seconds ),
+					format( delta.bytesFetched / seconds / 1e6 ),
+					format( delta.fetchLatencyNanos( 0.5 ) / 1e6 ),
+					format( delta.fetchLatencyNanos( 0.95 ) / 1e6 ),
+					format( delta.cellsLoaded / seconds ),
+					format( delta.decodeTimeNanos( 0.5 ) / 1e6 ),
+					Double.isNaN( delta.hitRate() ) ? "" : format( 100 * delta.hitRate() ) + " %",
+					format( delta.evictions / seconds ),
+					Double.isNaN( delta.shardIndexHitRate() ) ? "" : format( 100 * delta.shardIndexHitRate() ) + " %" };
+		}
+
+		/** One decimal, or empty for {@code NaN}. */
+		static String format( final double value )
+		{
+			return Double.isNaN( value ) ? "" : String.format( Locale.ROOT, "%.1f", value );
+		}
+
+		@Override
+		public int getRowCount()
+		{
+			return rows.size();
+		}
+
+		@Override
+		public int getColumnCount()
+		{
+			return COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName( final int column )
+		{
+			return COLUMNS[ column ];
+		}
+
+		@Override
+		public Object getValueAt( final int row, final int column )
+		{
+			return rows.get( row )[ column ];
+		}
+	}
+}
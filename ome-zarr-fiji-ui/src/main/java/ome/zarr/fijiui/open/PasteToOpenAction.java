@@ -32,7 +32,9 @@ import java.net.URI;
 import java.util.function.Consumer;
 
 import org.scijava.Context;
+import org.scijava.prefs.PrefService;
 
+import ome.zarr.fijiui.settings.CacheSettings;
 import ome.zarr.fijiui.util.ClipboardUtils;
 import ome.zarr.imglib2.ZarrUtils;
 
@@ -66,6 +68,8 @@ public class PasteToOpenAction
 		final URI uri = ClipboardUtils.readClipboardAsUri( errorHandler );
 		if ( uri == null )
 			return false;
+		// before probing, so that datasets in the disk cache open offline
+		CacheSettings.applyFromPreferences( context.getService( PrefService.class ) );
 		// For s3:// URIs the probe would require its own short-lived S3Client purely
 		// for detection.
 		// It is skipped because the actual open method creates the client it needs anyway
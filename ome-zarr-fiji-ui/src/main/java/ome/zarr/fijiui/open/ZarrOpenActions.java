@@ -40,8 +40,11 @@ import java.lang.invoke.MethodHandles;
 import java.net.URI;
 import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import javax.swing.SwingUtilities;
 
 import ij.IJ;
 import ome.zarr.fijiui.open.options.ZarrOpenBehavior;
@@ -49,7 +52,11 @@ import ome.zarr.fijiui.open.options.ZarrOpeningSettings;
 import ome.zarr.fijiui.open.options.ZarrReaderBackend;
 import ome.zarr.fiji.open.ZarrOpener;
 import ome.zarr.fijiui.dialog.DnDActionChooser;
+import ome.zarr.fijiui.dialog.LoadProgressDialog;
+import ome.zarr.fijiui.settings.CacheSettings;
 import ome.zarr.fijiui.util.ScriptUtils;
+import ome.zarr.imglib2.AsyncLoading;
+import ome.zarr.imglib2.LoadMonitor;
 import ome.zarr.imglib2.PyramidBackend;
 
 /**
@@ -76,8 +83,8 @@ public class ZarrOpenActions
 	private final ZarrOpener opener;
 
 	/**
-	 * Loads {@link ZarrOpeningSettings} from {@code context} and opens
-	 * {@code inputUri} via the action selected by the user's configured
+	 * Loads {@link ZarrOpeningSettings} and the {@link CacheSettings} from
+	 * {@code context} and opens {@code inputUri} via the action selected by the user's configured
 	 * {@link ZarrOpenBehavior}: ImageJ display, BigDataViewer display, or the
 	 * {@link DnDActionChooser} selection dialog. Shared entry point for the
 	 * drag-and-drop handler and the "paste URL" command.
@@ -86,15 +93,24 @@ public class ZarrOpenActions
 	{
 		final PrefService prefService = context.getService( PrefService.class );
 		final ZarrOpeningSettings settings = ZarrOpeningSettings.loadSettingsFromPreferences( prefService );
+		CacheSettings.applyFromPreferences( prefService );
 		final ZarrOpenActions actions = new ZarrOpenActions( inputUri, context, settings );
+		// never load on the event dispatch thread, e.g. when pasting via the toolbar
+		final boolean inBackground = SwingUtilities.isEventDispatchThread();
 		switch ( settings.getOpenBehavior() )
 		{
 		case IMAGEJ_HIGHEST_RESOLUTION:
 		case IMAGEJ_CUSTOM_RESOLUTION:
-			actions.openIJWithImage();
+			if ( inBackground )
+				actions.openIJWithImageInBackground();
+			else
+				actions.openIJWithImage();
 			break;
 		case BDV_MULTI_RESOLUTION:
-			actions.openBDVWithImage();
+			if ( inBackground )
+				actions.openBDVWithImageInBackground();
+			else
+				actions.openBDVWithImage();
 			break;
 		case SHOW_SELECTION_DIALOG:
 		default:
@@ -210,29 +226,70 @@ public class ZarrOpenActions
 
 	/**
 	 * Opens the dataset in ImageJ at the resolution selected by the settings.
-	 * Delegates to {@link ZarrOpener#openIJWithImage()}.
+	 * Delegates to {@link ZarrOpener#openIJWithImage()}, showing a
+	 * {@link LoadProgressDialog} while loading takes long.
 	 */
 	public Object openIJWithImage()
 	{
-		return opener.openIJWithImage();
+		return withProgress( opener::openIJWithImage, new LoadMonitor() );
 	}
 
 	/**
 	 * Opens the given resolution level of the dataset in ImageJ (0 = highest
-	 * resolution). Delegates to {@link ZarrOpener#openIJWithImage(int)}.
+	 * resolution). Delegates to {@link ZarrOpener#openIJWithImage(int)},
+	 * showing a {@link LoadProgressDialog} while loading takes long.
 	 */
 	public Object openIJWithImage( final int resolutionLevel )
 	{
-		return opener.openIJWithImage( resolutionLevel );
+		return withProgress( () -> opener.openIJWithImage( resolutionLevel ), new LoadMonitor() );
 	}
 
 	/**
 	 * Opens the dataset in BigDataViewer. Delegates to
-	 * {@link ZarrOpener#openBDVWithImage()}.
+	 * {@link ZarrOpener#openBDVWithImage()}, showing a
+	 * {@link LoadProgressDialog} while loading takes long.
 	 */
 	public Object openBDVWithImage()
 	{
-		return opener.openBDVWithImage();
+		return withProgress( opener::openBDVWithImage, new LoadMonitor() );
+	}
+
+	/**
+	 * Like {@link #openIJWithImage()}, but loads in the background (see
+	 * {@link AsyncLoading}). Cancelling the returned future cancels loading.
+	 */
+	public CompletableFuture< Object > openIJWithImageInBackground()
+	{
+		return inBackground( opener::openIJWithImage );
+	}
+
+	/**
+	 * Like {@link #openBDVWithImage()}, but loads in the background (see
+	 * {@link AsyncLoading}). Cancelling the returned future cancels loading.
+	 */
+	public CompletableFuture< Object > openBDVWithImageInBackground()
+	{
+		return inBackground( opener::openBDVWithImage );
+	}
+
+	private CompletableFuture< Object > inBackground( final Supplier< Object > open )
+	{
+		final LoadMonitor monitor = new LoadMonitor();
+		return AsyncLoading.supplyAsync( () -> withProgress( open, monitor ), monitor );
+	}
+
+	private Object withProgress( final Supplier< Object > open, final LoadMonitor monitor )
+	{
+		opener.setLoadMonitor( monitor );
+		final LoadProgressDialog progress = LoadProgressDialog.show( displayLocation(), monitor );
+		try
+		{
+			return open.get();
+		}
+		finally
+		{
+			progress.close();
+		}
 	}
 
 
@@ -0,0 +1,187 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fijiui.settings;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+
+import org.scijava.ItemVisibility;
+import org.scijava.command.Command;
+import org.scijava.command.DynamicCommand;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.prefs.PrefService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.zarr.imglib2.ZarrUtils;
+import ome.zarr.imglib2.cache.SharedCellCache;
+import ome.zarr.imglib2.store.DiskChunkCache;
+
+/**
+ * A FIJI/ImageJ command to set the memory budget of the cell cache shared by all open OME-Zarr images,
+ * and the disk cache for remote images.
+ */
+@Plugin( type = Command.class, menuPath = "Plugins > OME-Zarr > Settings > Cache Settings", initializer = "init" )
+public class CacheSettings extends DynamicCommand
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final Integer WIDTH = 20;
+
+	private static final String CACHE_BUDGET_SETTING_NAME = "ZarrCellCacheBudgetMB";
+
+	private static final String DISK_CACHE_ENABLED_SETTING_NAME = "ZarrDiskCacheEnabled";
+
+	private static final String DISK_CACHE_BUDGET_SETTING_NAME = "ZarrDiskCacheBudgetMB";
+
+	private static final long MB = 1024 * 1024;
+
+	@SuppressWarnings( "all" )
+	@Parameter
+	private PrefService prefService;
+
+	@SuppressWarnings( "all" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false )
+	private String infoMessage = "<html>"
+			+ "<body width=" + WIDTH + "cm align=left>"
+			+ "All open OME-Zarr images share one cache for their image data.<br>"
+			+ "When it exceeds the budget, the least recently used data is dropped and loaded again when needed. "
+			+ "A larger budget means fewer reloads, but leaves less memory for other tasks."
+			+ "</body>"
+			+ "</html>";
+
+	@SuppressWarnings( "all" )
+	@Parameter( label = "Cache budget (MB)", min = "16", persist = false )
+	private long budgetMB;
+
+	@SuppressWarnings( "all" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false )
+	private String usageInfo;
+
+	@SuppressWarnings( "all" )
+	@Parameter( visibility = ItemVisibility.MESSAGE, required = false, persist = false )
+	private String diskInfoMessage = "<html>"
+			+ "<body width=" + WIDTH + "cm align=left>"
+			+ "Data of images opened from http(s) and s3 can also be kept on the local disk, "
+			+ "so that images opened again need not be downloaded again, and can be browsed offline. "
+			+ "Data kept for more than " + DiskChunkCache.DEFAULT_MAX_AGE_MILLIS / 60_000 + " minutes are checked for changes "
+			+ "before they are used again.<br>"
+			+ "Location: " + DiskChunkCache.getInstance().getDirectory()
+			+ "</body>"
+			+ "</html>";
+
+	@SuppressWarnings( "all" )
+	@Parameter( label = "Cache remote images on disk", persist = false )
+	private boolean diskCacheEnabled;
+
+	@SuppressWarnings( "all" )
+	@Parameter( label = "Disk cache size (MB)", min = "64", persist = false )
+	private long diskBudgetMB;
+
+	@Override
+	public void run()
+	{
+		logger.debug( "Now saving OME-Zarr cell cache budget to user preferences: {} MB", budgetMB );
+		prefService.put( CacheSettings.class, CACHE_BUDGET_SETTING_NAME, budgetMB );
+		SharedCellCache.getInstance().setMaxBytes( budgetMB * MB );
+
+		logger.debug( "Now saving OME-Zarr disk cache settings to user preferences: enabled {}, {} MB", diskCacheEnabled, diskBudgetMB );
+		prefService.put( CacheSettings.class, DISK_CACHE_ENABLED_SETTING_NAME, diskCacheEnabled );
+		prefService.put( CacheSettings.class, DISK_CACHE_BUDGET_SETTING_NAME, diskBudgetMB );
+		DiskChunkCache.getInstance().setEnabled( diskCacheEnabled );
+		DiskChunkCache.getInstance().setMaxBytes( diskBudgetMB * MB );
+	}
+
+	@SuppressWarnings( "unused" )
+	private void init()
+	{
+		budgetMB = loadBudgetMB( prefService );
+		usageInfo = usageInfo( SharedCellCache.getInstance() );
+		diskCacheEnabled = loadDiskCacheEnabled( prefService );
+		diskBudgetMB = loadDiskBudgetMB( prefService );
+	}
+
+	/**
+	 * Loads the cache budget from the user preferences.
+	 *
+	 * @param prefs If {@code null} is provided, the default budget is returned.
+	 * @return the budget in MB, by default {@link SharedCellCache#defaultMaxBytes()}
+	 */
+	public static long loadBudgetMB( final PrefService prefs )
+	{
+		final long defaultMB = SharedCellCache.defaultMaxBytes() / MB;
+		return prefs == null ? defaultMB : prefs.getLong( CacheSettings.class, CACHE_BUDGET_SETTING_NAME, defaultMB );
+	}
+
+	/**
+	 * Loads whether remote images are cached on disk from the user preferences.
+	 *
+	 * @param prefs If {@code null} is provided, {@code false} is returned.
+	 */
+	public static boolean loadDiskCacheEnabled( final PrefService prefs )
+	{
+		return prefs != null && prefs.getBoolean( CacheSettings.class, DISK_CACHE_ENABLED_SETTING_NAME, false );
+	}
+
+	/**
+	 * Loads the disk cache budget from the user preferences.
+	 *
+	 * @param prefs If {@code null} is provided, the default budget is returned.
+	 * @return the budget in MB, by default {@link DiskChunkCache#DEFAULT_MAX_BYTES}
+	 */
+	public static long loadDiskBudgetMB( final PrefService prefs )
+	{
+		final long defaultMB = DiskChunkCache.DEFAULT_MAX_BYTES / MB;
+		return prefs == null ? defaultMB : prefs.getLong( CacheSettings.class, DISK_CACHE_BUDGET_SETTING_NAME, defaultMB );
+	}
+
+	/**
+	 * Applies the cache settings from the user preferences to the
+	 * {@link SharedCellCache} and the {@link DiskChunkCache}, and lets
+	 * {@link ZarrUtils#isZarr(java.net.URI)} recognize the datasets in the
+	 * latter when offline.
+	 */
+	public static void applyFromPreferences( final PrefService prefs )
+	{
+		SharedCellCache.getInstance().setMaxBytes( loadBudgetMB( prefs ) * MB );
+		DiskChunkCache.getInstance().setEnabled( loadDiskCacheEnabled( prefs ) );
+		DiskChunkCache.getInstance().setMaxBytes( loadDiskBudgetMB( prefs ) * MB );
+		ZarrUtils.setMetadataCache( uri -> DiskChunkCache.getInstance().hasMetadata( uri.toString() ) );
+	}
+
+	static String usageInfo( final SharedCellCache cache )
+	{
+		final StringBuilder sb = new StringBuilder( "<html><body width=" + WIDTH + "cm align=left>" );
+		sb.append( String.format( "Currently used: %d MB of %d MB", cache.getUsedBytes() / MB, cache.getMaxBytes() / MB ) );
+		for ( final Map.Entry< String, Long > dataset : cache.getUsedBytesPerDataset().entrySet() )
+			sb.append( String.format( "<br>%s: %d MB", dataset.getKey(), dataset.getValue() / MB ) );
+		return sb.append( "</body></html>" ).toString();
+	}
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fijiui.dialog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Unit tests for the rates shown by the {@link PerformanceMonitor}; they need
+ * no display.
+ */
+class PerformanceMonitorTest
+{
+	private final LoadMetrics metrics = new LoadMetrics( true );
+
+	private final PerformanceMonitor.RatesModel model = new PerformanceMonitor.RatesModel();
+
+	private String cell( final int row, final String column )
+	{
+		return ( String ) model.getValueAt( row, Arrays.asList( PerformanceMonitor.RatesModel.COLUMNS ).indexOf( column ) );
+	}
+
+	@Test
+	void testRatesAreComputedOverTheInterval()
+	{
+		final LevelMetrics level = metrics.level( "s3://bucket/image.zarr", 0 );
+		model.update( metrics.snapshot(), 0 );
+		assertEquals( 1, model.getRowCount() );
+		assertEquals( "", cell( 0, "Requests/s" ) );
+
+		for ( int i = 0; i < 4; i++ )
+			level.fetched( 500_000, 10_000_000 );
+		level.hit();
+		level.missed();
+		level.evicted();
+		level.shardIndexHit();
+		level.shardIndexHit();
+		level.shardIndexHit();
+		level.shardIndexMissed();
+		model.update( metrics.snapshot(), 2_000_000_000L );
+
+		assertEquals( "s3://bucket/image.zarr", cell( 0, "Dataset" ) );
+		assertEquals( "0", cell( 0, "Level" ) );
+		assertEquals( "2.0", cell( 0, "Requests/s" ) );
+		assertEquals( "1.0", cell( 0, "MB/s fetched" ) );
+		assertEquals( "50.0 %", cell( 0, "Cache hit rate" ) );
+		assertEquals( "0.5", cell( 0, "Evictions/s" ) );
+		assertEquals( "75.0 %", cell( 0, "Shard index hit rate" ) );
+		assertEquals( "", cell( 0, "Decode p50 (ms)" ) );
+	}
+
+	@Test
+	void testResetTotalsShowNoRates()
+	{
+		final LevelMetrics level = metrics.level( "a", LevelMetrics.NO_LEVEL );
+		level.fetched( 100, 1_000 );
+		model.update( metrics.snapshot(), 0 );
+
+		metrics.reset();
+		model.update( metrics.snapshot(), 1_000_000_000L );
+
+		assertEquals( "other", cell( 0, "Level" ) );
+		assertEquals( "", cell( 0, "Requests/s" ) );
+	}
+
+	@Test
+	void testRemovedDatasetsAreNoLongerShown()
+	{
+		metrics.level( "a", 0 ).fetched( 100, 1_000 );
+		model.update( metrics.snapshot(), 0 );
+
+		metrics.remove( "a" );
+		model.update( metrics.snapshot(), 1_000_000_000L );
+		assertEquals( 0, model.getRowCount() );
+
+		// opened again, its rates start anew
+		metrics.level( "a", 0 ).fetched( 100, 1_000 );
+		model.update( metrics.snapshot(), 2_000_000_000L );
+		assertEquals( "", cell( 0, "Requests/s" ) );
+	}
+}
@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fijiui.settings;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+import org.scijava.prefs.PrefService;
+
+import ome.zarr.imglib2.cache.SharedCellCache;
+
+/**
+ * Unit tests for the {@link CacheSettings#run()} method, which saves the cell
+ * cache budget to the user preferences and applies it.
+ */
+class CacheSettingsTest
+{
+
+	@Test
+	void testRunSavesAndAppliesBudget() throws NoSuchFieldException, IllegalAccessException, NoSuchMethodException,
+			InvocationTargetException
+	{
+		final long previousMaxBytes = SharedCellCache.getInstance().getMaxBytes();
+		try (Context context = new Context())
+		{
+			CacheSettings ui = new CacheSettings();
+			PrefService prefService = context.getService( PrefService.class );
+			prefService.clearAll();
+
+			Field prefServiceField = CacheSettings.class.getDeclaredField( "prefService" );
+			prefServiceField.setAccessible( true );
+			prefServiceField.set( ui, prefService );
+
+			Method initMethod = CacheSettings.class.getDeclaredMethod( "init" );
+			initMethod.setAccessible( true );
+			initMethod.invoke( ui );
+
+			Field budgetField = CacheSettings.class.getDeclaredField( "budgetMB" );
+			budgetField.setAccessible( true );
+			assertEquals( SharedCellCache.defaultMaxBytes() / ( 1024 * 1024 ), budgetField.get( ui ) );
+			budgetField.set( ui, 256L );
+
+			ui.run();
+
+			assertEquals( 256L, CacheSettings.loadBudgetMB( prefService ) );
+			assertEquals( 256L * 1024 * 1024, SharedCellCache.getInstance().getMaxBytes() );
+		}
+		finally
+		{
+			SharedCellCache.getInstance().setMaxBytes( previousMaxBytes );
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+
+import bdv.img.cache.VolatileCachedCellImg;
+import ome.zarr.fiji.plugins.PyramidalService;
+import ome.zarr.imglib2.PyramidContents;
+
+/**
+ * Lets the cell loads of the active pyramidal, i.e. the one in the most
+ * recently focused window as tracked by {@link PyramidalService}, go before
+ * those of datasets in background windows.
+ * <p>
+ * The queue of the {@link FetchScheduler} has {@link #NUM_PRIORITIES}
+ * priorities, and its fetcher threads always take the requests of the highest
+ * priority first. The volatile images of the active dataset request their
+ * cells at {@link #ACTIVE_PRIORITY}, those of the other datasets at
+ * {@link #BACKGROUND_PRIORITY}, so a background dataset loads whenever the
+ * active one has nothing queued, and no fetcher thread ever waits for it.
+ * Requests already queued keep their priority when the active dataset
+ * changes. Without an active dataset all datasets share
+ * {@link #ACTIVE_PRIORITY}.
+ * <p>
+ * Threads loading cells synchronously, e.g. the event dispatch thread or a
+ * macro iterating over an image, do not go through the queue and are
+ * unaffected.
+ */
+public final class FetchPriorities
+{
+	/** Queue priority of the cell requests of the active dataset. */
+	public static final int ACTIVE_PRIORITY = 0;
+
+	/** Queue priority of the cell requests of datasets in background windows. */
+	public static final int BACKGROUND_PRIORITY = 1;
+
+	/** Number of priorities of the queue of the {@link FetchScheduler}. */
+	public static final int NUM_PRIORITIES = 2;
+
+	private static final FetchPriorities INSTANCE = new FetchPriorities();
+
+	/** {@link PyramidContents#location} of the active dataset, or {@code null}. */
+	private volatile String active;
+
+	/**
+	 * Volatile images requesting their cells at the priority of their dataset,
+	 * by {@link #prioritize}, with the location of the dataset. Guarded by
+	 * {@code this}.
+	 */
+	private final Map< VolatileCachedCellImg< ?, ? >, String > images = new WeakHashMap<>();
+
+	/**
+	 * Creates priorities that are independent of the process-wide instance,
+	 * e.g. for tests. Use {@link #getInstance()} otherwise.
+	 */
+	public FetchPriorities()
+	{}
+
+	/**
+	 * The priorities of the volatile images of all {@link PyramidalBdv}s.
+	 */
+	public static FetchPriorities getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Gives the loads of {@code contents} precedence, or of no dataset if
+	 * {@code null}.
+	 */
+	public void setActive( final PyramidContents< ? > contents )
+	{
+		setActive( contents != null ? contents.location : null );
+	}
+
+	/**
+	 * Gives the loads of the dataset at {@code location} precedence, or of no
+	 * dataset if {@code null}.
+	 */
+	public synchronized void setActive( final String location )
+	{
+		active = location;
+		for ( final Map.Entry< VolatileCachedCellImg< ?, ? >, String > image : images.entrySet() )
+			image.getKey().setCacheHints( cacheHints( image.getValue() ) );
+	}
+
+	/** Location of the dataset whose loads go first, or {@code null}. */
+	public String getActive()
+	{
+		return active;
+	}
+
+	/**
+	 * Queue priority of the cell requests of the dataset at {@code location}.
+	 */
+	public int priority( final String location )
+	{
+		final String current = active;
+		return current == null || current.equals( location ) ? ACTIVE_PRIORITY : BACKGROUND_PRIORITY;
+	}
+
+	/**
+	 * Hints for the volatile images of the dataset at {@code location}: they
+	 * enqueue their missing cells at the {@link #priority(String) priority} of
+	 * the dataset.
+	 */
+	public CacheHints cacheHints( final String location )
+	{
+		return new CacheHints( LoadingStrategy.VOLATILE, priority( location ), false );
+	}
+
+	/**
+	 * Lets {@code image}, a volatile image of the dataset at {@code location},
+	 * request its cells at the priority of the dataset from now on, also when
+	 * the active dataset changes. The image is held weakly.
+	 */
+	public synchronized void prioritize( final String location, final VolatileCachedCellImg< ?, ? > image )
+	{
+		images.put( image, location );
+		image.setCacheHints( cacheHints( location ) );
+	}
+}
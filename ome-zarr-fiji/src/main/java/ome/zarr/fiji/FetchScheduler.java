@@ -0,0 +1,200 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji;
+
+import java.lang.invoke.MethodHandles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import bdv.cache.SharedQueue;
+
+/**
+ * The fetch queue shared by the volatile views of all {@link PyramidalBdv}s.
+ * <p>
+ * Cells are loaded by a single pool of fetcher threads, whichever dataset
+ * they belong to, so that opening more datasets does not multiply the number
+ * of threads competing for the network and the cores. The queue is created
+ * when the first dataset {@linkplain #acquire() acquires} it, or when views
+ * are built on it before their dataset is displayed, see {@link #current()},
+ * and shut down when the last dataset {@linkplain #release(SharedQueue)
+ * releases} it. Views built on a queue that was shut down must be built again
+ * on the {@linkplain #isRunning(SharedQueue) running} one.
+ * <p>
+ * The number of fetcher threads defaults to half the number of cores and can
+ * be set with the system property {@value #THREADS_PROPERTY} or
+ * {@link #setNumThreads(int)}. Each thread both reads and decodes the cells
+ * it fetches, taking the requests of the active dataset first, see
+ * {@link FetchPriorities}. Within a priority, requests are taken in the order
+ * BigDataViewer queues them, whichever dataset they belong to: there is no
+ * round robin between datasets.
+ */
+public final class FetchScheduler
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/** System property overriding the default number of fetcher threads. */
+	public static final String THREADS_PROPERTY = "ome.zarr.fetcherThreads";
+
+	private static final FetchScheduler INSTANCE = new FetchScheduler( defaultNumThreads() );
+
+	/** Guarded by {@code this}. */
+	private int numThreads;
+
+	/** The current queue, {@code null} while none runs. Guarded by {@code this}. */
+	private SharedQueue queue;
+
+	/** Number of datasets using {@link #queue}. Guarded by {@code this}. */
+	private int users = 0;
+
+	/** Number of fetcher threads of {@link #queue}. Guarded by {@code this}. */
+	private int queueThreads = 0;
+
+	/**
+	 * Creates a scheduler that is independent of the process-wide instance,
+	 * e.g. for tests. Use {@link #getInstance()} otherwise.
+	 */
+	public FetchScheduler( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+	}
+
+	/**
+	 * The scheduler shared by all datasets of this process.
+	 */
+	public static FetchScheduler getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * The number of fetcher threads given by {@value #THREADS_PROPERTY}, or
+	 * else half the number of cores.
+	 */
+	public static int defaultNumThreads()
+	{
+		final String threads = System.getProperty( THREADS_PROPERTY );
+		if ( threads != null )
+		{
+			try
+			{
+				return Math.max( 1, Integer.parseInt( threads.trim() ) );
+			}
+			catch ( final NumberFormatException e )
+			{
+				logger.warn( "Ignoring invalid {}: {}", THREADS_PROPERTY, threads );
+			}
+		}
+		return Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 );
+	}
+
+	/**
+	 * Returns the shared queue, creating it if no dataset uses it yet. Every
+	 * call must be paired with a {@link #release(SharedQueue)} once the
+	 * dataset is closed.
+	 */
+	public synchronized SharedQueue acquire()
+	{
+		final SharedQueue current = current();
+		users++;
+		return current;
+	}
+
+	/**
+	 * Returns the shared queue, creating it if none runs, without using it:
+	 * e.g. to build the views of a dataset before it is displayed and
+	 * {@linkplain #acquire() acquires} the queue. The queue keeps running
+	 * until the last dataset using it releases it.
+	 */
+	public synchronized SharedQueue current()
+	{
+		if ( queue == null )
+		{
+			logger.debug( "Starting {} fetcher threads", numThreads );
+			queue = new SharedQueue( numThreads, FetchPriorities.NUM_PRIORITIES );
+			queueThreads = numThreads;
+		}
+		return queue;
+	}
+
+	/**
+	 * Whether {@code queue} is the shared queue and was not shut down.
+	 */
+	public synchronized boolean isRunning( final SharedQueue queue )
+	{
+		return queue != null && queue == this.queue;
+	}
+
+	/**
+	 * Releases a queue returned by {@link #acquire()}, shutting its fetcher
+	 * threads down if no other dataset uses it.
+	 */
+	public synchronized void release( final SharedQueue released )
+	{
+		if ( released != queue || users == 0 )
+			return;
+		if ( --users == 0 )
+		{
+			logger.debug( "Stopping fetcher threads, no dataset left" );
+			queue.shutdown();
+			queue = null;
+			queueThreads = 0;
+		}
+	}
+
+	/** Number of datasets using the queue. */
+	public synchronized int getUsers()
+	{
+		return users;
+	}
+
+	public synchronized int getNumThreads()
+	{
+		return numThreads;
+	}
+
+	/**
+	 * The number of fetcher threads currently running, which differs from
+	 * {@link #getNumThreads()} after {@link #setNumThreads(int)} until the
+	 * queue is next created, and is {@code 0} while no queue runs.
+	 */
+	public synchronized int getRunningThreads()
+	{
+		return queueThreads;
+	}
+
+	/**
+	 * Sets the number of fetcher threads. It applies when the queue is next
+	 * created, i.e. once all open datasets are closed.
+	 */
+	public synchronized void setNumThreads( final int numThreads )
+	{
+		this.numThreads = Math.max( 1, numThreads );
+	}
+}
@@ -51,12 +51,16 @@ import java.util.Arrays;
 import java.util.List;
 
 import bdv.BigDataViewer;
+import bdv.cache.CacheControl;
 import bdv.cache.SharedQueue;
+import bdv.img.cache.VolatileCachedCellImg;
 import bdv.util.RandomAccessibleIntervalMipmapSource4D;
+import bdv.util.volatiles.VolatileView;
 import bdv.util.volatiles.VolatileViews;
 import bdv.viewer.SourceAndConverter;
 import mpicbg.spim.data.sequence.FinalVoxelDimensions;
 import mpicbg.spim.data.sequence.VoxelDimensions;
+import ome.zarr.fiji.plugins.PyramidContentsService;
 import ome.zarr.imglib2.PyramidContents;
 import ome.zarr.imglib2.metadata.AxisCalibration;
 
@@ -67,12 +71,27 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 
 	private final PyramidContents< T > contents;
 
-	private final List< SourceAndConverter< T > > sources;
+	/** Guarded by {@code this}. */
+	private List< SourceAndConverter< T > > sources;
+
+	/** Queue of the {@link FetchScheduler} the volatile sources load through. Guarded by {@code this}. */
+	private SharedQueue fetchQueue;
+
+	/** Controls the loading of the cells of the volatile sources. Guarded by {@code this}. */
+	private CacheControl queueControl;
+
+	/** Queue acquired by {@link #register()}, released when the references drop to zero. */
+	private SharedQueue acquiredQueue;
+
+	private final CacheControl cacheControl = this::prepareNextFrame;
 
 	public PyramidalBdv( final Context context, final PyramidContents< T > contents )
 	{
 		this.contents = contents;
-		sources = initSourceAndConverters( contents );
+		synchronized ( this )
+		{
+			buildSources();
+		}
 		setContext( context );
 	}
 
@@ -86,20 +105,65 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 	 * @return a list of BigDataViewer sources, representing a 5D (XYZCT) multi-resolution image, one source for each channel of the dataset.
 	 * 	 The sources provide nested volatile versions. The sources are
 	 * 	 multi-resolution, reflecting the resolution pyramid of the OME-Zarr.
+	 * 	 They are built again if the fetch queue of the previous ones was shut
+	 * 	 down, i.e. after all windows showing them were closed.
 	 */
-	public List< SourceAndConverter< T > > asSources()
+	public synchronized List< SourceAndConverter< T > > asSources()
 	{
+		if ( !FetchScheduler.getInstance().isRunning( fetchQueue ) )
+			buildSources();
 		return sources;
 	}
 
+	/** Builds the sources on the current queue of the {@link FetchScheduler}. Called holding {@code this}. */
+	private void buildSources()
+	{
+		final SharedQueue queue = FetchScheduler.getInstance().current();
+		final CacheControl.CacheControls queueControls = new CacheControl.CacheControls();
+		sources = initSourceAndConverters( contents, queue, queueControls );
+		fetchQueue = queue;
+		queueControl = queueControls;
+	}
+
 	public String getName()
 	{
 		return contents.name;
 	}
 
+	/**
+	 * @return the {@link CacheControl} of the volatile versions of the
+	 *         {@link #asSources() sources}, of this view only. A viewer showing
+	 *         them must add it to its cache controls, so that requests of cells
+	 *         no longer visible are dropped before each frame is rendered.
+	 */
+	public CacheControl getCacheControl()
+	{
+		return cacheControl;
+	}
+
+	/**
+	 * Demotes the queued cell requests before a frame is rendered, unless
+	 * another dataset is {@linkplain FetchPriorities#getActive() active}: all
+	 * datasets share the queue, so a window in the background must not demote
+	 * the requests of the window in use.
+	 */
+	private void prepareNextFrame()
+	{
+		final String active = FetchPriorities.getInstance().getActive();
+		if ( active != null && !active.equals( contents.location ) )
+			return;
+		final CacheControl control;
+		synchronized ( this )
+		{
+			control = queueControl;
+		}
+		control.prepareNextFrame();
+	}
+
 	@SuppressWarnings( "unchecked" )
 	private static < T extends NativeType< T > & RealType< T >, V extends Volatile< T > & NativeType< V > & RealType< V > >
-			List< SourceAndConverter< T > > initSourceAndConverters( final PyramidContents< T > contents )
+			List< SourceAndConverter< T > > initSourceAndConverters( final PyramidContents< T > contents, final SharedQueue fetchQueue,
+					final CacheControl.CacheControls cacheControls )
 	{
 		final int nLevels = contents.numResolutionLevels();
 		final int numChannels = contents.numChannels();
@@ -107,11 +171,13 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 		final AffineTransform3D[] mipmapTransforms = contents.transforms;
 		final VoxelDimensions voxelDimensions = voxelDimensions( contents );
 
-		final RandomAccessibleInterval< V >[] volatileImgs = createVolatileImgs( contents );
+		// BDV needs every level; open those not opened yet concurrently
+		final CachedCellImg< T, ? >[] cachedCellImgs = contents.cachedCellImgs();
+		final RandomAccessibleInterval< V >[] volatileImgs = createVolatileImgs( contents.location, cachedCellImgs, fetchQueue, cacheControls );
 		final V volatileType = volatileImgs[ 0 ].getType();
 
 		final RandomAccessibleInterval< T >[][] levelToChannels = new RandomAccessibleInterval[ nLevels ][];
-		Arrays.setAll( levelToChannels, level -> splitInputStackIntoSourceStacks( contents, contents.cachedCellImgs[ level ] ) );
+		Arrays.setAll( levelToChannels, level -> splitInputStackIntoSourceStacks( contents, cachedCellImgs[ level ] ) );
 
 		final RandomAccessibleInterval< V >[][] levelToVolatileChannels = new RandomAccessibleInterval[ nLevels ][];
 		Arrays.setAll( levelToVolatileChannels, level -> splitInputStackIntoSourceStacks( contents, volatileImgs[ level ] ) );
@@ -171,16 +237,27 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 	}
 
 	/**
-	 * Wraps each resolution level's {@link CachedCellImg} as a volatile view.
+	 * Wraps each resolution level's {@link CachedCellImg} as a volatile view,
+	 * loading through the queue shared by all datasets at the
+	 * {@linkplain FetchPriorities priority} of the dataset at {@code location},
+	 * and adds the cache control of the views to {@code cacheControls}.
 	 */
 	@SuppressWarnings( "unchecked" )
 	private static < T extends NativeType< T > & RealType< T >, V extends Volatile< T > & NativeType< V > & RealType< V > >
-			RandomAccessibleInterval< V >[] createVolatileImgs( final PyramidContents< T > contents )
+			RandomAccessibleInterval< V >[] createVolatileImgs( final String location, final CachedCellImg< T, ? >[] cachedCellImgs,
+					final SharedQueue sharedQueue, final CacheControl.CacheControls cacheControls )
 	{
-		final SharedQueue sharedQueue = new SharedQueue( Math.max( 1, Runtime.getRuntime().availableProcessors() / 2 ) );
-		final RandomAccessibleInterval< V >[] volatileImgs = new RandomAccessibleInterval[ contents.numResolutionLevels() ];
-		for ( int level = 0; level < contents.numResolutionLevels(); level++ )
-			volatileImgs[ level ] = VolatileViews.wrapAsVolatile( contents.cachedCellImgs[ level ], sharedQueue );
+		final RandomAccessibleInterval< V >[] volatileImgs = new RandomAccessibleInterval[ cachedCellImgs.length ];
+		for ( int level = 0; level < cachedCellImgs.length; level++ )
+		{
+			volatileImgs[ level ] = VolatileViews.wrapAsVolatile( cachedCellImgs[ level ], sharedQueue );
+			final Object img = ( ( VolatileView< ?, ? > ) volatileImgs[ level ] ).getVolatileViewData().getImg();
+			if ( img instanceof VolatileCachedCellImg )
+				FetchPriorities.getInstance().prioritize( location, ( VolatileCachedCellImg< ?, ? > ) img );
+		}
+		// all levels load through the same queue, hence share its cache control
+		if ( volatileImgs.length > 0 )
+			cacheControls.addCacheControl( ( ( VolatileView< ?, ? > ) volatileImgs[ 0 ] ).getVolatileViewData().getCacheControl() );
 		return volatileImgs;
 	}
 
@@ -237,13 +314,17 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 	@Parameter( required = false )
 	private ObjectService objectService;
 
+	@SuppressWarnings( "unused" )
+	@Parameter( required = false )
+	private PyramidContentsService pyramidContentsService;
+
 	private int refs = 0;
 
 	public void incrementReferences()
 	{
-		refs++;
-		if ( refs == 1 )
+		if ( refs == 0 )
 			register();
+		refs++;
 	}
 
 	public void decrementReferences()
@@ -260,9 +341,14 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 
 	/**
 	 * Called the first time the reference count is incremented.
+	 *
+	 * @throws IllegalStateException if the contents were closed meanwhile
 	 */
 	private void register()
 	{
+		if ( pyramidContentsService != null && !pyramidContentsService.retain( contents ) )
+			throw new IllegalStateException( "Cannot display closed contents " + contents.name );
+		acquiredQueue = FetchScheduler.getInstance().acquire();
 		if ( objectService != null )
 			objectService.addObject( this );
 	}
@@ -274,5 +360,9 @@ public class PyramidalBdv< T extends NativeType< T > & RealType< T > > extends A
 	{
 		if ( objectService != null )
 			objectService.removeObject( this );
+		if ( pyramidContentsService != null )
+			pyramidContentsService.release( contents );
+		FetchScheduler.getInstance().release( acquiredQueue );
+		acquiredQueue = null;
 	}
 }
@@ -44,6 +44,7 @@ import net.imagej.axis.DefaultLinearAxis;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
+import ome.zarr.fiji.plugins.PyramidContentsService;
 import ome.zarr.imglib2.PyramidContents;
 import ome.zarr.imglib2.metadata.AxisCalibration;
 
@@ -97,6 +98,35 @@ public class PyramidalDataset extends DefaultDataset implements Pyramidal
 		return contents;
 	}
 
+	/**
+	 * Also references the {@link PyramidContents} in the
+	 * {@link PyramidContentsService}, while this dataset is referenced.
+	 *
+	 * @throws IllegalStateException if the contents were closed meanwhile
+	 */
+	@Override
+	protected void register()
+	{
+		final PyramidContentsService registry = pyramidContentsService();
+		if ( registry != null && !registry.retain( contents ) )
+			throw new IllegalStateException( "Cannot display closed contents " + contents.name );
+		super.register();
+	}
+
+	@Override
+	protected void delete()
+	{
+		super.delete();
+		final PyramidContentsService registry = pyramidContentsService();
+		if ( registry != null )
+			registry.release( contents );
+	}
+
+	private PyramidContentsService pyramidContentsService()
+	{
+		return getContext() == null ? null : getContext().getService( PyramidContentsService.class );
+	}
+
 	/**
 	 * Convenience method to convert this {@code PyramidalDataset} to an IJ1
 	 * {@link ij.ImagePlus} via SciJava's {@link org.scijava.convert.ConvertService}
@@ -129,7 +159,7 @@ public class PyramidalDataset extends DefaultDataset implements Pyramidal
 		}
 
 		final AxisCalibration[] selectedAxes = contents.axesPerLevel[ resolutionLevel ];
-		final ImgPlus< T > imgPlus = new ImgPlus<>( contents.cachedCellImgs[ resolutionLevel ], contents.name );
+		final ImgPlus< T > imgPlus = new ImgPlus<>( contents.cachedCellImg( resolutionLevel ), contents.name );
 		for ( int i = 0; i < selectedAxes.length; i++ )
 		{
 			final AxisType axisType = AXIS_TYPE_MAP.getOrDefault( selectedAxes[ i ].name, Axes.unknown() );
@@ -49,14 +49,18 @@ import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.util.Cast;
 
 import ij.IJ;
+import ome.zarr.imglib2.LoadMonitor;
 import ome.zarr.imglib2.PyramidBackend;
 import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.ZarrUtils;
 import ome.zarr.imglib2.metadata.AxisCalibration;
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
 import ome.zarr.imglib2.exceptions.MultiImageDatasetException;
 import ome.zarr.imglib2.exceptions.NoMatchingResolutionException;
 import ome.zarr.imglib2.exceptions.NotAMultiscaleImageException;
 import ome.zarr.fiji.PyramidalBdv;
 import ome.zarr.fiji.PyramidalDataset;
+import ome.zarr.fiji.plugins.PyramidContentsService;
 import ome.zarr.fiji.plugins.PyramidalService;
 import ome.zarr.fiji.open.exceptions.NonExistingResolutionLevelException;
 import ome.zarr.fiji.open.exceptions.NotASingleScaleImageException;
@@ -84,6 +88,8 @@ public class ZarrOpener
 
 	private final Consumer< String > errorHandler;
 
+	private volatile LoadMonitor monitor = new LoadMonitor();
+
 	private PyramidContents< ? > cachedContents;
 
 	private int preferredResolutionLevel;
@@ -121,28 +127,80 @@ public class ZarrOpener
 		this.errorHandler = errorHandler;
 	}
 
+	/**
+	 * Sets the monitor that loading reports its progress to and that cancels
+	 * it. Canceled opens report no error.
+	 */
+	public void setLoadMonitor( final LoadMonitor monitor )
+	{
+		this.monitor = monitor;
+	}
+
 	/**
 	 * Loads (once, then caches) the {@link PyramidContents} for the configured
 	 * location using the configured {@link PyramidBackend}, and resolves the
-	 * resolution level matching the preferred width.
+	 * resolution level matching the preferred width. Contents of the same
+	 * location that are still registered with the {@link PyramidContentsService}
+	 * are reused instead of being loaded again, and cached contents that were
+	 * closed meanwhile are loaded again.
+	 * <p>
+	 * The contents are not referenced, see
+	 * {@link PyramidContentsService#get(URI, PyramidBackend)}; the views opened
+	 * by this opener hold references to the contents they display.
 	 */
 	// java:S1452: the wildcard is intentional. The pixel type is only known once
 	// the data is read, and callers use only type-independent members of the
 	// returned PyramidContents; making this generic would push the
 	// wildcard onto every use site.
 	@SuppressWarnings( "java:S1452" )
-	public PyramidContents< ? > getContents()
+	public synchronized PyramidContents< ? > getContents()
 	{
-		if ( cachedContents == null )
+		if ( cachedContents == null || cachedContents.isClosed() )
 		{
-			final PyramidContents< ? > contents = backend.load( inputUri );
-			preferredResolutionLevel = contents.selectResolutionLevel( preferredMaxWidth );
-			cachedContents = contents;
-			logDimensions( contents );
+			final PyramidContentsService registry = pyramidContentsService();
+			cache( registry != null
+					? registry.get( inputUri, backend, monitor )
+					: backend.load( inputUri, monitor, ZarrUtils.prefetchedMetadata( inputUri ) ) );
 		}
 		return cachedContents;
 	}
 
+	/**
+	 * Like {@link #getContents()}, with a reference held for the caller by the
+	 * {@link PyramidContentsService}, so that the contents are not closed while
+	 * a view of them is being opened. The caller removes the reference with
+	 * {@link #releaseContents(PyramidContents)} once the view holds its own.
+	 */
+	private synchronized PyramidContents< ? > acquireContents()
+	{
+		final PyramidContentsService registry = pyramidContentsService();
+		if ( registry == null )
+			return getContents();
+		if ( cachedContents == null || !registry.retain( cachedContents ) )
+			cache( registry.acquire( inputUri, backend, monitor ) );
+		return cachedContents;
+	}
+
+	private void releaseContents( final PyramidContents< ? > contents )
+	{
+		final PyramidContentsService registry = pyramidContentsService();
+		if ( registry != null )
+			registry.release( contents );
+	}
+
+	/** Guarded by {@code this}. */
+	private void cache( final PyramidContents< ? > contents )
+	{
+		preferredResolutionLevel = contents.selectResolutionLevel( preferredMaxWidth );
+		cachedContents = contents;
+		logDimensions( contents );
+	}
+
+	private PyramidContentsService pyramidContentsService()
+	{
+		return context == null ? null : context.getService( PyramidContentsService.class );
+	}
+
 	/**
 	 * Logs, at debug level, the full-resolution extent along every OME-Zarr axis
 	 * (x, y, z, c, t) plus the number of resolution levels. Axes that are not
@@ -180,12 +238,20 @@ public class ZarrOpener
 		{
 			return openPyramidImage(
 					() -> {
-						final PyramidContents< ? > contents = getContents();
-						final PyramidalDataset dataset = new PyramidalDataset( context, contents, preferredResolutionLevel );
-						context.getService( UIService.class ).show( dataset );
-						context.getService( PyramidalService.class ).registerImageJDataset( dataset );
-						logger.info( "Opened dataset in ImageJ: {}", inputUri );
-						return null;
+						final PyramidContents< ? > contents = acquireContents();
+						try
+						{
+							monitor.checkCanceled();
+							final PyramidalDataset dataset = new PyramidalDataset( context, contents, preferredResolutionLevel );
+							context.getService( UIService.class ).show( dataset );
+							context.getService( PyramidalService.class ).registerImageJDataset( dataset );
+							logger.info( "Opened dataset in ImageJ: {}", inputUri );
+							return null;
+						}
+						finally
+						{
+							releaseContents( contents );
+						}
 					},
 					singleScaleImage -> ImageJFunctions.show( Cast.unchecked( singleScaleImage ) ) );
 		}
@@ -214,14 +280,22 @@ public class ZarrOpener
 		{
 			return openPyramidImage(
 					() -> {
-						final PyramidContents< ? > contents = getContents();
-						if ( resolutionLevel < 0 || resolutionLevel >= contents.numResolutionLevels() )
-							throw new NonExistingResolutionLevelException( resolutionLevel, contents.numResolutionLevels() );
-						final PyramidalDataset dataset = new PyramidalDataset( context, contents, resolutionLevel );
-						context.getService( UIService.class ).show( dataset );
-						context.getService( PyramidalService.class ).registerImageJDataset( dataset );
-						logger.info( "Opened dataset at resolution level {} in ImageJ: {}", resolutionLevel, inputUri );
-						return null;
+						final PyramidContents< ? > contents = acquireContents();
+						try
+						{
+							if ( resolutionLevel < 0 || resolutionLevel >= contents.numResolutionLevels() )
+								throw new NonExistingResolutionLevelException( resolutionLevel, contents.numResolutionLevels() );
+							monitor.checkCanceled();
+							final PyramidalDataset dataset = new PyramidalDataset( context, contents, resolutionLevel );
+							context.getService( UIService.class ).show( dataset );
+							context.getService( PyramidalService.class ).registerImageJDataset( dataset );
+							logger.info( "Opened dataset at resolution level {} in ImageJ: {}", resolutionLevel, inputUri );
+							return null;
+						}
+						finally
+						{
+							releaseContents( contents );
+						}
 					},
 					singleScaleImage -> ImageJFunctions.show( Cast.unchecked( singleScaleImage ) ) );
 		}
@@ -244,11 +318,20 @@ public class ZarrOpener
 		{
 			return openPyramidImage(
 					() -> {
-						final PyramidalBdv< ? > dataset = new PyramidalBdv<>( context, getContents() );
-						final PyramidalService pyramidalService = context.getService( PyramidalService.class );
-						final Object result = BdvUtils.showBdvAndRegisterDataset( dataset, pyramidalService );
-						logger.info( "Opened dataset in BigDataViewer: {}", inputUri );
-						return result;
+						final PyramidContents< ? > contents = acquireContents();
+						try
+						{
+							monitor.checkCanceled();
+							final PyramidalBdv< ? > dataset = new PyramidalBdv<>( context, contents );
+							final PyramidalService pyramidalService = context.getService( PyramidalService.class );
+							final Object result = BdvUtils.showBdvAndRegisterDataset( dataset, pyramidalService );
+							logger.info( "Opened dataset in BigDataViewer: {}", inputUri );
+							return result;
+						}
+						finally
+						{
+							releaseContents( contents );
+						}
 					},
 					singleScaleImage -> null );
 		}
@@ -265,6 +348,10 @@ public class ZarrOpener
 		{
 			return multiScaleOpener.get();
 		}
+		catch ( LoadCanceledException e )
+		{
+			logger.info( "Opening canceled: {}", inputUri );
+		}
 		catch ( MultiImageDatasetException e )
 		{
 			showMultiImageNotSupported( e );
@@ -0,0 +1,127 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji.plugins;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.SciJavaService;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Gives scripts and the UI access to the {@link LoadMetrics} of the cell loads
+ * of all open OME-Zarr images: requests, fetched bytes and their latency,
+ * decode times, cache hits and misses and evictions, per dataset and
+ * resolution level.
+ * <p>
+ * The metrics are totals since the start or the last {@link #reset()}; rates
+ * are computed from the difference of two snapshots, see
+ * {@link LevelMetrics.Snapshot#minus(LevelMetrics.Snapshot)}.
+ */
+@Plugin( type = SciJavaService.class )
+public class LoadMetricsService extends AbstractService implements SciJavaService
+{
+	private LoadMetrics metrics = LoadMetrics.getInstance();
+
+	/**
+	 * The metrics this service reports, the process-wide ones unless replaced
+	 * with {@link #setMetrics(LoadMetrics)}.
+	 */
+	public LoadMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Replaces the metrics this service reports, e.g. for tests.
+	 */
+	public void setMetrics( final LoadMetrics metrics )
+	{
+		this.metrics = metrics;
+	}
+
+	public boolean isEnabled()
+	{
+		return metrics.isEnabled();
+	}
+
+	/**
+	 * Starts or stops recording, see {@link LoadMetrics#setEnabled(boolean)}.
+	 */
+	public void setEnabled( final boolean enabled )
+	{
+		metrics.setEnabled( enabled );
+	}
+
+	/**
+	 * The current totals of all levels of all datasets, ordered by dataset and
+	 * level.
+	 */
+	public List< LevelMetrics.Snapshot > snapshot()
+	{
+		return metrics.snapshot();
+	}
+
+	/**
+	 * The current totals of the levels of {@code dataset}, typically its URI.
+	 */
+	public List< LevelMetrics.Snapshot > snapshot( final String dataset )
+	{
+		final List< LevelMetrics.Snapshot > snapshots = new ArrayList<>();
+		for ( final LevelMetrics.Snapshot snapshot : metrics.snapshot() )
+			if ( snapshot.dataset.equals( dataset ) )
+				snapshots.add( snapshot );
+		return snapshots;
+	}
+
+	/**
+	 * The current totals per dataset, summed over its levels.
+	 */
+	public Map< String, LevelMetrics.Snapshot > totals()
+	{
+		final Map< String, LevelMetrics.Snapshot > totals = new LinkedHashMap<>();
+		for ( final LevelMetrics.Snapshot snapshot : metrics.snapshot() )
+			totals.merge( snapshot.dataset, snapshot, LevelMetrics.Snapshot::plus );
+		return totals;
+	}
+
+	/**
+	 * Sets all totals to zero.
+	 */
+	public void reset()
+	{
+		metrics.reset();
+	}
+}
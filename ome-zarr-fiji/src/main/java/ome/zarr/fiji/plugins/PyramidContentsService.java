@@ -0,0 +1,423 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji.plugins;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.SciJavaService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.zarr.fiji.Pyramidal;
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PyramidBackend;
+import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.ZarrUtils;
+import ome.zarr.imglib2.cache.SharedCellCache;
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Shares the {@link PyramidContents} of open OME-Zarr images, keyed by their
+ * {@link URI}, so that opening the same image again, in ImageJ or in
+ * BigDataViewer, reuses its metadata and cached cells instead of loading it
+ * from scratch.
+ * <p>
+ * Loaded contents are valid for a limited time (see
+ * {@link #setValidityMillis(long)}); opening the image after that loads it
+ * again, so that changes to the dataset are picked up. Views displaying the
+ * contents hold references via {@link #retain(PyramidContents)} and
+ * {@link #release(PyramidContents)}; openers get the contents with
+ * {@link #acquire(URI, PyramidBackend, LoadMonitor)}, which references them
+ * in the same step, and release that reference once the views hold theirs.
+ * <p>
+ * When the last reference to contents is released, the pending loads of their
+ * cells are canceled, so that the bandwidth goes to the images still
+ * displayed: queued loads get invalid cells and remote requests in flight are
+ * aborted. The validity period starts again, so that the image opens
+ * without loading if it is reopened shortly after its windows were closed.
+ * Contents that are neither referenced nor valid are dropped from the
+ * registry and {@linkplain PyramidContents#close() closed}, releasing their
+ * cells, readers and caches, and their {@link LoadMetrics} are forgotten. All
+ * contents are closed when the service is disposed.
+ */
+@Plugin( type = SciJavaService.class )
+public class PyramidContentsService extends AbstractService implements SciJavaService
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/** Default time that loaded contents are reused for, 10 minutes. */
+	public static final long DEFAULT_VALIDITY_MILLIS = 10 * 60 * 1000L;
+
+	/** The current contents per location. Guarded by {@code this}. */
+	private final Map< URI, Entry > entries = new HashMap<>();
+
+	/** All contents still registered, including replaced ones still referenced. Guarded by {@code this}. */
+	private final Map< PyramidContents< ? >, Entry > byContents = new IdentityHashMap<>();
+
+	/** Contents dropped from the registry but not closed yet. Guarded by {@code this}. */
+	private final Set< PyramidContents< ? > > closing = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+	/** Guarded by {@code this}. */
+	private long validityMillis = DEFAULT_VALIDITY_MILLIS;
+
+	@Override
+	public void dispose()
+	{
+		final List< PyramidContents< ? > > registered;
+		synchronized ( this )
+		{
+			registered = new ArrayList<>( byContents.keySet() );
+			closing.addAll( registered );
+			entries.clear();
+			byContents.clear();
+		}
+		close( registered );
+	}
+
+	public synchronized long getValidityMillis()
+	{
+		return validityMillis;
+	}
+
+	/**
+	 * Sets for how long contents loaded or released from now on are reused.
+	 */
+	public synchronized void setValidityMillis( final long validityMillis )
+	{
+		this.validityMillis = validityMillis;
+	}
+
+	/**
+	 * Returns the contents of the image at {@code uri}, loading them with
+	 * {@code backend} unless contents loaded by the same kind of backend are
+	 * registered and still valid. Concurrent calls for the same location load
+	 * it once.
+	 * <p>
+	 * The reference count is not changed, so the contents are closed as soon
+	 * as their last reference is released or they expire; use
+	 * {@link #acquire(URI, PyramidBackend, LoadMonitor)} to display them.
+	 */
+	// java:S1452: the pixel type is only known once the data is read.
+	@SuppressWarnings( "java:S1452" )
+	public PyramidContents< ? > get( final URI uri, final PyramidBackend backend )
+	{
+		return get( uri, backend, new LoadMonitor() );
+	}
+
+	/**
+	 * Like {@link #get(URI, PyramidBackend)}, loading with
+	 * {@link PyramidBackend#load(URI, LoadMonitor, ome.zarr.imglib2.PrefetchedMetadata)}
+	 * and the metadata fetched by a recent {@link ZarrUtils#isZarr} of
+	 * {@code uri}. A canceled load is not registered, so the next call loads
+	 * again.
+	 *
+	 * @throws LoadCanceledException if {@code monitor} is canceled
+	 */
+	@SuppressWarnings( "java:S1452" )
+	public PyramidContents< ? > get( final URI uri, final PyramidBackend backend, final LoadMonitor monitor )
+	{
+		return get( uri, backend, monitor, false );
+	}
+
+	/**
+	 * Like {@link #get(URI, PyramidBackend, LoadMonitor)}, adding a reference
+	 * to the returned contents while still holding the lock that found or
+	 * registered them, so that a concurrent {@link #release(PyramidContents)}
+	 * cannot close them before the caller uses them. The caller removes the
+	 * reference with {@link #release(PyramidContents)}.
+	 *
+	 * @throws LoadCanceledException if {@code monitor} is canceled
+	 */
+	@SuppressWarnings( "java:S1452" )
+	public PyramidContents< ? > acquire( final URI uri, final PyramidBackend backend, final LoadMonitor monitor )
+	{
+		return get( uri, backend, monitor, true );
+	}
+
+	private PyramidContents< ? > get( final URI uri, final PyramidBackend backend, final LoadMonitor monitor, final boolean reference )
+	{
+		final URI key = uri.normalize();
+		while ( true )
+		{
+			final Entry entry = selectEntry( key, backend );
+			synchronized ( entry )
+			{
+				if ( entry.contents == null )
+				{
+					final PyramidContents< ? > contents;
+					try
+					{
+						contents = backend.load( key, monitor, ZarrUtils.prefetchedMetadata( uri ) );
+					}
+					catch ( final RuntimeException e )
+					{
+						synchronized ( this )
+						{
+							entries.remove( key, entry );
+						}
+						throw e;
+					}
+					synchronized ( this )
+					{
+						entry.contents = contents;
+						entry.validUntil = System.currentTimeMillis() + validityMillis;
+						byContents.put( contents, entry );
+						if ( reference )
+							addReference( entry );
+						logger.debug( "Loaded {}, reused for {} ms", key, validityMillis );
+						return contents;
+					}
+				}
+				synchronized ( this )
+				{
+					// a release since the entry was selected may have dropped and closed the contents
+					if ( byContents.get( entry.contents ) == entry )
+					{
+						logger.debug( "Reusing loaded contents of {}", key );
+						if ( reference )
+							entry.references++;
+						resumeLoads( entry.contents );
+						return entry.contents;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the entry to get the contents at {@code key} from: the current
+	 * one if still valid and loaded by the same kind of backend, a new one
+	 * otherwise.
+	 */
+	private Entry selectEntry( final URI key, final PyramidBackend backend )
+	{
+		final List< PyramidContents< ? > > purged;
+		final Entry selected;
+		synchronized ( this )
+		{
+			purged = purge();
+			final Entry existing = entries.get( key );
+			if ( existing != null && existing.isValid() && existing.backendClass == backend.getClass() )
+				selected = existing;
+			else
+			{
+				selected = new Entry( backend.getClass() );
+				entries.put( key, selected );
+			}
+		}
+		close( purged );
+		return selected;
+	}
+
+	/**
+	 * Adds a reference to {@code contents}, typically by a {@link Pyramidal}
+	 * displaying them. Contents not obtained from this service are ignored.
+	 *
+	 * @return {@code false} if the contents were closed, e.g. because their
+	 *   last reference was released; no reference is added then and the
+	 *   contents must not be used
+	 */
+	public synchronized boolean retain( final PyramidContents< ? > contents )
+	{
+		final Entry entry = byContents.get( contents );
+		if ( entry == null )
+			return !closing.contains( contents ) && !contents.isClosed();
+		addReference( entry );
+		return true;
+	}
+
+	/** Guarded by {@code this}. */
+	private static void addReference( final Entry entry )
+	{
+		if ( entry.references++ == 0 )
+			resumeLoads( entry.contents );
+	}
+
+	/**
+	 * Removes a reference added by {@link #retain(PyramidContents)}.
+	 */
+	public void release( final PyramidContents< ? > contents )
+	{
+		final List< PyramidContents< ? > > purged;
+		synchronized ( this )
+		{
+			final Entry entry = byContents.get( contents );
+			if ( entry == null )
+				return;
+			if ( entry.references == 0 )
+				throw new IllegalStateException( "releasing contents that are not referenced" );
+			entry.references--;
+			if ( entry.references == 0 )
+			{
+				if ( !isReferenced( contents.location ) )
+					cancelLoads( contents );
+				// reused if reopened in time, and closed once no longer valid otherwise
+				entry.validUntil = System.currentTimeMillis() + validityMillis;
+			}
+			purged = purge();
+		}
+		close( purged );
+	}
+
+	/**
+	 * Returns the number of references to {@code contents}, or {@code 0} if
+	 * they are not registered.
+	 */
+	public synchronized int getReferences( final PyramidContents< ? > contents )
+	{
+		final Entry entry = byContents.get( contents );
+		return entry == null ? 0 : entry.references;
+	}
+
+	/**
+	 * Returns whether {@code contents} are registered, i.e. still referenced
+	 * or valid.
+	 */
+	public synchronized boolean isRegistered( final PyramidContents< ? > contents )
+	{
+		return byContents.containsKey( contents );
+	}
+
+	/**
+	 * Returns whether any registered contents whose cells are held under
+	 * {@code location} are referenced. Guarded by {@code this}.
+	 */
+	private boolean isReferenced( final String location )
+	{
+		for ( final Entry entry : byContents.values() )
+			if ( entry.references > 0 && location != null && location.equals( entry.contents.location ) )
+				return true;
+		return false;
+	}
+
+	private static void cancelLoads( final PyramidContents< ? > contents )
+	{
+		if ( contents.location == null )
+			return;
+		logger.debug( "Canceling the loads of {}", contents.location );
+		SharedCellCache.getInstance().cancel( contents.location );
+	}
+
+	private static void resumeLoads( final PyramidContents< ? > contents )
+	{
+		if ( contents.location != null )
+			SharedCellCache.getInstance().resume( contents.location );
+	}
+
+	/**
+	 * Drops contents that are neither referenced nor valid. Guarded by
+	 * {@code this}.
+	 *
+	 * @return the dropped contents, for the caller to {@link #close(List)}
+	 *   once it no longer holds the lock
+	 */
+	private List< PyramidContents< ? > > purge()
+	{
+		final List< PyramidContents< ? > > purged = new ArrayList<>();
+		final Iterator< Map.Entry< PyramidContents< ? >, Entry > > it = byContents.entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Map.Entry< PyramidContents< ? >, Entry > e = it.next();
+			if ( e.getValue().references == 0 && !e.getValue().isValid() )
+			{
+				it.remove();
+				purged.add( e.getKey() );
+			}
+		}
+		closing.addAll( purged );
+		entries.values().removeIf( entry -> entry.contents != null && !byContents.containsKey( entry.contents ) );
+		return purged;
+	}
+
+	/**
+	 * Closes dropped contents and forgets their load metrics. Called without
+	 * holding the lock of the service, because closing waits for levels being
+	 * opened, which may take long for remote images.
+	 */
+	private void close( final List< PyramidContents< ? > > dropped )
+	{
+		for ( final PyramidContents< ? > contents : dropped )
+		{
+			contents.close();
+			forgetMetrics( contents );
+		}
+	}
+
+	/**
+	 * Forgets the load metrics of the cells of closed {@code contents}, unless
+	 * registered contents still hold cells at their location.
+	 */
+	private synchronized void forgetMetrics( final PyramidContents< ? > contents )
+	{
+		closing.remove( contents );
+		final String location = contents.location;
+		if ( location == null )
+			return;
+		for ( final PyramidContents< ? > registered : byContents.keySet() )
+			if ( location.equals( registered.location ) )
+				return;
+		LoadMetrics.getInstance().remove( location );
+	}
+
+	private static final class Entry
+	{
+		final Class< ? > backendClass;
+
+		/** Set once loaded, while holding the entry's and the service's lock. */
+		volatile PyramidContents< ? > contents;
+
+		/** Guarded by the service. */
+		long validUntil = Long.MAX_VALUE;
+
+		/** Guarded by the service. */
+		int references = 0;
+
+		Entry( final Class< ? > backendClass )
+		{
+			this.backendClass = backendClass;
+		}
+
+		boolean isValid()
+		{
+			return System.currentTimeMillis() < validUntil;
+		}
+	}
+}
@@ -49,6 +49,7 @@ import org.scijava.service.AbstractService;
 import org.scijava.service.SciJavaService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ome.zarr.fiji.FetchPriorities;
 import ome.zarr.fiji.Pyramidal;
 
 /**
@@ -59,6 +60,9 @@ import ome.zarr.fiji.Pyramidal;
  * {@code "activeWindow"} {@link PropertyChangeListener} on the {@link KeyboardFocusManager}:
  * BDV windows set the active pyramidal directly; ImageJ windows resolve it from the displayed
  * image; all other windows (toolbar, dialogs) are ignored so menu navigation doesn't clear state.
+ * <p>
+ * While the service runs, cell loads of the active pyramidal go before those of datasets in
+ * background windows (see {@link FetchPriorities}).
  */
 @Plugin( type = SciJavaService.class )
 public class PyramidalService extends AbstractService implements SciJavaService
@@ -96,6 +100,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 	public void initialize()
 	{
 		activePyramidal.set( null );
+		prioritizeActive();
 		focusListener = event -> onActiveWindowChanged( ( Window ) event.getNewValue() );
 		KeyboardFocusManager.getCurrentKeyboardFocusManager().addPropertyChangeListener( "activeWindow", focusListener );
 		imageCloseListener = new ImageListener()
@@ -133,6 +138,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 		}
 		bdvWindows.clear();
 		ijImages.clear();
+		FetchPriorities.getInstance().setActive( ( String ) null );
 	}
 
 	/**
@@ -172,6 +178,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 		logger.trace( "Removing {}", removed );
 		if ( removed != null )
 			activePyramidal.compareAndSet( removed, null );
+		prioritizeActive();
 		logger.trace( "Active after unregister: {}", activePyramidal.get() );
 	}
 
@@ -180,6 +187,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 	{
 		logger.trace( "BDV window focused: {}", pyramidal );
 		activePyramidal.set( pyramidal );
+		prioritizeActive();
 		logger.trace( "Active pyramidal set to: {}", activePyramidal.get() );
 	}
 
@@ -195,6 +203,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 	{
 		logger.trace( "ImageJ dataset opened: {}", pyramidal );
 		activePyramidal.set( pyramidal );
+		prioritizeActive();
 		logger.trace( "Active pyramidal set to: {}", activePyramidal.get() );
 	}
 
@@ -218,6 +227,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 			}
 		}
 		activePyramidal.set( active );
+		prioritizeActive();
 		logger.trace( "Active pyramidal resolved from IJ window: {}", activePyramidal.get() );
 	}
 
@@ -228,6 +238,7 @@ public class PyramidalService extends AbstractService implements SciJavaService
 		final Pyramidal pyramidal = ijImages.remove( imagePlus );
 		if ( pyramidal != null )
 			activePyramidal.compareAndSet( pyramidal, null );
+		prioritizeActive();
 		logger.trace( "Active pyramidal: {}", activePyramidal.get() );
 	}
 
@@ -237,6 +248,13 @@ public class PyramidalService extends AbstractService implements SciJavaService
 		return activePyramidal.get();
 	}
 
+	/** Gives the cell loads of the active pyramidal precedence over those of other datasets. */
+	private void prioritizeActive()
+	{
+		final Pyramidal active = activePyramidal.get();
+		FetchPriorities.getInstance().setActive( active != null ? active.getPyramidContents() : null );
+	}
+
 	/** Returns all registered {@link Pyramidal}s via {@link ObjectService}. */
 	public List< Pyramidal > getPyramidals()
 	{
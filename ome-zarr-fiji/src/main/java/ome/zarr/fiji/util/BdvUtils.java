@@ -77,6 +77,8 @@ public class BdvUtils
 	 * Displays the given pyramidal dataset in a BigDataViewer (BDV) window and registers
 	 * it with {@code pyramidalService} for focus tracking.<br>
 	 * Increments the dataset's reference count and decrements it when the window closes.
+	 * The dataset's cache control is added to the viewer's, so that cell requests from earlier
+	 * viewpoints are dropped before each frame is rendered.
 	 * If {@code pyramidalService} is non-null, the dataset is immediately marked as active
 	 * and a {@code WindowFocusListener} keeps it up to date as focus moves between windows.
 	 *
@@ -88,6 +90,7 @@ public class BdvUtils
 	{
 		BdvHandle bdvHandle = BdvFunctions.show( pyramidalBdv.asSources(), pyramidalBdv.getPyramidContents().numTimepoints(),
 				BdvOptions.options().frameTitle( pyramidalBdv.getName() ) ).getBdvHandle();
+		bdvHandle.getCacheControls().addCacheControl( pyramidalBdv.getCacheControl() );
 
 		setTimepoint( pyramidalBdv.getPyramidContents().omero, bdvHandle );
 		setChannelProperties( pyramidalBdv, bdvHandle );
@@ -0,0 +1,83 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+import net.imglib2.cache.volatiles.CacheHints;
+import net.imglib2.cache.volatiles.LoadingStrategy;
+
+/**
+ * Unit tests for the queue priorities of {@link FetchPriorities}.
+ */
+class FetchPrioritiesTest
+{
+	@Test
+	void testTheActiveDatasetGoesFirst()
+	{
+		final FetchPriorities priorities = new FetchPriorities();
+		priorities.setActive( "a" );
+		assertEquals( FetchPriorities.ACTIVE_PRIORITY, priorities.priority( "a" ) );
+		assertEquals( FetchPriorities.BACKGROUND_PRIORITY, priorities.priority( "b" ) );
+	}
+
+	@Test
+	void testPrioritiesFollowTheActiveDataset()
+	{
+		final FetchPriorities priorities = new FetchPriorities();
+		priorities.setActive( "a" );
+		priorities.setActive( "b" );
+		assertEquals( FetchPriorities.BACKGROUND_PRIORITY, priorities.priority( "a" ) );
+		assertEquals( FetchPriorities.ACTIVE_PRIORITY, priorities.priority( "b" ) );
+	}
+
+	@Test
+	void testNothingIsHeldBackWithoutAnActiveDataset()
+	{
+		final FetchPriorities priorities = new FetchPriorities();
+		priorities.setActive( "a" );
+		priorities.setActive( ( String ) null );
+		assertEquals( FetchPriorities.ACTIVE_PRIORITY, priorities.priority( "a" ) );
+		assertEquals( FetchPriorities.ACTIVE_PRIORITY, priorities.priority( "b" ) );
+	}
+
+	@Test
+	void testHintsLoadInTheBackgroundAtThePriorityOfTheDataset()
+	{
+		final FetchPriorities priorities = new FetchPriorities();
+		priorities.setActive( "a" );
+		final CacheHints hints = priorities.cacheHints( "b" );
+		assertEquals( LoadingStrategy.VOLATILE, hints.getLoadingStrategy() );
+		assertEquals( FetchPriorities.BACKGROUND_PRIORITY, hints.getQueuePriority() );
+		assertFalse( hints.isEnqueuToFront() );
+	}
+}
@@ -0,0 +1,119 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import bdv.cache.SharedQueue;
+
+/**
+ * Unit tests for the sharing and tear-down of the fetch queue by
+ * {@link FetchScheduler}.
+ */
+class FetchSchedulerTest
+{
+	@Test
+	void testQueueIsSharedByAllDatasets()
+	{
+		final FetchScheduler scheduler = new FetchScheduler( 2 );
+		final SharedQueue first = scheduler.acquire();
+		final SharedQueue second = scheduler.acquire();
+
+		assertSame( first, second );
+		assertEquals( 2, scheduler.getUsers() );
+
+		scheduler.release( first );
+		scheduler.release( second );
+	}
+
+	@Test
+	void testQueueIsReplacedAfterTheLastRelease()
+	{
+		final FetchScheduler scheduler = new FetchScheduler( 2 );
+		final SharedQueue first = scheduler.acquire();
+		scheduler.release( first );
+		assertEquals( 0, scheduler.getUsers() );
+
+		// releasing a queue that was already shut down has no effect
+		scheduler.release( first );
+		assertEquals( 0, scheduler.getUsers() );
+
+		final SharedQueue second = scheduler.acquire();
+		assertNotSame( first, second );
+		assertEquals( 1, scheduler.getUsers() );
+		scheduler.release( second );
+	}
+
+	@Test
+	void testCurrentQueueIsNotUsedUntilAcquired()
+	{
+		final FetchScheduler scheduler = new FetchScheduler( 2 );
+		final SharedQueue current = scheduler.current();
+		assertTrue( scheduler.isRunning( current ) );
+		assertEquals( 0, scheduler.getUsers() );
+
+		final SharedQueue acquired = scheduler.acquire();
+		assertSame( current, acquired );
+		scheduler.release( acquired );
+		assertFalse( scheduler.isRunning( current ) );
+		assertFalse( scheduler.isRunning( null ) );
+
+		final SharedQueue replaced = scheduler.current();
+		assertNotSame( current, replaced );
+		assertTrue( scheduler.isRunning( replaced ) );
+		scheduler.release( scheduler.acquire() );
+	}
+
+	@Test
+	void testThreadCountCanBeConfigured()
+	{
+		final FetchScheduler scheduler = new FetchScheduler( 0 );
+		assertEquals( 1, scheduler.getNumThreads() );
+		scheduler.setNumThreads( 8 );
+		assertEquals( 8, scheduler.getNumThreads() );
+	}
+
+	@Test
+	void testRunningThreadsAreThoseOfTheCurrentQueue()
+	{
+		final FetchScheduler scheduler = new FetchScheduler( 2 );
+		assertEquals( 0, scheduler.getRunningThreads() );
+		final SharedQueue queue = scheduler.acquire();
+		scheduler.setNumThreads( 6 );
+		assertEquals( 2, scheduler.getRunningThreads() );
+		scheduler.release( queue );
+		assertEquals( 0, scheduler.getRunningThreads() );
+	}
+}
@@ -162,6 +162,19 @@ public interface PyramidalBdvTestBase
 		}
 	}
 
+	@ParameterizedTest
+	@MethodSource( "ome.zarr.imglib2.PyramidBackendTestBase#omeZarrExamples" )
+	default void testCacheControl( String resource ) throws URISyntaxException
+	{
+		try (Context context = new Context())
+		{
+			PyramidContents< ? > contents = load( resource, context );
+			PyramidalBdv< ? > pyramidalBdv = new PyramidalBdv<>( context, contents );
+			assertNotNull( pyramidalBdv.getCacheControl() );
+			pyramidalBdv.getCacheControl().prepareNextFrame(); // drops queued prefetch requests
+		}
+	}
+
 	@ParameterizedTest
 	@MethodSource( "ome.zarr.imglib2.PyramidBackendTestBase#omeZarrExamples" )
 	default void testVoxelDimensions( String resource ) throws URISyntaxException
@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+class LoadMetricsServiceTest
+{
+	@Test
+	void reportsTheProcessWideMetricsByDefault()
+	{
+		try (Context context = new Context( LoadMetricsService.class ))
+		{
+			assertSame( LoadMetrics.getInstance(), context.service( LoadMetricsService.class ).getMetrics() );
+		}
+	}
+
+	@Test
+	void snapshotsPerDatasetAndTotals()
+	{
+		try (Context context = new Context( LoadMetricsService.class ))
+		{
+			final LoadMetricsService service = context.service( LoadMetricsService.class );
+			final LoadMetrics metrics = new LoadMetrics( true );
+			service.setMetrics( metrics );
+			metrics.level( "a", 0 ).fetched( 10, 1_000 );
+			metrics.level( "a", 1 ).fetched( 20, 1_000 );
+			metrics.level( "b", 0 ).fetched( 40, 1_000 );
+
+			assertEquals( 2, service.snapshot( "a" ).size() );
+			final Map< String, LevelMetrics.Snapshot > totals = service.totals();
+			assertEquals( 30, totals.get( "a" ).bytesFetched );
+			assertEquals( 2, totals.get( "a" ).requests );
+			assertEquals( 40, totals.get( "b" ).bytesFetched );
+
+			service.setEnabled( false );
+			assertFalse( metrics.isEnabled() );
+			service.reset();
+			assertEquals( 0, service.totals().get( "a" ).requests );
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.fiji.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.scijava.Context;
+
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+import ome.zarr.ZarrTestUtils;
+import ome.zarr.fiji.open.ZarrOpener;
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PyramidBackend;
+import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+import ome.zarr.n5.N5PyramidBackend;
+
+class PyramidContentsServiceTest
+{
+	private static final String ZARR_2D = "ome/zarr/testdata/2d_testing/2d_dataset_v4.ome.zarr";
+
+	/** Counts the loads of the wrapped N5 backend. */
+	private static class CountingBackend implements PyramidBackend
+	{
+		int loads = 0;
+
+		@Override
+		public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri )
+		{
+			loads++;
+			return new N5PyramidBackend().load( inputUri );
+		}
+	}
+
+	@Test
+	void repeatedOpensShareContents() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		final CountingBackend backend = new CountingBackend();
+		try (Context context = new Context())
+		{
+			final PyramidContents< ? > first = new ZarrOpener( uri, context, backend, null ).getContents();
+			final PyramidContents< ? > second = new ZarrOpener( uri, context, backend, null ).getContents();
+			assertSame( first, second );
+			assertEquals( 1, backend.loads );
+		}
+	}
+
+	@Test
+	void expiredContentsAreReloadedAndDroppedWhenReleased() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		final CountingBackend backend = new CountingBackend();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			registry.setValidityMillis( 0 );
+
+			final PyramidContents< ? > first = registry.get( uri, backend );
+			registry.retain( first );
+			final PyramidContents< ? > second = registry.get( uri, backend );
+			assertNotSame( first, second );
+			assertEquals( 2, backend.loads );
+
+			// still referenced, so still registered despite having expired
+			assertTrue( registry.isRegistered( first ) );
+			assertEquals( 1, registry.getReferences( first ) );
+
+			registry.release( first );
+			assertFalse( registry.isRegistered( first ) );
+		}
+	}
+
+	@Test
+	void releasingTheLastReferenceCancelsLoads() throws URISyntaxException, ExecutionException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > contents = registry.get( uri, new N5PyramidBackend() );
+			final CachedCellImg< ?, ? > level = contents.cachedCellImg( 0 );
+			registry.retain( contents );
+			registry.retain( contents );
+			assertNotNull( level.getCache().get( 0L ) );
+
+			registry.release( contents );
+			assertNotNull( level.getCache().get( 0L ) );
+
+			registry.release( contents );
+			final ExecutionException e = assertThrows( ExecutionException.class, () -> level.getCache().get( 0L ) );
+			assertInstanceOf( CancellationException.class, e.getCause() );
+		}
+	}
+
+	@Test
+	void releasedContentsAreReusedWhileValid() throws URISyntaxException, ExecutionException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		final CountingBackend backend = new CountingBackend();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > contents = registry.acquire( uri, backend, new LoadMonitor() );
+			registry.release( contents );
+			assertFalse( contents.isClosed() );
+			assertTrue( registry.isRegistered( contents ) );
+
+			final PyramidContents< ? > reopened = registry.acquire( uri, backend, new LoadMonitor() );
+			assertSame( contents, reopened );
+			assertEquals( 1, backend.loads );
+			assertNotNull( reopened.cachedCellImg( 0 ).getCache().get( 0L ) );
+		}
+	}
+
+	@Test
+	void releasingTheLastReferenceClosesContents() throws URISyntaxException, ExecutionException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > contents = registry.get( uri, new N5PyramidBackend() );
+			registry.retain( contents );
+			contents.cachedCellImg( 0 );
+
+			registry.setValidityMillis( 0 );
+			registry.release( contents );
+			assertTrue( contents.isClosed() );
+			assertFalse( registry.isRegistered( contents ) );
+			assertThrows( IllegalStateException.class, () -> contents.cachedCellImg( 0 ) );
+
+			final PyramidContents< ? > reopened = registry.get( uri, new N5PyramidBackend() );
+			assertNotSame( contents, reopened );
+			assertNotNull( reopened.cachedCellImg( 0 ).getCache().get( 0L ) );
+		}
+	}
+
+	@Test
+	void releasingTheLastReferenceForgetsMetrics() throws URISyntaxException, ExecutionException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > contents = registry.get( uri, new N5PyramidBackend() );
+			registry.retain( contents );
+			contents.cachedCellImg( 0 ).getCache().get( 0L );
+			assertTrue( hasMetrics( contents.location ) );
+
+			registry.setValidityMillis( 0 );
+			registry.release( contents );
+			assertFalse( hasMetrics( contents.location ) );
+		}
+	}
+
+	private static boolean hasMetrics( final String location )
+	{
+		return LoadMetrics.getInstance().snapshot().stream().anyMatch( snapshot -> snapshot.dataset.equals( location ) );
+	}
+
+	@Test
+	void acquiredContentsAreReferenced() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		final CountingBackend backend = new CountingBackend();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > first = registry.acquire( uri, backend, new LoadMonitor() );
+			assertEquals( 1, registry.getReferences( first ) );
+
+			final PyramidContents< ? > second = registry.acquire( uri, backend, new LoadMonitor() );
+			assertSame( first, second );
+			assertEquals( 1, backend.loads );
+			assertEquals( 2, registry.getReferences( first ) );
+
+			registry.release( first );
+			assertEquals( 1, registry.getReferences( first ) );
+			registry.release( second );
+			assertEquals( 0, registry.getReferences( first ) );
+		}
+	}
+
+	@Test
+	void closedContentsCannotBeRetained() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		try (Context context = new Context())
+		{
+			final PyramidContentsService registry = context.getService( PyramidContentsService.class );
+			final PyramidContents< ? > contents = registry.acquire( uri, new N5PyramidBackend(), new LoadMonitor() );
+			registry.setValidityMillis( 0 );
+			registry.release( contents );
+
+			assertFalse( registry.retain( contents ) );
+			assertEquals( 0, registry.getReferences( contents ) );
+		}
+	}
+
+	@Test
+	void disposingTheServiceClosesContents() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( ZARR_2D ).toUri();
+		final PyramidContents< ? > contents;
+		try (Context context = new Context())
+		{
+			contents = context.getService( PyramidContentsService.class ).get( uri, new N5PyramidBackend() );
+			assertFalse( contents.isClosed() );
+		}
+		assertTrue( contents.isClosed() );
+	}
+}
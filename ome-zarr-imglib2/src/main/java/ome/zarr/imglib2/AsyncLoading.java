@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs loads of OME-Zarr images in the background, see
+ * {@link PyramidBackend#loadAsync}.
+ * <p>
+ * Loads run on a shared pool of daemon threads, so that several datasets
+ * open in parallel. Cancelling a returned future cancels its
+ * {@link LoadMonitor}, which stops the load at its next stage. A load
+ * canceled too late to stop still completes; its result is closed then if it
+ * is {@link AutoCloseable}, since nobody else can.
+ */
+public final class AsyncLoading
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static final ExecutorService LOADERS = Executors.newCachedThreadPool( runnable -> {
+		final Thread thread = new Thread( runnable, "ome-zarr-loader-" + THREAD_COUNT.incrementAndGet() );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	private AsyncLoading()
+	{
+		// static utility class; do not instantiate
+	}
+
+	/**
+	 * Runs {@code load} in the background.
+	 *
+	 * @param monitor canceled when the returned future is canceled
+	 */
+	public static < R > CompletableFuture< R > supplyAsync( final Supplier< R > load, final LoadMonitor monitor )
+	{
+		final CompletableFuture< R > future = new CompletableFuture<>();
+		future.whenComplete( ( result, e ) -> {
+			if ( future.isCancelled() )
+				monitor.cancel();
+		} );
+		LOADERS.execute( () -> {
+			final R result;
+			try
+			{
+				result = load.get();
+			}
+			catch ( final Throwable e )
+			{
+				future.completeExceptionally( e );
+				return;
+			}
+			if ( !future.complete( result ) )
+				close( result );
+		} );
+		return future;
+	}
+
+	/**
+	 * Closes the result of a load whose future has been canceled.
+	 */
+	private static void close( final Object result )
+	{
+		if ( !( result instanceof AutoCloseable ) )
+			return;
+		try
+		{
+			( ( AutoCloseable ) result ).close();
+		}
+		catch ( final Exception e )
+		{
+			logger.warn( "Cannot close the result of a canceled load: {}", e.getMessage() );
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
+
+/**
+ * Progress and cooperative cancellation of a {@link PyramidBackend} load.
+ * <p>
+ * Backends report the stages of loading via {@link #progress}, which also
+ * throws a {@link LoadCanceledException} once {@link #cancel()} has been
+ * called, so a canceled load stops at the next stage. Listeners are notified
+ * on the loading thread.
+ */
+public class LoadMonitor
+{
+	/** Stages of loading an OME-Zarr multi-resolution image, in order. */
+	public enum Stage
+	{
+		/** Reading the multiscales metadata. */
+		METADATA,
+		/** Reading the metadata of the resolution levels needed up front. */
+		LEVELS,
+		/** Reading the OMERO rendering metadata. */
+		OMERO
+	}
+
+	/** Receives the progress of a load. */
+	public interface Listener
+	{
+		/**
+		 * Called when {@code done} of {@code total} steps of {@code stage} are
+		 * completed.
+		 */
+		void progress( Stage stage, int done, int total );
+	}
+
+	private final List< Listener > listeners = new CopyOnWriteArrayList<>();
+
+	private volatile boolean canceled = false;
+
+	public void addListener( final Listener listener )
+	{
+		listeners.add( listener );
+	}
+
+	public void removeListener( final Listener listener )
+	{
+		listeners.remove( listener );
+	}
+
+	/**
+	 * Requests the load to stop. Takes effect at the next stage reported by
+	 * the backend.
+	 */
+	public void cancel()
+	{
+		canceled = true;
+	}
+
+	public boolean isCanceled()
+	{
+		return canceled;
+	}
+
+	/**
+	 * @throws LoadCanceledException if {@link #cancel()} has been called
+	 */
+	public void checkCanceled()
+	{
+		if ( canceled )
+			throw new LoadCanceledException();
+	}
+
+	/**
+	 * Reports that {@code done} of {@code total} steps of {@code stage} are
+	 * completed.
+	 *
+	 * @throws LoadCanceledException if {@link #cancel()} has been called
+	 */
+	public void progress( final Stage stage, final int done, final int total )
+	{
+		checkCanceled();
+		for ( final Listener listener : listeners )
+			listener.progress( stage, done, total );
+	}
+}
@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Root metadata documents of a Zarr dataset that were already fetched, e.g.
+ * by {@link ZarrUtils#isZarr(java.net.URI)}, and can be handed to
+ * {@link PyramidBackend#load(java.net.URI, LoadMonitor, PrefetchedMetadata)}
+ * so that opening does not request them again.
+ * <p>
+ * Documents are keyed by their name relative to the dataset root
+ * ({@code "zarr.json"}, {@code ".zattrs"}, ...). Besides their content, the
+ * names known not to exist and the HTTP validators (ETag or Last-Modified)
+ * of the documents are recorded.
+ */
+public final class PrefetchedMetadata
+{
+	private static final PrefetchedMetadata NONE = new PrefetchedMetadata(
+			Collections.emptyMap(), Collections.emptySet(), Collections.emptyMap() );
+
+	private final Map< String, byte[] > documents;
+
+	private final Set< String > missing;
+
+	private final Map< String, String > validators;
+
+	/**
+	 * @param documents content by document name
+	 * @param missing names of documents known not to exist
+	 * @param validators ETag or Last-Modified date by document name
+	 */
+	public PrefetchedMetadata( final Map< String, byte[] > documents, final Set< String > missing, final Map< String, String > validators )
+	{
+		this.documents = Collections.unmodifiableMap( new HashMap<>( documents ) );
+		this.missing = Collections.unmodifiableSet( new HashSet<>( missing ) );
+		this.validators = Collections.unmodifiableMap( new HashMap<>( validators ) );
+	}
+
+	/**
+	 * Returns metadata without any documents.
+	 */
+	public static PrefetchedMetadata none()
+	{
+		return NONE;
+	}
+
+	public boolean isEmpty()
+	{
+		return documents.isEmpty() && missing.isEmpty();
+	}
+
+	/**
+	 * Returns the content of document {@code name}, or {@code null} if it was
+	 * not fetched. The array must not be modified.
+	 */
+	public byte[] document( final String name )
+	{
+		return documents.get( name );
+	}
+
+	/**
+	 * Returns whether document {@code name} is known not to exist.
+	 */
+	public boolean isMissing( final String name )
+	{
+		return missing.contains( name );
+	}
+
+	/**
+	 * Returns the ETag, or else the Last-Modified date, of document
+	 * {@code name}, or {@code null} if unknown.
+	 */
+	public String validator( final String name )
+	{
+		return validators.get( name );
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PrefetchedMetadata" + documents.keySet() + ", missing " + missing;
+	}
+}
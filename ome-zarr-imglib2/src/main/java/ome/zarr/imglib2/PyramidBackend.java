@@ -29,17 +29,23 @@
 package ome.zarr.imglib2;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
+
 /**
  * Plug-point for reading an OME-Zarr multi-resolution image.
  * <p>
  * An implementation encapsulates everything specific to one reader library
  * (N5, zarr-java, ...): discovering multiscale metadata, selecting a resolution
  * level, opening cached cell images, and assembling axis information. Callers
- * invoke {@link #load(URI)} and consume the returned {@link PyramidContents}.
+ * invoke {@link #load(URI)} and consume the returned {@link PyramidContents},
+ * or {@link #inspect(URI)} when they only need the metadata. Interactive
+ * callers use {@link #loadAsync(URI, LoadMonitor)} to follow the progress and
+ * cancel.
  * <p>
  * The pixel type is a property of the data being read, not of the backend, so
  * it is a type parameter of {@link #load(URI)} rather than of the backend
@@ -57,4 +63,64 @@ public interface PyramidBackend
 	 *   for local datasets or an {@code http(s):} URI for remote datasets
 	 */
 	< T extends NativeType< T > & RealType< T > > PyramidContents< T > load( URI inputUri );
+
+	/**
+	 * Like {@link #load(URI)}, reporting progress to {@code monitor} and
+	 * stopping when it is canceled.
+	 * <p>
+	 * The default implementation only checks for cancellation before and
+	 * after {@link #load(URI)}; backends override it to report the stages.
+	 *
+	 * @throws LoadCanceledException if {@code monitor} is canceled
+	 */
+	default < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri, final LoadMonitor monitor )
+	{
+		monitor.checkCanceled();
+		final PyramidContents< T > contents = load( inputUri );
+		monitor.checkCanceled();
+		return contents;
+	}
+
+	/**
+	 * Like {@link #load(URI, LoadMonitor)}, using the root metadata documents
+	 * in {@code prefetched} instead of requesting them again, e.g. those
+	 * fetched by {@link ZarrUtils#isZarr(URI)} while checking a pasted
+	 * location.
+	 * <p>
+	 * The default implementation ignores {@code prefetched}.
+	 */
+	default < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri, final LoadMonitor monitor, final PrefetchedMetadata prefetched )
+	{
+		return load( inputUri, monitor );
+	}
+
+	/**
+	 * Loads the image at {@code inputUri} in the background, see
+	 * {@link AsyncLoading}. Cancelling the returned future cancels
+	 * {@code monitor}; a load canceled via {@code monitor} completes the future
+	 * with a {@link LoadCanceledException}.
+	 */
+	default < T extends NativeType< T > & RealType< T > > CompletableFuture< PyramidContents< T > > loadAsync( final URI inputUri, final LoadMonitor monitor )
+	{
+		return AsyncLoading.supplyAsync( () -> load( inputUri, monitor ), monitor );
+	}
+
+	/**
+	 * Read only the metadata of the OME-Zarr multi-resolution image at
+	 * {@code inputUri}: name, data type, dimensions per resolution level, axes,
+	 * transforms and OMERO metadata. Unlike {@link #load(URI)}, no cell images
+	 * or caches are created.
+	 * <p>
+	 * The default implementation describes the result of {@link #load(URI)}
+	 * and closes it; backends override it to skip creating the cell images.
+	 *
+	 * @param inputUri location of the OME-Zarr root, as for {@link #load(URI)}
+	 */
+	default PyramidDescription inspect( final URI inputUri )
+	{
+		try (final PyramidContents< ? > contents = load( inputUri ))
+		{
+			return PyramidDescription.of( contents );
+		}
+	}
 }
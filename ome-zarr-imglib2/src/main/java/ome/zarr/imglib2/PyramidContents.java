@@ -28,13 +28,24 @@
  */
 package ome.zarr.imglib2;
 
+import java.io.Closeable;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
 
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.img.Img;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Cast;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,16 +55,26 @@ import ome.zarr.imglib2.metadata.AxisCalibration;
 import ome.zarr.imglib2.metadata.Omero;
 
 /**
- * Immutable snapshot of everything a {@link PyramidBackend} produces when
- * opening an OME-Zarr multi-resolution image.
+ * Everything a {@link PyramidBackend} produces when opening an OME-Zarr
+ * multi-resolution image: its metadata, which does not change, and its
+ * resolution levels, which are opened on demand and released by
+ * {@link #close()}.
  * <p>
- * Indices in {@code cachedCellImgs} and {@code transforms}
+ * Resolution levels are opened lazily: a backend may provide a level opener
+ * instead of the cell images, and each level is then opened once, on first
+ * access via {@link #asImg(int)} or {@link #cachedCellImg(int)}. Dimension
+ * queries are answered from the level dimensions provided by the backend
+ * (typically read from the multiscales metadata) where available, and
+ * {@link #selectResolutionLevel} estimates the widths of the others from the
+ * {@code transforms}, so that e.g. ImageJ opens only the level it shows.
+ * <p>
+ * Resolution levels and {@code transforms}
  * are in resolution-level order (index 0 is the highest resolution).
  * The imglib2 axis indices follow F-order (x, y, z, c, t), the order produced
  * after the backend has reversed any zarr C-order shapes.
  * <p>
- * The resolution-level count and the per-axis sizes are derived on demand from
- * the full-resolution image and its axis list ({@code cachedCellImgs[ 0 ]} and
+ * The per-axis sizes are derived on demand from the full-resolution
+ * dimensions and axis list ({@code dimensions( 0 )} and
  * {@code axesPerLevel[ 0 ]}), rather than stored. Because every count comes from
  * this single source, {@link #numDimensions()}, {@link #numChannels()},
  * {@link #numTimepoints()} and {@link #axisIndex} cannot disagree with one
@@ -63,21 +84,33 @@ import ome.zarr.imglib2.metadata.Omero;
  * axes that are actually present). The constructor enforces the one cross-axis
  * invariant they all rely on: the axis list and the image have the same number
  * of dimensions.
+ * <p>
+ * The contents own the resources the backend opened them with, such as
+ * readers, stores and metadata caches. {@link #close()} releases those and
+ * drops the opened levels and their cached cells; levels can no longer be
+ * accessed afterwards.
  *
  * @param <T> pixel type
  */
-public final class PyramidContents< T extends NativeType< T > & RealType< T > >
+public final class PyramidContents< T extends NativeType< T > & RealType< T > > implements Closeable
 {
 	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
 
 	public final String name;
 
+	/**
+	 * Dataset under which the cells of this image are held by the
+	 * {@link ome.zarr.imglib2.cache.SharedCellCache}, typically its URI, or
+	 * {@code null} if they are not held there.
+	 */
+	public final String location;
+
 	public final T type;
 
 	/**
 	 * Per-resolution-level transform from that level's image coordinates to the
 	 * shared physical world coordinate system, in resolution-level order (index 0
-	 * is the highest resolution; aligned with {@link #cachedCellImgs}).
+	 * is the highest resolution; aligned with {@link #cachedCellImg(int)}).
 	 * <p>
 	 * <b>Source</b> coordinates are the discrete pixel/voxel coordinates of
 	 * resolution level i, in imglib2 F-order (x, y, z). <b>Target</b> coordinates
@@ -88,8 +121,39 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	 */
 	public final AffineTransform3D[] transforms;
 
+	/**
+	 * Cell images of the resolution levels opened so far; entries of levels
+	 * not opened yet are {@code null}.
+	 *
+	 * @deprecated levels are opened on first access, use
+	 *             {@link #cachedCellImg(int)} or {@link #cachedCellImgs()}.
+	 *             To be removed in the next release.
+	 */
+	@Deprecated
 	public final CachedCellImg< T, ? >[] cachedCellImgs;
 
+	private final int numResolutionLevels;
+
+	/** Runs the level openings of {@link #cachedCellImgs()}. */
+	private final Executor levelOpeners;
+
+	/** Dropped by {@link #close()}, along with everything it references. */
+	private volatile IntFunction< CachedCellImg< T, ? > > levelOpener;
+
+	/** Opened levels, {@code null} until first accessed. */
+	private final AtomicReferenceArray< CachedCellImg< T, ? > > levels;
+
+	/** One lock per level, held while opening it. */
+	private final Object[] levelLocks;
+
+	/** Dimensions per level as known without opening it; entries may be {@code null}. */
+	private final long[][] levelDimensions;
+
+	/** Resources owned by the contents, closed in reverse order by {@link #close()}. */
+	private final List< AutoCloseable > resources;
+
+	private final AtomicBoolean closed = new AtomicBoolean();
+
 	/**
 	 * Axes per resolution level: {@code [resolutionLevel][axisIndex]}.
 	 */
@@ -101,25 +165,115 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	private PyramidContents( final Builder< T > b )
 	{
 		this.name = b.name;
+		this.location = b.location;
 		this.type = b.type;
 		this.transforms = b.transforms;
-		this.cachedCellImgs = b.cachedCellImgs;
 		this.axesPerLevel = b.axesPerLevel;
 		this.omero = b.omero;
+		this.numResolutionLevels = b.numResolutionLevels;
+		this.levelOpener = b.levelOpener;
+		this.levelOpeners = b.levelOpeners != null ? b.levelOpeners : Runnable::run;
+		this.levels = new AtomicReferenceArray<>( numResolutionLevels );
+		this.cachedCellImgs = Cast.unchecked( new CachedCellImg[ numResolutionLevels ] );
+		if ( b.openedLevels != null )
+		{
+			for ( int level = 0; level < numResolutionLevels; level++ )
+			{
+				levels.set( level, b.openedLevels[ level ] );
+				cachedCellImgs[ level ] = b.openedLevels[ level ];
+			}
+		}
+		this.levelLocks = new Object[ numResolutionLevels ];
+		Arrays.setAll( levelLocks, level -> new Object() );
+		this.levelDimensions = b.levelDimensions != null ? b.levelDimensions : new long[ numResolutionLevels ][];
+		this.resources = new ArrayList<>( b.resources );
 
-		final int numDimensions = cachedCellImgs[ 0 ].numDimensions();
+		final int numDimensions = numDimensions();
 		if ( axesPerLevel[ 0 ].length != numDimensions )
 			throw new IllegalArgumentException( "Full-resolution axis count (" + axesPerLevel[ 0 ].length
 					+ ") does not match the number of image dimensions (" + numDimensions + ")." );
 	}
 
 	/**
-	 * Number of resolution levels in the pyramid, i.e. the length of
-	 * {@link #cachedCellImgs}.
+	 * Number of resolution levels in the pyramid.
 	 */
 	public int numResolutionLevels()
 	{
-		return cachedCellImgs.length;
+		return numResolutionLevels;
+	}
+
+	/**
+	 * Cell image at the given resolution level ({@code 0} = highest
+	 * resolution), opening the level on first access. Concurrent first
+	 * accesses open the level once.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code resolutionLevel} is not in
+	 *   {@code [0, numResolutionLevels())}
+	 * @throws IllegalStateException if the contents are closed
+	 */
+	public CachedCellImg< T, ? > cachedCellImg( final int resolutionLevel )
+	{
+		if ( resolutionLevel < 0 || resolutionLevel >= numResolutionLevels )
+			throw new IndexOutOfBoundsException( "Invalid resolution level: " + resolutionLevel
+					+ " (numResolutionLevels = " + numResolutionLevels + ")" );
+		final CachedCellImg< T, ? > opened = levels.get( resolutionLevel );
+		if ( opened != null )
+			return opened;
+		synchronized ( levelLocks[ resolutionLevel ] )
+		{
+			CachedCellImg< T, ? > img = levels.get( resolutionLevel );
+			if ( img == null )
+			{
+				final IntFunction< CachedCellImg< T, ? > > opener = levelOpener;
+				if ( opener == null )
+					throw new IllegalStateException( "Cannot access level " + resolutionLevel + " of closed contents " + name );
+				img = opener.apply( resolutionLevel );
+				levels.set( resolutionLevel, img );
+				cachedCellImgs[ resolutionLevel ] = img;
+			}
+			return img;
+		}
+	}
+
+	/**
+	 * Cell images of all resolution levels, opening those not opened yet on
+	 * the executor given to the {@link Builder#levelOpeners(Executor)
+	 * builder}, by default one after another.
+	 */
+	public CachedCellImg< T, ? >[] cachedCellImgs()
+	{
+		final CompletableFuture< ? >[] opening = new CompletableFuture[ numResolutionLevels ];
+		for ( int level = 0; level < numResolutionLevels; level++ )
+		{
+			final int l = level;
+			opening[ level ] = levels.get( level ) != null
+					? CompletableFuture.completedFuture( null )
+					: CompletableFuture.runAsync( () -> cachedCellImg( l ), levelOpeners );
+		}
+		try
+		{
+			CompletableFuture.allOf( opening ).join();
+		}
+		catch ( final CompletionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+			throw e;
+		}
+		final CachedCellImg< T, ? >[] imgs = Cast.unchecked( new CachedCellImg[ numResolutionLevels ] );
+		for ( int level = 0; level < numResolutionLevels; level++ )
+			imgs[ level ] = levels.get( level );
+		return imgs;
+	}
+
+	/**
+	 * Dimensions of the given resolution level in imglib2 F-order, taken from
+	 * the metadata if available and from the opened level otherwise.
+	 */
+	public long[] dimensions( final int resolutionLevel )
+	{
+		final long[] known = levelDimensions[ resolutionLevel ];
+		return known != null ? known.clone() : cachedCellImg( resolutionLevel ).dimensionsAsLongArray();
 	}
 
 	/**
@@ -144,10 +298,7 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	 */
 	public Img< T > asImg( final int resolutionLevel )
 	{
-		if ( resolutionLevel < 0 || resolutionLevel >= cachedCellImgs.length )
-			throw new IndexOutOfBoundsException( "Invalid resolution level: " + resolutionLevel
-					+ " (numResolutionLevels = " + cachedCellImgs.length + ")" );
-		return cachedCellImgs[ resolutionLevel ];
+		return cachedCellImg( resolutionLevel );
 	}
 
 	/**
@@ -157,7 +308,7 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	 */
 	public int numDimensions()
 	{
-		return cachedCellImgs[ 0 ].numDimensions();
+		return dimensions( 0 ).length;
 	}
 
 	/**
@@ -222,7 +373,7 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	 * {@code xyzc}). A name lookup resolves the correct index for every such
 	 * combination from a single source of truth, {@link #axesPerLevel}, which is
 	 * in imglib2 F-order and thus aligned 1:1 with the dimensions of
-	 * {@code cachedCellImgs[ 0 ]}.
+	 * {@code dimensions( 0 )}.
 	 */
 	public int axisIndex( final String axisName )
 	{
@@ -251,13 +402,15 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 	private int sizeAlongAxis( final String axisName )
 	{
 		final int index = axisIndex( axisName );
-		return index < 0 ? 1 : ( int ) cachedCellImgs[ 0 ].dimension( index );
+		return index < 0 ? 1 : ( int ) dimensions( 0 )[ index ];
 	}
 
 	/**
-	 * Returns the index of the coarsest resolution level whose x-width (index 0
+	 * Returns the index of the finest resolution level whose x-width (index 0
 	 * in imglib2 F-order) is &le; {@code preferredMaxWidth}, or 0 when
-	 * {@code preferredMaxWidth} is {@code null}.
+	 * {@code preferredMaxWidth} is {@code null}. The widths of levels that
+	 * are neither known nor opened are estimated from the width of level 0
+	 * and the x-scales of the {@link #transforms}, without opening them.
 	 *
 	 * @throws NoMatchingResolutionException if {@code preferredMaxWidth} is
 	 *   smaller than the width of every resolution level
@@ -267,9 +420,9 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 		if ( preferredMaxWidth == null )
 			return 0;
 		int smallestWidth = Integer.MAX_VALUE;
-		for ( int level = 0; level < cachedCellImgs.length; level++ )
+		for ( int level = 0; level < numResolutionLevels; level++ )
 		{
-			final int width = ( int ) cachedCellImgs[ level ].dimension( 0 );
+			final int width = ( int ) width( level );
 			if ( width <= preferredMaxWidth )
 				return level;
 			smallestWidth = Math.min( smallestWidth, width );
@@ -277,6 +430,71 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 		throw new NoMatchingResolutionException( preferredMaxWidth, smallestWidth );
 	}
 
+	/**
+	 * Width of a resolution level, from its dimensions if known or opened,
+	 * and otherwise estimated from level 0, whose voxels are smaller by the
+	 * ratio of the x-scales of the two levels. Levels without a usable scale
+	 * are opened.
+	 */
+	private long width( final int level )
+	{
+		if ( levelDimensions[ level ] != null || levels.get( level ) != null || transforms == null || level >= transforms.length )
+			return dimensions( level )[ 0 ];
+		final double level0Scale = transforms[ 0 ].get( 0, 0 );
+		final double scale = transforms[ level ].get( 0, 0 );
+		if ( !( level0Scale > 0 && scale > 0 ) )
+			return dimensions( level )[ 0 ];
+		// rounded up like downsampled shapes, tolerating inexact scales
+		return ( long ) Math.ceil( dimensions( 0 )[ 0 ] * level0Scale / scale - 1e-6 );
+	}
+
+	/**
+	 * Drops the opened levels and their cells, and closes the resources owned
+	 * by the contents. Failures to close a resource are logged.
+	 * Closing again has no effect.
+	 */
+	@Override
+	public void close()
+	{
+		if ( !closed.compareAndSet( false, true ) )
+			return;
+		// dropped before the levels, so that a level whose lock is released
+		// below cannot be opened again
+		levelOpener = null;
+		for ( int level = 0; level < numResolutionLevels; level++ )
+		{
+			synchronized ( levelLocks[ level ] )
+			{
+				final CachedCellImg< T, ? > img = levels.get( level );
+				if ( img != null )
+					img.getCache().invalidateAll();
+				levels.set( level, null );
+				cachedCellImgs[ level ] = null;
+			}
+		}
+		for ( int i = resources.size() - 1; i >= 0; i-- )
+		{
+			try
+			{
+				resources.get( i ).close();
+			}
+			catch ( final Exception e )
+			{
+				logger.warn( "Cannot release a resource of {}: {}", name, e.getMessage() );
+			}
+		}
+		resources.clear();
+		logger.debug( "Closed {}", name );
+	}
+
+	/**
+	 * Returns whether {@link #close()} was called.
+	 */
+	public boolean isClosed()
+	{
+		return closed.get();
+	}
+
 	public static < T extends NativeType< T > & RealType< T > > Builder< T > builder()
 	{
 		return new Builder<>();
@@ -288,20 +506,39 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 
 		private T type;
 
+		private String location;
+
 		private AffineTransform3D[] transforms;
 
-		private CachedCellImg< T, ? >[] cachedCellImgs;
+		private int numResolutionLevels;
+
+		private IntFunction< CachedCellImg< T, ? > > levelOpener;
+
+		/** Set by {@link #cachedCellImgs(CachedCellImg[])}, {@code null} otherwise. */
+		private CachedCellImg< T, ? >[] openedLevels;
+
+		private Executor levelOpeners;
+
+		private long[][] levelDimensions;
 
 		private AxisCalibration[][] axesPerLevel;
 
 		private Omero omero;
 
+		private final List< AutoCloseable > resources = new ArrayList<>();
+
 		public Builder< T > name( final String name )
 		{
 			this.name = name;
 			return this;
 		}
 
+		public Builder< T > location( final String location )
+		{
+			this.location = location;
+			return this;
+		}
+
 		public Builder< T > type( final T t )
 		{
 			this.type = t;
@@ -314,9 +551,53 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 			return this;
 		}
 
+		/**
+		 * Sets the cell images of all resolution levels, opened eagerly.
+		 */
 		public Builder< T > cachedCellImgs( final CachedCellImg< T, ? >[] i )
 		{
-			this.cachedCellImgs = i;
+			this.numResolutionLevels = i.length;
+			this.levelOpener = level -> i[ level ];
+			this.openedLevels = i.clone();
+			final long[][] dimensions = new long[ i.length ][];
+			for ( int level = 0; level < i.length; level++ )
+				dimensions[ level ] = i[ level ].dimensionsAsLongArray();
+			this.levelDimensions = dimensions;
+			return this;
+		}
+
+		/**
+		 * Sets a function opening the cell image of a resolution level, called
+		 * at most once per level on first access.
+		 */
+		public Builder< T > levelOpener( final int numResolutionLevels, final IntFunction< CachedCellImg< T, ? > > opener )
+		{
+			this.numResolutionLevels = numResolutionLevels;
+			this.levelOpener = opener;
+			this.openedLevels = null;
+			return this;
+		}
+
+		/**
+		 * Sets the executor on which {@link PyramidContents#cachedCellImgs()}
+		 * opens the levels not opened yet, e.g. the one the backend opens
+		 * levels on while loading. By default, they are opened one after
+		 * another on the calling thread.
+		 */
+		public Builder< T > levelOpeners( final Executor executor )
+		{
+			this.levelOpeners = executor;
+			return this;
+		}
+
+		/**
+		 * Sets the dimensions per resolution level, in imglib2 F-order, as known
+		 * without opening the levels. Entries of levels whose dimensions are
+		 * unknown may be {@code null}; level 0 should be known.
+		 */
+		public Builder< T > levelDimensions( final long[][] d )
+		{
+			this.levelDimensions = d;
 			return this;
 		}
 
@@ -332,6 +613,16 @@ public final class PyramidContents< T extends NativeType< T > & RealType< T > >
 			return this;
 		}
 
+		/**
+		 * Adds a resource owned by the contents, such as the reader of the
+		 * backend, closed by {@link PyramidContents#close()}.
+		 */
+		public Builder< T > resource( final AutoCloseable resource )
+		{
+			this.resources.add( resource );
+			return this;
+		}
+
 		public PyramidContents< T > build()
 		{
 			return new PyramidContents<>( this );
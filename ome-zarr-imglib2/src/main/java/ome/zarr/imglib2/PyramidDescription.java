@@ -0,0 +1,233 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.util.Arrays;
+
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import ome.zarr.imglib2.metadata.AxisCalibration;
+import ome.zarr.imglib2.metadata.Omero;
+
+/**
+ * Pixel-free description of an OME-Zarr multi-resolution image, as returned by
+ * {@link PyramidBackend#inspect}: the metadata of a {@link PyramidContents}
+ * without any cell images or caches, e.g. for cataloging many datasets.
+ * <p>
+ * Dimensions and axes are in imglib2 F-order and resolution-level order, like
+ * in {@link PyramidContents}.
+ */
+public final class PyramidDescription
+{
+	public final String name;
+
+	/**
+	 * Data type of the pixels, as named by Zarr ({@code "uint8"},
+	 * {@code "int16"}, {@code "float32"}, ...).
+	 */
+	public final String dataType;
+
+	/** Dimensions per resolution level: {@code [resolutionLevel][dimension]}. */
+	private final long[][] levelDimensions;
+
+	/** See {@link PyramidContents#transforms}. */
+	public final AffineTransform3D[] transforms;
+
+	/** Axes per resolution level: {@code [resolutionLevel][axisIndex]}. */
+	public final AxisCalibration[][] axesPerLevel;
+
+	/** OMERO rendering metadata, or {@code null} if unavailable. */
+	public final Omero omero;
+
+	private PyramidDescription( final Builder b )
+	{
+		this.name = b.name;
+		this.dataType = b.dataType;
+		this.levelDimensions = b.levelDimensions;
+		this.transforms = b.transforms;
+		this.axesPerLevel = b.axesPerLevel;
+		this.omero = b.omero;
+	}
+
+	/**
+	 * Describes {@code contents}, opening the resolution levels whose
+	 * dimensions are not known from the metadata.
+	 */
+	public static PyramidDescription of( final PyramidContents< ? > contents )
+	{
+		final long[][] dimensions = new long[ contents.numResolutionLevels() ][];
+		for ( int level = 0; level < dimensions.length; level++ )
+			dimensions[ level ] = contents.dimensions( level );
+		return builder()
+				.name( contents.name )
+				.dataType( dataTypeName( contents.type ) )
+				.levelDimensions( dimensions )
+				.transforms( contents.transforms )
+				.axesPerLevel( contents.axesPerLevel )
+				.omero( contents.omero )
+				.build();
+	}
+
+	/**
+	 * Number of resolution levels in the pyramid.
+	 */
+	public int numResolutionLevels()
+	{
+		return levelDimensions.length;
+	}
+
+	/**
+	 * Number of imglib2 dimensions of the full-resolution image.
+	 */
+	public int numDimensions()
+	{
+		return levelDimensions[ 0 ].length;
+	}
+
+	/**
+	 * Dimensions of the given resolution level in imglib2 F-order.
+	 *
+	 * @throws IndexOutOfBoundsException if {@code resolutionLevel} is not in
+	 *   {@code [0, numResolutionLevels())}
+	 */
+	public long[] dimensions( final int resolutionLevel )
+	{
+		return levelDimensions[ resolutionLevel ].clone();
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder sb = new StringBuilder( name ).append( " (" ).append( dataType ).append( ")" );
+		for ( int level = 0; level < levelDimensions.length; level++ )
+			sb.append( level == 0 ? ": " : ", " ).append( Arrays.toString( levelDimensions[ level ] ) );
+		return sb.toString();
+	}
+
+	/**
+	 * Zarr name of the data type of {@code type}, as reported by
+	 * {@link #dataType}, or its class name if Zarr has none.
+	 */
+	public static String dataTypeName( final RealType< ? > type )
+	{
+		if ( type instanceof UnsignedByteType )
+			return "uint8";
+		if ( type instanceof ByteType )
+			return "int8";
+		if ( type instanceof UnsignedShortType )
+			return "uint16";
+		if ( type instanceof ShortType )
+			return "int16";
+		if ( type instanceof UnsignedIntType )
+			return "uint32";
+		if ( type instanceof IntType )
+			return "int32";
+		if ( type instanceof UnsignedLongType )
+			return "uint64";
+		if ( type instanceof LongType )
+			return "int64";
+		if ( type instanceof FloatType )
+			return "float32";
+		if ( type instanceof DoubleType )
+			return "float64";
+		return type.getClass().getSimpleName();
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+		private String name;
+
+		private String dataType;
+
+		private long[][] levelDimensions;
+
+		private AffineTransform3D[] transforms;
+
+		private AxisCalibration[][] axesPerLevel;
+
+		private Omero omero;
+
+		public Builder name( final String name )
+		{
+			this.name = name;
+			return this;
+		}
+
+		public Builder dataType( final String d )
+		{
+			this.dataType = d;
+			return this;
+		}
+
+		public Builder levelDimensions( final long[][] d )
+		{
+			this.levelDimensions = d;
+			return this;
+		}
+
+		public Builder transforms( final AffineTransform3D[] t )
+		{
+			this.transforms = t;
+			return this;
+		}
+
+		public Builder axesPerLevel( final AxisCalibration[][] a )
+		{
+			this.axesPerLevel = a;
+			return this;
+		}
+
+		public Builder omero( final Omero o )
+		{
+			this.omero = o;
+			return this;
+		}
+
+		public PyramidDescription build()
+		{
+			return new PyramidDescription( this );
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * Process-wide pool of {@link S3Client}s, one per region, endpoint,
+ * addressing style and credentials profile, shared by all images read from
+ * S3 by any backend.
+ * <p>
+ * Building a client resolves credentials and creates a connection pool, and
+ * its first requests pay for new TLS connections, so reusing clients makes
+ * opening further images from the same bucket considerably faster. Clients
+ * stay open until {@link #close()} is called, at the latest when the JVM
+ * shuts down.
+ * <p>
+ * Clients use the default AWS credentials and fall back to anonymous access
+ * for public buckets. The endpoint is the one configured for
+ * {@link S3Endpoints}, so that a local S3-compatible server can stand in for
+ * AWS.
+ */
+public final class S3ClientPool
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	private static final S3ClientPool INSTANCE = new S3ClientPool();
+
+	static
+	{
+		Runtime.getRuntime().addShutdownHook( new Thread( INSTANCE::close, "ome-zarr-s3-client-pool-close" ) );
+	}
+
+	/** Guarded by {@code this}. */
+	private final Map< Key, S3Client > clients = new HashMap<>();
+
+	/**
+	 * Returns the pool shared by all backends.
+	 */
+	public static S3ClientPool getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * Creates an empty pool, e.g. for tests; backends use {@link #getInstance()}.
+	 */
+	public S3ClientPool()
+	{
+		// the pool is filled on demand
+	}
+
+	/**
+	 * Returns the client for reading {@code bucket} at the configured
+	 * endpoint, in the region detected by {@link S3Endpoints#bucketRegion},
+	 * addressing it path-style if {@link S3Endpoints#requiresPathStyle} says so.
+	 */
+	public S3Client forBucket( final String bucket )
+	{
+		final URI endpoint = S3Endpoints.endpointOverride();
+		// detects the region before locking the pool, since it may take a request
+		final String region = S3Endpoints.bucketRegion( endpoint, bucket );
+		return get( region, endpoint, endpoint != null || S3Endpoints.requiresPathStyle( bucket ) );
+	}
+
+	/**
+	 * Returns the client for {@code region} and {@code endpoint} ({@code null}
+	 * for AWS), creating it on first use. Clients for other endpoints than AWS
+	 * use path-style addressing.
+	 */
+	public S3Client get( final String region, final URI endpoint )
+	{
+		return get( region, endpoint, endpoint != null );
+	}
+
+	/**
+	 * Returns the client for {@code region} and {@code endpoint} ({@code null}
+	 * for AWS), with the bucket in the path rather than in the host name if
+	 * {@code pathStyle}, creating it on first use.
+	 */
+	public synchronized S3Client get( final String region, final URI endpoint, final boolean pathStyle )
+	{
+		final Key key = new Key( region, endpoint, pathStyle, System.getProperty( "aws.profile", System.getenv( "AWS_PROFILE" ) ) );
+		return clients.computeIfAbsent( key, S3ClientPool::create );
+	}
+
+	/**
+	 * Returns the number of clients in the pool.
+	 */
+	public synchronized int size()
+	{
+		return clients.size();
+	}
+
+	/**
+	 * Closes all clients, releasing their connections. Clients requested
+	 * afterwards are created anew.
+	 */
+	public void close()
+	{
+		final List< S3Client > closing;
+		synchronized ( this )
+		{
+			closing = new ArrayList<>( clients.values() );
+			clients.clear();
+		}
+		for ( final S3Client client : closing )
+		{
+			try
+			{
+				client.close();
+			}
+			catch ( final SdkException e )
+			{
+				logger.debug( "Cannot close S3 client: {}", e.getMessage() );
+			}
+		}
+	}
+
+	private static S3Client create( final Key key )
+	{
+		logger.debug( "Creating S3 client for region {} and endpoint {}", key.region,
+				key.endpoint != null ? key.endpoint : "AWS" );
+		final S3ClientBuilder builder = S3Client.builder()
+				.region( Region.of( key.region ) )
+				.credentialsProvider( AwsCredentialsProviderChain.builder()
+						.credentialsProviders( DefaultCredentialsProvider.builder().build(), AnonymousCredentialsProvider.create() )
+						.build() );
+		if ( key.endpoint != null )
+			builder.endpointOverride( key.endpoint );
+		// S3-compatible servers generally only support path-style requests, as
+		// do the AWS endpoints for dotted bucket names
+		builder.forcePathStyle( key.pathStyle );
+		return builder.build();
+	}
+
+	private static final class Key
+	{
+		final String region;
+
+		final URI endpoint;
+
+		final boolean pathStyle;
+
+		final String profile;
+
+		Key( final String region, final URI endpoint, final boolean pathStyle, final String profile )
+		{
+			this.region = region;
+			this.endpoint = endpoint;
+			this.pathStyle = pathStyle;
+			this.profile = profile;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Key ) )
+				return false;
+			final Key other = ( Key ) o;
+			return region.equals( other.region ) && Objects.equals( endpoint, other.endpoint ) && pathStyle == other.pathStyle
+					&& Objects.equals( profile, other.profile );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash( region, endpoint, pathStyle, profile );
+		}
+	}
+}
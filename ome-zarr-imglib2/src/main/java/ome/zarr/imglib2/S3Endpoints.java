@@ -0,0 +1,170 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Endpoint and region of the S3 buckets read via {@code s3:} URIs, shared by
+ * the backends.
+ * <p>
+ * The endpoint defaults to AWS and can be overridden, e.g. for a local
+ * S3-compatible server, with the system property {@value #ENDPOINT_PROPERTY}
+ * or the environment variables {@code AWS_ENDPOINT_URL_S3} and
+ * {@code AWS_ENDPOINT_URL}. The region of a bucket is detected from the
+ * {@code x-amz-bucket-region} header that S3 returns to an anonymous
+ * {@code HEAD} request, even if access is denied, rather than assumed, and
+ * remembered for the rest of the session.
+ * <p>
+ * Buckets whose names contain dots are addressed path-style, see
+ * {@link #requiresPathStyle(String)}.
+ */
+public final class S3Endpoints
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/** System property overriding the S3 endpoint. */
+	public static final String ENDPOINT_PROPERTY = "ome.zarr.s3.endpoint";
+
+	/** Region used when the region of a bucket cannot be detected. */
+	public static final String DEFAULT_REGION = "us-east-1";
+
+	private static final String REGION_HEADER = "x-amz-bucket-region";
+
+	private static final int TIMEOUT_MILLIS = 5_000;
+
+	/** Detected regions by endpoint and bucket. */
+	private static final Map< String, String > REGIONS = new ConcurrentHashMap<>();
+
+	private S3Endpoints()
+	{
+		// static utility class; do not instantiate
+	}
+
+	/**
+	 * Returns the configured S3 endpoint, or {@code null} to use AWS.
+	 */
+	public static URI endpointOverride()
+	{
+		String endpoint = System.getProperty( ENDPOINT_PROPERTY );
+		if ( endpoint == null || endpoint.isEmpty() )
+			endpoint = System.getenv( "AWS_ENDPOINT_URL_S3" );
+		if ( endpoint == null || endpoint.isEmpty() )
+			endpoint = System.getenv( "AWS_ENDPOINT_URL" );
+		return endpoint == null || endpoint.isEmpty() ? null : URI.create( endpoint );
+	}
+
+	/**
+	 * Returns the region of {@code bucket} at the configured endpoint, or
+	 * {@link #DEFAULT_REGION} if it cannot be detected.
+	 */
+	public static String bucketRegion( final String bucket )
+	{
+		return bucketRegion( endpointOverride(), bucket );
+	}
+
+	/**
+	 * Returns the region of {@code bucket} at {@code endpoint} ({@code null}
+	 * for AWS), or {@link #DEFAULT_REGION} if it cannot be detected.
+	 * Concurrent first calls for the same bucket may each detect the region.
+	 */
+	public static String bucketRegion( final URI endpoint, final String bucket )
+	{
+		final URI url;
+		if ( endpoint != null )
+			url = URI.create( endpoint.toString().replaceFirst( "/$", "" ) + "/" + bucket + "/" );
+		else if ( requiresPathStyle( bucket ) )
+			url = URI.create( "https://s3.amazonaws.com/" + bucket + "/" );
+		else
+			url = URI.create( "https://" + bucket + ".s3.amazonaws.com/" );
+		final String known = REGIONS.get( url.toString() );
+		if ( known != null )
+			return known;
+		// detected outside of the map, which must not block on a request;
+		// failures to connect are not remembered, so that they are retried
+		final String region = detectRegion( url );
+		if ( region == null )
+			return DEFAULT_REGION;
+		final String previous = REGIONS.putIfAbsent( url.toString(), region );
+		return previous != null ? previous : region;
+	}
+
+	/**
+	 * Returns whether requests to {@code bucket} on AWS must be addressed
+	 * path-style, i.e. with the bucket in the path rather than in the host
+	 * name: the TLS certificates of S3 only cover host names with the bucket
+	 * as a single label, so not bucket names containing dots.
+	 */
+	public static boolean requiresPathStyle( final String bucket )
+	{
+		return bucket.indexOf( '.' ) >= 0;
+	}
+
+	/**
+	 * Returns the region reported for {@code url}, {@link #DEFAULT_REGION} if
+	 * none is reported, or {@code null} if the request fails.
+	 */
+	private static String detectRegion( final URI url )
+	{
+		HttpURLConnection connection = null;
+		try
+		{
+			connection = ( HttpURLConnection ) url.toURL().openConnection();
+			connection.setRequestMethod( "HEAD" );
+			connection.setConnectTimeout( TIMEOUT_MILLIS );
+			connection.setReadTimeout( TIMEOUT_MILLIS );
+			// the header is also sent with 301 and 403 responses
+			connection.setInstanceFollowRedirects( false );
+			connection.getResponseCode();
+			final String region = connection.getHeaderField( REGION_HEADER );
+			if ( region == null || region.isEmpty() )
+				return DEFAULT_REGION;
+			logger.debug( "Detected region {} of {}", region, url );
+			return region;
+		}
+		catch ( final IOException | IllegalArgumentException e )
+		{
+			logger.debug( "Cannot detect the region of {}: {}", url, e.getMessage() );
+			return null;
+		}
+		finally
+		{
+			if ( connection != null )
+				connection.disconnect();
+		}
+	}
+}
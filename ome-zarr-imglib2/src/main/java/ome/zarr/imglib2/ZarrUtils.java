@@ -28,13 +28,26 @@
  */
 package ome.zarr.imglib2;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +56,15 @@ import org.slf4j.LoggerFactory;
  * Utility methods for detecting Zarr datasets on the local filesystem and over
  * HTTP. See {@link #isZarr(URI)} for the schemes that can be probed and why
  * others (e.g. {@code s3:}) cannot.
+ * <p>
+ * Results of {@link #isZarr(URI)} are remembered for
+ * {@link #PROBE_TTL_MILLIS}, so that repeated checks of the same location
+ * (e.g. while a file is dragged over Fiji) cost nothing. Probes whose requests
+ * failed, e.g. with a timeout or a server error, are not remembered, so that
+ * the next check asks again.
+ * <p>
+ * Remote locations that cannot be probed, e.g. when offline, are still
+ * identified as Zarr datasets if the {@link MetadataCache} has their metadata.
  */
 public class ZarrUtils
 {
@@ -52,6 +74,35 @@ public class ZarrUtils
 
 	private static final int READ_TIMEOUT_MILLIS = 5_000;
 
+	/** How long a probe result is reused. */
+	static final long PROBE_TTL_MILLIS = 10_000;
+
+	/** Metadata documents larger than this are probed but not kept. */
+	private static final int MAX_DOCUMENT_BYTES = 1 << 20;
+
+	/**
+	 * How long the Zarr v3 probe may take before the Zarr v2 documents are
+	 * requested too, see {@link #isZarrUrl(URI, Probe)}.
+	 */
+	static final long V2_PROBE_DELAY_MILLIS = 1_000;
+
+	/**
+	 * Unread response bodies up to this size are read to the end, so that
+	 * their connection can be reused, larger ones are disconnected.
+	 */
+	private static final int MAX_DRAINED_BYTES = 64 << 10;
+
+	/** Recent probe results by location, expired ones are dropped by {@link #isZarr(URI)}. */
+	private static final Map< URI, Probe > PROBES = new ConcurrentHashMap<>();
+
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	private static final ExecutorService PROBERS = Executors.newCachedThreadPool( runnable -> {
+		final Thread thread = new Thread( runnable, "ome-zarr-probe-" + THREAD_COUNT.incrementAndGet() );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
 	/**
 	 * Well-known Zarr metadata file names. The presence of any one of these at a
 	 * location is sufficient to identify it as a Zarr dataset root.
@@ -59,6 +110,21 @@ public class ZarrUtils
 	 */
 	static final String[] METADATA_FILES = { "zarr.json", ".zgroup", ".zarray", ".zattrs" };
 
+	private static volatile MetadataCache metadataCache = uri -> false;
+
+	/**
+	 * Knows the remote datasets whose metadata are available without network,
+	 * e.g. in a cache on disk.
+	 */
+	public interface MetadataCache
+	{
+		/**
+		 * @return {@code true} if the root metadata of the dataset at
+		 *         {@code uri} are available without network
+		 */
+		boolean hasMetadata( URI uri );
+	}
+
 	private ZarrUtils()
 	{
 		// prevent instantiation
@@ -94,9 +160,16 @@ public class ZarrUtils
 	 * <ul>
 	 *   <li>{@code file:} or no scheme – checks for well-known Zarr metadata
 	 *       files on the local filesystem</li>
-	 *   <li>{@code http:} / {@code https:} – sends HTTP HEAD requests for
+	 *   <li>{@code http:} / {@code https:} – sends HTTP GET requests for
 	 *       well-known Zarr metadata files</li>
 	 * </ul>
+	 * For HTTP, {@code zarr.json} is requested first, which identifies a Zarr v3
+	 * dataset with a single request. Only if it is missing, or takes longer than
+	 * {@link #V2_PROBE_DELAY_MILLIS}, are the Zarr v2 documents requested, all
+	 * at once, and the first positive answer wins. Connections are kept alive
+	 * and reused by subsequent requests to the same server. The fetched
+	 * documents are kept, see {@link #prefetchedMetadata(URI)}.
+	 * <p>
 	 * Other schemes (e.g. {@code s3:}) always return {@code false}.<br>
 	 * They are not probed because doing so cheaply is not possible: it would require
 	 * creating an (authenticated), scheme-specific client (such as an S3 client)
@@ -109,12 +182,63 @@ public class ZarrUtils
 	 * @param uri location to probe; may be {@code null}
 	 * @return {@code true} if the URI points at the root of a Zarr dataset,
 	 *         {@code false} for unsupported schemes, {@code null}, or any error
-	 *         during probing
+	 *         during probing unless the {@link MetadataCache} has the dataset
 	 */
 	public static boolean isZarr( final URI uri )
 	{
 		if ( uri == null )
 			return false;
+		final long now = System.currentTimeMillis();
+		final Probe cached = PROBES.get( uri );
+		if ( cached != null && now < cached.expires )
+			return cached.isZarr;
+		final Probe probe = new Probe( now + PROBE_TTL_MILLIS );
+		probe.isZarr = probe( uri, probe );
+		if ( !probe.isZarr && probe.failed && metadataCache.hasMetadata( uri ) )
+		{
+			logger.debug( "Cannot probe {}, using its cached metadata", uri );
+			probe.isZarr = true;
+		}
+		PROBES.values().removeIf( expired -> now >= expired.expires );
+		if ( probe.isZarr || !probe.failed )
+			PROBES.put( uri, probe );
+		return probe.isZarr;
+	}
+
+	/**
+	 * Returns the metadata documents fetched by a recent {@link #isZarr(URI)}
+	 * of {@code uri}, to be handed to
+	 * {@link PyramidBackend#load(URI, LoadMonitor, PrefetchedMetadata)}.
+	 * Does not send any requests: without a recent probe, or for local
+	 * files, the result is {@linkplain PrefetchedMetadata#none() empty}.
+	 */
+	public static PrefetchedMetadata prefetchedMetadata( final URI uri )
+	{
+		final Probe probe = uri != null ? PROBES.get( uri ) : null;
+		if ( probe == null || System.currentTimeMillis() >= probe.expires || !probe.isZarr )
+			return PrefetchedMetadata.none();
+		return new PrefetchedMetadata( probe.documents, probe.missing, probe.validators );
+	}
+
+	/**
+	 * Sets the cache consulted when probing a remote location fails, or
+	 * {@code null} for none.
+	 */
+	public static void setMetadataCache( final MetadataCache cache )
+	{
+		metadataCache = cache != null ? cache : uri -> false;
+	}
+
+	/**
+	 * Forgets all remembered probe results, e.g. after a dataset was written.
+	 */
+	public static void clearProbeCache()
+	{
+		PROBES.clear();
+	}
+
+	private static boolean probe( final URI uri, final Probe probe )
+	{
 		final String scheme = uri.getScheme();
 		if ( scheme == null || "file".equalsIgnoreCase( scheme ) )
 		{
@@ -128,19 +252,55 @@ public class ZarrUtils
 			}
 		}
 		if ( "http".equalsIgnoreCase( scheme ) || "https".equalsIgnoreCase( scheme ) )
-			return isZarrUrl( uri );
+			return isZarrUrl( uri, probe );
 		return false;
 	}
 
-	private static boolean isZarrUrl( final URI baseUri )
+	/**
+	 * Probes {@code zarr.json} and then, unless it identified the dataset, the
+	 * Zarr v2 documents. Requests that are outstanding once the answer is known
+	 * are not canceled: the documents they fetch are handed to the backend
+	 * that opens the dataset.
+	 */
+	private static boolean isZarrUrl( final URI baseUri, final Probe probe )
 	{
 		final URI base = ensureTrailingSlash( baseUri );
-		for ( final String name : METADATA_FILES )
+		final CompletionService< Boolean > probes = new ExecutorCompletionService<>( PROBERS );
+		probes.submit( () -> fetchMetadata( base, METADATA_FILES[ 0 ], probe ) );
+		int outstanding = 1;
+		try
 		{
-			if ( isHttpAccessible( base.resolve( name ) ) )
-				return true;
+			final Future< Boolean > v3 = probes.poll( V2_PROBE_DELAY_MILLIS, TimeUnit.MILLISECONDS );
+			if ( v3 != null )
+			{
+				--outstanding;
+				if ( v3.get() )
+					return true;
+			}
+			// also while a slow zarr.json is outstanding, whose answer still counts
+			for ( int i = 1; i < METADATA_FILES.length; i++ )
+			{
+				final String name = METADATA_FILES[ i ];
+				probes.submit( () -> fetchMetadata( base, name, probe ) );
+				++outstanding;
+			}
+			for ( ; outstanding > 0; --outstanding )
+				if ( probes.take().get() )
+					return true;
+			return false;
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			probe.failed = true;
+			return false;
+		}
+		catch ( ExecutionException e )
+		{
+			logger.debug( "Probing {} failed: {}", base, e.getCause().getMessage() );
+			probe.failed = true;
+			return false;
 		}
-		return false;
 	}
 
 	private static URI ensureTrailingSlash( final URI uri )
@@ -149,31 +309,143 @@ public class ZarrUtils
 		return s.endsWith( "/" ) ? uri : URI.create( s + "/" );
 	}
 
-	private static boolean isHttpAccessible( final URI uri )
+	/**
+	 * Fetches the metadata document {@code name} below {@code base} into
+	 * {@code probe} and returns whether it exists. HTML pages, e.g. served by
+	 * single-page applications for any path, do not count.
+	 */
+	private static boolean fetchMetadata( final URI base, final String name, final Probe probe )
 	{
-		HttpURLConnection conn = null;
+		final URI uri = base.resolve( name );
+		// the connection is only disconnect()ed if its body is too large to
+		// read, since that closes it instead of returning it to the
+		// keep-alive cache for the next request
 		try
 		{
-			conn = ( HttpURLConnection ) uri.toURL().openConnection();
-			conn.setRequestMethod( "HEAD" );
+			final HttpURLConnection conn = ( HttpURLConnection ) uri.toURL().openConnection();
 			conn.setConnectTimeout( CONNECT_TIMEOUT_MILLIS );
 			conn.setReadTimeout( READ_TIMEOUT_MILLIS );
 			conn.setInstanceFollowRedirects( true );
 			final int code = conn.getResponseCode();
 			if ( code < 200 || code >= 300 )
+			{
+				if ( code == HttpURLConnection.HTTP_NOT_FOUND )
+					probe.missing.add( name );
+				else
+					probe.failed = true;
+				discard( conn, conn.getErrorStream() );
 				return false;
+			}
 			final String contentType = conn.getHeaderField( "Content-Type" );
-			return contentType == null || !contentType.toLowerCase().startsWith( "text/html" );
+			final InputStream in = conn.getInputStream();
+			if ( contentType != null && contentType.toLowerCase().startsWith( "text/html" ) )
+			{
+				discard( conn, in );
+				return false;
+			}
+			// documents too large to keep still identify the dataset
+			if ( conn.getContentLengthLong() > MAX_DOCUMENT_BYTES )
+			{
+				discard( conn, in );
+				return true;
+			}
+			try ( InputStream body = in )
+			{
+				final byte[] document = readAtMost( body, MAX_DOCUMENT_BYTES );
+				if ( document == null )
+					conn.disconnect();
+				else
+				{
+					probe.documents.put( name, document );
+					final String etag = conn.getHeaderField( "ETag" );
+					final String validator = etag != null ? etag : conn.getHeaderField( "Last-Modified" );
+					if ( validator != null )
+						probe.validators.put( name, validator );
+				}
+				return true;
+			}
 		}
 		catch ( IOException e )
 		{
-			logger.debug( "HEAD request failed for {}: {}", uri, e.getMessage() );
+			logger.debug( "GET request failed for {}: {}", uri, e.getMessage() );
+			probe.failed = true;
 			return false;
 		}
-		finally
+	}
+
+	/**
+	 * Reads {@code in} to the end, or returns {@code null} as soon as it holds
+	 * more than {@code limit} bytes, leaving the rest unread.
+	 */
+	private static byte[] readAtMost( final InputStream in, final int limit ) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[ 8192 ];
+		for ( int n; ( n = in.read( buffer ) ) >= 0; )
+		{
+			out.write( buffer, 0, n );
+			if ( out.size() > limit )
+				return null;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads and closes the unused body {@code in} of {@code conn}, so that the
+	 * connection returns to the keep-alive cache, or disconnects it if the body
+	 * is larger than {@link #MAX_DRAINED_BYTES}. Closing an unread body would
+	 * leave the connection unusable without closing it right away.
+	 */
+	private static void discard( final HttpURLConnection conn, final InputStream in )
+	{
+		if ( in == null )
+			return;
+		if ( conn.getContentLengthLong() > MAX_DRAINED_BYTES )
+		{
+			conn.disconnect();
+			return;
+		}
+		try ( InputStream body = in )
+		{
+			final byte[] buffer = new byte[ 8192 ];
+			long drained = 0;
+			for ( int n; ( n = body.read( buffer ) ) >= 0; )
+			{
+				drained += n;
+				if ( drained > MAX_DRAINED_BYTES )
+				{
+					conn.disconnect();
+					return;
+				}
+			}
+		}
+		catch ( IOException e )
+		{
+			conn.disconnect();
+		}
+	}
+
+	private static final class Probe
+	{
+		final long expires;
+
+		volatile boolean isZarr;
+
+		/** Whether a request failed, so that a negative result is not conclusive. */
+		volatile boolean failed;
+
+		/** Content of the fetched metadata documents, by name. */
+		final Map< String, byte[] > documents = new ConcurrentHashMap<>();
+
+		/** Names of the metadata documents known not to exist. */
+		final Set< String > missing = ConcurrentHashMap.newKeySet();
+
+		/** ETag or Last-Modified date of the fetched documents, by name. */
+		final Map< String, String > validators = new ConcurrentHashMap<>();
+
+		Probe( final long expires )
 		{
-			if ( conn != null )
-				conn.disconnect();
+			this.expires = expires;
 		}
 	}
 }
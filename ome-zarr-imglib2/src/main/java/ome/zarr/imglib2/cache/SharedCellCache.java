@@ -0,0 +1,601 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.cache.volatiles.CreateInvalid;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.util.Cast;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * A process-wide cache for the cells of all open pyramids, bounded by a
+ * budget in bytes.
+ *
+ * <p>Each level of each pyramid gets its own {@link LoaderCache} view via
+ * {@link #levelCache(String)}, but all views share one least-recently-used
+ * order and one budget. When the cells held exceed the budget, the least
+ * recently used ones are dropped, whichever pyramid they belong to. Cells that
+ * are still referenced elsewhere, e.g. by a cursor, are simply no longer
+ * retained by the cache.
+ *
+ * <p>Memory use is accounted from the primitive storage of each cell, plus
+ * {@link #ENTRY_OVERHEAD_BYTES} for the cell object and its bookkeeping. The
+ * storage shared by cells through {@link UniformCells} is not counted, so
+ * such cells only count their overhead, which still bounds their number.
+ *
+ * <p>Cells are looked up without locking. Hits are only recorded and applied
+ * to the least-recently-used order in batches, by the next load or once
+ * {@link #MAX_PENDING_HITS} have accumulated, so that threads reading cached
+ * cells do not contend for the cache.
+ *
+ * <p>The loads of a dataset that is no longer displayed can be
+ * {@linkplain #cancel(String) canceled}, which also drops its cells. Level
+ * caches given a way to create invalid cells then answer with those, so that
+ * loads queued by a volatile image are dropped without failing, and the
+ * {@link Cancelable}s of the dataset, such as its store reads, abort the
+ * requests they have in flight.
+ *
+ * <p>The hits, misses, loads and evictions of each level are recorded to its
+ * {@link LevelMetrics}.
+ */
+public final class SharedCellCache
+{
+	/**
+	 * Fraction of the maximum heap size used as budget by default. The cells
+	 * are held strongly, so the budget leaves most of the heap to the images,
+	 * views and plugins that share it.
+	 */
+	public static final double DEFAULT_HEAP_FRACTION = 0.25;
+
+	/**
+	 * Bytes accounted per cell besides its storage: the {@link Cell} with its
+	 * dimensions and offset, the access wrapping the storage, and the key,
+	 * entry, future and map nodes holding it in this cache.
+	 */
+	public static final long ENTRY_OVERHEAD_BYTES = 256;
+
+	/** Number of hits recorded before the thread recording one applies them. */
+	static final int MAX_PENDING_HITS = 1024;
+
+	private static final SharedCellCache INSTANCE = new SharedCellCache( defaultMaxBytes() );
+
+	/** Cached cells, including those being loaded. */
+	private final ConcurrentHashMap< Key, Entry > entries = new ConcurrentHashMap<>();
+
+	/** Loaded cells in access order, as of the last {@link #applyHits()}. Guarded by {@code this}. */
+	private final LinkedHashMap< Key, Entry > accessOrder = new LinkedHashMap<>( 1024, 0.75f, true );
+
+	/** Cells hit since the last {@link #applyHits()}, in order. */
+	private final ConcurrentLinkedQueue< Entry > pendingHits = new ConcurrentLinkedQueue<>();
+
+	private final AtomicInteger pendingHitCount = new AtomicInteger();
+
+	/** Whether a thread recording a hit is applying the pending hits. */
+	private final AtomicBoolean applyingHits = new AtomicBoolean();
+
+	/** Bytes held per dataset. Guarded by {@code this}. */
+	private final Map< String, Long > datasetBytes = new TreeMap<>();
+
+	/** Guarded by {@code this}. */
+	private long maxBytes;
+
+	/** Guarded by {@code this}. */
+	private long usedBytes = 0;
+
+	/** All level caches created so far, for canceling their loads. Guarded by {@code this}. */
+	private final Set< LevelCache< ? > > levelCaches = Collections.newSetFromMap( new WeakHashMap<>() );
+
+	/** Datasets of the {@link Cancelable}s added so far. Guarded by {@code this}. */
+	private final Map< Cancelable, String > cancelables = new WeakHashMap<>();
+
+	private final LoadMetrics metrics;
+
+	/**
+	 * Creates a cache that is independent of the process-wide instance, e.g.
+	 * for tests. Use {@link #getInstance()} otherwise.
+	 */
+	public SharedCellCache( final long maxBytes )
+	{
+		this( maxBytes, LoadMetrics.getInstance() );
+	}
+
+	/**
+	 * Creates a cache that is independent of the process-wide instance and
+	 * records to {@code metrics}, e.g. for tests.
+	 */
+	public SharedCellCache( final long maxBytes, final LoadMetrics metrics )
+	{
+		this.maxBytes = maxBytes;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * The cache shared by all pyramids of this process.
+	 */
+	public static SharedCellCache getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * The default budget, {@link #DEFAULT_HEAP_FRACTION} of the maximum heap size.
+	 */
+	public static long defaultMaxBytes()
+	{
+		return ( long ) ( Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION );
+	}
+
+	/**
+	 * Creates the cache for one level of a pyramid. Its memory use is
+	 * accounted to {@code dataset}, typically the URI of the pyramid, and its
+	 * metrics are recorded as level {@code 0}.
+	 */
+	public < A extends ArrayDataAccess< A > > LoaderCache< Long, Cell< A > > levelCache( final String dataset )
+	{
+		return levelCache( dataset, 0 );
+	}
+
+	/**
+	 * Creates the cache for resolution level {@code level} of a pyramid. Its
+	 * memory use is accounted to {@code dataset}, typically the URI of the
+	 * pyramid, and its hits and misses are recorded to the
+	 * {@link LoadMetrics#level(String, int) metrics} of the level.
+	 */
+	public < A extends ArrayDataAccess< A > > LoaderCache< Long, Cell< A > > levelCache( final String dataset, final int level )
+	{
+		return levelCache( dataset, level, null );
+	}
+
+	/**
+	 * Like {@link #levelCache(String, int)}, but while the loads of
+	 * {@code dataset} are {@linkplain #cancel(String) canceled}, cells that
+	 * are not cached are answered with invalid cells created by
+	 * {@code invalid}, which are not retained, rather than with a
+	 * {@link CancellationException}.
+	 *
+	 * @param invalid creates the invalid cell of an index, or {@code null}
+	 */
+	public synchronized < A extends ArrayDataAccess< A > > LoaderCache< Long, Cell< A > > levelCache( final String dataset, final int level,
+			final CreateInvalid< Long, ? extends Cell< A > > invalid )
+	{
+		final LevelCache< A > cache = new LevelCache<>( dataset, metrics.level( dataset, level ), invalid );
+		levelCaches.add( cache );
+		return cache;
+	}
+
+	/**
+	 * Loads of a dataset that are not made through its level caches, e.g. the
+	 * requests of its store, which can be canceled along with them.
+	 */
+	public interface Cancelable
+	{
+		/** Aborts what is in flight and stops starting new loads. */
+		void cancel();
+
+		/** Starts loading again after {@link #cancel()}. */
+		void resume();
+	}
+
+	/**
+	 * Cancels and resumes {@code cancelable} along with the loads of
+	 * {@code dataset}. It is only held weakly.
+	 */
+	public synchronized void addCancelable( final String dataset, final Cancelable cancelable )
+	{
+		cancelables.put( cancelable, dataset );
+	}
+
+	/**
+	 * Cancels the loads of the level caches created so far for
+	 * {@code dataset} and drops their cells, e.g. once the dataset is no longer
+	 * displayed. Loads not started yet are answered with invalid cells if the
+	 * level cache can create them, and fail with a
+	 * {@link CancellationException} otherwise. Loads in progress complete, but
+	 * their cells are not retained, and are replaced by invalid cells too; the
+	 * {@link Cancelable}s of {@code dataset} abort their requests in flight.
+	 * Level caches created later for the same dataset, e.g. when it is opened
+	 * again, are not affected.
+	 */
+	public void cancel( final String dataset )
+	{
+		final List< Cancelable > canceled = new ArrayList<>();
+		synchronized ( this )
+		{
+			for ( final LevelCache< ? > cache : levelCaches )
+				if ( dataset.equals( cache.dataset ) )
+					cache.canceled = true;
+			removeIf( key -> key.owner.canceled );
+			cancelables.forEach( ( cancelable, d ) -> {
+				if ( dataset.equals( d ) )
+					canceled.add( cancelable );
+			} );
+		}
+		// outside the lock, as aborting a request may take a while
+		canceled.forEach( Cancelable::cancel );
+	}
+
+	/**
+	 * Lets the level caches of {@code dataset} load cells again after
+	 * {@link #cancel(String)}.
+	 */
+	public synchronized void resume( final String dataset )
+	{
+		for ( final LevelCache< ? > cache : levelCaches )
+			if ( dataset.equals( cache.dataset ) )
+				cache.canceled = false;
+		cancelables.forEach( ( cancelable, d ) -> {
+			if ( dataset.equals( d ) )
+				cancelable.resume();
+		} );
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the budget and drops least recently used cells until it is met.
+	 */
+	public synchronized void setMaxBytes( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	/** Bytes currently held by the cache. */
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+
+	/** Bytes currently held by the cache, per dataset. */
+	public synchronized Map< String, Long > getUsedBytesPerDataset()
+	{
+		return new TreeMap<>( datasetBytes );
+	}
+
+	/**
+	 * Bytes of primitive storage held by {@code cell}, without the
+	 * {@link #ENTRY_OVERHEAD_BYTES}.
+	 */
+	static long sizeOf( final Cell< ? > cell )
+	{
+		final Object data = cell.getData();
+		if ( !( data instanceof ArrayDataAccess ) || UniformCells.isUniform( data ) )
+			return 0;
+		final ArrayDataAccess< ? > access = ( ArrayDataAccess< ? > ) data;
+		final Object storage = access.getCurrentStorageArray();
+		final long length = access.getArrayLength();
+		if ( storage instanceof byte[] || storage instanceof boolean[] )
+			return length;
+		if ( storage instanceof short[] || storage instanceof char[] )
+			return 2 * length;
+		if ( storage instanceof int[] || storage instanceof float[] )
+			return 4 * length;
+		return 8 * length;
+	}
+
+	/**
+	 * Records a hit of {@code entry}, and applies the pending hits if there
+	 * are many and no other thread does so already.
+	 */
+	private void hit( final Entry entry )
+	{
+		pendingHits.offer( entry );
+		if ( pendingHitCount.incrementAndGet() >= MAX_PENDING_HITS && applyingHits.compareAndSet( false, true ) )
+		{
+			try
+			{
+				synchronized ( this )
+				{
+					applyHits();
+				}
+			}
+			finally
+			{
+				applyingHits.set( false );
+			}
+		}
+	}
+
+	/**
+	 * Moves the cells hit since the last call to the end of the access order.
+	 * Guarded by {@code this}.
+	 */
+	private void applyHits()
+	{
+		for ( Entry entry; ( entry = pendingHits.poll() ) != null; )
+		{
+			pendingHitCount.decrementAndGet();
+			// a no-op for cells evicted or still being loaded
+			accessOrder.get( entry.key );
+		}
+	}
+
+	private synchronized void loaded( final Entry entry, final long bytes )
+	{
+		final Key key = entry.key;
+		// canceled after the entry was checked in, or in the meantime
+		if ( key.owner.canceled )
+			entries.remove( key, entry );
+		if ( entries.get( key ) != entry )
+			return;
+		// in order, so that cells hit before this load count as used before it
+		applyHits();
+		entry.bytes = bytes;
+		accessOrder.put( key, entry );
+		account( key.owner.dataset, bytes );
+		evict();
+	}
+
+	private synchronized void remove( final Entry entry )
+	{
+		if ( entries.remove( entry.key, entry ) && accessOrder.remove( entry.key, entry ) )
+			account( entry.key.owner.dataset, -entry.bytes );
+	}
+
+	private synchronized void removeIf( final Predicate< Key > condition )
+	{
+		for ( final Entry entry : entries.values() )
+			if ( condition.test( entry.key ) )
+				remove( entry );
+	}
+
+	/** Guarded by {@code this}. */
+	private void evict()
+	{
+		applyHits();
+		final Iterator< Entry > it = accessOrder.values().iterator();
+		while ( usedBytes > maxBytes && it.hasNext() )
+		{
+			final Entry entry = it.next();
+			it.remove();
+			entries.remove( entry.key, entry );
+			account( entry.key.owner.dataset, -entry.bytes );
+			entry.key.owner.metrics.evicted();
+		}
+	}
+
+	/** Guarded by {@code this}. */
+	private void account( final String dataset, final long bytes )
+	{
+		usedBytes += bytes;
+		final long total = datasetBytes.getOrDefault( dataset, 0L ) + bytes;
+		if ( total == 0 )
+			datasetBytes.remove( dataset );
+		else
+			datasetBytes.put( dataset, total );
+	}
+
+	private static final class Key
+	{
+		private final LevelCache< ? > owner;
+
+		private final long index;
+
+		Key( final LevelCache< ? > owner, final long index )
+		{
+			this.owner = owner;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Key ) )
+				return false;
+			final Key other = ( Key ) o;
+			return owner == other.owner && index == other.index;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * System.identityHashCode( owner ) + Long.hashCode( index );
+		}
+	}
+
+	private static final class Entry
+	{
+		final Key key;
+
+		final CompletableFuture< Cell< ? > > cell = new CompletableFuture<>();
+
+		/** Guarded by the enclosing cache. */
+		long bytes = 0;
+
+		Entry( final Key key )
+		{
+			this.key = key;
+		}
+	}
+
+	private final class LevelCache< A extends ArrayDataAccess< A > > implements LoaderCache< Long, Cell< A > >
+	{
+		private final String dataset;
+
+		private final LevelMetrics metrics;
+
+		/** Creates the cells answered while canceled, or {@code null} to fail instead. */
+		private final CreateInvalid< Long, ? extends Cell< A > > invalid;
+
+		/** Set by {@link SharedCellCache#cancel(String)}. */
+		private volatile boolean canceled = false;
+
+		LevelCache( final String dataset, final LevelMetrics metrics, final CreateInvalid< Long, ? extends Cell< A > > invalid )
+		{
+			this.dataset = dataset;
+			this.metrics = metrics;
+			this.invalid = invalid;
+		}
+
+		@Override
+		public Cell< A > getIfPresent( final Long index )
+		{
+			final Entry entry = entries.get( new Key( this, index ) );
+			if ( entry == null || !entry.cell.isDone() || entry.cell.isCompletedExceptionally() )
+				return null;
+			hit( entry );
+			metrics.hit();
+			return Cast.unchecked( entry.cell.join() );
+		}
+
+		@Override
+		public Cell< A > get( final Long index, final CacheLoader< ? super Long, ? extends Cell< A > > loader ) throws ExecutionException
+		{
+			final Key key = new Key( this, index );
+			Entry entry = entries.get( key );
+			final boolean load;
+			if ( entry != null )
+				load = false;
+			else
+			{
+				if ( canceled )
+					return invalid( index );
+				final Entry created = new Entry( key );
+				entry = entries.putIfAbsent( key, created );
+				load = entry == null;
+				if ( load )
+					entry = created;
+			}
+
+			if ( !load )
+			{
+				hit( entry );
+				metrics.hit();
+			}
+			else
+			{
+				metrics.missed();
+				try
+				{
+					final long start = System.nanoTime();
+					final Cell< A > cell = loader.get( index );
+					final long bytes = sizeOf( cell );
+					metrics.loaded( bytes, System.nanoTime() - start );
+					if ( canceled && invalid != null )
+					{
+						// the reads of the cell may have been aborted
+						remove( entry );
+						entry.cell.complete( invalid.createInvalid( index ) );
+					}
+					else
+					{
+						entry.cell.complete( cell );
+						loaded( entry, ENTRY_OVERHEAD_BYTES + bytes );
+					}
+				}
+				catch ( final Exception | Error e )
+				{
+					remove( entry );
+					entry.cell.completeExceptionally( e );
+				}
+			}
+
+			try
+			{
+				return Cast.unchecked( entry.cell.get() );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				throw new ExecutionException( e );
+			}
+		}
+
+		/**
+		 * The invalid cell answered for {@code index} while canceled.
+		 *
+		 * @throws ExecutionException with a {@link CancellationException} if
+		 *   this cache cannot create invalid cells
+		 */
+		private Cell< A > invalid( final Long index ) throws ExecutionException
+		{
+			if ( invalid == null )
+				throw new ExecutionException( canceled() );
+			try
+			{
+				return invalid.createInvalid( index );
+			}
+			catch ( final Exception e )
+			{
+				throw new ExecutionException( e );
+			}
+		}
+
+		private CancellationException canceled()
+		{
+			return new CancellationException( "Loads of " + dataset + " are canceled" );
+		}
+
+		@Override
+		public void invalidate( final Long index )
+		{
+			final Entry entry = entries.get( new Key( this, index ) );
+			if ( entry != null )
+				remove( entry );
+		}
+
+		@Override
+		public void invalidateIf( final long parallelismThreshold, final Predicate< Long > condition )
+		{
+			removeIf( key -> key.owner == this && condition.test( key.index ) );
+		}
+
+		@Override
+		public void invalidateAll( final long parallelismThreshold )
+		{
+			removeIf( key -> key.owner == this );
+		}
+	}
+}
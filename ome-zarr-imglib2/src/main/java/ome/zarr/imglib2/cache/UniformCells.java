@@ -0,0 +1,490 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileDoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.util.Cast;
+
+/**
+ * Shares the storage of cells whose voxels all have the same value, such as
+ * chunks missing from the store (which decode to the fill value) and chunks
+ * of uniform background.
+ *
+ * <p>All uniform cells with the same access type, size and value use one
+ * shared primitive array, so they cost O(1) memory instead of a full array
+ * each. {@link #isUniform(Object)} recognizes their accesses in constant time,
+ * which lets the {@link SharedCellCache} not count their storage.
+ *
+ * <p>Cells stay writable: each cell gets its own small access around the
+ * shared array, which copies the array on the first write to the cell, so
+ * that writing a voxel of one uniform cell does not change the voxels of the
+ * others. Only the volatile primitive arrays that the backends load cells
+ * into are shared; cells with other accesses are kept as they are.
+ */
+public final class UniformCells
+{
+	private UniformCells()
+	{
+		// utility class
+	}
+
+	/** Shared storage arrays by access type, length and value bits. Guarded by itself. */
+	private static final Map< Key, WeakReference< Object > > sharedStorage = new HashMap<>();
+
+	/** Classes of the accesses that {@link #copyOnWrite(Object)} has a variant of. */
+	private static final Set< Class< ? > > SHAREABLE = new HashSet<>( Arrays.asList(
+			VolatileByteArray.class, VolatileShortArray.class, VolatileIntArray.class,
+			VolatileLongArray.class, VolatileFloatArray.class, VolatileDoubleArray.class ) );
+
+	/**
+	 * Wraps a cell {@link CacheLoader} such that the storage of uniform cells
+	 * is replaced by a shared array.
+	 */
+	public static < A extends ArrayDataAccess< A > > CacheLoader< Long, Cell< A > > sharing( final CacheLoader< Long, Cell< A > > loader )
+	{
+		return key -> {
+			final Cell< A > cell = loader.get( key );
+			final A data = cell.getData();
+			final A sharedData = share( data );
+			if ( sharedData == data )
+				return cell;
+			final int n = cell.numDimensions();
+			final int[] dims = new int[ n ];
+			cell.dimensions( dims );
+			final long[] min = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+				min[ d ] = cell.min( d );
+			return new Cell<>( dims, min, sharedData );
+		};
+	}
+
+	/**
+	 * Returns an access to the shared storage for the contents of
+	 * {@code access} if all its elements are equal, or {@code access} itself
+	 * otherwise.
+	 */
+	public static < A extends ArrayDataAccess< A > > A share( final A access )
+	{
+		if ( !SHAREABLE.contains( access.getClass() ) || !isLoaded( access ) )
+			return access;
+		final Object storage = access.getCurrentStorageArray();
+		if ( !allEqual( storage, access.getArrayLength() ) )
+			return access;
+		return shared( access, bits( storage, 0 ) );
+	}
+
+	/**
+	 * Like {@link #share(ArrayDataAccess)} for an access that is known to be
+	 * uniform, e.g. that of a chunk missing from the store, which holds the
+	 * fill value only: its elements are not compared.
+	 */
+	public static < A extends ArrayDataAccess< A > > A shareUniform( final A access )
+	{
+		if ( !SHAREABLE.contains( access.getClass() ) || !isLoaded( access ) )
+			return access;
+		return shared( access, bits( access.getCurrentStorageArray(), 0 ) );
+	}
+
+	/**
+	 * Whether {@code access} is backed by storage shared by uniform cells,
+	 * i.e. it was returned by {@link #share(ArrayDataAccess)} and not written
+	 * to since.
+	 */
+	public static boolean isUniform( final Object access )
+	{
+		return access instanceof Shared && ( ( Shared ) access ).isShared();
+	}
+
+	private static boolean isLoaded( final ArrayDataAccess< ? > access )
+	{
+		return access.getArrayLength() > 0 && ( !( access instanceof VolatileAccess ) || ( ( VolatileAccess ) access ).isValid() );
+	}
+
+	private static < A extends ArrayDataAccess< A > > A shared( final A access, final long bits )
+	{
+		final Key key = new Key( access.getClass(), access.getArrayLength(), bits );
+		Object storage;
+		synchronized ( sharedStorage )
+		{
+			final WeakReference< Object > ref = sharedStorage.get( key );
+			storage = ref == null ? null : ref.get();
+			if ( storage == null )
+			{
+				if ( ref != null || sharedStorage.size() > 1024 )
+					sharedStorage.values().removeIf( r -> r.get() == null );
+				storage = access.getCurrentStorageArray();
+				sharedStorage.put( key, new WeakReference<>( storage ) );
+			}
+		}
+		return Cast.unchecked( copyOnWrite( storage ) );
+	}
+
+	/**
+	 * A new access backed by {@code storage} until it is written to, of the
+	 * copy-on-write variant of the volatile array of the same primitive type.
+	 */
+	private static Object copyOnWrite( final Object storage )
+	{
+		if ( storage instanceof byte[] )
+			return new SharedByteArray( ( byte[] ) storage );
+		if ( storage instanceof short[] )
+			return new SharedShortArray( ( short[] ) storage );
+		if ( storage instanceof int[] )
+			return new SharedIntArray( ( int[] ) storage );
+		if ( storage instanceof long[] )
+			return new SharedLongArray( ( long[] ) storage );
+		if ( storage instanceof float[] )
+			return new SharedFloatArray( ( float[] ) storage );
+		return new SharedDoubleArray( ( double[] ) storage );
+	}
+
+	/**
+	 * Whether the first {@code length} elements of {@code storage} have the
+	 * same bits.
+	 */
+	private static boolean allEqual( final Object storage, final int length )
+	{
+		if ( storage instanceof byte[] )
+		{
+			final byte[] a = ( byte[] ) storage;
+			for ( int i = 1; i < length; i++ )
+				if ( a[ i ] != a[ 0 ] )
+					return false;
+		}
+		else if ( storage instanceof short[] )
+		{
+			final short[] a = ( short[] ) storage;
+			for ( int i = 1; i < length; i++ )
+				if ( a[ i ] != a[ 0 ] )
+					return false;
+		}
+		else if ( storage instanceof int[] )
+		{
+			final int[] a = ( int[] ) storage;
+			for ( int i = 1; i < length; i++ )
+				if ( a[ i ] != a[ 0 ] )
+					return false;
+		}
+		else if ( storage instanceof long[] )
+		{
+			final long[] a = ( long[] ) storage;
+			for ( int i = 1; i < length; i++ )
+				if ( a[ i ] != a[ 0 ] )
+					return false;
+		}
+		else if ( storage instanceof float[] )
+		{
+			final float[] a = ( float[] ) storage;
+			final int first = Float.floatToRawIntBits( a[ 0 ] );
+			for ( int i = 1; i < length; i++ )
+				if ( Float.floatToRawIntBits( a[ i ] ) != first )
+					return false;
+		}
+		else
+		{
+			final double[] a = ( double[] ) storage;
+			final long first = Double.doubleToRawLongBits( a[ 0 ] );
+			for ( int i = 1; i < length; i++ )
+				if ( Double.doubleToRawLongBits( a[ i ] ) != first )
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The bits of element {@code i} of {@code storage}. Floating-point values
+	 * are compared by their raw bits, so that NaNs are uniform too.
+	 */
+	private static long bits( final Object storage, final int i )
+	{
+		if ( storage instanceof byte[] )
+			return ( ( byte[] ) storage )[ i ];
+		if ( storage instanceof short[] )
+			return ( ( short[] ) storage )[ i ];
+		if ( storage instanceof int[] )
+			return ( ( int[] ) storage )[ i ];
+		if ( storage instanceof long[] )
+			return ( ( long[] ) storage )[ i ];
+		if ( storage instanceof float[] )
+			return Float.floatToRawIntBits( ( ( float[] ) storage )[ i ] );
+		return Double.doubleToRawLongBits( ( ( double[] ) storage )[ i ] );
+	}
+
+	/** Marks the accesses that share the storage of uniform cells until written to. */
+	private interface Shared
+	{
+		/** Whether the storage is still shared, i.e. was not written to. */
+		boolean isShared();
+	}
+
+	private static final class SharedByteArray extends VolatileByteArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedByteArray( final byte[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final byte value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class SharedShortArray extends VolatileShortArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedShortArray( final short[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final short value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class SharedIntArray extends VolatileIntArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedIntArray( final int[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final int value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class SharedLongArray extends VolatileLongArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedLongArray( final long[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final long value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class SharedFloatArray extends VolatileFloatArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedFloatArray( final float[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final float value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class SharedDoubleArray extends VolatileDoubleArray implements Shared
+	{
+		private volatile boolean shared = true;
+
+		SharedDoubleArray( final double[] data )
+		{
+			super( data, true );
+		}
+
+		@Override
+		public boolean isShared()
+		{
+			return shared;
+		}
+
+		@Override
+		public void setValue( final int index, final double value )
+		{
+			if ( shared )
+				copy();
+			super.setValue( index, value );
+		}
+
+		private synchronized void copy()
+		{
+			if ( shared )
+			{
+				data = data.clone();
+				shared = false;
+			}
+		}
+	}
+
+	private static final class Key
+	{
+		private final Class< ? > accessClass;
+
+		private final int length;
+
+		private final long bits;
+
+		Key( final Class< ? > accessClass, final int length, final long bits )
+		{
+			this.accessClass = accessClass;
+			this.length = length;
+			this.bits = bits;
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Key ) )
+				return false;
+			final Key other = ( Key ) o;
+			return accessClass == other.accessClass && length == other.length && bits == other.bits;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Arrays.hashCode( new long[] { accessClass.hashCode(), length, bits } );
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of durations in nanoseconds with power-of-two
+ * buckets: bucket {@code 0} counts durations {@code <= 0}, bucket
+ * {@code i > 0} those in {@code [2^(i-1), 2^i)}. Recording is a few atomic
+ * increments, so it can stay on in hot paths; quantiles are estimated by
+ * interpolating within a bucket, i.e. to within a factor of two at worst.
+ */
+public final class LatencyHistogram
+{
+	/** Number of buckets, enough for any {@code long} duration. */
+	public static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray( BUCKETS );
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	public void record( final long nanos )
+	{
+		counts.incrementAndGet( bucket( nanos ) );
+		totalNanos.add( Math.max( 0, nanos ) );
+	}
+
+	/** Number of recorded durations. */
+	public long count()
+	{
+		long count = 0;
+		for ( int i = 0; i < BUCKETS; i++ )
+			count += counts.get( i );
+		return count;
+	}
+
+	/** Sum of the recorded durations. */
+	public long totalNanos()
+	{
+		return totalNanos.sum();
+	}
+
+	/** Copy of the bucket counts, e.g. to compute quantiles over an interval. */
+	public long[] counts()
+	{
+		final long[] copy = new long[ BUCKETS ];
+		for ( int i = 0; i < BUCKETS; i++ )
+			copy[ i ] = counts.get( i );
+		return copy;
+	}
+
+	void reset()
+	{
+		for ( int i = 0; i < BUCKETS; i++ )
+			counts.set( i, 0 );
+		totalNanos.reset();
+	}
+
+	static int bucket( final long nanos )
+	{
+		return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros( nanos );
+	}
+
+	/**
+	 * Estimates the {@code q}-quantile, {@code 0 <= q <= 1}, of the durations
+	 * counted by {@code counts}, e.g. {@code 0.5} for the median.
+	 *
+	 * @return the estimate in nanoseconds, or {@code NaN} if nothing was counted
+	 */
+	public static double quantileNanos( final long[] counts, final double q )
+	{
+		long total = 0;
+		for ( final long count : counts )
+			total += count;
+		if ( total == 0 )
+			return Double.NaN;
+		final double rank = Math.min( 1, Math.max( 0, q ) ) * total;
+		long below = 0;
+		for ( int i = 0; i < counts.length; i++ )
+		{
+			if ( counts[ i ] == 0 || below + counts[ i ] < rank )
+			{
+				below += counts[ i ];
+				continue;
+			}
+			if ( i == 0 )
+				return 0;
+			final double lower = Math.scalb( 1.0, i - 1 );
+			return lower + lower * ( rank - below ) / counts[ i ];
+		}
+		return Math.scalb( 1.0, counts.length - 1 );
+	}
+}
@@ -0,0 +1,325 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the cell loads of one resolution level
+ * of one dataset, obtained from {@link LoadMetrics#level(String, int)}:
+ * <ul>
+ *   <li>requests to the store, the bytes they returned and their latency,
+ *       recorded by the backends that can tell them apart from decoding</li>
+ *   <li>decode time per cell, recorded by the same backends</li>
+ *   <li>reads of shard indices of sharded arrays answered from memory (hits)
+ *       or from the store (misses), recorded by the backends that cache
+ *       them</li>
+ *   <li>cells loaded, their decoded bytes and the time to load each, from the
+ *       request of the cell to its decoded data</li>
+ *   <li>hits and misses of the {@link ome.zarr.imglib2.cache.SharedCellCache},
+ *       and the cells it evicted to stay within its budget</li>
+ * </ul>
+ * Nothing is recorded while the {@link LoadMetrics} are disabled.
+ */
+public final class LevelMetrics
+{
+	/**
+	 * The {@link #level} of the requests of a dataset that belong to no
+	 * resolution level, e.g. for its metadata.
+	 */
+	public static final int NO_LEVEL = -1;
+
+	/** The dataset, as passed to the {@link ome.zarr.imglib2.cache.SharedCellCache}, typically its URI. */
+	public final String dataset;
+
+	/** Index of the resolution level, or {@link #NO_LEVEL}. */
+	public final int level;
+
+	private final LoadMetrics owner;
+
+	private final LongAdder requests = new LongAdder();
+
+	private final LongAdder bytesFetched = new LongAdder();
+
+	private final LongAdder cellsLoaded = new LongAdder();
+
+	private final LongAdder bytesLoaded = new LongAdder();
+
+	private final LongAdder cacheHits = new LongAdder();
+
+	private final LongAdder cacheMisses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	private final LongAdder shardIndexHits = new LongAdder();
+
+	private final LongAdder shardIndexMisses = new LongAdder();
+
+	private final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+	private final LatencyHistogram decodeTime = new LatencyHistogram();
+
+	private final LatencyHistogram loadTime = new LatencyHistogram();
+
+	LevelMetrics( final LoadMetrics owner, final String dataset, final int level )
+	{
+		this.owner = owner;
+		this.dataset = dataset;
+		this.level = level;
+	}
+
+	/**
+	 * Records a request to the store that returned {@code bytes} (0 if the key
+	 * does not exist) after {@code nanos}.
+	 */
+	public void fetched( final long bytes, final long nanos )
+	{
+		if ( !owner.isEnabled() )
+			return;
+		requests.increment();
+		bytesFetched.add( bytes );
+		fetchLatency.record( nanos );
+	}
+
+	/** Records the time spent decoding one cell. */
+	public void decoded( final long nanos )
+	{
+		if ( owner.isEnabled() )
+			decodeTime.record( nanos );
+	}
+
+	/**
+	 * Records a loaded cell of {@code bytes} decoded bytes, which took
+	 * {@code nanos} to fetch and decode.
+	 */
+	public void loaded( final long bytes, final long nanos )
+	{
+		if ( !owner.isEnabled() )
+			return;
+		cellsLoaded.increment();
+		bytesLoaded.add( bytes );
+		loadTime.record( nanos );
+	}
+
+	/** Records a cell found in the cache. */
+	public void hit()
+	{
+		if ( owner.isEnabled() )
+			cacheHits.increment();
+	}
+
+	/** Records a cell missing from the cache, which is then loaded. */
+	public void missed()
+	{
+		if ( owner.isEnabled() )
+			cacheMisses.increment();
+	}
+
+	/** Records a cell dropped from the cache to stay within its budget. */
+	public void evicted()
+	{
+		if ( owner.isEnabled() )
+			evictions.increment();
+	}
+
+	/** Records a shard index read answered from memory. */
+	public void shardIndexHit()
+	{
+		if ( owner.isEnabled() )
+			shardIndexHits.increment();
+	}
+
+	/** Records a shard index read that went to the store. */
+	public void shardIndexMissed()
+	{
+		if ( owner.isEnabled() )
+			shardIndexMisses.increment();
+	}
+
+	/** The current totals. */
+	public Snapshot snapshot()
+	{
+		return new Snapshot( dataset, level, requests.sum(), bytesFetched.sum(), cellsLoaded.sum(), bytesLoaded.sum(),
+				cacheHits.sum(), cacheMisses.sum(), evictions.sum(), shardIndexHits.sum(), shardIndexMisses.sum(),
+				fetchLatency.counts(), decodeTime.counts(), loadTime.counts() );
+	}
+
+	void reset()
+	{
+		requests.reset();
+		bytesFetched.reset();
+		cellsLoaded.reset();
+		bytesLoaded.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+		evictions.reset();
+		shardIndexHits.reset();
+		shardIndexMisses.reset();
+		fetchLatency.reset();
+		decodeTime.reset();
+		loadTime.reset();
+	}
+
+	@Override
+	public String toString()
+	{
+		return dataset + ( level == NO_LEVEL ? "" : " level " + level );
+	}
+
+	/**
+	 * The totals of a {@link LevelMetrics} at one point in time. The
+	 * difference of two snapshots, see {@link #minus(Snapshot)}, holds what
+	 * was recorded in between, e.g. to compute rates.
+	 */
+	public static final class Snapshot
+	{
+		public final String dataset;
+
+		public final int level;
+
+		public final long requests;
+
+		public final long bytesFetched;
+
+		public final long cellsLoaded;
+
+		/** Decoded bytes of the loaded cells. */
+		public final long bytesLoaded;
+
+		public final long cacheHits;
+
+		public final long cacheMisses;
+
+		public final long evictions;
+
+		public final long shardIndexHits;
+
+		public final long shardIndexMisses;
+
+		private final long[] fetchLatency;
+
+		private final long[] decodeTime;
+
+		private final long[] loadTime;
+
+		Snapshot( final String dataset, final int level, final long requests, final long bytesFetched,
+				final long cellsLoaded, final long bytesLoaded, final long cacheHits, final long cacheMisses,
+				final long evictions, final long shardIndexHits, final long shardIndexMisses,
+				final long[] fetchLatency, final long[] decodeTime, final long[] loadTime )
+		{
+			this.dataset = dataset;
+			this.level = level;
+			this.requests = requests;
+			this.bytesFetched = bytesFetched;
+			this.cellsLoaded = cellsLoaded;
+			this.bytesLoaded = bytesLoaded;
+			this.cacheHits = cacheHits;
+			this.cacheMisses = cacheMisses;
+			this.evictions = evictions;
+			this.shardIndexHits = shardIndexHits;
+			this.shardIndexMisses = shardIndexMisses;
+			this.fetchLatency = fetchLatency;
+			this.decodeTime = decodeTime;
+			this.loadTime = loadTime;
+		}
+
+		/** What was recorded since {@code before}, a snapshot of the same metrics. */
+		public Snapshot minus( final Snapshot before )
+		{
+			return new Snapshot( dataset, level, requests - before.requests, bytesFetched - before.bytesFetched,
+					cellsLoaded - before.cellsLoaded, bytesLoaded - before.bytesLoaded, cacheHits - before.cacheHits,
+					cacheMisses - before.cacheMisses, evictions - before.evictions,
+					shardIndexHits - before.shardIndexHits, shardIndexMisses - before.shardIndexMisses,
+					subtract( fetchLatency, before.fetchLatency ), subtract( decodeTime, before.decodeTime ),
+					subtract( loadTime, before.loadTime ) );
+		}
+
+		/**
+		 * The sum of this and {@code other}, e.g. over all levels of a
+		 * dataset. Keeps the dataset and level of this snapshot.
+		 */
+		public Snapshot plus( final Snapshot other )
+		{
+			return new Snapshot( dataset, level, requests + other.requests, bytesFetched + other.bytesFetched,
+					cellsLoaded + other.cellsLoaded, bytesLoaded + other.bytesLoaded, cacheHits + other.cacheHits,
+					cacheMisses + other.cacheMisses, evictions + other.evictions,
+					shardIndexHits + other.shardIndexHits, shardIndexMisses + other.shardIndexMisses,
+					add( fetchLatency, other.fetchLatency ), add( decodeTime, other.decodeTime ),
+					add( loadTime, other.loadTime ) );
+		}
+
+		/** Fraction of the cache lookups that found their cell, {@code NaN} without lookups. */
+		public double hitRate()
+		{
+			final long lookups = cacheHits + cacheMisses;
+			return lookups == 0 ? Double.NaN : ( double ) cacheHits / lookups;
+		}
+
+		/** Fraction of the shard index reads answered from memory, {@code NaN} without such reads. */
+		public double shardIndexHitRate()
+		{
+			final long reads = shardIndexHits + shardIndexMisses;
+			return reads == 0 ? Double.NaN : ( double ) shardIndexHits / reads;
+		}
+
+		/** Estimated {@code q}-quantile of the request latencies, see {@link LatencyHistogram#quantileNanos}. */
+		public double fetchLatencyNanos( final double q )
+		{
+			return LatencyHistogram.quantileNanos( fetchLatency, q );
+		}
+
+		/** Estimated {@code q}-quantile of the decode times per cell. */
+		public double decodeTimeNanos( final double q )
+		{
+			return LatencyHistogram.quantileNanos( decodeTime, q );
+		}
+
+		/** Estimated {@code q}-quantile of the load times per cell. */
+		public double loadTimeNanos( final double q )
+		{
+			return LatencyHistogram.quantileNanos( loadTime, q );
+		}
+
+		private static long[] subtract( final long[] a, final long[] b )
+		{
+			final long[] difference = new long[ a.length ];
+			for ( int i = 0; i < a.length; i++ )
+				difference[ i ] = a[ i ] - b[ i ];
+			return difference;
+		}
+
+		private static long[] add( final long[] a, final long[] b )
+		{
+			final long[] sum = new long[ a.length ];
+			for ( int i = 0; i < a.length; i++ )
+				sum[ i ] = a[ i ] + b[ i ];
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link LevelMetrics} of all datasets of this process, to tell whether
+ * slow browsing is bound by the network, by decoding or by the cell cache.
+ * <p>
+ * The {@link ome.zarr.imglib2.cache.SharedCellCache} records the cache hits,
+ * misses, evictions and cell loads of every level it holds cells of, whichever
+ * the backend. Backends that read through their own store layer add the
+ * requests, fetched bytes, fetch latency and decode time.
+ * <p>
+ * Recording costs a few uncontended atomic increments per cell, so the
+ * metrics are enabled by default. They can be disabled with the system
+ * property {@value #ENABLED_PROPERTY}{@code =false} or
+ * {@link #setEnabled(boolean)}.
+ */
+public final class LoadMetrics
+{
+	/** System property disabling the metrics if {@code false}. */
+	public static final String ENABLED_PROPERTY = "ome.zarr.metrics";
+
+	private static final LoadMetrics INSTANCE = new LoadMetrics(
+			!"false".equalsIgnoreCase( System.getProperty( ENABLED_PROPERTY, "true" ).trim() ) );
+
+	/** Time spent by each thread reading from stores, see {@link #readNanos()}. */
+	private static final ThreadLocal< long[] > READ_NANOS = ThreadLocal.withInitial( () -> new long[ 1 ] );
+
+	private static final Comparator< LevelMetrics > ORDER = Comparator
+			.< LevelMetrics, String >comparing( metrics -> metrics.dataset )
+			.thenComparingInt( metrics -> metrics.level );
+
+	private final Map< String, Map< Integer, LevelMetrics > > datasets = new ConcurrentHashMap<>();
+
+	private volatile boolean enabled;
+
+	/**
+	 * Creates metrics that are independent of the process-wide instance, e.g.
+	 * for tests. Use {@link #getInstance()} otherwise.
+	 */
+	public LoadMetrics( final boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * The metrics of all datasets of this process.
+	 */
+	public static LoadMetrics getInstance()
+	{
+		return INSTANCE;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Starts or stops recording. The totals recorded so far are kept.
+	 */
+	public void setEnabled( final boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns the metrics of a resolution level of {@code dataset}, creating
+	 * them on first use. Callers on hot paths keep the result rather than
+	 * looking it up for every record.
+	 *
+	 * @param level index of the resolution level, or {@link LevelMetrics#NO_LEVEL}
+	 */
+	public LevelMetrics level( final String dataset, final int level )
+	{
+		return datasets.computeIfAbsent( dataset, key -> new ConcurrentHashMap<>() )
+				.computeIfAbsent( level, key -> new LevelMetrics( this, dataset, level ) );
+	}
+
+	/**
+	 * Forgets the metrics of all levels of {@code dataset}, e.g. once it is
+	 * closed, so that they are no longer part of the {@link #snapshot()}.
+	 */
+	public void remove( final String dataset )
+	{
+		datasets.remove( dataset );
+	}
+
+	/**
+	 * Snapshots of the metrics of all levels of all datasets, ordered by
+	 * dataset and level.
+	 */
+	public List< LevelMetrics.Snapshot > snapshot()
+	{
+		final List< LevelMetrics > levels = new ArrayList<>();
+		for ( final Map< Integer, LevelMetrics > dataset : datasets.values() )
+			levels.addAll( dataset.values() );
+		levels.sort( ORDER );
+		final List< LevelMetrics.Snapshot > snapshots = new ArrayList<>( levels.size() );
+		for ( final LevelMetrics metrics : levels )
+			snapshots.add( metrics.snapshot() );
+		return snapshots;
+	}
+
+	/**
+	 * Sets all totals to zero. The metrics of the datasets stay registered,
+	 * since the caches and stores of open datasets keep recording to them.
+	 */
+	public void reset()
+	{
+		for ( final Map< Integer, LevelMetrics > dataset : datasets.values() )
+			dataset.values().forEach( LevelMetrics::reset );
+	}
+
+	/**
+	 * Total time the current thread has spent reading from stores, as added
+	 * by {@link #addReadNanos(long)}. A cell loader that takes the difference
+	 * before and after reading a cell can tell the decode time from the fetch
+	 * time, even if the fetch is answered from a cache or merged with others.
+	 */
+	public static long readNanos()
+	{
+		return READ_NANOS.get()[ 0 ];
+	}
+
+	/**
+	 * Adds time the current thread has spent reading from a store, see
+	 * {@link #readNanos()}.
+	 */
+	public static void addReadNanos( final long nanos )
+	{
+		READ_NANOS.get()[ 0 ] += nanos;
+	}
+}
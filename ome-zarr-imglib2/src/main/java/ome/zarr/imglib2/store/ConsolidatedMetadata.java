@@ -0,0 +1,285 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A {@link StoreReadFilter} answering reads and existence checks of the
+ * metadata documents of the arrays and groups below the store root from the
+ * consolidated metadata of the dataset, if it has any.
+ *
+ * <p>Without consolidated metadata, opening a multiscale image takes one
+ * request per resolution level for its array metadata. With it, they all come
+ * from a single document:
+ * <ul>
+ *   <li>Zarr v3: the {@code consolidated_metadata} of the root
+ *       {@code zarr.json}, which is read anyway</li>
+ *   <li>Zarr v2: the {@code .zmetadata} document next to the root
+ *       {@code .zattrs}</li>
+ * </ul>
+ * The consolidated metadata is loaded when the first document below the root
+ * is needed. Documents of nodes listed there but absent from it are reported
+ * as missing; everything else is passed on.
+ *
+ * <p>Consolidated metadata is never invalidated; datasets are assumed not to
+ * change while they are open.
+ */
+public class ConsolidatedMetadata implements StoreReadFilter
+{
+	private static final String ZARR_JSON = "zarr.json";
+
+	private static final String ZMETADATA = ".zmetadata";
+
+	/** Names of the metadata documents of a Zarr node. */
+	private static final String[] DOCUMENTS = { ZARR_JSON, ".zarray", ".zgroup", ".zattrs" };
+
+	/** Guarded by {@code this}. */
+	private boolean rootZarrJsonRead = false;
+
+	/** Root {@code zarr.json}, if read through this filter. Guarded by {@code this}. */
+	private byte[] rootZarrJson;
+
+	/**
+	 * Metadata documents by path, e.g. {@code "0/zarr.json"} or
+	 * {@code "0/.zarray"}; {@code null} until loaded. Guarded by {@code this}.
+	 */
+	private Map< String, byte[] > documents;
+
+	/**
+	 * The rest of the chain, as seen by the most recent read. Existence checks
+	 * load the consolidated metadata through it.
+	 */
+	private volatile Reader reader;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		reader = next;
+		if ( !isMetadata( keys ) )
+			return next.read( keys, start, end );
+		if ( keys.length == 1 )
+		{
+			final ByteBuffer bytes = next.read( keys, start, end );
+			if ( ZARR_JSON.equals( keys[ 0 ] ) && start == 0 && end < 0 )
+				rememberRootZarrJson( bytes );
+			return bytes;
+		}
+
+		final Map< String, byte[] > consolidated = documents( next );
+		final byte[] document = consolidated.get( StoreReadFilter.path( keys ) );
+		if ( document != null && start <= document.length )
+		{
+			hits.incrementAndGet();
+			final int to = end < 0 ? document.length : ( int ) Math.min( end, document.length );
+			return ByteBuffer.wrap( Arrays.copyOfRange( document, ( int ) start, to ) );
+		}
+		if ( document == null && isListedNode( consolidated, keys ) )
+		{
+			hits.incrementAndGet();
+			return null;
+		}
+		return next.read( keys, start, end );
+	}
+
+	@Override
+	public boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		final Reader loader = reader;
+		if ( keys.length < 2 || !isMetadata( keys ) || loader == null )
+			return next.exists( keys );
+		final Map< String, byte[] > consolidated = documents( loader );
+		if ( consolidated.containsKey( StoreReadFilter.path( keys ) ) )
+		{
+			hits.incrementAndGet();
+			return true;
+		}
+		if ( isListedNode( consolidated, keys ) )
+		{
+			hits.incrementAndGet();
+			return false;
+		}
+		return next.exists( keys );
+	}
+
+	/**
+	 * Returns the number of reads and existence checks answered from the
+	 * consolidated metadata.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Returns whether consolidated metadata has been found.
+	 */
+	public synchronized boolean isConsolidated()
+	{
+		return documents != null && !documents.isEmpty();
+	}
+
+	/**
+	 * Drops the consolidated metadata.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		reader = null;
+		documents = null;
+		rootZarrJson = null;
+		rootZarrJsonRead = false;
+	}
+
+	private synchronized void rememberRootZarrJson( final ByteBuffer bytes )
+	{
+		rootZarrJsonRead = true;
+		rootZarrJson = bytes == null ? null : toArray( bytes );
+	}
+
+	private synchronized Map< String, byte[] > documents( final Reader next )
+	{
+		if ( documents == null )
+			documents = load( next );
+		return documents;
+	}
+
+	private Map< String, byte[] > load( final Reader next )
+	{
+		if ( !rootZarrJsonRead )
+		{
+			final ByteBuffer bytes = next.read( new String[] { ZARR_JSON }, 0, -1 );
+			rootZarrJsonRead = true;
+			rootZarrJson = bytes == null ? null : toArray( bytes );
+		}
+		try
+		{
+			// a Zarr v3 dataset has no .zmetadata, so there is no need to ask
+			if ( rootZarrJson != null )
+				return parseV3( rootZarrJson );
+			final ByteBuffer zmetadata = next.read( new String[] { ZMETADATA }, 0, -1 );
+			return zmetadata == null ? Collections.emptyMap() : parseV2( toArray( zmetadata ) );
+		}
+		catch ( final JsonParseException | IllegalStateException | ClassCastException e )
+		{
+			// unusable consolidated metadata; read the documents one by one
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Parses the {@code consolidated_metadata} of a root {@code zarr.json},
+	 * which holds the {@code zarr.json} of every node by relative path.
+	 */
+	private static Map< String, byte[] > parseV3( final byte[] zarrJson )
+	{
+		final JsonObject root = parse( zarrJson );
+		final JsonElement consolidated = root.get( "consolidated_metadata" );
+		if ( consolidated == null || !consolidated.isJsonObject() )
+			return Collections.emptyMap();
+		final JsonElement metadata = consolidated.getAsJsonObject().get( "metadata" );
+		if ( metadata == null || !metadata.isJsonObject() )
+			return Collections.emptyMap();
+		final Map< String, byte[] > documents = new HashMap<>();
+		for ( final Map.Entry< String, JsonElement > node : metadata.getAsJsonObject().entrySet() )
+			documents.put( node.getKey() + "/" + ZARR_JSON, toBytes( node.getValue() ) );
+		return documents;
+	}
+
+	/**
+	 * Parses a {@code .zmetadata} document, which holds every metadata
+	 * document by path.
+	 */
+	private static Map< String, byte[] > parseV2( final byte[] zmetadata )
+	{
+		final JsonElement metadata = parse( zmetadata ).get( "metadata" );
+		if ( metadata == null || !metadata.isJsonObject() )
+			return Collections.emptyMap();
+		final Map< String, byte[] > documents = new HashMap<>();
+		for ( final Map.Entry< String, JsonElement > document : metadata.getAsJsonObject().entrySet() )
+			documents.put( document.getKey(), toBytes( document.getValue() ) );
+		return documents;
+	}
+
+	/**
+	 * Returns whether any metadata document of the node holding the document
+	 * {@code keys} is listed, i.e. whether the consolidated metadata covers
+	 * that node.
+	 */
+	private static boolean isListedNode( final Map< String, byte[] > consolidated, final String[] keys )
+	{
+		final String node = StoreReadFilter.path( Arrays.copyOf( keys, keys.length - 1 ) );
+		for ( final String name : DOCUMENTS )
+			if ( consolidated.containsKey( node + "/" + name ) )
+				return true;
+		return false;
+	}
+
+	private static boolean isMetadata( final String[] keys )
+	{
+		if ( keys.length == 0 )
+			return false;
+		final String name = keys[ keys.length - 1 ];
+		for ( final String document : DOCUMENTS )
+			if ( document.equals( name ) )
+				return true;
+		return false;
+	}
+
+	private static JsonObject parse( final byte[] json )
+	{
+		return JsonParser.parseString( new String( json, StandardCharsets.UTF_8 ) ).getAsJsonObject();
+	}
+
+	private static byte[] toBytes( final JsonElement json )
+	{
+		return json.toString().getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private static byte[] toArray( final ByteBuffer bytes )
+	{
+		final ByteBuffer copy = bytes.duplicate();
+		final byte[] array = new byte[ copy.remaining() ];
+		copy.get( array );
+		return array;
+	}
+}
@@ -0,0 +1,829 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache on the local disk for the bytes read from remote stores,
+ * shared by all datasets and bounded by a budget in bytes.
+ *
+ * <p>Each dataset gets its own {@link StoreReadFilter} via
+ * {@link #forDataset(String)}. Values are stored as read, i.e. still
+ * compressed, in one file per dataset URI, key and byte range. Keys missing
+ * from the store are remembered too, so that missing chunks (which decode to
+ * the fill value) cost no request either. Since stores also report failed
+ * requests as missing keys, a key is only remembered on disk once an
+ * {@link AbsenceCheck} confirms it is missing; otherwise it is remembered for
+ * the lifetime of the filter at most. When the files exceed the budget,
+ * the least recently used ones are deleted, whichever dataset they belong to.
+ *
+ * <p>Cached values and missing keys are served without asking the store for
+ * {@link #setMaxAgeMillis(long) max age} after they were stored or last
+ * validated. Older ones are revalidated before they are served: with a
+ * conditional request for the validator ({@code ETag} or {@code Last-Modified})
+ * stored with the value if a {@link Validation} is given, and by reading
+ * them again otherwise. When the store cannot be reached, the cached value is
+ * served nevertheless.
+ *
+ * <p>Metadata documents ({@code zarr.json}, {@code .zarray}, {@code .zgroup},
+ * {@code .zattrs} and {@code .zmetadata}) are always read from the store, so
+ * every group and array is revalidated when opened: when its document differs
+ * from the cached copy, the cached values of that node are dropped, and those
+ * of the whole dataset if it is the root. Chunks are therefore stored by the
+ * node they belong to, i.e. the longest path of a node whose metadata the
+ * filter has read. When the store does not return a cached document, e.g.
+ * when offline, and does not confirm it is missing, the cached copy is used,
+ * so fully cached datasets can be browsed without network, see
+ * {@link #hasMetadata(String)}.
+ *
+ * <p>The cache of this process is disabled by default, see
+ * {@link #setEnabled(boolean)}.
+ */
+public final class DiskChunkCache
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/** Default budget of the cache of this process. */
+	public static final long DEFAULT_MAX_BYTES = 10L << 30;
+
+	/** Default time cached values are served without revalidation. */
+	public static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000;
+
+	private static final String DATA_SUFFIX = ".chunk";
+
+	private static final String MISSING_SUFFIX = ".missing";
+
+	/**
+	 * Suffix of the file next to each cached file holding its validator, and
+	 * whose modification time is when it was last validated.
+	 */
+	private static final String VALIDATOR_SUFFIX = ".validator";
+
+	/** Names of the metadata documents of Zarr v3 and v2 groups and arrays. */
+	private static final Set< String > METADATA_KEYS = new HashSet<>( Arrays.asList( "zarr.json", ".zarray", ".zgroup", ".zattrs", ".zmetadata" ) );
+
+	private static final DiskChunkCache INSTANCE = new DiskChunkCache( defaultDirectory(), DEFAULT_MAX_BYTES, false );
+
+	private final Path directory;
+
+	private volatile boolean enabled;
+
+	private volatile long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+	/** Cached files and their sizes in access order, {@code null} until scanned. Guarded by {@code this}. */
+	private LinkedHashMap< Path, Long > files;
+
+	/** Guarded by {@code this}. */
+	private long maxBytes;
+
+	/** Guarded by {@code this}. */
+	private long usedBytes = 0;
+
+	/** Guarded by {@code this}. */
+	private long hits = 0;
+
+	/** Guarded by {@code this}. */
+	private long misses = 0;
+
+	/**
+	 * Confirms that a key is missing from a store, e.g. by a 404 response.
+	 */
+	public interface AbsenceCheck
+	{
+		/**
+		 * @return {@code true} if the store reports that {@code keys} do not
+		 *         exist, {@code false} if they exist or the store cannot be
+		 *         reached
+		 */
+		boolean isAbsent( String[] keys );
+	}
+
+	/**
+	 * Tells whether the values stored under keys changed, by the validators
+	 * ({@code ETag} or {@code Last-Modified}) of the responses of a store.
+	 */
+	public interface Validation
+	{
+		/**
+		 * @return the validator of the value the store just returned for
+		 *         {@code keys}, or {@code null} if there is none
+		 */
+		String validator( String[] keys );
+
+		/**
+		 * @return {@code true} if the store reports that the value stored
+		 *         under {@code keys} no longer has {@code validator}, or is
+		 *         missing; {@code false} if it still has it, or the store
+		 *         cannot tell or be reached
+		 */
+		boolean isChanged( String[] keys, String validator );
+	}
+
+	/**
+	 * Creates an enabled cache that is independent of the process-wide
+	 * instance, e.g. for tests. Use {@link #getInstance()} otherwise.
+	 *
+	 * @param directory where the cached values are stored
+	 * @param maxBytes the budget
+	 */
+	public DiskChunkCache( final Path directory, final long maxBytes )
+	{
+		this( directory, maxBytes, true );
+	}
+
+	private DiskChunkCache( final Path directory, final long maxBytes, final boolean enabled )
+	{
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.enabled = enabled;
+	}
+
+	/**
+	 * The cache shared by all datasets of this process, stored in
+	 * {@link #defaultDirectory()}.
+	 */
+	public static DiskChunkCache getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * The directory of the process-wide cache, {@code ~/.cache/ome-zarr/chunks}.
+	 */
+	public static Path defaultDirectory()
+	{
+		return Paths.get( System.getProperty( "user.home" ), ".cache", "ome-zarr", "chunks" );
+	}
+
+	public Path getDirectory()
+	{
+		return directory;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the cache for datasets opened from now on.
+	 */
+	public void setEnabled( final boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	public synchronized long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Sets the budget and deletes least recently used values until it is met.
+	 */
+	public synchronized void setMaxBytes( final long maxBytes )
+	{
+		this.maxBytes = maxBytes;
+		evict();
+	}
+
+	public long getMaxAgeMillis()
+	{
+		return maxAgeMillis;
+	}
+
+	/**
+	 * Sets the time cached values and missing keys are served for without
+	 * revalidating them, {@code 0} to revalidate them on every read.
+	 */
+	public void setMaxAgeMillis( final long maxAgeMillis )
+	{
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	/** Bytes currently stored on disk. */
+	public synchronized long getUsedBytes()
+	{
+		index();
+		return usedBytes;
+	}
+
+	/** Number of reads served from disk. */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/** Number of reads that went to the store. */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Deletes all cached values.
+	 */
+	public synchronized void clear()
+	{
+		index();
+		removeIf( file -> true );
+	}
+
+	/**
+	 * Creates the filter caching the reads of one dataset. Keys missing from
+	 * the store are only remembered by the filter, not on disk.
+	 *
+	 * @param uri the URI of the dataset
+	 */
+	public StoreReadFilter forDataset( final String uri )
+	{
+		return forDataset( uri, null );
+	}
+
+	/**
+	 * Creates the filter caching the reads of one dataset.
+	 *
+	 * @param uri the URI of the dataset
+	 * @param absenceCheck confirms keys the store did not return as missing,
+	 *            so that they are remembered on disk; keys it does not confirm
+	 *            are not remembered. If {@code null}, missing keys are only
+	 *            remembered by the filter.
+	 */
+	public StoreReadFilter forDataset( final String uri, final AbsenceCheck absenceCheck )
+	{
+		return forDataset( uri, absenceCheck, null );
+	}
+
+	/**
+	 * Creates the filter caching the reads of one dataset.
+	 *
+	 * @param uri the URI of the dataset
+	 * @param absenceCheck see {@link #forDataset(String, AbsenceCheck)}
+	 * @param validation tells the validators of the values read, and whether
+	 *            they changed once older than the max age. If {@code null},
+	 *            such values are read again.
+	 */
+	public StoreReadFilter forDataset( final String uri, final AbsenceCheck absenceCheck, final Validation validation )
+	{
+		return new DatasetFilter( directory.resolve( sha1( uri ) ), absenceCheck, validation );
+	}
+
+	/**
+	 * Whether the root metadata of the dataset at {@code uri} are cached, i.e.
+	 * whether it can be opened without network. Always {@code false} while
+	 * the cache is disabled.
+	 */
+	public boolean hasMetadata( final String uri )
+	{
+		if ( !enabled )
+			return false;
+		final Path rootDirectory = directory.resolve( sha1( uri ) ).resolve( sha1( "" ) );
+		synchronized ( this )
+		{
+			index();
+			for ( final String metadataKey : METADATA_KEYS )
+			{
+				final String name = sha1( metadataKey + "@0:-1" );
+				if ( files.get( rootDirectory.resolve( name.substring( 0, 2 ) ).resolve( name + DATA_SUFFIX ) ) != null )
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void hit()
+	{
+		++hits;
+	}
+
+	private synchronized void miss()
+	{
+		++misses;
+	}
+
+	/**
+	 * Reads a cached file, or returns {@code null} if it is not cached.
+	 */
+	private byte[] load( final Path file )
+	{
+		synchronized ( this )
+		{
+			index();
+			if ( files.get( file ) == null )
+				return null;
+		}
+		try
+		{
+			final byte[] data = Files.readAllBytes( file );
+			Files.setLastModifiedTime( file, FileTime.fromMillis( System.currentTimeMillis() ) );
+			return data;
+		}
+		catch ( final IOException e )
+		{
+			// deleted or evicted in the meantime
+			synchronized ( this )
+			{
+				final Long size = files.remove( file );
+				if ( size != null )
+					usedBytes -= size;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Stores {@code data} in {@code file}, with {@code validator} as validated
+	 * now.
+	 *
+	 * @param validator may be {@code null}
+	 */
+	private void put( final Path file, final ByteBuffer data, final String validator )
+	{
+		final byte[] bytes = new byte[ data.remaining() ];
+		data.duplicate().get( bytes );
+		try
+		{
+			Files.createDirectories( file.getParent() );
+			final Path tmp = Files.createTempFile( file.getParent(), file.getFileName().toString(), ".tmp" );
+			try
+			{
+				Files.write( tmp, bytes );
+				Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			}
+			finally
+			{
+				Files.deleteIfExists( tmp );
+			}
+			Files.write( validatorFile( file ), ( validator == null ? "" : validator ).getBytes( StandardCharsets.UTF_8 ) );
+		}
+		catch ( final IOException e )
+		{
+			logger.debug( "Cannot write {} to the disk cache: {}", file, e.getMessage() );
+			return;
+		}
+		synchronized ( this )
+		{
+			index();
+			final Long previous = files.put( file, ( long ) bytes.length );
+			usedBytes += bytes.length - ( previous == null ? 0 : previous );
+			evict();
+		}
+	}
+
+	/**
+	 * Deletes a cached file.
+	 */
+	private void remove( final Path file )
+	{
+		synchronized ( this )
+		{
+			index();
+			final Long size = files.remove( file );
+			if ( size == null )
+				return;
+			usedBytes -= size;
+		}
+		delete( file );
+	}
+
+	/**
+	 * Returns whether a cached file was validated within the max age, or
+	 * else whether {@code validation} confirms that it is unchanged, and
+	 * then marks it as validated now. Files without validator are never
+	 * confirmed, but read again.
+	 */
+	private boolean isCurrent( final String[] keys, final Path file, final Validation validation )
+	{
+		final Path validatorFile = validatorFile( file );
+		final String validator;
+		try
+		{
+			if ( System.currentTimeMillis() - Files.getLastModifiedTime( validatorFile ).toMillis() < maxAgeMillis )
+				return true;
+			validator = new String( Files.readAllBytes( validatorFile ), StandardCharsets.UTF_8 );
+		}
+		catch ( final IOException e )
+		{
+			// stored without validator, e.g. by an earlier version
+			return false;
+		}
+		if ( validation == null || validator.isEmpty() || validation.isChanged( keys, validator ) )
+			return false;
+		validated( file );
+		return true;
+	}
+
+	/**
+	 * Marks a cached file as validated now.
+	 */
+	private static void validated( final Path file )
+	{
+		try
+		{
+			Files.setLastModifiedTime( validatorFile( file ), FileTime.fromMillis( System.currentTimeMillis() ) );
+		}
+		catch ( final IOException e )
+		{
+			// deleted in the meantime, or stored without validator
+		}
+	}
+
+	private static Path validatorFile( final Path file )
+	{
+		return file.resolveSibling( file.getFileName() + VALIDATOR_SUFFIX );
+	}
+
+	/**
+	 * Scans the cache directory on first use, ordering the files found by
+	 * their last access. Guarded by {@code this}.
+	 */
+	private void index()
+	{
+		if ( files != null )
+			return;
+		files = new LinkedHashMap<>( 1024, 0.75f, true );
+		if ( !Files.isDirectory( directory ) )
+			return;
+		final List< Path > found;
+		try (Stream< Path > walk = Files.walk( directory ))
+		{
+			found = walk.filter( Files::isRegularFile ).collect( Collectors.toList() );
+		}
+		catch ( final IOException | UncheckedIOException e )
+		{
+			logger.warn( "Cannot scan the disk cache in {}: {}", directory, e.getMessage() );
+			return;
+		}
+		final Map< Path, FileTime > accessed = new HashMap<>();
+		for ( final Path file : found )
+		{
+			final String name = file.getFileName().toString();
+			try
+			{
+				if ( name.endsWith( ".tmp" ) )
+					Files.deleteIfExists( file );
+				else if ( name.endsWith( VALIDATOR_SUFFIX ) )
+				{
+					// those of evicted files, if deleting them failed
+					final Path cached = file.resolveSibling( name.substring( 0, name.length() - VALIDATOR_SUFFIX.length() ) );
+					if ( !Files.exists( cached ) )
+						Files.deleteIfExists( file );
+				}
+				else if ( name.endsWith( DATA_SUFFIX ) || name.endsWith( MISSING_SUFFIX ) )
+					accessed.put( file, Files.getLastModifiedTime( file ) );
+			}
+			catch ( final IOException e )
+			{
+				// skip files that vanish while scanning
+			}
+		}
+		final List< Path > ordered = new ArrayList<>( accessed.keySet() );
+		ordered.sort( Comparator.comparing( accessed::get ) );
+		for ( final Path file : ordered )
+		{
+			final long size = file.toFile().length();
+			files.put( file, size );
+			usedBytes += size;
+		}
+		evict();
+	}
+
+	/**
+	 * Deletes the cached values below {@code directory}.
+	 */
+	private synchronized void drop( final Path directory )
+	{
+		index();
+		removeIf( file -> file.startsWith( directory ) );
+	}
+
+	/** Guarded by {@code this}. */
+	private void evict()
+	{
+		if ( files == null )
+			return;
+		final Iterator< Map.Entry< Path, Long > > it = files.entrySet().iterator();
+		while ( usedBytes > maxBytes && it.hasNext() )
+		{
+			final Map.Entry< Path, Long > e = it.next();
+			delete( e.getKey() );
+			usedBytes -= e.getValue();
+			it.remove();
+		}
+	}
+
+	/** Guarded by {@code this}. */
+	private void removeIf( final Predicate< Path > condition )
+	{
+		final Iterator< Map.Entry< Path, Long > > it = files.entrySet().iterator();
+		while ( it.hasNext() )
+		{
+			final Map.Entry< Path, Long > e = it.next();
+			if ( condition.test( e.getKey() ) )
+			{
+				delete( e.getKey() );
+				usedBytes -= e.getValue();
+				it.remove();
+			}
+		}
+	}
+
+	private static void delete( final Path file )
+	{
+		try
+		{
+			Files.deleteIfExists( file );
+			Files.deleteIfExists( validatorFile( file ) );
+		}
+		catch ( final NoSuchFileException e )
+		{
+			// already gone
+		}
+		catch ( final IOException e )
+		{
+			logger.debug( "Cannot delete {} from the disk cache: {}", file, e.getMessage() );
+		}
+	}
+
+	static String sha1( final String s )
+	{
+		try
+		{
+			final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( s.getBytes( StandardCharsets.UTF_8 ) );
+			final StringBuilder sb = new StringBuilder( 2 * digest.length );
+			for ( final byte b : digest )
+				sb.append( String.format( "%02x", b ) );
+			return sb.toString();
+		}
+		catch ( final NoSuchAlgorithmException e )
+		{
+			// every Java platform supports SHA-1
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private class DatasetFilter implements StoreReadFilter
+	{
+		private final Path datasetDirectory;
+
+		private final AbsenceCheck absenceCheck;
+
+		private final Validation validation;
+
+		/** Names of the missing keys not remembered on disk. */
+		private final Set< String > missing = ConcurrentHashMap.newKeySet();
+
+		/** Paths of the groups and arrays whose metadata were read, see {@link #node(String[])}. */
+		private final Set< String > nodes = ConcurrentHashMap.newKeySet();
+
+		DatasetFilter( final Path datasetDirectory, final AbsenceCheck absenceCheck, final Validation validation )
+		{
+			this.datasetDirectory = datasetDirectory;
+			this.absenceCheck = absenceCheck;
+			this.validation = validation;
+		}
+
+		@Override
+		public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+		{
+			final String name = sha1( StoreReadFilter.path( keys ) + "@" + start + ":" + end );
+			if ( isMetadata( keys ) )
+				return readMetadata( keys, start, end, next, name );
+
+			final String node = node( keys );
+			final Path data = file( node, name, DATA_SUFFIX );
+			final Path marker = file( node, name, MISSING_SUFFIX );
+			final byte[] cached = load( data );
+			if ( cached != null )
+			{
+				if ( isCurrent( keys, data, validation ) )
+				{
+					hit();
+					return ByteBuffer.wrap( cached );
+				}
+			}
+			else if ( missing.contains( name ) )
+				return null;
+			else if ( load( marker ) != null && isCurrent( keys, marker, validation ) )
+			{
+				hit();
+				return null;
+			}
+
+			miss();
+			final ByteBuffer value = next.read( keys, start, end );
+			if ( value != null )
+			{
+				put( data, value, validation == null ? null : validation.validator( keys ) );
+				remove( marker );
+				return value;
+			}
+			if ( cached != null )
+			{
+				// the store cannot be reached, or the value was deleted
+				if ( absenceCheck == null || !absenceCheck.isAbsent( keys ) )
+				{
+					validated( data );
+					return ByteBuffer.wrap( cached );
+				}
+				remove( data );
+			}
+			missing( keys, node, name );
+			return null;
+		}
+
+		/**
+		 * Reads a metadata document from the store, dropping the cached values
+		 * of its node if it changed, or returns the cached copy if the store
+		 * does not return it but does not confirm it is missing either.
+		 */
+		private ByteBuffer readMetadata( final String[] keys, final long start, final long end, final Reader next, final String name )
+		{
+			final String node = StoreReadFilter.path( Arrays.copyOf( keys, keys.length - 1 ) );
+			final Path data = file( node, name, DATA_SUFFIX );
+			miss();
+			final ByteBuffer value = next.read( keys, start, end );
+			final byte[] cached = load( data );
+			if ( value != null )
+			{
+				if ( cached == null || !value.duplicate().equals( ByteBuffer.wrap( cached ) ) )
+				{
+					if ( cached != null || load( file( node, name, MISSING_SUFFIX ) ) != null )
+						changed( node );
+					put( data, value, null );
+				}
+				nodes.add( node );
+				return value;
+			}
+			if ( cached != null )
+			{
+				if ( absenceCheck == null || !absenceCheck.isAbsent( keys ) )
+				{
+					hit();
+					nodes.add( node );
+					return ByteBuffer.wrap( cached );
+				}
+				changed( node );
+			}
+			else if ( missing.contains( name ) || load( file( node, name, MISSING_SUFFIX ) ) != null )
+				return null;
+			missing( keys, node, name );
+			return null;
+		}
+
+		@Override
+		public boolean exists( final String[] keys, final ExistenceCheck next )
+		{
+			final String name = sha1( StoreReadFilter.path( keys ) + "@0:-1" );
+			final String node = isMetadata( keys ) ? StoreReadFilter.path( Arrays.copyOf( keys, keys.length - 1 ) ) : node( keys );
+			final boolean cached;
+			synchronized ( DiskChunkCache.this )
+			{
+				index();
+				cached = files.get( file( node, name, DATA_SUFFIX ) ) != null;
+				// metadata are asked to the store, since they may have changed
+				if ( !isMetadata( keys ) )
+				{
+					if ( cached )
+						return true;
+					if ( files.get( file( node, name, MISSING_SUFFIX ) ) != null )
+						return false;
+				}
+			}
+			if ( missing.contains( name ) )
+				return false;
+			if ( next.exists( keys ) )
+				return true;
+			// the cached copy of a metadata document counts if the store
+			// cannot be reached
+			if ( cached )
+			{
+				if ( absenceCheck == null || !absenceCheck.isAbsent( keys ) )
+					return true;
+				changed( node );
+			}
+			missing( keys, node, name );
+			return false;
+		}
+
+		/**
+		 * Forgets the keys remembered by the filter. The values cached on disk
+		 * stay, for the next time the dataset is opened.
+		 */
+		@Override
+		public void close()
+		{
+			missing.clear();
+			nodes.clear();
+		}
+
+		/**
+		 * Drops the cached values of a node whose metadata changed: those of
+		 * the whole dataset if it is the root.
+		 */
+		private void changed( final String node )
+		{
+			logger.debug( "Metadata of '{}' in {} changed, dropping its cached values", node, datasetDirectory );
+			drop( node.isEmpty() ? datasetDirectory : datasetDirectory.resolve( sha1( node ) ) );
+		}
+
+		/**
+		 * Remembers a key the store did not return: on disk if the store
+		 * confirms it is missing, by this filter if there is nothing to
+		 * confirm it with, and not at all if the store does not confirm it,
+		 * e.g. because the request failed. An earlier confirmation then
+		 * stands for another max age.
+		 */
+		private void missing( final String[] keys, final String node, final String name )
+		{
+			final Path marker = file( node, name, MISSING_SUFFIX );
+			if ( absenceCheck == null )
+				missing.add( name );
+			else if ( absenceCheck.isAbsent( keys ) )
+				put( marker, ByteBuffer.allocate( 0 ), null );
+			else
+				validated( marker );
+		}
+
+		/**
+		 * The path of the deepest group or array whose metadata were read that
+		 * contains {@code keys}, or the root.
+		 */
+		private String node( final String[] keys )
+		{
+			for ( int n = keys.length - 1; n > 0; n-- )
+			{
+				final String node = StoreReadFilter.path( Arrays.copyOf( keys, n ) );
+				if ( nodes.contains( node ) )
+					return node;
+			}
+			return "";
+		}
+
+		private Path file( final String node, final String name, final String suffix )
+		{
+			return datasetDirectory.resolve( sha1( node ) ).resolve( name.substring( 0, 2 ) ).resolve( name + suffix );
+		}
+	}
+
+	private static boolean isMetadata( final String[] keys )
+	{
+		return keys.length > 0 && METADATA_KEYS.contains( keys[ keys.length - 1 ] );
+	}
+}
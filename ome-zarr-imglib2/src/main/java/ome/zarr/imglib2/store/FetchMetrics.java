@@ -0,0 +1,131 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * A {@link StoreReadFilter} recording the requests that reach the store, the
+ * bytes they return and their latency to the {@link LevelMetrics} of the
+ * resolution level they belong to. Put last, right before the store, it only
+ * sees the requests that were not answered by a cache or merged with others.
+ *
+ * <p>Keys below the path of a level, see {@link #setLevelPaths(List)}, belong
+ * to that level; all others, e.g. the metadata of the image, are recorded as
+ * {@link LevelMetrics#NO_LEVEL}.
+ */
+public class FetchMetrics implements StoreReadFilter
+{
+	private final String dataset;
+
+	private final LoadMetrics metrics;
+
+	private final LevelMetrics other;
+
+	private volatile Level[] levels = new Level[ 0 ];
+
+	/**
+	 * @param dataset the dataset the requests are recorded to, typically its URI
+	 */
+	public FetchMetrics( final String dataset, final LoadMetrics metrics )
+	{
+		this.dataset = dataset;
+		this.metrics = metrics;
+		this.other = metrics.level( dataset, LevelMetrics.NO_LEVEL );
+	}
+
+	/**
+	 * Sets the paths of the resolution levels relative to the store root, in
+	 * the order of the levels, once known from the multiscales metadata.
+	 */
+	public void setLevelPaths( final List< String > paths )
+	{
+		final Level[] levels = new Level[ paths.size() ];
+		for ( int i = 0; i < levels.length; i++ )
+			levels[ i ] = new Level( paths.get( i ).replaceAll( "^/+|/+$", "" ) + "/", metrics.level( dataset, i ) );
+		this.levels = levels;
+	}
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		if ( !metrics.isEnabled() )
+			return next.read( keys, start, end );
+		final long begin = System.nanoTime();
+		final ByteBuffer bytes = next.read( keys, start, end );
+		levelOf( keys ).fetched( bytes == null ? 0 : bytes.remaining(), System.nanoTime() - begin );
+		return bytes;
+	}
+
+	@Override
+	public boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		if ( !metrics.isEnabled() )
+			return next.exists( keys );
+		final long begin = System.nanoTime();
+		final boolean exists = next.exists( keys );
+		levelOf( keys ).fetched( 0, System.nanoTime() - begin );
+		return exists;
+	}
+
+	/**
+	 * Returns the metrics of the level that {@code keys} belong to, or those
+	 * of {@link LevelMetrics#NO_LEVEL}, e.g. for other filters of the same
+	 * dataset to record to.
+	 */
+	public LevelMetrics levelOf( final String[] keys )
+	{
+		final Level[] levels = this.levels;
+		if ( levels.length == 0 )
+			return other;
+		final String path = StoreReadFilter.path( keys );
+		for ( final Level level : levels )
+			if ( path.startsWith( level.prefix ) )
+				return level.metrics;
+		return other;
+	}
+
+	private static final class Level
+	{
+		/** Path prefix of the keys of the level, e.g. {@code "0/"}. */
+		final String prefix;
+
+		final LevelMetrics metrics;
+
+		Level( final String prefix, final LevelMetrics metrics )
+		{
+			this.prefix = prefix;
+			this.metrics = metrics;
+		}
+	}
+}
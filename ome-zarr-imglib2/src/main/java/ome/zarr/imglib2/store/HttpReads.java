@@ -0,0 +1,161 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ObjectReads} of a dataset served over HTTP(S), with plain
+ * {@code GET} and {@code HEAD} requests below a root URL. The validator of
+ * an object is its {@code ETag}, or its {@code Last-Modified} date if the
+ * server sends no {@code ETag}. Canceling disconnects the requests in
+ * flight.
+ */
+public final class HttpReads extends ObjectReads
+{
+	private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+	private static final int READ_TIMEOUT_MILLIS = 30_000;
+
+	private final String root;
+
+	/**
+	 * @param root the URL of the store root
+	 */
+	public HttpReads( final String root )
+	{
+		this.root = root.endsWith( "/" ) ? root : root + "/";
+	}
+
+	@Override
+	protected Response get( final String path, final long start, final long end ) throws IOException
+	{
+		final HttpURLConnection connection = open( path, "GET" );
+		final String range = range( start, end );
+		if ( range != null )
+			connection.setRequestProperty( "Range", range );
+		final Runnable abort = connection::disconnect;
+		started( abort );
+		try
+		{
+			final int status = connection.getResponseCode();
+			if ( status / 100 != 2 )
+			{
+				discard( connection.getErrorStream() );
+				return new Response( status, null, null );
+			}
+			final byte[] bytes;
+			try (InputStream in = connection.getInputStream())
+			{
+				bytes = readAll( in );
+			}
+			// servers may ignore the range and send the whole object
+			if ( range != null && status != HttpURLConnection.HTTP_PARTIAL )
+				return new Response( status, slice( bytes, start, end ), validator( connection ) );
+			return new Response( status, ByteBuffer.wrap( bytes ), validator( connection ) );
+		}
+		finally
+		{
+			finished( abort );
+		}
+	}
+
+	@Override
+	protected Response head( final String path, final String validator ) throws IOException
+	{
+		final HttpURLConnection connection = open( path, "HEAD" );
+		if ( validator != null )
+			connection.setRequestProperty( isETag( validator ) ? "If-None-Match" : "If-Modified-Since", validator );
+		final Runnable abort = connection::disconnect;
+		started( abort );
+		try
+		{
+			final int status = connection.getResponseCode();
+			discard( connection.getErrorStream() );
+			return new Response( status, null, status / 100 == 2 ? validator( connection ) : null );
+		}
+		finally
+		{
+			finished( abort );
+		}
+	}
+
+	private static String validator( final HttpURLConnection connection )
+	{
+		final String etag = connection.getHeaderField( "ETag" );
+		return etag != null ? etag : connection.getHeaderField( "Last-Modified" );
+	}
+
+	/** Whether {@code validator} is an entity tag, which is quoted, rather than a date. */
+	private static boolean isETag( final String validator )
+	{
+		return validator.startsWith( "\"" ) || validator.startsWith( "W/" );
+	}
+
+	private HttpURLConnection open( final String path, final String method ) throws IOException
+	{
+		final HttpURLConnection connection = ( HttpURLConnection ) new URL( root + path ).openConnection();
+		connection.setRequestMethod( method );
+		connection.setConnectTimeout( CONNECT_TIMEOUT_MILLIS );
+		connection.setReadTimeout( READ_TIMEOUT_MILLIS );
+		return connection;
+	}
+
+	private static byte[] readAll( final InputStream in ) throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[ 16 * 1024 ];
+		for ( int n; ( n = in.read( buffer ) ) >= 0; )
+			out.write( buffer, 0, n );
+		return out.toByteArray();
+	}
+
+	/** Reads and closes an error body, so that the connection can be reused. */
+	private static void discard( final InputStream in ) throws IOException
+	{
+		if ( in == null )
+			return;
+		try (InputStream body = in)
+		{
+			readAll( body );
+		}
+	}
+
+	private static ByteBuffer slice( final byte[] bytes, final long start, final long end )
+	{
+		final int from = ( int ) Math.max( 0, start < 0 ? bytes.length + start : Math.min( start, bytes.length ) );
+		final int to = end < 0 || start < 0 ? bytes.length : ( int ) Math.min( end, bytes.length );
+		return ByteBuffer.wrap( bytes, from, to - from ).slice();
+	}
+}
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link StoreReadFilter} that tells a cell loader whether the chunk its
+ * thread has just read is missing from the store, in which case the reader
+ * filled the cell with the fill value of the array and the loader can share
+ * a constant access instead of looking at its voxels.
+ *
+ * <p>A chunk is missing if every read of the thread since {@link #begin()}
+ * found nothing: the read of an unsharded chunk, or the index read of a
+ * missing shard. Put right after the {@link ReadTimer}, the filter sees the
+ * reads as the reader gets them, whichever filter after it answers them.
+ */
+public class MissingChunks implements StoreReadFilter
+{
+	/** Reads of each thread since {@link #begin()} that found an object, and that found none. */
+	private static final ThreadLocal< int[] > READS = ThreadLocal.withInitial( () -> new int[ 2 ] );
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		final ByteBuffer bytes = next.read( keys, start, end );
+		READS.get()[ bytes == null ? 1 : 0 ]++;
+		return bytes;
+	}
+
+	/**
+	 * Starts counting the reads of the current thread, before reading a chunk.
+	 */
+	public static void begin()
+	{
+		final int[] reads = READS.get();
+		reads[ 0 ] = 0;
+		reads[ 1 ] = 0;
+	}
+
+	/**
+	 * Whether all reads of the current thread since {@link #begin()} found
+	 * nothing, and there was at least one.
+	 */
+	public static boolean onlyMissing()
+	{
+		final int[] reads = READS.get();
+		return reads[ 0 ] == 0 && reads[ 1 ] > 0;
+	}
+}
@@ -0,0 +1,317 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ome.zarr.imglib2.cache.SharedCellCache;
+
+/**
+ * The last {@link StoreReadFilter} over a remote store, reading the objects
+ * itself rather than through the store, so that the status and headers of
+ * every response are known. It remembers which keys the store answered with
+ * 404 Not Found, and the validator ({@code ETag} or {@code Last-Modified}) of
+ * those it returned, so that a {@link DiskChunkCache} can tell missing keys
+ * from failed requests, see {@link #isAbsent(String[])}, without asking the
+ * store again, and revalidate the values it cached with conditional requests,
+ * see {@link #isChanged(String[], String)}.
+ *
+ * <p>Like the stores, it reports failed requests as missing keys. The status
+ * is remembered for the {@value #REMEMBERED_KEYS} keys requested last.
+ *
+ * <p>Once {@linkplain #cancel() canceled}, e.g. along with the loads of its
+ * dataset in the {@link SharedCellCache}, it aborts the requests in flight
+ * where the client allows it, and answers further reads without requests,
+ * like failed ones, until {@linkplain #resume() resumed}, or for good once
+ * {@linkplain #close() closed}.
+ */
+public abstract class ObjectReads implements StoreReadFilter, DiskChunkCache.AbsenceCheck, DiskChunkCache.Validation, SharedCellCache.Cancelable
+{
+	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
+
+	/** Number of keys whose status is remembered. */
+	static final int REMEMBERED_KEYS = 10_000;
+
+	static final int NOT_MODIFIED = 304;
+
+	static final int NOT_FOUND = 404;
+
+	/** What the last response told about each key, by path, in access order. */
+	private final Map< String, Status > statuses = Collections.synchronizedMap( new LinkedHashMap< String, Status >( 256, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< String, Status > eldest )
+		{
+			return size() > REMEMBERED_KEYS;
+		}
+	} );
+
+	/** Aborts the requests in flight, see {@link #started(Runnable)}. */
+	private final Set< Runnable > inFlight = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean canceled = false;
+
+	private volatile boolean closed = false;
+
+	private static final class Status
+	{
+		final boolean absent;
+
+		/** The validator of the object, or {@code null} if absent or unknown. */
+		final String validator;
+
+		Status( final boolean absent, final String validator )
+		{
+			this.absent = absent;
+			this.validator = validator;
+		}
+	}
+
+	/**
+	 * A response of the store.
+	 */
+	protected static final class Response
+	{
+		/** The HTTP status code. */
+		final int status;
+
+		/** The requested bytes, if found. */
+		final ByteBuffer bytes;
+
+		/** The {@code ETag} or {@code Last-Modified} of the object, or {@code null}. */
+		final String validator;
+
+		public Response( final int status, final ByteBuffer bytes, final String validator )
+		{
+			this.status = status;
+			this.bytes = bytes;
+			this.validator = validator;
+		}
+
+		boolean isFound()
+		{
+			return status / 100 == 2;
+		}
+	}
+
+	/**
+	 * Requests the bytes {@code [start, end)} of the object at {@code path},
+	 * relative to the store root, see {@link StoreReadFilter}.
+	 *
+	 * @throws IOException if the store cannot be reached
+	 */
+	protected abstract Response get( String path, long start, long end ) throws IOException;
+
+	/**
+	 * Requests the status of the object at {@code path}, without its bytes.
+	 *
+	 * @param validator if not {@code null}, the request is conditional: the
+	 *            store answers 304 Not Modified if the object still has this
+	 *            {@code ETag} or {@code Last-Modified}
+	 * @throws IOException if the store cannot be reached
+	 */
+	protected abstract Response head( String path, String validator ) throws IOException;
+
+	/**
+	 * Registers how to abort a request in flight until
+	 * {@link #finished(Runnable)}, and aborts it right away if canceled.
+	 */
+	protected final void started( final Runnable abort )
+	{
+		inFlight.add( abort );
+		if ( canceled )
+			abort.run();
+	}
+
+	/** Unregisters the abort of a request, see {@link #started(Runnable)}. */
+	protected final void finished( final Runnable abort )
+	{
+		inFlight.remove( abort );
+	}
+
+	@Override
+	public void cancel()
+	{
+		canceled = true;
+		for ( final Runnable abort : inFlight )
+			abort.run();
+	}
+
+	@Override
+	public void resume()
+	{
+		canceled = closed;
+	}
+
+	/**
+	 * Aborts the requests in flight and forgets the statuses. Further reads
+	 * are answered like canceled ones, and {@link #resume()} has no effect.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		cancel();
+		statuses.clear();
+	}
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		final String path = StoreReadFilter.path( keys );
+		if ( canceled )
+			return null;
+		final Response response;
+		try
+		{
+			response = get( path, start, end );
+		}
+		catch ( final IOException e )
+		{
+			logger.debug( "Cannot read '{}': {}", path, e.getMessage() );
+			statuses.remove( path );
+			return null;
+		}
+		record( path, response );
+		return response.isFound() ? response.bytes : null;
+	}
+
+	@Override
+	public boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		final String path = StoreReadFilter.path( keys );
+		if ( canceled )
+			return false;
+		final Response response;
+		try
+		{
+			response = head( path, null );
+		}
+		catch ( final IOException e )
+		{
+			logger.debug( "Cannot check '{}': {}", path, e.getMessage() );
+			statuses.remove( path );
+			return false;
+		}
+		record( path, response );
+		return response.isFound();
+	}
+
+	/**
+	 * Whether the last response of the store for {@code keys} was 404 Not
+	 * Found; {@code false} if it was anything else, if the request failed or
+	 * if {@code keys} were not requested through this filter lately.
+	 */
+	@Override
+	public boolean isAbsent( final String[] keys )
+	{
+		final Status status = statuses.get( StoreReadFilter.path( keys ) );
+		return status != null && status.absent;
+	}
+
+	/**
+	 * The validator of the last response of the store for {@code keys}, or
+	 * {@code null} if it had none, or if {@code keys} were not read through
+	 * this filter lately.
+	 */
+	@Override
+	public String validator( final String[] keys )
+	{
+		final Status status = statuses.get( StoreReadFilter.path( keys ) );
+		return status == null ? null : status.validator;
+	}
+
+	/**
+	 * Asks the store with a conditional request whether the object under
+	 * {@code keys} changed since it had {@code validator}. Answers that
+	 * cannot tell, e.g. failures, count as unchanged.
+	 */
+	@Override
+	public boolean isChanged( final String[] keys, final String validator )
+	{
+		final String path = StoreReadFilter.path( keys );
+		if ( canceled )
+			return false;
+		final Response response;
+		try
+		{
+			response = head( path, validator );
+		}
+		catch ( final IOException e )
+		{
+			logger.debug( "Cannot revalidate '{}': {}", path, e.getMessage() );
+			return false;
+		}
+		if ( response.status == NOT_MODIFIED )
+		{
+			statuses.put( path, new Status( false, validator ) );
+			return false;
+		}
+		record( path, response );
+		if ( response.isFound() )
+			return !validator.equals( response.validator );
+		return response.status == NOT_FOUND;
+	}
+
+	private void record( final String path, final Response response )
+	{
+		if ( response.status == NOT_FOUND )
+			statuses.put( path, new Status( true, null ) );
+		else if ( response.isFound() )
+			statuses.put( path, new Status( false, response.validator ) );
+		else
+			statuses.remove( path );
+	}
+
+	/**
+	 * The value of an HTTP {@code Range} header requesting the bytes
+	 * {@code [start, end)}, where a negative {@code start} requests the last
+	 * {@code -start} bytes, or {@code null} for the whole object.
+	 */
+	protected static String range( final long start, final long end )
+	{
+		if ( start < 0 )
+			return "bytes=" + start;
+		if ( end < 0 )
+			return start == 0 ? null : "bytes=" + start + "-";
+		return "bytes=" + start + "-" + ( end - 1 );
+	}
+}
@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ome.zarr.imglib2.PrefetchedMetadata;
+
+/**
+ * {@link StoreReadFilter} answering reads and existence checks of the root
+ * metadata documents of a dataset from {@link PrefetchedMetadata}, e.g. those
+ * fetched while probing the location, instead of requesting them again.
+ * Everything else is passed on.
+ */
+public class PrefetchedDocuments implements StoreReadFilter
+{
+	private volatile PrefetchedMetadata prefetched;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	public PrefetchedDocuments( final PrefetchedMetadata prefetched )
+	{
+		this.prefetched = prefetched;
+	}
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		final String name = rootDocument( keys );
+		if ( name != null )
+		{
+			final byte[] document = prefetched.document( name );
+			if ( document != null && start <= document.length )
+			{
+				hits.incrementAndGet();
+				final int to = end < 0 ? document.length : ( int ) Math.min( end, document.length );
+				// a copy, as the buffer is handed to the reader
+				return ByteBuffer.wrap( Arrays.copyOfRange( document, ( int ) start, to ) );
+			}
+			if ( prefetched.isMissing( name ) )
+			{
+				hits.incrementAndGet();
+				return null;
+			}
+		}
+		return next.read( keys, start, end );
+	}
+
+	@Override
+	public boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		final String name = rootDocument( keys );
+		if ( name != null )
+		{
+			if ( prefetched.document( name ) != null )
+			{
+				hits.incrementAndGet();
+				return true;
+			}
+			if ( prefetched.isMissing( name ) )
+			{
+				hits.incrementAndGet();
+				return false;
+			}
+		}
+		return next.exists( keys );
+	}
+
+	/**
+	 * Returns the number of reads and existence checks answered without
+	 * passing them on.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Drops the prefetched documents.
+	 */
+	@Override
+	public void close()
+	{
+		prefetched = PrefetchedMetadata.none();
+	}
+
+	/** Returns the document name if {@code keys} refer to the dataset root. */
+	private static String rootDocument( final String[] keys )
+	{
+		return keys.length == 1 ? keys[ 0 ] : null;
+	}
+}
@@ -0,0 +1,239 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link StoreReadFilter} that merges concurrent ranged reads of the same
+ * key into fewer, larger reads.
+ *
+ * <p>A ranged read of a key while other reads of the key are in flight opens
+ * a batch and waits for a short window, during which reads of the same key
+ * from other threads join the batch; a read without others in flight goes
+ * to the store right away, so that isolated reads get no extra latency. The
+ * collected ranges are then sorted, ranges that are contiguous or
+ * separated by at most a small gap are merged into one read, and the result
+ * is split back into the requested ranges. This pays off for the inner chunks
+ * of a shard on remote stores, where per-request latency dominates the
+ * transfer time of small chunks.
+ *
+ * <p>Full reads and reads with an open or negative range are passed through.
+ */
+public class RangeCoalescer implements StoreReadFilter
+{
+	/** Default time the first read of a batch waits for others to join. */
+	public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+	/** Default largest gap between two ranges that are still merged. */
+	public static final long DEFAULT_MAX_GAP_BYTES = 16 << 10;
+
+	/** Default upper bound for the size of a merged read. */
+	public static final long DEFAULT_MAX_MERGED_BYTES = 16 << 20;
+
+	private final long windowMillis;
+
+	private final long maxGapBytes;
+
+	private final long maxMergedBytes;
+
+	/** Batches still accepting reads, by key path. Guarded by {@code this}. */
+	private final Map< String, List< Range > > openBatches = new HashMap<>();
+
+	/** Number of batches opened and not read yet, by key path. Guarded by {@code this}. */
+	private final Map< String, Integer > inFlight = new HashMap<>();
+
+	public RangeCoalescer()
+	{
+		this( DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_GAP_BYTES, DEFAULT_MAX_MERGED_BYTES );
+	}
+
+	/**
+	 * @param windowMillis time the first read of a batch waits for others to join
+	 * @param maxGapBytes largest gap between two ranges that are still merged
+	 * @param maxMergedBytes upper bound for the size of a merged read
+	 */
+	public RangeCoalescer( final long windowMillis, final long maxGapBytes, final long maxMergedBytes )
+	{
+		this.windowMillis = windowMillis;
+		this.maxGapBytes = maxGapBytes;
+		this.maxMergedBytes = maxMergedBytes;
+	}
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		if ( start < 0 || end < 0 )
+			return next.read( keys, start, end );
+
+		final String path = StoreReadFilter.path( keys );
+		final Range range = new Range( start, end );
+		final List< Range > batch;
+		final boolean first;
+		final boolean wait;
+		synchronized ( this )
+		{
+			final List< Range > open = openBatches.get( path );
+			first = open == null;
+			batch = first ? new ArrayList<>() : open;
+			batch.add( range );
+			// others may join only while reads of the key are in flight
+			wait = first && inFlight.containsKey( path );
+			if ( wait )
+				openBatches.put( path, batch );
+			if ( first )
+				inFlight.merge( path, 1, Integer::sum );
+		}
+
+		if ( first )
+		{
+			try
+			{
+				if ( wait )
+				{
+					waitForWindow();
+					synchronized ( this )
+					{
+						openBatches.remove( path );
+					}
+				}
+				readBatch( keys, batch, next );
+			}
+			finally
+			{
+				synchronized ( this )
+				{
+					inFlight.computeIfPresent( path, ( key, batches ) -> batches == 1 ? null : batches - 1 );
+				}
+			}
+		}
+
+		try
+		{
+			return range.result.join();
+		}
+		catch ( final CompletionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+			throw e;
+		}
+	}
+
+	private void waitForWindow()
+	{
+		try
+		{
+			Thread.sleep( windowMillis );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads all ranges of a closed batch, merging neighbouring ones.
+	 */
+	private void readBatch( final String[] keys, final List< Range > batch, final Reader next )
+	{
+		// no more reads join once the batch is removed from openBatches
+		batch.sort( Comparator.comparingLong( r -> r.start ) );
+		int first = 0;
+		while ( first < batch.size() )
+		{
+			long mergedEnd = batch.get( first ).end;
+			int last = first + 1;
+			while ( last < batch.size() )
+			{
+				final Range r = batch.get( last );
+				final long newEnd = Math.max( mergedEnd, r.end );
+				if ( r.start - mergedEnd > maxGapBytes || newEnd - batch.get( first ).start > maxMergedBytes )
+					break;
+				mergedEnd = newEnd;
+				++last;
+			}
+			readMerged( keys, batch.subList( first, last ), mergedEnd, next );
+			first = last;
+		}
+	}
+
+	private static void readMerged( final String[] keys, final List< Range > ranges, final long mergedEnd, final Reader next )
+	{
+		final long mergedStart = ranges.get( 0 ).start;
+		try
+		{
+			if ( ranges.size() == 1 )
+			{
+				ranges.get( 0 ).result.complete( next.read( keys, mergedStart, mergedEnd ) );
+				return;
+			}
+			final ByteBuffer merged = next.read( keys, mergedStart, mergedEnd );
+			for ( final Range r : ranges )
+				r.result.complete( merged == null ? null : slice( merged, r.start - mergedStart, r.end - r.start ) );
+		}
+		catch ( final RuntimeException | Error e )
+		{
+			for ( final Range r : ranges )
+				r.result.completeExceptionally( e );
+		}
+	}
+
+	private static ByteBuffer slice( final ByteBuffer merged, final long offset, final long length )
+	{
+		final ByteBuffer slice = merged.duplicate();
+		final int from = ( int ) Math.min( merged.position() + offset, merged.limit() );
+		final int to = ( int ) Math.min( from + length, merged.limit() );
+		slice.limit( to );
+		slice.position( from );
+		return slice.slice();
+	}
+
+	private static class Range
+	{
+		final long start;
+
+		final long end;
+
+		final CompletableFuture< ByteBuffer > result = new CompletableFuture<>();
+
+		Range( final long start, final long end )
+		{
+			this.start = start;
+			this.end = end;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * A {@link StoreReadFilter} adding the time each thread spends in the reads
+ * and existence checks of the filters after it, and of the store, to
+ * {@link LoadMetrics#readNanos()}. Put first, it also covers the time spent
+ * waiting for reads merged with those of other threads, so that a cell loader
+ * can tell the decode time of a cell from its fetch time.
+ */
+public class ReadTimer implements StoreReadFilter
+{
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		final long begin = System.nanoTime();
+		try
+		{
+			return next.read( keys, start, end );
+		}
+		finally
+		{
+			LoadMetrics.addReadNanos( System.nanoTime() - begin );
+		}
+	}
+
+	@Override
+	public boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		final long begin = System.nanoTime();
+		try
+		{
+			return next.exists( keys );
+		}
+		finally
+		{
+			LoadMetrics.addReadNanos( System.nanoTime() - begin );
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.utils.IoUtils;
+
+/**
+ * {@link ObjectReads} of a dataset on S3, with {@code GetObject} and
+ * {@code HeadObject} requests below a key prefix. The validator of an object
+ * is its {@code ETag}. Canceling aborts the transfer of the objects being
+ * read; requests still waiting for their response complete.
+ */
+public final class S3Reads extends ObjectReads
+{
+	private final S3Client s3;
+
+	private final String bucket;
+
+	private final String keyPrefix;
+
+	/**
+	 * @param keyPrefix the key of the store root, empty for the bucket root
+	 */
+	public S3Reads( final S3Client s3, final String bucket, final String keyPrefix )
+	{
+		this.s3 = s3;
+		this.bucket = bucket;
+		this.keyPrefix = keyPrefix;
+	}
+
+	@Override
+	protected Response get( final String path, final long start, final long end ) throws IOException
+	{
+		final GetObjectRequest.Builder request = GetObjectRequest.builder().bucket( bucket ).key( key( path ) );
+		final String range = range( start, end );
+		if ( range != null )
+			request.range( range );
+		try (ResponseInputStream< GetObjectResponse > in = s3.getObject( request.build() ))
+		{
+			final Runnable abort = in::abort;
+			started( abort );
+			try
+			{
+				return new Response( in.response().sdkHttpResponse().statusCode(), ByteBuffer.wrap( IoUtils.toByteArray( in ) ),
+						in.response().eTag() );
+			}
+			finally
+			{
+				finished( abort );
+			}
+		}
+		catch ( final S3Exception e )
+		{
+			return new Response( e.statusCode(), null, null );
+		}
+		catch ( final SdkException e )
+		{
+			throw new IOException( e.getMessage(), e );
+		}
+	}
+
+	@Override
+	protected Response head( final String path, final String validator ) throws IOException
+	{
+		try
+		{
+			// S3 answers a matching If-None-Match with 304, as an S3Exception
+			final HeadObjectResponse response = s3.headObject( HeadObjectRequest.builder().bucket( bucket ).key( key( path ) )
+					.ifNoneMatch( validator ).build() );
+			return new Response( response.sdkHttpResponse().statusCode(), null, response.eTag() );
+		}
+		catch ( final S3Exception e )
+		{
+			return new Response( e.statusCode(), null, null );
+		}
+		catch ( final SdkException e )
+		{
+			throw new IOException( e.getMessage(), e );
+		}
+	}
+
+	private String key( final String path )
+	{
+		return keyPrefix.isEmpty() ? path : keyPrefix.replaceFirst( "/$", "" ) + "/" + path;
+	}
+}
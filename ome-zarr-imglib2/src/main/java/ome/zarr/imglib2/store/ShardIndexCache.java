@@ -0,0 +1,297 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * A {@link StoreReadFilter} that keeps the shard indices of Zarr v3 sharded
+ * arrays in memory.
+ *
+ * <p>Zarr readers read the index of a shard with a ranged read every time they
+ * decodes an inner chunk of that shard. This filter learns the
+ * {@link ShardingLayout} of every array from the {@code zarr.json} documents
+ * passing through the store, recognizes index reads by the array they belong
+ * to and their byte range, i.e. the index bytes at the start or the end of a
+ * shard, and serves repeated ones from a bounded, least-recently-used cache.
+ * Concurrent reads of the same index are issued only once. Other reads pass
+ * through.
+ *
+ * <p>Index reads answered from memory and from the store are recorded as
+ * shard index hits and misses to the {@link ome.zarr.imglib2.metrics.LevelMetrics}
+ * of the level they belong to, if given {@link FetchMetrics}.
+ *
+ * <p>Cached bytes are never invalidated; datasets are assumed not to change
+ * while they are open.
+ */
+public class ShardIndexCache implements StoreReadFilter
+{
+	/** Default upper bound for the encoded indices held in memory. */
+	public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+	private static final String ZARR_JSON = "zarr.json";
+
+	private final long maxBytes;
+
+	/** Sharding layouts by array path. */
+	private final Map< String, ShardingLayout > layouts = new ConcurrentHashMap<>();
+
+	/** Cached indices by byte range, in access order. Guarded by {@code this}. */
+	private final LinkedHashMap< String, ByteBuffer > indices = new LinkedHashMap<>( 16, 0.75f, true );
+
+	/** Guarded by {@code this}. */
+	private long cachedBytes = 0;
+
+	private final Map< String, CompletableFuture< ByteBuffer > > pending = new ConcurrentHashMap<>();
+
+	/** Maps reads to the metrics of their level, or {@code null} to record nothing. */
+	private final FetchMetrics metrics;
+
+	public ShardIndexCache()
+	{
+		this( DEFAULT_MAX_BYTES, null );
+	}
+
+	/**
+	 * @param metrics to record the hits and misses to, or {@code null}
+	 */
+	public ShardIndexCache( final FetchMetrics metrics )
+	{
+		this( DEFAULT_MAX_BYTES, metrics );
+	}
+
+	/**
+	 * @param maxBytes upper bound for the encoded indices held in memory
+	 * @param metrics to record the hits and misses to, or {@code null}
+	 */
+	public ShardIndexCache( final long maxBytes, final FetchMetrics metrics )
+	{
+		this.maxBytes = maxBytes;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public ByteBuffer read( final String[] keys, final long start, final long end, final Reader next )
+	{
+		if ( start == 0 && end < 0 )
+		{
+			final ByteBuffer bytes = next.read( keys, start, end );
+			if ( bytes != null && keys.length > 0 && ZARR_JSON.equals( keys[ keys.length - 1 ] ) )
+				learnLayout( keys, bytes );
+			return bytes;
+		}
+		final ShardingLayout layout = layouts.isEmpty() ? null : shardLayout( keys );
+		if ( layout == null || !layout.isIndexRange( start, end ) )
+			return next.read( keys, start, end );
+
+		final String range = StoreReadFilter.path( keys ) + "@" + start + ":" + end;
+		final ByteBuffer cached = getCached( range );
+		if ( cached != null )
+		{
+			hit( keys );
+			return cached.duplicate();
+		}
+
+		final CompletableFuture< ByteBuffer > read = new CompletableFuture<>();
+		final CompletableFuture< ByteBuffer > inFlight = pending.putIfAbsent( range, read );
+		if ( inFlight != null )
+		{
+			final ByteBuffer bytes = join( inFlight );
+			if ( bytes != null && isIndex( layout, bytes ) )
+				hit( keys );
+			return bytes == null ? null : bytes.duplicate();
+		}
+
+		try
+		{
+			final ByteBuffer bytes = next.read( keys, start, end );
+			read.complete( bytes );
+			if ( bytes == null )
+				return null;
+			if ( isIndex( layout, bytes ) )
+			{
+				if ( metrics != null )
+					metrics.levelOf( keys ).shardIndexMissed();
+				putCached( range, bytes );
+			}
+			return bytes.duplicate();
+		}
+		catch ( final RuntimeException e )
+		{
+			read.completeExceptionally( e );
+			throw e;
+		}
+		finally
+		{
+			pending.remove( range );
+		}
+	}
+
+	/**
+	 * Returns the sharding layout of the array at {@code arrayPath}, relative to
+	 * the store root or to any group within it.
+	 *
+	 * @return the layout, or {@code null} if the array is not sharded or its
+	 *   {@code zarr.json} has not been read through this filter
+	 */
+	public ShardingLayout getLayout( final String arrayPath )
+	{
+		final ShardingLayout layout = layouts.get( arrayPath );
+		if ( layout != null )
+			return layout;
+		for ( final Map.Entry< String, ShardingLayout > entry : layouts.entrySet() )
+			if ( entry.getKey().endsWith( "/" + arrayPath ) )
+				return entry.getValue();
+		return null;
+	}
+
+	/** Encoded bytes of the indices currently held in memory. */
+	public synchronized long getCachedBytes()
+	{
+		return cachedBytes;
+	}
+
+	/**
+	 * Drops all cached indices, e.g. once the dataset is closed.
+	 */
+	public synchronized void clear()
+	{
+		indices.clear();
+		cachedBytes = 0;
+	}
+
+	/**
+	 * Drops the cached indices and the learned layouts.
+	 */
+	@Override
+	public void close()
+	{
+		clear();
+		layouts.clear();
+	}
+
+	private void hit( final String[] keys )
+	{
+		if ( metrics != null )
+			metrics.levelOf( keys ).shardIndexHit();
+	}
+
+	private static boolean isIndex( final ShardingLayout layout, final ByteBuffer bytes )
+	{
+		return bytes.remaining() == layout.getIndexBytes();
+	}
+
+	/**
+	 * Returns the layout of the sharded array that the shard under
+	 * {@code keys} belongs to, or {@code null} if none is known.
+	 */
+	private ShardingLayout shardLayout( final String[] keys )
+	{
+		final StringBuilder arrayPath = new StringBuilder();
+		ShardingLayout layout = null;
+		for ( int i = 0; i < keys.length - 1; i++ )
+		{
+			if ( i > 0 )
+				arrayPath.append( '/' );
+			arrayPath.append( keys[ i ] );
+			final ShardingLayout array = layouts.get( arrayPath.toString() );
+			if ( array != null )
+				layout = array;
+		}
+		return layout;
+	}
+
+	private void learnLayout( final String[] keys, final ByteBuffer bytes )
+	{
+		final ByteBuffer json = bytes.duplicate();
+		final byte[] content = new byte[ json.remaining() ];
+		json.get( content );
+		final ShardingLayout layout;
+		try
+		{
+			layout = ShardingLayout.parse( JsonParser.parseString( new String( content, StandardCharsets.UTF_8 ) ) );
+		}
+		catch ( final JsonParseException | IllegalStateException | ClassCastException | NullPointerException e )
+		{
+			// not valid Zarr v3 array metadata; the reader will report it
+			return;
+		}
+		if ( layout == null )
+			return;
+
+		final String[] arrayKeys = new String[ keys.length - 1 ];
+		System.arraycopy( keys, 0, arrayKeys, 0, arrayKeys.length );
+		layouts.put( StoreReadFilter.path( arrayKeys ), layout );
+	}
+
+	private synchronized ByteBuffer getCached( final String range )
+	{
+		return indices.get( range );
+	}
+
+	private synchronized void putCached( final String range, final ByteBuffer bytes )
+	{
+		if ( bytes.remaining() > maxBytes )
+			return;
+		final ByteBuffer previous = indices.put( range, bytes );
+		if ( previous != null )
+			cachedBytes -= previous.remaining();
+		cachedBytes += bytes.remaining();
+		final Iterator< ByteBuffer > eldest = indices.values().iterator();
+		while ( cachedBytes > maxBytes && eldest.hasNext() )
+		{
+			cachedBytes -= eldest.next().remaining();
+			eldest.remove();
+		}
+	}
+
+	private static ByteBuffer join( final CompletableFuture< ByteBuffer > read )
+	{
+		try
+		{
+			return read.join();
+		}
+		catch ( final CompletionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+			throw e;
+		}
+	}
+}
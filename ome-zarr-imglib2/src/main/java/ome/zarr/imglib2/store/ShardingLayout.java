@@ -0,0 +1,155 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Layout of a Zarr v3 array stored with the {@code sharding_indexed} codec, as
+ * declared in its {@code zarr.json}. Shapes are in zarr C-order.
+ */
+public class ShardingLayout
+{
+	/** Bytes per shard index entry: an uint64 offset and an uint64 length. */
+	private static final int INDEX_ENTRY_BYTES = 16;
+
+	/** Bytes appended to the shard index by the {@code crc32c} codec. */
+	private static final int CRC32C_BYTES = 4;
+
+	private final int[] shardShape;
+
+	private final int[] innerChunkShape;
+
+	private final long indexBytes;
+
+	private final boolean indexAtStart;
+
+	ShardingLayout( final int[] shardShape, final int[] innerChunkShape, final int checksumBytes, final boolean indexAtStart )
+	{
+		this.shardShape = shardShape;
+		this.innerChunkShape = innerChunkShape;
+		this.indexAtStart = indexAtStart;
+		long numInnerChunks = 1;
+		for ( int d = 0; d < shardShape.length; d++ )
+			numInnerChunks *= ( shardShape[ d ] + innerChunkShape[ d ] - 1 ) / innerChunkShape[ d ];
+		this.indexBytes = numInnerChunks * INDEX_ENTRY_BYTES + checksumBytes;
+	}
+
+	/**
+	 * Reads the sharding layout from the contents of a Zarr v3
+	 * {@code zarr.json} document.
+	 *
+	 * @return the layout, or {@code null} if the document does not describe a
+	 *   sharded array
+	 */
+	static ShardingLayout parse( final JsonElement zarrJson )
+	{
+		if ( !zarrJson.isJsonObject() )
+			return null;
+		final JsonObject root = zarrJson.getAsJsonObject();
+		if ( !root.has( "chunk_grid" ) || !root.has( "codecs" ) )
+			return null;
+		for ( final JsonElement codec : root.getAsJsonArray( "codecs" ) )
+		{
+			final JsonObject c = codec.getAsJsonObject();
+			if ( !"sharding_indexed".equals( c.get( "name" ).getAsString() ) )
+				continue;
+			final JsonObject configuration = c.getAsJsonObject( "configuration" );
+			final int[] shardShape = toIntArray( root.getAsJsonObject( "chunk_grid" )
+					.getAsJsonObject( "configuration" ).getAsJsonArray( "chunk_shape" ) );
+			final int[] innerChunkShape = toIntArray( configuration.getAsJsonArray( "chunk_shape" ) );
+			final boolean indexAtStart = configuration.has( "index_location" )
+					&& "start".equals( configuration.get( "index_location" ).getAsString() );
+			return new ShardingLayout( shardShape, innerChunkShape, checksumBytes( configuration ), indexAtStart );
+		}
+		return null;
+	}
+
+	/** Trailing checksum bytes of the index; the default index codecs include {@code crc32c}. */
+	private static int checksumBytes( final JsonObject configuration )
+	{
+		if ( !configuration.has( "index_codecs" ) )
+			return CRC32C_BYTES;
+		int bytes = 0;
+		for ( final JsonElement codec : configuration.getAsJsonArray( "index_codecs" ) )
+			if ( "crc32c".equals( codec.getAsJsonObject().get( "name" ).getAsString() ) )
+				bytes += CRC32C_BYTES;
+		return bytes;
+	}
+
+	private static int[] toIntArray( final JsonArray array )
+	{
+		final int[] values = new int[ array.size() ];
+		for ( int i = 0; i < values.length; i++ )
+			values[ i ] = array.get( i ).getAsInt();
+		return values;
+	}
+
+	/** Shape of a shard, i.e. of the array's chunk grid. */
+	public int[] getShardShape()
+	{
+		return shardShape.clone();
+	}
+
+	/** Shape of the inner chunks that are encoded individually within a shard. */
+	public int[] getInnerChunkShape()
+	{
+		return innerChunkShape.clone();
+	}
+
+	/** Size of the encoded shard index in bytes. */
+	public long getIndexBytes()
+	{
+		return indexBytes;
+	}
+
+	/**
+	 * Whether the index precedes the inner chunks of a shard, as declared by
+	 * {@code index_location}; by default it follows them.
+	 */
+	public boolean isIndexAtStart()
+	{
+		return indexAtStart;
+	}
+
+	/**
+	 * Whether reading the bytes {@code [start, end)} of a shard, as described
+	 * by {@link StoreReadFilter}, reads its index: the first
+	 * {@link #getIndexBytes()} bytes if the index is at the start, the last
+	 * ones otherwise.
+	 */
+	public boolean isIndexRange( final long start, final long end )
+	{
+		if ( indexAtStart )
+			return start == 0 && end == indexBytes;
+		return start == -indexBytes && end < 0;
+	}
+}
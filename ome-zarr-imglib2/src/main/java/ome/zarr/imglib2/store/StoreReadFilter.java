@@ -0,0 +1,94 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Intercepts the reads and existence checks of a store, e.g. of a zarr-java
+ * store wrapped with {@code ome.zarr.zarrjava.store.FilteredStore}. The
+ * filters depend on no storage library, so that every backend can read
+ * through them.
+ *
+ * <p>A read covers the bytes {@code [start, end)} of the value stored under
+ * {@code keys}. An {@code end} of {@code -1} means "to the end of the value",
+ * so a full read is {@code start = 0, end = -1}.
+ *
+ * <p>Filters are {@linkplain #close() closed} with the store they filter.
+ */
+public interface StoreReadFilter extends AutoCloseable
+{
+	/**
+	 * Reads the requested bytes, typically by delegating to {@code next}.
+	 *
+	 * @return the bytes read, or {@code null} if the key does not exist
+	 */
+	ByteBuffer read( String[] keys, long start, long end, Reader next );
+
+	/**
+	 * Checks whether {@code keys} exist, by default by delegating to
+	 * {@code next}.
+	 */
+	default boolean exists( final String[] keys, final ExistenceCheck next )
+	{
+		return next.exists( keys );
+	}
+
+	/**
+	 * Releases what the filter holds for its dataset, once the dataset is
+	 * closed. Does nothing by default.
+	 */
+	@Override
+	default void close()
+	{}
+
+	/**
+	 * The next filter in the chain, or the wrapped store.
+	 */
+	interface Reader
+	{
+		ByteBuffer read( String[] keys, long start, long end );
+	}
+
+	/**
+	 * The next filter in the chain, or the wrapped store.
+	 */
+	interface ExistenceCheck
+	{
+		boolean exists( String[] keys );
+	}
+
+	/**
+	 * Joins store keys to a {@code '/'} separated path, e.g. for use as map key.
+	 */
+	static String path( final String[] keys )
+	{
+		return String.join( "/", keys );
+	}
+}
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
+
+/**
+ * Unit tests for {@link LoadMonitor} and the default
+ * {@link PyramidBackend#loadAsync}.
+ */
+class LoadMonitorTest
+{
+	private static final URI URI = java.net.URI.create( "file:/image.ome.zarr" );
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch( 1 );
+
+	/** Blocks until {@link #release} is counted down. */
+	private final PyramidBackend blockingBackend = new PyramidBackend()
+	{
+		@Override
+		public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri )
+		{
+			loads.incrementAndGet();
+			awaitRelease();
+			return null;
+		}
+	};
+
+	private void awaitRelease()
+	{
+		try
+		{
+			release.await();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void testProgressIsReportedUntilCanceled()
+	{
+		final LoadMonitor monitor = new LoadMonitor();
+		final List< LoadMonitor.Stage > stages = new ArrayList<>();
+		monitor.addListener( ( stage, done, total ) -> stages.add( stage ) );
+
+		monitor.progress( LoadMonitor.Stage.METADATA, 1, 1 );
+		monitor.cancel();
+		assertThrows( LoadCanceledException.class, () -> monitor.progress( LoadMonitor.Stage.LEVELS, 1, 2 ) );
+		assertEquals( 1, stages.size() );
+	}
+
+	@Test
+	void testCanceledMonitorDoesNotLoad()
+	{
+		final LoadMonitor monitor = new LoadMonitor();
+		monitor.cancel();
+		release.countDown();
+
+		final ExecutionException e = assertThrows( ExecutionException.class,
+				() -> blockingBackend.loadAsync( URI, monitor ).get() );
+		assertInstanceOf( LoadCanceledException.class, e.getCause() );
+		assertEquals( 0, loads.get() );
+	}
+
+	@Test
+	void testCancelingTheFutureCancelsTheMonitor()
+	{
+		final LoadMonitor monitor = new LoadMonitor();
+		final CompletableFuture< ? > future = blockingBackend.loadAsync( URI, monitor );
+		future.cancel( true );
+		release.countDown();
+		assertTrue( monitor.isCanceled() );
+	}
+
+	@Test
+	void testResultOfACanceledLoadIsClosed() throws InterruptedException
+	{
+		final CountDownLatch closed = new CountDownLatch( 1 );
+		final CompletableFuture< AutoCloseable > future = AsyncLoading.< AutoCloseable >supplyAsync( () -> {
+			awaitRelease();
+			return closed::countDown;
+		}, new LoadMonitor() );
+		future.cancel( true );
+		release.countDown();
+		assertTrue( closed.await( 5, TimeUnit.SECONDS ) );
+	}
+}
@@ -0,0 +1,207 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.util.Cast;
+
+import ome.zarr.imglib2.exceptions.NoMatchingResolutionException;
+import ome.zarr.imglib2.metadata.AxisCalibration;
+
+/**
+ * Unit tests for the lazy opening of resolution levels by {@link PyramidContents},
+ * and for closing them.
+ */
+class PyramidContentsTest
+{
+	private static final long[][] DIMENSIONS = { { 64, 32 }, { 32, 16 }, { 16, 8 } };
+
+	private final AtomicIntegerArray opens = new AtomicIntegerArray( DIMENSIONS.length );
+
+	private final List< String > closed = new ArrayList<>();
+
+	private CachedCellImg< UnsignedByteType, ? > open( final int level )
+	{
+		opens.incrementAndGet( level );
+		return new ReadOnlyCachedCellImgFactory().create( DIMENSIONS[ level ], new UnsignedByteType(), cell -> {} );
+	}
+
+	private static AffineTransform3D scale( final double scale )
+	{
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.scale( scale );
+		return transform;
+	}
+
+	private PyramidContents< UnsignedByteType > contents( final long[][] levelDimensions )
+	{
+		return contents( levelDimensions, null );
+	}
+
+	private PyramidContents< UnsignedByteType > contents( final long[][] levelDimensions, final Executor levelOpeners )
+	{
+		final AxisCalibration[] axes = { new AxisCalibration( AxisCalibration.X, "um", 1 ), new AxisCalibration( AxisCalibration.Y, "um", 1 ) };
+		return PyramidContents.< UnsignedByteType >builder()
+				.name( "lazy" )
+				.type( new UnsignedByteType() )
+				.transforms( new AffineTransform3D[] { scale( 0.5 ), scale( 1 ), scale( 2 ) } )
+				.levelOpener( DIMENSIONS.length, this::open )
+				.levelOpeners( levelOpeners )
+				.levelDimensions( levelDimensions )
+				.axesPerLevel( new AxisCalibration[][] { axes, axes, axes } )
+				.resource( () -> closed.add( "reader" ) )
+				.resource( () -> closed.add( "cache" ) )
+				.build();
+	}
+
+	@Test
+	void testQueriesDoNotOpenKnownLevels()
+	{
+		final PyramidContents< UnsignedByteType > contents = contents( DIMENSIONS );
+
+		assertEquals( 2, contents.numDimensions() );
+		assertEquals( 1, contents.numChannels() );
+		assertEquals( 1, contents.selectResolutionLevel( 40 ) );
+		assertArrayEquals( DIMENSIONS[ 1 ], contents.dimensions( 1 ) );
+
+		for ( int level = 0; level < DIMENSIONS.length; level++ )
+			assertEquals( 0, opens.get( level ) );
+	}
+
+	@Test
+	void testLevelsAreOpenedOnceOnFirstAccess()
+	{
+		final PyramidContents< UnsignedByteType > contents = contents( DIMENSIONS );
+
+		assertSame( contents.asImg( 1 ), contents.cachedCellImg( 1 ) );
+		assertEquals( 0, opens.get( 0 ) );
+		assertEquals( 1, opens.get( 1 ) );
+
+		contents.cachedCellImgs();
+		for ( int level = 0; level < DIMENSIONS.length; level++ )
+			assertEquals( 1, opens.get( level ) );
+	}
+
+	@Test
+	void testUnknownWidthsAreEstimatedFromTheScales()
+	{
+		final PyramidContents< UnsignedByteType > contents = contents( new long[][] { DIMENSIONS[ 0 ], null, null } );
+
+		assertEquals( 1, contents.selectResolutionLevel( 32 ) );
+		assertEquals( 2, contents.selectResolutionLevel( 20 ) );
+		assertThrows( NoMatchingResolutionException.class, () -> contents.selectResolutionLevel( 15 ) );
+		for ( int level = 0; level < DIMENSIONS.length; level++ )
+			assertEquals( 0, opens.get( level ) );
+	}
+
+	@Test
+	void testLevelsAreOpenedOnTheGivenExecutor()
+	{
+		final AtomicInteger executed = new AtomicInteger();
+		final PyramidContents< UnsignedByteType > contents = contents( DIMENSIONS, runnable -> {
+			executed.incrementAndGet();
+			runnable.run();
+		} );
+		contents.cachedCellImg( 0 );
+
+		contents.cachedCellImgs();
+
+		assertEquals( 2, executed.get() );
+	}
+
+	@Test
+	@SuppressWarnings( "deprecation" )
+	void testDeprecatedArrayHoldsTheOpenedLevels()
+	{
+		final PyramidContents< UnsignedByteType > contents = contents( DIMENSIONS );
+
+		assertNull( contents.cachedCellImgs[ 1 ] );
+		assertSame( contents.cachedCellImg( 1 ), contents.cachedCellImgs[ 1 ] );
+		assertNull( contents.cachedCellImgs[ 0 ] );
+
+		contents.close();
+		assertNull( contents.cachedCellImgs[ 1 ] );
+	}
+
+	@Test
+	void testCloseReleasesResourcesOnce()
+	{
+		final PyramidContents< UnsignedByteType > contents = contents( DIMENSIONS );
+		contents.cachedCellImg( 0 );
+
+		contents.close();
+		contents.close();
+
+		assertTrue( contents.isClosed() );
+		assertEquals( Arrays.asList( "cache", "reader" ), closed );
+		assertThrows( IllegalStateException.class, () -> contents.cachedCellImg( 0 ) );
+		assertThrows( IllegalStateException.class, () -> contents.cachedCellImg( 1 ) );
+		assertArrayEquals( DIMENSIONS[ 1 ], contents.dimensions( 1 ) );
+	}
+
+	@Test
+	void testDefaultInspectClosesTheContents()
+	{
+		final PyramidBackend backend = new PyramidBackend()
+		{
+			@Override
+			public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri )
+			{
+				return Cast.unchecked( contents( DIMENSIONS ) );
+			}
+		};
+
+		final PyramidDescription description = backend.inspect( URI.create( "file:/lazy" ) );
+
+		assertArrayEquals( DIMENSIONS[ 1 ], description.dimensions( 1 ) );
+		assertEquals( Arrays.asList( "cache", "reader" ), closed );
+	}
+}
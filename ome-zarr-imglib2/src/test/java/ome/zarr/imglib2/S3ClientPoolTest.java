@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Unit tests for {@link S3ClientPool}, reading from a local stand-in for S3.
+ */
+class S3ClientPoolTest
+{
+	@Test
+	void testClientsAreSharedPerRegion()
+	{
+		final S3ClientPool pool = new S3ClientPool();
+		try
+		{
+			final S3Client client = pool.get( "eu-west-1", null );
+			assertSame( client, pool.get( "eu-west-1", null ) );
+			assertNotSame( client, pool.get( "us-west-2", null ) );
+			assertNotSame( client, pool.get( "eu-west-1", null, true ) );
+			assertEquals( 3, pool.size() );
+		}
+		finally
+		{
+			pool.close();
+		}
+		assertEquals( 0, pool.size() );
+	}
+
+	@Test
+	void testReadsFromConfiguredEndpoint() throws IOException
+	{
+		final byte[] content = "{\"zarr_format\":3}".getBytes( StandardCharsets.UTF_8 );
+		final HttpServer server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		server.createContext( "/", exchange -> {
+			exchange.getResponseHeaders().add( "x-amz-bucket-region", "eu-central-1" );
+			if ( "GET".equals( exchange.getRequestMethod() ) && "/bucket/image/zarr.json".equals( exchange.getRequestURI().getPath() ) )
+			{
+				exchange.sendResponseHeaders( 200, content.length );
+				exchange.getResponseBody().write( content );
+			}
+			else
+				exchange.sendResponseHeaders( 200, -1 );
+			exchange.close();
+		} );
+		server.start();
+		System.setProperty( S3Endpoints.ENDPOINT_PROPERTY, "http://127.0.0.1:" + server.getAddress().getPort() );
+		final S3ClientPool pool = new S3ClientPool();
+		try
+		{
+			final S3Client client = pool.forBucket( "bucket" );
+			assertSame( client, pool.forBucket( "bucket" ) );
+			assertArrayEquals( content, client.getObjectAsBytes( b -> b.bucket( "bucket" ).key( "image/zarr.json" ) ).asByteArray() );
+		}
+		finally
+		{
+			pool.close();
+			System.clearProperty( S3Endpoints.ENDPOINT_PROPERTY );
+			server.stop( 0 );
+		}
+	}
+}
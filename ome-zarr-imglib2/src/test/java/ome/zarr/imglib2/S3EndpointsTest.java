@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the region detection of {@link S3Endpoints}, against a local
+ * stand-in for S3.
+ */
+class S3EndpointsTest
+{
+	private HttpServer server;
+
+	private URI endpoint;
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@BeforeEach
+	void startServer() throws IOException
+	{
+		server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		server.createContext( "/", exchange -> {
+			requests.incrementAndGet();
+			// like S3, report the region even though access is denied
+			if ( exchange.getRequestURI().getPath().startsWith( "/eu-bucket" ) )
+				exchange.getResponseHeaders().add( "x-amz-bucket-region", "eu-central-1" );
+			exchange.sendResponseHeaders( 403, -1 );
+			exchange.close();
+		} );
+		server.start();
+		endpoint = URI.create( "http://127.0.0.1:" + server.getAddress().getPort() );
+	}
+
+	@AfterEach
+	void stopServer()
+	{
+		server.stop( 0 );
+	}
+
+	@Test
+	void testRegionIsDetectedOnce()
+	{
+		assertEquals( "eu-central-1", S3Endpoints.bucketRegion( endpoint, "eu-bucket" ) );
+		assertEquals( "eu-central-1", S3Endpoints.bucketRegion( endpoint, "eu-bucket" ) );
+		assertEquals( 1, requests.get() );
+	}
+
+	@Test
+	void testUnknownRegionFallsBackToDefault()
+	{
+		assertEquals( S3Endpoints.DEFAULT_REGION, S3Endpoints.bucketRegion( endpoint, "other-bucket" ) );
+	}
+
+	@Test
+	void testDottedBucketNamesRequirePathStyle()
+	{
+		assertTrue( S3Endpoints.requiresPathStyle( "my.bucket" ) );
+		assertFalse( S3Endpoints.requiresPathStyle( "my-bucket" ) );
+	}
+}
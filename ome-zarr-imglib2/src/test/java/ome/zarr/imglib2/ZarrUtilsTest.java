@@ -28,28 +28,44 @@
  */
 package ome.zarr.imglib2;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import com.sun.net.httpserver.HttpServer;
 
+import ome.zarr.SyntheticOmeZarr;
+import ome.zarr.ZarrTestServer;
 import ome.zarr.ZarrTestUtils;
 
 class ZarrUtilsTest
@@ -129,6 +145,21 @@ class ZarrUtilsTest
 
 	private final Set< String > htmlPaths = Collections.synchronizedSet( new HashSet<>() );
 
+	/** Paths answered with a server error. */
+	private final Set< String > failingPaths = Collections.synchronizedSet( new HashSet<>() );
+
+	/** Response bodies of existing paths that have one. */
+	private final Map< String, byte[] > bodies = new ConcurrentHashMap<>();
+
+	/** Paths whose responses are held back until {@link #release} is counted down. */
+	private final Set< String > stalledPaths = Collections.synchronizedSet( new HashSet<>() );
+
+	private final CountDownLatch release = new CountDownLatch( 1 );
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private ExecutorService handlers;
+
 	static Stream< String > omeZarrPaths()
 	{
 		return Stream.of(
@@ -144,13 +175,35 @@ class ZarrUtilsTest
 	{
 		existingPaths.clear();
 		htmlPaths.clear();
+		handlers = Executors.newCachedThreadPool();
 		server = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		server.setExecutor( handlers );
 		server.createContext( "/", exchange -> {
+			requests.incrementAndGet();
 			final String path = exchange.getRequestURI().getPath();
-			final int code = existingPaths.contains( path ) ? 200 : 404;
+			if ( stalledPaths.contains( path ) )
+			{
+				try
+				{
+					release.await( 10, TimeUnit.SECONDS );
+				}
+				catch ( InterruptedException e )
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+			final int code = failingPaths.contains( path ) ? 503 : existingPaths.contains( path ) ? 200 : 404;
 			if ( htmlPaths.contains( path ) )
 				exchange.getResponseHeaders().set( "Content-Type", "text/html; charset=utf-8" );
-			exchange.sendResponseHeaders( code, -1 );
+			final byte[] body = bodies.get( path );
+			if ( code == 200 && body != null )
+			{
+				exchange.getResponseHeaders().set( "ETag", "\"v1\"" );
+				exchange.sendResponseHeaders( code, body.length );
+				exchange.getResponseBody().write( body );
+			}
+			else
+				exchange.sendResponseHeaders( code, -1 );
 			exchange.close();
 		} );
 		server.start();
@@ -159,8 +212,11 @@ class ZarrUtilsTest
 	@AfterEach
 	void stopServer()
 	{
+		release.countDown();
 		if ( server != null )
 			server.stop( 0 );
+		if ( handlers != null )
+			handlers.shutdownNow();
 	}
 
 	private URI base()
@@ -212,4 +268,113 @@ class ZarrUtilsTest
 		final URI withSlash = URI.create( base() + "/" );
 		assertTrue( ZarrUtils.isZarr( withSlash ) );
 	}
+
+	@Test
+	void identifiesZarrV3WithOneRequest()
+	{
+		exists( "/dataset/zarr.json" );
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		assertEquals( 1, requests.get() );
+	}
+
+	@Test
+	void identifiesDatasetWithDocumentTooLargeToKeep()
+	{
+		exists( "/dataset/zarr.json" );
+		bodies.put( "/dataset/zarr.json", new byte[ 2 << 20 ] );
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		assertNull( ZarrUtils.prefetchedMetadata( base() ).document( "zarr.json" ) );
+	}
+
+	@Test
+	void probesZarrV2WhileZarrJsonIsSlow()
+	{
+		// a slow zarr.json delays detecting a Zarr v2 dataset by V2_PROBE_DELAY_MILLIS at most
+		stalledPaths.add( "/dataset/zarr.json" );
+		exists( "/dataset/.zgroup" );
+		assertTrue( assertTimeoutPreemptively( Duration.ofSeconds( 3 ), () -> ZarrUtils.isZarr( base() ) ) );
+	}
+
+	@Test
+	void remembersProbeResults()
+	{
+		exists( "/dataset/.zattrs" );
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		final int probed = requests.get();
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		assertEquals( probed, requests.get() );
+
+		ZarrUtils.clearProbeCache();
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		assertTrue( requests.get() > probed );
+	}
+
+	@Test
+	void doesNotRememberFailedProbes()
+	{
+		exists( "/dataset/zarr.json" );
+		failingPaths.add( "/dataset/zarr.json" );
+		assertFalse( ZarrUtils.isZarr( base() ) );
+
+		failingPaths.clear();
+		assertTrue( ZarrUtils.isZarr( base() ) );
+	}
+
+	@Test
+	void fallsBackToCachedMetadataWhenProbesFail()
+	{
+		failingPaths.addAll( Arrays.asList( "/dataset/zarr.json", "/dataset/.zgroup", "/dataset/.zarray", "/dataset/.zattrs" ) );
+		assertFalse( ZarrUtils.isZarr( base() ) );
+
+		ZarrUtils.setMetadataCache( uri -> uri.equals( base() ) );
+		try
+		{
+			assertTrue( ZarrUtils.isZarr( base() ) );
+			// a conclusive answer of the server is not overridden
+			failingPaths.clear();
+			ZarrUtils.clearProbeCache();
+			assertFalse( ZarrUtils.isZarr( base() ) );
+		}
+		finally
+		{
+			ZarrUtils.setMetadataCache( null );
+			ZarrUtils.clearProbeCache();
+		}
+	}
+
+	@Test
+	void keepsFetchedMetadataDocuments()
+	{
+		final byte[] zarrJson = "{\"zarr_format\":3,\"node_type\":\"group\"}".getBytes( StandardCharsets.UTF_8 );
+		exists( "/dataset/zarr.json" );
+		bodies.put( "/dataset/zarr.json", zarrJson );
+		assertTrue( PrefetchedMetadata.none().isEmpty() );
+		assertTrue( ZarrUtils.prefetchedMetadata( base() ).isEmpty() );
+
+		assertTrue( ZarrUtils.isZarr( base() ) );
+		final PrefetchedMetadata prefetched = ZarrUtils.prefetchedMetadata( base() );
+		assertArrayEquals( zarrJson, prefetched.document( "zarr.json" ) );
+		assertEquals( "\"v1\"", prefetched.validator( "zarr.json" ) );
+	}
+
+	@Test
+	void probesServedZarrV2DatasetWithinTwoRoundTrips( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().version( SyntheticOmeZarr.Version.V0_4 ).levels( 2 ).build();
+		synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ).latency( 200 ))
+		{
+			final URI uri = server.httpUri( "image.ome.zarr" );
+			// zarr.json, then the Zarr v2 documents at once; probing them one
+			// after the other would take 800ms
+			assertTrue( assertTimeoutPreemptively( Duration.ofMillis( 800 ), () -> ZarrUtils.isZarr( uri ) ) );
+			assertTrue( server.count() <= ZarrUtils.METADATA_FILES.length, () -> server.requests().toString() );
+			assertTrue( server.requests().stream().allMatch( request -> request.key.startsWith( "image.ome.zarr/." )
+					|| request.key.equals( "image.ome.zarr/zarr.json" ) ), () -> server.requests().toString() );
+
+			server.resetCounts();
+			assertTrue( ZarrUtils.isZarr( uri ) );
+			assertEquals( 0, server.count() );
+		}
+	}
 }
@@ -0,0 +1,393 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.cache.LoaderCache;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+
+import org.junit.jupiter.api.Test;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Unit tests for the {@link SharedCellCache} class, using cells of 100
+ * {@code short}s, i.e. 200 bytes, whose first element is their index.
+ */
+class SharedCellCacheTest
+{
+	private static final long CELL_BYTES = 200;
+
+	/** Bytes accounted per cell. */
+	private static final long ENTRY_BYTES = CELL_BYTES + SharedCellCache.ENTRY_OVERHEAD_BYTES;
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private final CacheLoader< Long, Cell< VolatileShortArray > > loader = index -> {
+		loads.incrementAndGet();
+		final short[] data = new short[ 100 ];
+		data[ 0 ] = ( short ) ( long ) index;
+		return new Cell<>( new int[] { 100 }, new long[] { 100 * index }, new VolatileShortArray( data, true ) );
+	};
+
+	@Test
+	void testCellsAreLoadedOnce() throws ExecutionException
+	{
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = new SharedCellCache( 10 * ENTRY_BYTES ).levelCache( "a" );
+
+		final Cell< VolatileShortArray > cell = cache.get( 3L, loader );
+
+		assertSame( cell, cache.get( 3L, loader ) );
+		assertSame( cell, cache.getIfPresent( 3L ) );
+		assertEquals( 1, loads.get() );
+	}
+
+	@Test
+	void testLeastRecentlyUsedCellsAreEvictedAcrossLevels() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 3 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > a = shared.levelCache( "a" );
+		final LoaderCache< Long, Cell< VolatileShortArray > > b = shared.levelCache( "b" );
+
+		a.get( 0L, loader );
+		a.get( 1L, loader );
+		b.get( 0L, loader );
+		a.get( 0L, loader ); // a/0 is now more recently used than a/1
+		b.get( 1L, loader );
+
+		assertEquals( 3 * ENTRY_BYTES, shared.getUsedBytes() );
+		assertNull( a.getIfPresent( 1L ) );
+		assertNotNull( a.getIfPresent( 0L ) );
+		assertEquals( ENTRY_BYTES, ( long ) shared.getUsedBytesPerDataset().get( "a" ) );
+		assertEquals( 2 * ENTRY_BYTES, ( long ) shared.getUsedBytesPerDataset().get( "b" ) );
+	}
+
+	@Test
+	void testLoweringTheBudgetEvicts() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = shared.levelCache( "a" );
+		for ( long i = 0; i < 5; i++ )
+			cache.get( i, loader );
+
+		shared.setMaxBytes( 2 * ENTRY_BYTES );
+
+		assertEquals( 2 * ENTRY_BYTES, shared.getUsedBytes() );
+		assertNotNull( cache.getIfPresent( 4L ) );
+		assertNull( cache.getIfPresent( 0L ) );
+	}
+
+	@Test
+	void testUniformCellsAreBounded() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 3 * SharedCellCache.ENTRY_OVERHEAD_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = shared.levelCache( "a" );
+		final CacheLoader< Long, Cell< VolatileShortArray > > uniform = UniformCells.sharing(
+				index -> new Cell<>( new int[] { 100 }, new long[] { 100 * index }, new VolatileShortArray( 100, true ) ) );
+		for ( long i = 0; i < 10; i++ )
+			cache.get( i, uniform );
+
+		assertEquals( 3 * SharedCellCache.ENTRY_OVERHEAD_BYTES, shared.getUsedBytes() );
+		assertNull( cache.getIfPresent( 0L ) );
+		assertNotNull( cache.getIfPresent( 9L ) );
+	}
+
+	@Test
+	void testManyHitsKeepTheAccessOrder() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 2 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = shared.levelCache( "a" );
+		cache.get( 0L, loader );
+		cache.get( 1L, loader );
+		// more hits than are recorded before being applied
+		for ( int i = 0; i < 2 * SharedCellCache.MAX_PENDING_HITS; i++ )
+			cache.getIfPresent( 0L );
+		cache.get( 2L, loader );
+
+		assertNull( cache.getIfPresent( 1L ) );
+		assertNotNull( cache.getIfPresent( 0L ) );
+	}
+
+	@Test
+	void testConcurrentHitsAndLoadsKeepTheAccounting() throws Exception
+	{
+		final SharedCellCache shared = new SharedCellCache( 20 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = shared.levelCache( "a" );
+		final List< Thread > threads = new ArrayList<>();
+		final List< Throwable > failures = Collections.synchronizedList( new ArrayList<>() );
+		for ( int t = 0; t < 8; t++ )
+		{
+			final long offset = t;
+			threads.add( new Thread( () -> {
+				try
+				{
+					for ( long i = 0; i < 2000; i++ )
+						assertEquals( ( short ) ( ( offset + i ) % 50 ), cache.get( ( offset + i ) % 50, loader ).getData().getValue( 0 ) );
+				}
+				catch ( final Throwable e )
+				{
+					failures.add( e );
+				}
+			} ) );
+		}
+		threads.forEach( Thread::start );
+		for ( final Thread thread : threads )
+			thread.join();
+
+		assertEquals( Collections.emptyList(), failures );
+		assertEquals( 20 * ENTRY_BYTES, shared.getUsedBytes() );
+		assertEquals( 20 * ENTRY_BYTES, ( long ) shared.getUsedBytesPerDataset().get( "a" ) );
+	}
+
+	@Test
+	void testInvalidateAllOnlyAffectsOneLevel() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > a = shared.levelCache( "a" );
+		final LoaderCache< Long, Cell< VolatileShortArray > > b = shared.levelCache( "b" );
+		a.get( 1L, loader );
+		b.get( 1L, loader );
+
+		a.invalidateAll();
+
+		assertNull( a.getIfPresent( 1L ) );
+		assertNotNull( b.getIfPresent( 1L ) );
+		assertEquals( ENTRY_BYTES, shared.getUsedBytes() );
+	}
+
+	@Test
+	void testFailedLoadsAreNotCached()
+	{
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = new SharedCellCache( 10 * ENTRY_BYTES ).levelCache( "a" );
+
+		assertThrows( ExecutionException.class, () -> cache.get( 1L, index -> {
+			throw new IllegalStateException( "unreachable store" );
+		} ) );
+
+		assertNull( cache.getIfPresent( 1L ) );
+	}
+
+	@Test
+	void testCancelDropsCellsAndFailsLoads() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > a = shared.levelCache( "a" );
+		final LoaderCache< Long, Cell< VolatileShortArray > > b = shared.levelCache( "b" );
+		a.get( 1L, loader );
+		b.get( 1L, loader );
+
+		shared.cancel( "a" );
+
+		assertNull( a.getIfPresent( 1L ) );
+		assertEquals( ENTRY_BYTES, shared.getUsedBytes() );
+		final ExecutionException e = assertThrows( ExecutionException.class, () -> a.get( 2L, loader ) );
+		assertInstanceOf( CancellationException.class, e.getCause() );
+		assertNotNull( b.get( 2L, loader ) );
+		assertEquals( 3, loads.get() );
+
+		shared.resume( "a" );
+		assertNotNull( a.get( 2L, loader ) );
+	}
+
+	@Test
+	void testCellsLoadedWhileCanceledAreNotRetained() throws Exception
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > a = shared.levelCache( "a" );
+		final CountDownLatch loading = new CountDownLatch( 1 );
+		final CountDownLatch canceled = new CountDownLatch( 1 );
+		final Thread load = new Thread( () -> {
+			try
+			{
+				a.get( 1L, index -> {
+					loading.countDown();
+					canceled.await();
+					return loader.get( index );
+				} );
+			}
+			catch ( final ExecutionException e )
+			{
+				throw new IllegalStateException( e );
+			}
+		} );
+		load.start();
+		loading.await();
+
+		shared.cancel( "a" );
+		canceled.countDown();
+		load.join();
+
+		assertNull( a.getIfPresent( 1L ) );
+		assertEquals( 0, shared.getUsedBytes() );
+	}
+
+	@Test
+	void testLoadsQueuedWhenTheDatasetIsClosedGetInvalidCells() throws Exception
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final LoaderCache< Long, Cell< VolatileShortArray > > a = shared.levelCache( "a", 0,
+				index -> new Cell<>( new int[] { 100 }, new long[] { 100 * index }, new VolatileShortArray( 100, false ) ) );
+		final ExecutorService fetcher = Executors.newSingleThreadExecutor();
+		try
+		{
+			final CountDownLatch loading = new CountDownLatch( 1 );
+			final CountDownLatch closed = new CountDownLatch( 1 );
+			final Future< Cell< VolatileShortArray > > inProgress = fetcher.submit( () -> a.get( 0L, index -> {
+				loading.countDown();
+				closed.await();
+				return loader.get( index );
+			} ) );
+			final List< Future< Cell< VolatileShortArray > > > queued = new ArrayList<>();
+			for ( long i = 1; i < 5; i++ )
+			{
+				final long index = i;
+				queued.add( fetcher.submit( () -> a.get( index, loader ) ) );
+			}
+			loading.await();
+
+			shared.cancel( "a" );
+			closed.countDown();
+
+			assertFalse( inProgress.get().getData().isValid() );
+			for ( final Future< Cell< VolatileShortArray > > cell : queued )
+				assertFalse( cell.get().getData().isValid() );
+			assertEquals( 1, loads.get() );
+			assertEquals( 0, shared.getUsedBytes() );
+
+			shared.resume( "a" );
+			assertTrue( a.get( 1L, loader ).getData().isValid() );
+		}
+		finally
+		{
+			fetcher.shutdownNow();
+		}
+	}
+
+	@Test
+	void testCancelablesFollowTheirDataset()
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		final List< String > calls = new ArrayList<>();
+		final SharedCellCache.Cancelable cancelable = new SharedCellCache.Cancelable()
+		{
+			@Override
+			public void cancel()
+			{
+				calls.add( "cancel" );
+			}
+
+			@Override
+			public void resume()
+			{
+				calls.add( "resume" );
+			}
+		};
+		shared.addCancelable( "a", cancelable );
+
+		shared.cancel( "b" );
+		shared.cancel( "a" );
+		shared.resume( "a" );
+
+		assertEquals( Arrays.asList( "cancel", "resume" ), calls );
+	}
+
+	@Test
+	void testCancelDoesNotAffectLevelCachesCreatedLater() throws ExecutionException
+	{
+		final SharedCellCache shared = new SharedCellCache( 10 * ENTRY_BYTES );
+		shared.levelCache( "a" );
+		shared.cancel( "a" );
+
+		final LoaderCache< Long, Cell< VolatileShortArray > > reopened = shared.levelCache( "a" );
+		assertNotNull( reopened.get( 1L, loader ) );
+	}
+
+	@Test
+	void testHitsMissesAndEvictionsAreRecordedPerLevel() throws ExecutionException
+	{
+		final LoadMetrics metrics = new LoadMetrics( true );
+		final SharedCellCache shared = new SharedCellCache( 2 * ENTRY_BYTES, metrics );
+		final LoaderCache< Long, Cell< VolatileShortArray > > level0 = shared.levelCache( "a", 0 );
+		final LoaderCache< Long, Cell< VolatileShortArray > > level1 = shared.levelCache( "a", 1 );
+
+		level0.get( 0L, loader );
+		level0.get( 0L, loader );
+		level0.getIfPresent( 0L );
+		level1.get( 0L, loader );
+		level1.get( 1L, loader ); // evicts level 0 cell 0
+
+		final LevelMetrics.Snapshot a0 = metrics.level( "a", 0 ).snapshot();
+		assertEquals( 2, a0.cacheHits );
+		assertEquals( 1, a0.cacheMisses );
+		assertEquals( 1, a0.cellsLoaded );
+		assertEquals( CELL_BYTES, a0.bytesLoaded );
+		assertEquals( 1, a0.evictions );
+		final LevelMetrics.Snapshot a1 = metrics.level( "a", 1 ).snapshot();
+		assertEquals( 0, a1.cacheHits );
+		assertEquals( 2, a1.cacheMisses );
+		assertEquals( 2, a1.cellsLoaded );
+		assertEquals( 0, a1.evictions );
+	}
+
+	@Test
+	void testNothingIsRecordedWhileMetricsAreDisabled() throws ExecutionException
+	{
+		final LoadMetrics metrics = new LoadMetrics( false );
+		final LoaderCache< Long, Cell< VolatileShortArray > > cache = new SharedCellCache( 10 * ENTRY_BYTES, metrics ).levelCache( "a", 0 );
+
+		cache.get( 0L, loader );
+		cache.get( 0L, loader );
+
+		final LevelMetrics.Snapshot snapshot = metrics.level( "a", 0 ).snapshot();
+		assertEquals( 0, snapshot.cacheHits + snapshot.cacheMisses + snapshot.cellsLoaded );
+	}
+}
@@ -0,0 +1,147 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.DirtyVolatileShortArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link UniformCells} class.
+ */
+class UniformCellsTest
+{
+	@Test
+	void testUniformAccessesAreShared()
+	{
+		final VolatileShortArray a = new VolatileShortArray( filled( 64, ( short ) 7 ), true );
+		final VolatileShortArray b = new VolatileShortArray( filled( 64, ( short ) 7 ), true );
+
+		final VolatileShortArray sharedA = UniformCells.share( a );
+		final VolatileShortArray sharedB = UniformCells.share( b );
+
+		assertSame( sharedA.getCurrentStorageArray(), sharedB.getCurrentStorageArray() );
+		assertTrue( UniformCells.isUniform( sharedA ) );
+		assertTrue( UniformCells.isUniform( sharedB ) );
+	}
+
+	@Test
+	void testNonUniformAccessesAreKept()
+	{
+		final short[] data = filled( 64, ( short ) 7 );
+		data[ 63 ] = 8;
+		final VolatileShortArray a = new VolatileShortArray( data, true );
+
+		assertSame( a, UniformCells.share( a ) );
+		assertFalse( UniformCells.isUniform( a ) );
+	}
+
+	@Test
+	void testDifferentValuesAndSizesAreNotShared()
+	{
+		final VolatileShortArray seven = UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 7 ), true ) );
+		final VolatileShortArray eight = UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 8 ), true ) );
+		final VolatileShortArray smaller = UniformCells.share( new VolatileShortArray( filled( 32, ( short ) 7 ), true ) );
+
+		assertFalse( seven.getCurrentStorageArray() == eight.getCurrentStorageArray() );
+		assertFalse( seven.getCurrentStorageArray() == smaller.getCurrentStorageArray() );
+	}
+
+	@Test
+	void testFloatValuesAreComparedBitwise()
+	{
+		final float[] data = new float[ 16 ];
+		Arrays.fill( data, Float.NaN );
+		final VolatileFloatArray nan = new VolatileFloatArray( data, true );
+
+		assertTrue( UniformCells.isUniform( UniformCells.share( nan ) ) );
+	}
+
+	@Test
+	void testKnownUniformAccessesShareTheStorageOfUniformOnes()
+	{
+		final VolatileShortArray shared = UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 5 ), true ) );
+		final VolatileShortArray missing = UniformCells.shareUniform( new VolatileShortArray( filled( 64, ( short ) 5 ), true ) );
+
+		assertSame( shared.getCurrentStorageArray(), missing.getCurrentStorageArray() );
+		assertTrue( UniformCells.isUniform( missing ) );
+	}
+
+	@Test
+	void testWritesCopyTheSharedStorage()
+	{
+		final VolatileShortArray written = UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 9 ), true ) );
+		final VolatileShortArray other = UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 9 ), true ) );
+
+		written.setValue( 0, ( short ) 1 );
+
+		assertEquals( 1, written.getValue( 0 ) );
+		assertEquals( 9, written.getValue( 1 ) );
+		assertEquals( 9, other.getValue( 0 ) );
+		assertFalse( UniformCells.isUniform( written ) );
+		assertTrue( UniformCells.isUniform( other ) );
+		assertSame( other.getCurrentStorageArray(), UniformCells.share( new VolatileShortArray( filled( 64, ( short ) 9 ), true ) ).getCurrentStorageArray() );
+	}
+
+	@Test
+	void testAccessesWithoutCopyOnWriteVariantAreNotShared()
+	{
+		final ShortArray plain = new ShortArray( filled( 64, ( short ) 7 ) );
+		final DirtyVolatileShortArray dirty = new DirtyVolatileShortArray( filled( 64, ( short ) 7 ), true );
+
+		assertSame( plain, UniformCells.share( plain ) );
+		assertSame( dirty, UniformCells.share( dirty ) );
+		assertFalse( UniformCells.isUniform( dirty ) );
+	}
+
+	@Test
+	void testInvalidAccessesAreNotShared()
+	{
+		final VolatileShortArray invalid = new VolatileShortArray( 64, false );
+
+		assertSame( invalid, UniformCells.share( invalid ) );
+	}
+
+	private static short[] filled( final int length, final short value )
+	{
+		final short[] data = new short[ length ];
+		Arrays.fill( data, value );
+		return data;
+	}
+}
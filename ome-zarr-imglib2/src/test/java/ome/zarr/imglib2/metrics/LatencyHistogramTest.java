@@ -0,0 +1,88 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest
+{
+	@Test
+	void testBuckets()
+	{
+		assertEquals( 0, LatencyHistogram.bucket( -5 ) );
+		assertEquals( 0, LatencyHistogram.bucket( 0 ) );
+		assertEquals( 1, LatencyHistogram.bucket( 1 ) );
+		assertEquals( 2, LatencyHistogram.bucket( 2 ) );
+		assertEquals( 2, LatencyHistogram.bucket( 3 ) );
+		assertEquals( 11, LatencyHistogram.bucket( 1024 ) );
+		assertEquals( 63, LatencyHistogram.bucket( Long.MAX_VALUE ) );
+	}
+
+	@Test
+	void testCountAndTotal()
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record( 100 );
+		histogram.record( 300 );
+		histogram.record( -1 );
+
+		assertEquals( 3, histogram.count() );
+		assertEquals( 400, histogram.totalNanos() );
+
+		histogram.reset();
+		assertEquals( 0, histogram.count() );
+		assertEquals( 0, histogram.totalNanos() );
+	}
+
+	@Test
+	void testQuantilesAreWithinAFactorOfTwo()
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for ( int i = 1; i <= 1000; i++ )
+			histogram.record( i * 1_000_000L );
+
+		final double median = LatencyHistogram.quantileNanos( histogram.counts(), 0.5 );
+		final double p95 = LatencyHistogram.quantileNanos( histogram.counts(), 0.95 );
+		assertTrue( median >= 250e6 && median <= 1000e6, "median " + median );
+		assertTrue( p95 >= 475e6 && p95 <= 1900e6, "p95 " + p95 );
+		assertTrue( median <= p95 );
+	}
+
+	@Test
+	void testQuantileOfNothingIsNaN()
+	{
+		assertTrue( Double.isNaN( LatencyHistogram.quantileNanos( new LatencyHistogram().counts(), 0.5 ) ) );
+	}
+}
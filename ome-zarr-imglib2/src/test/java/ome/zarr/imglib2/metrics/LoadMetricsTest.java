@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link LoadMetrics} and {@link LevelMetrics}.
+ */
+class LoadMetricsTest
+{
+	private final LoadMetrics metrics = new LoadMetrics( true );
+
+	@Test
+	void testLevelsAreCreatedOnceAndOrdered()
+	{
+		final LevelMetrics b1 = metrics.level( "b", 1 );
+		metrics.level( "a", 2 );
+		metrics.level( "b", LevelMetrics.NO_LEVEL );
+		metrics.level( "a", 0 );
+
+		assertSame( b1, metrics.level( "b", 1 ) );
+		final List< LevelMetrics.Snapshot > snapshots = metrics.snapshot();
+		assertEquals( 4, snapshots.size() );
+		assertEquals( "a 0", snapshots.get( 0 ).dataset + " " + snapshots.get( 0 ).level );
+		assertEquals( "a 2", snapshots.get( 1 ).dataset + " " + snapshots.get( 1 ).level );
+		assertEquals( "b -1", snapshots.get( 2 ).dataset + " " + snapshots.get( 2 ).level );
+		assertEquals( "b 1", snapshots.get( 3 ).dataset + " " + snapshots.get( 3 ).level );
+	}
+
+	@Test
+	void testSnapshotDifferences()
+	{
+		final LevelMetrics level = metrics.level( "a", 0 );
+		level.fetched( 100, 1_000 );
+		level.hit();
+		final LevelMetrics.Snapshot before = level.snapshot();
+
+		level.fetched( 50, 2_000 );
+		level.fetched( 0, 2_000 );
+		level.decoded( 500 );
+		level.loaded( 400, 3_000 );
+		level.missed();
+		level.hit();
+		level.evicted();
+		final LevelMetrics.Snapshot delta = level.snapshot().minus( before );
+
+		assertEquals( 2, delta.requests );
+		assertEquals( 50, delta.bytesFetched );
+		assertEquals( 1, delta.cellsLoaded );
+		assertEquals( 400, delta.bytesLoaded );
+		assertEquals( 1, delta.cacheHits );
+		assertEquals( 1, delta.cacheMisses );
+		assertEquals( 1, delta.evictions );
+		assertEquals( 0.5, delta.hitRate() );
+		// both requests of the interval took 2 µs, within [1024, 2048) ns
+		final double latency = delta.fetchLatencyNanos( 0.5 );
+		assertTrue( latency >= 1024 && latency <= 2048, "latency " + latency );
+	}
+
+	@Test
+	void testDisabledMetricsRecordNothing()
+	{
+		final LevelMetrics level = metrics.level( "a", 0 );
+		metrics.setEnabled( false );
+		level.fetched( 100, 1_000 );
+		level.loaded( 100, 1_000 );
+		level.hit();
+		metrics.setEnabled( true );
+
+		final LevelMetrics.Snapshot snapshot = level.snapshot();
+		assertEquals( 0, snapshot.requests + snapshot.cellsLoaded + snapshot.cacheHits );
+		assertTrue( Double.isNaN( snapshot.hitRate() ) );
+	}
+
+	@Test
+	void testResetKeepsLevels()
+	{
+		final LevelMetrics level = metrics.level( "a", 0 );
+		level.fetched( 100, 1_000 );
+
+		metrics.reset();
+
+		assertSame( level, metrics.level( "a", 0 ) );
+		assertEquals( 0, level.snapshot().requests );
+		level.fetched( 10, 1_000 );
+		assertEquals( 1, metrics.snapshot().get( 0 ).requests );
+	}
+
+	@Test
+	void testRemovedDatasetsAreForgotten()
+	{
+		metrics.level( "a", 0 );
+		metrics.level( "a", 1 );
+		metrics.level( "b", 0 );
+
+		metrics.remove( "a" );
+
+		final List< LevelMetrics.Snapshot > snapshots = metrics.snapshot();
+		assertEquals( 1, snapshots.size() );
+		assertEquals( "b", snapshots.get( 0 ).dataset );
+	}
+
+	@Test
+	void testReadTimeIsPerThread() throws InterruptedException
+	{
+		final long before = LoadMetrics.readNanos();
+		LoadMetrics.addReadNanos( 42 );
+		final long[] other = new long[ 1 ];
+		final Thread thread = new Thread( () -> other[ 0 ] = LoadMetrics.readNanos() );
+		thread.start();
+		thread.join();
+
+		assertEquals( before + 42, LoadMetrics.readNanos() );
+		assertEquals( 0, other[ 0 ] );
+	}
+}
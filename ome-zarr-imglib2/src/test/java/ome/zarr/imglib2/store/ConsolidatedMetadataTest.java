@@ -0,0 +1,167 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ConsolidatedMetadata}, using an in-memory stand-in for
+ * the wrapped store.
+ */
+class ConsolidatedMetadataTest
+{
+	private static final String ARRAY_0 = "{\"zarr_format\":3,\"node_type\":\"array\",\"shape\":[64,64]}";
+
+	private static final String ARRAY_1 = "{\"zarr_format\":3,\"node_type\":\"array\",\"shape\":[32,32]}";
+
+	private static final String ROOT_V3 = "{\"zarr_format\":3,\"node_type\":\"group\",\"consolidated_metadata\":"
+			+ "{\"kind\":\"inline\",\"must_understand\":false,\"metadata\":{\"0\":" + ARRAY_0 + ",\"1\":" + ARRAY_1 + "}}}";
+
+	private static final String ZARRAY_0 = "{\"zarr_format\":2,\"shape\":[64,64]}";
+
+	private static final String ZMETADATA = "{\"zarr_consolidated_format\":1,\"metadata\":"
+			+ "{\".zgroup\":{\"zarr_format\":2},\".zattrs\":{},\"0/.zarray\":" + ZARRAY_0 + "}}";
+
+	/** Contents of the stand-in store by path. */
+	private final Map< String, String > store = new HashMap<>();
+
+	/** Paths read from the stand-in store. */
+	private final List< String > storeReads = new ArrayList<>();
+
+	private ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		final String path = StoreReadFilter.path( keys );
+		storeReads.add( path );
+		final String value = store.get( path );
+		return value == null ? null : ByteBuffer.wrap( value.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	private boolean storeExists( final String[] keys )
+	{
+		storeReads.add( StoreReadFilter.path( keys ) );
+		return store.containsKey( StoreReadFilter.path( keys ) );
+	}
+
+	private static String string( final ByteBuffer bytes )
+	{
+		return StandardCharsets.UTF_8.decode( bytes ).toString();
+	}
+
+	@Test
+	void testV3LevelsComeFromRootZarrJson()
+	{
+		store.put( "zarr.json", ROOT_V3 );
+		final ConsolidatedMetadata filter = new ConsolidatedMetadata();
+
+		filter.read( new String[] { "zarr.json" }, 0, -1, this::storeRead );
+		assertEquals( ARRAY_0, string( filter.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead ) ) );
+		assertEquals( ARRAY_1, string( filter.read( new String[] { "1", "zarr.json" }, 0, -1, this::storeRead ) ) );
+		assertTrue( filter.exists( new String[] { "1", "zarr.json" }, this::storeExists ) );
+		assertFalse( filter.exists( new String[] { "0", ".zarray" }, this::storeExists ) );
+
+		assertTrue( filter.isConsolidated() );
+		assertEquals( 1, storeReads.size() );
+		assertEquals( 4, filter.getHits() );
+	}
+
+	@Test
+	void testCloseDropsTheDocuments()
+	{
+		store.put( "zarr.json", ROOT_V3 );
+		final ConsolidatedMetadata filter = new ConsolidatedMetadata();
+		filter.read( new String[] { "zarr.json" }, 0, -1, this::storeRead );
+		filter.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		assertTrue( filter.isConsolidated() );
+
+		filter.close();
+
+		assertFalse( filter.isConsolidated() );
+		storeReads.clear();
+		assertFalse( filter.exists( new String[] { "1", "zarr.json" }, this::storeExists ) );
+		assertEquals( Collections.singletonList( "1/zarr.json" ), storeReads );
+	}
+
+	@Test
+	void testV2LevelsComeFromZmetadata()
+	{
+		store.put( ".zattrs", "{}" );
+		store.put( ".zmetadata", ZMETADATA );
+		final ConsolidatedMetadata filter = new ConsolidatedMetadata();
+
+		filter.read( new String[] { ".zattrs" }, 0, -1, this::storeRead );
+		assertEquals( ZARRAY_0, string( filter.read( new String[] { "0", ".zarray" }, 0, -1, this::storeRead ) ) );
+		assertNull( filter.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead ) );
+		assertNull( filter.read( new String[] { "0", ".zattrs" }, 0, -1, this::storeRead ) );
+
+		assertTrue( filter.isConsolidated() );
+		// the root zarr.json is asked for once, to tell v2 from v3
+		assertEquals( 3, storeReads.size() );
+	}
+
+	@Test
+	void testUnconsolidatedDatasetsArePassedOn()
+	{
+		store.put( "zarr.json", "{\"zarr_format\":3,\"node_type\":\"group\"}" );
+		store.put( "0/zarr.json", ARRAY_0 );
+		final ConsolidatedMetadata filter = new ConsolidatedMetadata();
+
+		filter.read( new String[] { "zarr.json" }, 0, -1, this::storeRead );
+		assertEquals( ARRAY_0, string( filter.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead ) ) );
+
+		assertFalse( filter.isConsolidated() );
+		// no request for .zmetadata, since the dataset is Zarr v3
+		assertEquals( 2, storeReads.size() );
+		assertEquals( 0, filter.getHits() );
+	}
+
+	@Test
+	void testChunkReadsArePassedOn()
+	{
+		store.put( "zarr.json", ROOT_V3 );
+		final ConsolidatedMetadata filter = new ConsolidatedMetadata();
+
+		filter.read( new String[] { "0", "c", "0", "0" }, 0, 100, this::storeRead );
+
+		assertEquals( 1, storeReads.size() );
+		assertFalse( filter.isConsolidated() );
+	}
+}
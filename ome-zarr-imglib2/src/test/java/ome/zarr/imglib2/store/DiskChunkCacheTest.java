@@ -0,0 +1,371 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for {@link DiskChunkCache}, using an in-memory stand-in for the
+ * remote store.
+ */
+class DiskChunkCacheTest
+{
+	private static final String URI = "https://example.org/image.ome.zarr";
+
+	private static final String[] CHUNK = { "0", "c", "0", "0" };
+
+	private static final String[] MISSING = { "0", "c", "1", "0" };
+
+	@TempDir
+	Path directory;
+
+	private final AtomicInteger storeReads = new AtomicInteger();
+
+	private final AtomicInteger metadataReads = new AtomicInteger();
+
+	/** Metadata documents of the store by path, the root first. */
+	private final Map< String, String > documents = new LinkedHashMap<>();
+
+	private ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		storeReads.incrementAndGet();
+		if ( keys == MISSING )
+			return null;
+		final String path = StoreReadFilter.path( keys );
+		if ( path.endsWith( "zarr.json" ) )
+		{
+			metadataReads.incrementAndGet();
+			final String document = documents.get( path );
+			return document == null ? null : ByteBuffer.wrap( document.getBytes( StandardCharsets.UTF_8 ) );
+		}
+		final ByteBuffer data = ByteBuffer.allocate( 100 );
+		data.put( 0, ( byte ) storeReads.get() );
+		return data;
+	}
+
+	private ByteBuffer offlineRead( final String[] keys, final long start, final long end )
+	{
+		throw new IllegalStateException( "offline" );
+	}
+
+	/** Stands in for a store that cannot be reached, which reports keys as missing. */
+	private ByteBuffer unreachableRead( final String[] keys, final long start, final long end )
+	{
+		return null;
+	}
+
+	/**
+	 * Reads the metadata of the dataset described by {@link #documents} and
+	 * one chunk of each level, and returns the number of metadata documents.
+	 */
+	private int readDataset( final StoreReadFilter filter )
+	{
+		int count = 0;
+		for ( final String path : documents.keySet() )
+		{
+			assertEquals( documents.get( path ), read( filter, path, this::storeRead ) );
+			++count;
+			final String[] keys = path.split( "/" );
+			if ( keys.length > 1 )
+				filter.read( new String[] { keys[ 0 ], "c", "0", "0" }, 0, -1, this::storeRead );
+		}
+		return count;
+	}
+
+	private static String read( final StoreReadFilter filter, final String path, final StoreReadFilter.Reader next )
+	{
+		final ByteBuffer value = filter.read( path.split( "/" ), 0, -1, next );
+		return value == null ? null : StandardCharsets.UTF_8.decode( value ).toString();
+	}
+
+	private int chunkReads()
+	{
+		return storeReads.get() - metadataReads.get();
+	}
+
+	@Test
+	void testReadsPersistAcrossInstances()
+	{
+		final StoreReadFilter first = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI );
+		assertEquals( 1, first.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		final StoreReadFilter second = cache.forDataset( URI );
+		assertEquals( 1, second.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+
+		assertEquals( 1, storeReads.get() );
+		assertEquals( 1, cache.getHits() );
+		assertEquals( 100, cache.getUsedBytes() );
+	}
+
+	@Test
+	void testMissingKeysAreRemembered()
+	{
+		final StoreReadFilter filter = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI );
+		assertNull( filter.read( MISSING, 0, -1, this::storeRead ) );
+		assertNull( filter.read( MISSING, 0, -1, this::storeRead ) );
+		assertFalse( filter.exists( MISSING, keys -> true ) );
+		assertEquals( 1, storeReads.get() );
+	}
+
+	@Test
+	void testChangedLevelIsRevalidated()
+	{
+		documents.put( "zarr.json", "root" );
+		documents.put( "0/zarr.json", "level 0" );
+		documents.put( "1/zarr.json", "level 1" );
+		readDataset( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ) );
+		final int chunkReads = chunkReads();
+
+		// only the chunks of the changed level are read again
+		documents.put( "1/zarr.json", "level 1, rewritten" );
+		final StoreReadFilter filter = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI );
+		assertEquals( 3, readDataset( filter ) );
+		assertEquals( chunkReads + 1, chunkReads() );
+	}
+
+	@Test
+	void testChangedRootIsRevalidated()
+	{
+		documents.put( "zarr.json", "root" );
+		documents.put( "0/zarr.json", "level 0" );
+		readDataset( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ) );
+		final int chunkReads = chunkReads();
+
+		documents.put( "zarr.json", "root, rewritten" );
+		readDataset( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ) );
+		assertEquals( 2 * chunkReads, chunkReads() );
+	}
+
+	@Test
+	void testUnchangedMetadataAreRevalidated()
+	{
+		documents.put( "zarr.json", "root" );
+		documents.put( "0/zarr.json", "level 0" );
+		readDataset( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ) );
+		final int chunkReads = chunkReads();
+		final int metadataReads = this.metadataReads.get();
+
+		// the metadata are read again, the chunks are not
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		readDataset( cache.forDataset( URI ) );
+		assertEquals( chunkReads, chunkReads() );
+		assertEquals( chunkReads, cache.getHits() );
+		assertEquals( 2 * metadataReads, this.metadataReads.get() );
+	}
+
+	@Test
+	void testCachedDatasetIsServedOffline()
+	{
+		documents.put( "zarr.json", "root" );
+		documents.put( "0/zarr.json", "level 0" );
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		assertFalse( cache.hasMetadata( URI ) );
+		readDataset( cache.forDataset( URI ) );
+		assertTrue( cache.hasMetadata( URI ) );
+
+		final StoreReadFilter offline = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, keys -> false );
+		assertEquals( "root", read( offline, "zarr.json", this::unreachableRead ) );
+		assertEquals( "level 0", read( offline, "0/zarr.json", this::unreachableRead ) );
+		assertTrue( offline.exists( new String[] { "0", "zarr.json" }, keys -> false ) );
+		assertNotNull( offline.read( CHUNK, 0, -1, this::offlineRead ) );
+	}
+
+	@Test
+	void testDeletedMetadataAreNotServed()
+	{
+		documents.put( "zarr.json", "root" );
+		readDataset( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ) );
+
+		documents.remove( "zarr.json" );
+		final StoreReadFilter filter = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, keys -> true );
+		assertNull( read( filter, "zarr.json", this::storeRead ) );
+	}
+
+	@Test
+	void testCacheIsBounded()
+	{
+		final DiskChunkCache cache = new DiskChunkCache( directory, 250 );
+		final StoreReadFilter filter = cache.forDataset( URI );
+		for ( int i = 0; i < 3; i++ )
+			filter.read( new String[] { "0", "c", "0", Integer.toString( i ) }, 0, -1, this::storeRead );
+		assertEquals( 200, cache.getUsedBytes() );
+
+		// the least recently used chunk was evicted
+		filter.read( new String[] { "0", "c", "0", "0" }, 0, -1, this::storeRead );
+		assertEquals( 4, storeReads.get() );
+	}
+
+	@Test
+	void testConfirmedMissingKeysPersist()
+	{
+		final StoreReadFilter first = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, keys -> true );
+		assertNull( first.read( MISSING, 0, -1, this::storeRead ) );
+
+		final StoreReadFilter second = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, keys -> true );
+		assertNull( second.read( MISSING, 0, -1, this::storeRead ) );
+		assertFalse( second.exists( MISSING, keys -> true ) );
+		assertEquals( 1, storeReads.get() );
+	}
+
+	@Test
+	void testFailedReadsAreNotRemembered()
+	{
+		// the store fails once, e.g. offline, and then recovers
+		final AtomicInteger failures = new AtomicInteger( 1 );
+		final StoreReadFilter.Reader flaky = ( keys, start, end ) -> failures.getAndDecrement() > 0
+				? null
+				: storeRead( keys, start, end );
+		final DiskChunkCache.AbsenceCheck unreachable = keys -> false;
+
+		final StoreReadFilter first = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, unreachable );
+		assertNull( first.read( CHUNK, 0, -1, flaky ) );
+		assertNotNull( first.read( CHUNK, 0, -1, flaky ) );
+
+		final StoreReadFilter second = new DiskChunkCache( directory, 1 << 20 ).forDataset( URI, unreachable );
+		assertNotNull( second.read( CHUNK, 0, -1, flaky ) );
+		assertTrue( second.exists( CHUNK, keys -> true ) );
+		assertEquals( 1, storeReads.get() );
+	}
+
+	@Test
+	void testUnconfirmedMissingKeysDoNotPersist()
+	{
+		new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ).read( MISSING, 0, -1, this::storeRead );
+
+		assertNull( new DiskChunkCache( directory, 1 << 20 ).forDataset( URI ).read( MISSING, 0, -1, this::storeRead ) );
+		assertEquals( 2, storeReads.get() );
+	}
+
+	/** Stands in for the validation by a store whose values have {@link #validator}. */
+	private final class Validation implements DiskChunkCache.Validation
+	{
+		String validator = "\"v1\"";
+
+		int revalidations = 0;
+
+		@Override
+		public String validator( final String[] keys )
+		{
+			return validator;
+		}
+
+		@Override
+		public boolean isChanged( final String[] keys, final String cached )
+		{
+			++revalidations;
+			return !cached.equals( validator );
+		}
+	}
+
+	@Test
+	void testExpiredValuesAreRevalidated()
+	{
+		final Validation validation = new Validation();
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		final StoreReadFilter filter = cache.forDataset( URI, null, validation );
+		filter.read( CHUNK, 0, -1, this::storeRead );
+
+		// within the max age, without asking the store
+		assertEquals( 1, filter.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+		assertEquals( 0, validation.revalidations );
+
+		cache.setMaxAgeMillis( 0 );
+		assertEquals( 1, filter.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+		assertEquals( 1, validation.revalidations );
+		assertEquals( 1, storeReads.get() );
+	}
+
+	@Test
+	void testChangedValuesAreReadAgain()
+	{
+		final Validation validation = new Validation();
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		cache.forDataset( URI, null, validation ).read( CHUNK, 0, -1, this::storeRead );
+
+		// rewritten in place
+		validation.validator = "\"v2\"";
+		cache.setMaxAgeMillis( 0 );
+		final StoreReadFilter filter = cache.forDataset( URI, null, validation );
+		assertEquals( 2, filter.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+		assertEquals( 2, storeReads.get() );
+
+		// and revalidated with the new validator from then on
+		assertEquals( 2, filter.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testExpiredValuesWithoutValidatorAreReadAgain()
+	{
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		final StoreReadFilter filter = cache.forDataset( URI );
+		filter.read( CHUNK, 0, -1, this::storeRead );
+
+		cache.setMaxAgeMillis( 0 );
+		assertEquals( 2, filter.read( CHUNK, 0, -1, this::storeRead ).get( 0 ) );
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testExpiredMissingKeysAreReadAgain()
+	{
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		cache.forDataset( URI, keys -> true ).read( MISSING, 0, -1, this::storeRead );
+
+		cache.setMaxAgeMillis( 0 );
+		assertNull( cache.forDataset( URI, keys -> true ).read( MISSING, 0, -1, this::storeRead ) );
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testExpiredValuesAreServedOffline()
+	{
+		final DiskChunkCache cache = new DiskChunkCache( directory, 1 << 20 );
+		cache.forDataset( URI ).read( CHUNK, 0, -1, this::storeRead );
+
+		cache.setMaxAgeMillis( 0 );
+		final StoreReadFilter offline = cache.forDataset( URI, keys -> false );
+		assertEquals( 1, offline.read( CHUNK, 0, -1, this::unreachableRead ).get( 0 ) );
+	}
+}
@@ -0,0 +1,109 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Unit tests for {@link FetchMetrics} and {@link ReadTimer}, using an
+ * in-memory stand-in for the wrapped store.
+ */
+class FetchMetricsTest
+{
+	private final LoadMetrics metrics = new LoadMetrics( true );
+
+	private final FetchMetrics filter = new FetchMetrics( "a", metrics );
+
+	private static ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		return "missing".equals( keys[ keys.length - 1 ] ) ? null : ByteBuffer.allocate( 10 );
+	}
+
+	@Test
+	void testRequestsAreRecordedPerLevel()
+	{
+		filter.setLevelPaths( Arrays.asList( "s0", "/s1/" ) );
+
+		filter.read( new String[] { "zarr.json" }, 0, -1, FetchMetricsTest::storeRead );
+		filter.read( new String[] { "s0", "c", "0", "0" }, 0, -1, FetchMetricsTest::storeRead );
+		filter.read( new String[] { "s1", "c", "0", "0" }, 0, -1, FetchMetricsTest::storeRead );
+		assertNull( filter.read( new String[] { "s1", "c", "0", "missing" }, 0, -1, FetchMetricsTest::storeRead ) );
+		assertTrue( filter.exists( new String[] { "s10", "zarr.json" }, keys -> true ) );
+
+		final LevelMetrics.Snapshot other = metrics.level( "a", LevelMetrics.NO_LEVEL ).snapshot();
+		assertEquals( 2, other.requests );
+		assertEquals( 10, other.bytesFetched );
+		final LevelMetrics.Snapshot s0 = metrics.level( "a", 0 ).snapshot();
+		assertEquals( 1, s0.requests );
+		assertEquals( 10, s0.bytesFetched );
+		final LevelMetrics.Snapshot s1 = metrics.level( "a", 1 ).snapshot();
+		assertEquals( 2, s1.requests );
+		assertEquals( 10, s1.bytesFetched );
+		assertTrue( s1.fetchLatencyNanos( 0.5 ) >= 0 );
+	}
+
+	@Test
+	void testRequestsBeforeLevelPathsAreKnownAreNotPerLevel()
+	{
+		filter.read( new String[] { "0", "c", "0" }, 0, -1, FetchMetricsTest::storeRead );
+
+		assertEquals( 1, metrics.level( "a", LevelMetrics.NO_LEVEL ).snapshot().requests );
+		assertEquals( 0, metrics.level( "a", 0 ).snapshot().requests );
+	}
+
+	@Test
+	void testReadTimerAddsToThreadReadTime()
+	{
+		final long before = LoadMetrics.readNanos();
+
+		new ReadTimer().read( new String[] { "zarr.json" }, 0, -1, ( keys, start, end ) -> {
+			try
+			{
+				Thread.sleep( 5 );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+			}
+			return null;
+		} );
+
+		assertTrue( LoadMetrics.readNanos() - before >= 5_000_000L );
+	}
+}
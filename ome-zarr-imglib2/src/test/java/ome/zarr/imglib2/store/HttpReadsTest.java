@@ -0,0 +1,181 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ome.zarr.ZarrTestServer;
+
+/**
+ * Tests of {@link HttpReads} against a {@link ZarrTestServer}.
+ */
+class HttpReadsTest
+{
+	private static final String[] CHUNK = { "0", "c", "0" };
+
+	private static final String[] MISSING = { "0", "c", "1" };
+
+	@TempDir
+	Path dir;
+
+	private static StoreReadFilter.Reader unused()
+	{
+		return ( keys, start, end ) -> {
+			throw new AssertionError( "read through the store" );
+		};
+	}
+
+	private ZarrTestServer serve() throws IOException
+	{
+		final byte[] chunk = new byte[ 100 ];
+		for ( int i = 0; i < chunk.length; i++ )
+			chunk[ i ] = ( byte ) i;
+		Files.createDirectories( dir.resolve( "image.zarr/0/c" ) );
+		Files.write( dir.resolve( "image.zarr/0/c/0" ), chunk );
+		return ZarrTestServer.serve( dir );
+	}
+
+	@Test
+	void testReadsRanges() throws IOException
+	{
+		try (ZarrTestServer server = serve())
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			assertEquals( 100, reads.read( CHUNK, 0, -1, unused() ).remaining() );
+			assertEquals( ByteBuffer.wrap( new byte[] { 10, 11, 12 } ), reads.read( CHUNK, 10, 13, unused() ) );
+			assertEquals( ByteBuffer.wrap( new byte[] { 98, 99 } ), reads.read( CHUNK, -2, -1, unused() ) );
+			assertEquals( 90, reads.read( CHUNK, 10, -1, unused() ).remaining() );
+			assertFalse( reads.isAbsent( CHUNK ) );
+		}
+	}
+
+	@Test
+	void testMissingKeysAreKnownFromTheRead() throws IOException
+	{
+		try (ZarrTestServer server = serve())
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			assertNull( reads.read( MISSING, 0, -1, unused() ) );
+			assertTrue( reads.isAbsent( MISSING ) );
+			assertEquals( 1, server.count(), () -> server.requests().toString() );
+
+			assertFalse( reads.exists( new String[] { "0", "c", "2" }, keys -> true ) );
+			assertTrue( reads.isAbsent( new String[] { "0", "c", "2" } ) );
+			assertTrue( reads.exists( CHUNK, keys -> false ) );
+		}
+	}
+
+	@Test
+	void testFailedReadsAreNotAbsent() throws IOException
+	{
+		try (ZarrTestServer server = serve())
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			server.errorRate( 1, 0 );
+			assertNull( reads.read( CHUNK, 0, -1, unused() ) );
+			assertFalse( reads.isAbsent( CHUNK ) );
+			assertNull( reads.read( MISSING, 0, -1, unused() ) );
+			assertFalse( reads.isAbsent( MISSING ) );
+		}
+	}
+
+	@Test
+	void testRevalidatesWithTheValidatorOfTheRead() throws IOException
+	{
+		try (ZarrTestServer server = serve())
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			reads.read( CHUNK, 10, 20, unused() );
+			final String validator = reads.validator( CHUNK );
+			assertNotNull( validator );
+			assertFalse( reads.isChanged( CHUNK, validator ) );
+
+			// rewritten in place
+			Files.write( dir.resolve( "image.zarr/0/c/0" ), new byte[ 50 ] );
+			assertTrue( reads.isChanged( CHUNK, validator ) );
+			assertTrue( reads.isChanged( MISSING, validator ) );
+			assertEquals( 3, server.count( request -> request.method.equals( "HEAD" ) ) );
+		}
+	}
+
+	@Test
+	void testCancelAbortsReadsInFlight() throws Exception
+	{
+		try (ZarrTestServer server = serve().latency( 10_000 ))
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			final CompletableFuture< ByteBuffer > read = CompletableFuture.supplyAsync( () -> reads.read( CHUNK, 0, -1, unused() ) );
+			while ( server.count() == 0 )
+				Thread.sleep( 10 );
+
+			reads.cancel();
+
+			assertNull( read.get( 5, TimeUnit.SECONDS ) );
+			assertFalse( reads.isAbsent( CHUNK ) );
+			assertNull( reads.read( CHUNK, 0, -1, unused() ) );
+			assertEquals( 1, server.count(), () -> server.requests().toString() );
+
+			server.latency( 0 );
+			reads.resume();
+			assertEquals( 100, reads.read( CHUNK, 0, -1, unused() ).remaining() );
+		}
+	}
+
+	@Test
+	void testCloseForgetsTheStatusesAndStopsReading() throws IOException
+	{
+		try (ZarrTestServer server = serve())
+		{
+			final HttpReads reads = new HttpReads( server.httpUri( "image.zarr" ).toString() );
+			reads.read( MISSING, 0, -1, unused() );
+			assertTrue( reads.isAbsent( MISSING ) );
+
+			reads.close();
+			reads.resume();
+
+			assertFalse( reads.isAbsent( MISSING ) );
+			assertNull( reads.read( CHUNK, 0, -1, unused() ) );
+			assertEquals( 1, server.count(), () -> server.requests().toString() );
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ome.zarr.imglib2.PrefetchedMetadata;
+
+/**
+ * Unit tests for {@link PrefetchedDocuments}, using an in-memory stand-in for
+ * the wrapped store.
+ */
+class PrefetchedDocumentsTest
+{
+	private static final String ZARR_JSON = "{\"zarr_format\":3,\"node_type\":\"group\"}";
+
+	private final AtomicInteger storeRequests = new AtomicInteger();
+
+	private final PrefetchedDocuments filter = new PrefetchedDocuments( new PrefetchedMetadata(
+			Collections.singletonMap( "zarr.json", ZARR_JSON.getBytes( StandardCharsets.UTF_8 ) ),
+			Collections.singleton( ".zgroup" ),
+			Collections.emptyMap() ) );
+
+	private ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		storeRequests.incrementAndGet();
+		return ByteBuffer.allocate( 1 );
+	}
+
+	private boolean storeExists( final String[] keys )
+	{
+		storeRequests.incrementAndGet();
+		return true;
+	}
+
+	@Test
+	void testRootDocumentsAreServedFromPrefetched()
+	{
+		final ByteBuffer full = filter.read( new String[] { "zarr.json" }, 0, -1, this::storeRead );
+		assertEquals( ZARR_JSON, StandardCharsets.UTF_8.decode( full ).toString() );
+		final ByteBuffer range = filter.read( new String[] { "zarr.json" }, 1, 14, this::storeRead );
+		assertEquals( ZARR_JSON.substring( 1, 14 ), StandardCharsets.UTF_8.decode( range ).toString() );
+		assertTrue( filter.exists( new String[] { "zarr.json" }, this::storeExists ) );
+
+		assertEquals( 0, storeRequests.get() );
+		assertEquals( 3, filter.getHits() );
+	}
+
+	@Test
+	void testCloseDropsTheDocuments()
+	{
+		filter.close();
+
+		filter.read( new String[] { "zarr.json" }, 0, -1, this::storeRead );
+		assertTrue( filter.exists( new String[] { ".zgroup" }, this::storeExists ) );
+		assertEquals( 2, storeRequests.get() );
+		assertEquals( 0, filter.getHits() );
+	}
+
+	@Test
+	void testMissingDocumentsAreNotRequested()
+	{
+		assertNull( filter.read( new String[] { ".zgroup" }, 0, -1, this::storeRead ) );
+		assertFalse( filter.exists( new String[] { ".zgroup" }, this::storeExists ) );
+		assertEquals( 0, storeRequests.get() );
+	}
+
+	@Test
+	void testOtherKeysArePassedOn()
+	{
+		filter.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		filter.read( new String[] { ".zattrs" }, 0, -1, this::storeRead );
+		assertTrue( filter.exists( new String[] { "0", "c", "0" }, this::storeExists ) );
+		assertEquals( 3, storeRequests.get() );
+		assertEquals( 0, filter.getHits() );
+	}
+}
@@ -0,0 +1,162 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link RangeCoalescer}, using an in-memory stand-in for the
+ * wrapped store whose byte at offset {@code i} has the value {@code (byte) i}.
+ */
+class RangeCoalescerTest
+{
+	private final AtomicInteger storeReads = new AtomicInteger();
+
+	private ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		storeReads.incrementAndGet();
+		final ByteBuffer bytes = ByteBuffer.allocate( ( int ) ( end - start ) );
+		for ( long i = start; i < end; i++ )
+			bytes.put( ( byte ) i );
+		bytes.flip();
+		return bytes;
+	}
+
+	/** Reads once {@code release} is counted down, after counting down {@code reading}. */
+	private ByteBuffer blockedRead( final String[] keys, final long start, final long end, final CountDownLatch reading,
+			final CountDownLatch release )
+	{
+		reading.countDown();
+		try
+		{
+			release.await();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		return storeRead( keys, start, end );
+	}
+
+	@Test
+	void testConcurrentNeighbouringReadsAreMerged() throws Exception
+	{
+		final RangeCoalescer coalescer = new RangeCoalescer( 200, 8, 1 << 20 );
+		final String[] shard = { "0", "c", "0", "0" };
+		final long[][] ranges = { { 0, 10 }, { 10, 30 }, { 35, 40 } };
+
+		// a read in flight, so that the next ones wait for others to join
+		final CountDownLatch reading = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final ExecutorService executor = Executors.newFixedThreadPool( ranges.length + 1 );
+		try
+		{
+			final Future< ByteBuffer > inFlight = executor.submit( () -> coalescer.read( shard, 1000, 1010,
+					( keys, start, end ) -> blockedRead( keys, start, end, reading, release ) ) );
+			reading.await();
+
+			final List< Future< ByteBuffer > > results = new ArrayList<>();
+			for ( final long[] r : ranges )
+				results.add( executor.submit( () -> coalescer.read( shard, r[ 0 ], r[ 1 ], this::storeRead ) ) );
+
+			for ( int i = 0; i < ranges.length; i++ )
+			{
+				final ByteBuffer bytes = results.get( i ).get();
+				assertEquals( ranges[ i ][ 1 ] - ranges[ i ][ 0 ], bytes.remaining() );
+				assertEquals( ( byte ) ranges[ i ][ 0 ], bytes.get( bytes.position() ) );
+			}
+			release.countDown();
+			assertEquals( 10, inFlight.get().remaining() );
+		}
+		finally
+		{
+			release.countDown();
+			executor.shutdown();
+		}
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testReadsWithoutOthersInFlightDoNotWait()
+	{
+		final RangeCoalescer coalescer = new RangeCoalescer( 60_000, 8, 1 << 20 );
+		final String[] shard = { "0", "c", "0", "0" };
+
+		assertTimeoutPreemptively( Duration.ofSeconds( 10 ), () -> {
+			coalescer.read( shard, 0, 10, this::storeRead );
+			coalescer.read( shard, 10, 20, this::storeRead );
+		} );
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testDistantReadsAreNotMerged() throws Exception
+	{
+		final RangeCoalescer coalescer = new RangeCoalescer( 200, 8, 1 << 20 );
+		final String[] shard = { "0", "c", "0", "0" };
+
+		final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+		try
+		{
+			final Future< ByteBuffer > a = executor.submit( () -> coalescer.read( shard, 0, 10, this::storeRead ) );
+			final Future< ByteBuffer > b = executor.submit( () -> coalescer.read( shard, 100, 110, this::storeRead ) );
+			assertEquals( ( byte ) 0, a.get().get( 0 ) );
+			assertEquals( ( byte ) 100, b.get().get( 0 ) );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertEquals( 2, storeReads.get() );
+	}
+
+	@Test
+	void testOpenRangesArePassedThrough()
+	{
+		final RangeCoalescer coalescer = new RangeCoalescer();
+		coalescer.read( new String[] { "zarr.json" }, 0, -1, ( keys, start, end ) -> {
+			storeReads.incrementAndGet();
+			return ByteBuffer.allocate( 0 );
+		} );
+		assertEquals( 1, storeReads.get() );
+	}
+}
@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ome.zarr.ZarrTestServer;
+import ome.zarr.imglib2.S3ClientPool;
+import ome.zarr.imglib2.S3Endpoints;
+
+/**
+ * Tests of {@link S3Reads} with a client of the {@link S3ClientPool}, against
+ * the S3 endpoint of a {@link ZarrTestServer}.
+ */
+class S3ReadsTest
+{
+	private static final String[] CHUNK = { "0", "c", "0" };
+
+	private static final String[] MISSING = { "0", "c", "1" };
+
+	@TempDir
+	Path dir;
+
+	private static StoreReadFilter.Reader unused()
+	{
+		return ( keys, start, end ) -> {
+			throw new AssertionError( "read through the store" );
+		};
+	}
+
+	private ZarrTestServer serve() throws IOException
+	{
+		final byte[] chunk = new byte[ 100 ];
+		for ( int i = 0; i < chunk.length; i++ )
+			chunk[ i ] = ( byte ) i;
+		Files.createDirectories( dir.resolve( "image.zarr/0/c" ) );
+		Files.write( dir.resolve( "image.zarr/0/c/0" ), chunk );
+		return ZarrTestServer.serve( dir );
+	}
+
+	@Test
+	void testReadsWithThePooledClient() throws IOException
+	{
+		final S3ClientPool pool = new S3ClientPool();
+		try (ZarrTestServer server = serve())
+		{
+			System.setProperty( S3Endpoints.ENDPOINT_PROPERTY, server.s3Endpoint() );
+			final S3Reads reads = new S3Reads( pool.forBucket( ZarrTestServer.BUCKET ), ZarrTestServer.BUCKET, "image.zarr" );
+
+			assertEquals( 100, reads.read( CHUNK, 0, -1, unused() ).remaining() );
+			assertEquals( ByteBuffer.wrap( new byte[] { 10, 11, 12 } ), reads.read( CHUNK, 10, 13, unused() ) );
+			assertEquals( ByteBuffer.wrap( new byte[] { 98, 99 } ), reads.read( CHUNK, -2, -1, unused() ) );
+			assertNotNull( reads.validator( CHUNK ) );
+			assertFalse( reads.isChanged( CHUNK, reads.validator( CHUNK ) ) );
+
+			assertNull( reads.read( MISSING, 0, -1, unused() ) );
+			assertTrue( reads.isAbsent( MISSING ) );
+			assertFalse( reads.exists( new String[] { "0", "c", "2" }, keys -> true ) );
+			assertTrue( reads.exists( CHUNK, keys -> false ) );
+
+			assertTrue( server.requests().stream().allMatch( request -> request.s3 ), () -> server.requests().toString() );
+			assertEquals( 1, pool.size() );
+		}
+		finally
+		{
+			pool.close();
+			System.clearProperty( S3Endpoints.ENDPOINT_PROPERTY );
+		}
+	}
+
+	@Test
+	void testCancelAbortsTransfersInFlight() throws Exception
+	{
+		final S3ClientPool pool = new S3ClientPool();
+		try (ZarrTestServer server = serve().bandwidth( 10 ))
+		{
+			System.setProperty( S3Endpoints.ENDPOINT_PROPERTY, server.s3Endpoint() );
+			final S3Reads reads = new S3Reads( pool.forBucket( ZarrTestServer.BUCKET ), ZarrTestServer.BUCKET, "image.zarr" );
+			final CompletableFuture< ByteBuffer > read = CompletableFuture.supplyAsync( () -> reads.read( CHUNK, 0, -1, unused() ) );
+			while ( server.count( request -> request.method.equals( "GET" ) ) == 0 )
+				Thread.sleep( 10 );
+			// the headers of the response take no time, its 100 bytes 10 s
+			Thread.sleep( 500 );
+
+			reads.cancel();
+
+			assertNull( read.get( 5, TimeUnit.SECONDS ) );
+			assertNull( reads.read( CHUNK, 0, -1, unused() ) );
+			assertEquals( 1, server.count( request -> request.method.equals( "GET" ) ), () -> server.requests().toString() );
+		}
+		finally
+		{
+			pool.close();
+			System.clearProperty( S3Endpoints.ENDPOINT_PROPERTY );
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.imglib2.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+
+/**
+ * Unit tests for {@link ShardIndexCache}, using an in-memory stand-in for the
+ * wrapped store.
+ */
+class ShardIndexCacheTest
+{
+	/** 2x2 inner chunks per shard: 4 index entries plus a crc32c checksum. */
+	private static final int INDEX_BYTES = 4 * 16 + 4;
+
+	private static final String ZARR_JSON = zarrJson( "end" );
+
+	private static String zarrJson( final String indexLocation )
+	{
+		return "{\"zarr_format\":3,\"node_type\":\"array\","
+				+ "\"chunk_grid\":{\"name\":\"regular\",\"configuration\":{\"chunk_shape\":[64,64]}},"
+				+ "\"codecs\":[{\"name\":\"sharding_indexed\",\"configuration\":{\"chunk_shape\":[32,32],"
+				+ "\"codecs\":[{\"name\":\"bytes\"}],\"index_codecs\":[{\"name\":\"bytes\"},{\"name\":\"crc32c\"}],"
+				+ "\"index_location\":\"" + indexLocation + "\"}}]}";
+	}
+
+	private String zarrJson = ZARR_JSON;
+
+	private final LoadMetrics metrics = new LoadMetrics( true );
+
+	private final FetchMetrics levels = new FetchMetrics( "dataset", metrics );
+
+	ShardIndexCacheTest()
+	{
+		levels.setLevelPaths( Arrays.asList( "0", "1" ) );
+	}
+
+	private final AtomicInteger storeReads = new AtomicInteger();
+
+	private ByteBuffer storeRead( final String[] keys, final long start, final long end )
+	{
+		storeReads.incrementAndGet();
+		if ( "zarr.json".equals( keys[ keys.length - 1 ] ) )
+			return ByteBuffer.wrap( zarrJson.getBytes( StandardCharsets.UTF_8 ) );
+		return ByteBuffer.allocate( ( int ) ( start < 0 ? -start : end - start ) );
+	}
+
+	private long hits()
+	{
+		return metrics.snapshot().stream().mapToLong( snapshot -> snapshot.shardIndexHits ).sum();
+	}
+
+	private long misses()
+	{
+		return metrics.snapshot().stream().mapToLong( snapshot -> snapshot.shardIndexMisses ).sum();
+	}
+
+	@Test
+	void testLayoutIsLearnedFromZarrJson()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		assertNull( cache.getLayout( "0" ) );
+
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+
+		final ShardingLayout layout = cache.getLayout( "0" );
+		assertNotNull( layout );
+		assertArrayEquals( new int[] { 64, 64 }, layout.getShardShape() );
+		assertArrayEquals( new int[] { 32, 32 }, layout.getInnerChunkShape() );
+		assertEquals( INDEX_BYTES, layout.getIndexBytes() );
+		assertFalse( layout.isIndexAtStart() );
+	}
+
+	@Test
+	void testIndexReadsAreCached()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		storeReads.set( 0 );
+
+		final String[] shard = { "0", "c", "0", "0" };
+		for ( int i = 0; i < 3; i++ )
+			assertEquals( INDEX_BYTES, cache.read( shard, -INDEX_BYTES, -1, this::storeRead ).remaining() );
+
+		assertEquals( 1, storeReads.get() );
+		assertEquals( 1, misses() );
+		assertEquals( 2, hits() );
+		assertEquals( INDEX_BYTES, cache.getCachedBytes() );
+	}
+
+	@Test
+	void testCloseDropsIndicesAndLayouts()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		cache.read( new String[] { "0", "c", "0", "0" }, -INDEX_BYTES, -1, this::storeRead );
+
+		cache.close();
+
+		assertEquals( 0, cache.getCachedBytes() );
+		assertNull( cache.getLayout( "0" ) );
+	}
+
+	@Test
+	void testHitsAndMissesAreRecordedPerLevel()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "1", "zarr.json" }, 0, -1, this::storeRead );
+
+		final String[] shard = { "1", "c", "0", "0" };
+		cache.read( shard, -INDEX_BYTES, -1, this::storeRead );
+		cache.read( shard, -INDEX_BYTES, -1, this::storeRead );
+
+		final LevelMetrics.Snapshot level1 = metrics.level( "dataset", 1 ).snapshot();
+		assertEquals( 1, level1.shardIndexHits );
+		assertEquals( 1, level1.shardIndexMisses );
+		assertEquals( 0.5, level1.shardIndexHitRate() );
+		assertEquals( 0, metrics.level( "dataset", 0 ).snapshot().shardIndexMisses );
+	}
+
+	@Test
+	void testChunkReadsAreNotCached()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		storeReads.set( 0 );
+
+		final String[] shard = { "0", "c", "0", "0" };
+		cache.read( shard, 0, 500, this::storeRead );
+		cache.read( shard, 0, 500, this::storeRead );
+		// inner chunks as large as the index
+		cache.read( shard, 0, INDEX_BYTES, this::storeRead );
+		cache.read( shard, 1000, 1000 + INDEX_BYTES, this::storeRead );
+		cache.read( shard, 1000, 1000 + INDEX_BYTES, this::storeRead );
+
+		assertEquals( 5, storeReads.get() );
+		assertEquals( 0, misses() );
+		assertEquals( 0, hits() );
+		assertEquals( 0, cache.getCachedBytes() );
+	}
+
+	@Test
+	void testIndexAtTheStartIsCached()
+	{
+		zarrJson = zarrJson( "start" );
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+		assertTrue( cache.getLayout( "0" ).isIndexAtStart() );
+
+		final String[] shard = { "0", "c", "0", "0" };
+		cache.read( shard, 0, INDEX_BYTES, this::storeRead );
+		cache.read( shard, 0, INDEX_BYTES, this::storeRead );
+		cache.read( shard, -INDEX_BYTES, -1, this::storeRead );
+
+		assertEquals( 1, misses() );
+		assertEquals( 1, hits() );
+		assertEquals( INDEX_BYTES, cache.getCachedBytes() );
+	}
+
+	@Test
+	void testReadsOfOtherArraysAreNotCached()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+
+		cache.read( new String[] { "1", "c", "0", "0" }, -INDEX_BYTES, -1, this::storeRead );
+
+		assertEquals( 0, misses() );
+		assertEquals( 0, cache.getCachedBytes() );
+	}
+
+	@Test
+	void testCacheIsBounded()
+	{
+		final ShardIndexCache cache = new ShardIndexCache( 2 * INDEX_BYTES, levels );
+		cache.read( new String[] { "0", "zarr.json" }, 0, -1, this::storeRead );
+
+		for ( int i = 0; i < 3; i++ )
+			cache.read( new String[] { "0", "c", "0", Integer.toString( i ) }, -INDEX_BYTES, -1, this::storeRead );
+
+		assertEquals( 3, misses() );
+		assertEquals( 2 * INDEX_BYTES, cache.getCachedBytes() );
+	}
+}
@@ -28,15 +28,27 @@
  */
 package ome.zarr.n5;
 
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CreateInvalidVolatileCell;
+import net.imglib2.cache.img.LoadedCellCacheLoader;
+import net.imglib2.cache.volatiles.CreateInvalid;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.Cast;
 
 import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
 import org.janelia.saalfeldlab.n5.N5Exception;
 import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.imglib2.N5CellLoader;
 import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
 import org.janelia.saalfeldlab.n5.universe.N5DatasetDiscoverer;
 import org.janelia.saalfeldlab.n5.universe.N5Factory;
@@ -57,6 +69,8 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
@@ -64,8 +78,13 @@ import com.google.gson.JsonElement;
 import software.amazon.awssdk.regions.Region;
 
 import ome.zarr.imglib2.Affine3DUtils;
+import ome.zarr.imglib2.LoadMonitor;
 import ome.zarr.imglib2.PyramidBackend;
 import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.PyramidDescription;
+import ome.zarr.imglib2.S3Endpoints;
+import ome.zarr.imglib2.cache.SharedCellCache;
+import ome.zarr.imglib2.cache.UniformCells;
 import ome.zarr.imglib2.exceptions.MultiImageDatasetException;
 import ome.zarr.imglib2.exceptions.NotAMultiscaleImageException;
 import ome.zarr.imglib2.exceptions.StoreAccessException;
@@ -98,17 +117,99 @@ public class N5PyramidBackend implements PyramidBackend
 	@Override
 	public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri )
 	{
-		final N5Reader reader;
+		return load( inputUri, new LoadMonitor() );
+	}
+
+	@Override
+	public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri, final LoadMonitor monitor )
+	{
 		final N5TreeNode treeNode = new N5TreeNode( "" );
-		final OmeNgffMetadata metadata;
+		final N5Reader reader = openReader( inputUri );
+		// the reader is owned by the contents once they are built, and closed here if that fails
+		try
+		{
+			monitor.checkCanceled();
+			final OmeNgffMetadata metadata = readMetadata( reader, treeNode, inputUri );
+			final Multiscale multiscale = buildMultiscale( metadata, 0 );
+			monitor.progress( LoadMonitor.Stage.METADATA, 1, 1 );
+
+			// the dataset attributes were parsed with the metadata, so levels are opened without further requests
+			final int numResolutionLevels = multiscale.numResolutionLevels();
+			monitor.progress( LoadMonitor.Stage.LEVELS, numResolutionLevels, numResolutionLevels );
+
+			final Omero omero = readOmeroMetadata( reader, treeNode );
+			monitor.progress( LoadMonitor.Stage.OMERO, 1, 1 );
+
+			final AffineTransform3D[] transforms = createTransforms( metadata );
+			final T type = N5Utils.type( multiscale.getDataType() );
+			final String name = multiscale.getName();
+
+			final List< ResolutionLevel > levels = multiscale.getLevels();
+			final IntFunction< CachedCellImg< T, ? > > levelOpener = index -> openVolatile(
+					reader, levels.get( index ).datasetPath, levels.get( index ).attributes, inputUri.toString(), index );
+
+			return PyramidContents.< T >builder()
+					.name( name )
+					.location( inputUri.toString() )
+					.type( type )
+					.transforms( transforms )
+					.levelOpener( numResolutionLevels, levelOpener )
+					.levelDimensions( createLevelDimensions( multiscale ) )
+					.axesPerLevel( createAxesPerLevel( multiscale ) )
+					.omero( omero )
+					.resource( reader )
+					.build();
+		}
+		catch ( final RuntimeException | Error e )
+		{
+			try
+			{
+				reader.close();
+			}
+			catch ( final RuntimeException closeFailure )
+			{
+				e.addSuppressed( closeFailure );
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the same metadata as {@link #load(URI)}, which already holds the
+	 * dataset attributes of every level, without creating cell images.
+	 */
+	@Override
+	public PyramidDescription inspect( final URI inputUri )
+	{
+		final N5TreeNode treeNode = new N5TreeNode( "" );
+		try (final N5Reader reader = openReader( inputUri ))
+		{
+			final OmeNgffMetadata metadata = readMetadata( reader, treeNode, inputUri );
+			final Multiscale multiscale = buildMultiscale( metadata, 0 );
+
+			return PyramidDescription.builder()
+					.name( multiscale.getName() )
+					.dataType( multiscale.getDataType().toString() )
+					.transforms( createTransforms( metadata ) )
+					.levelDimensions( createLevelDimensions( multiscale ) )
+					.axesPerLevel( createAxesPerLevel( multiscale ) )
+					.omero( readOmeroMetadata( reader, treeNode ) )
+					.build();
+		}
+	}
+
+	private static N5Reader openReader( final URI inputUri )
+	{
 		try
 		{
 			final N5Factory factory = new N5Factory();
-			// The region default only matters for s3:// URIs.
+			// The region only matters for s3:// URIs; it is detected once per bucket.
 			if ( "s3".equalsIgnoreCase( inputUri.getScheme() ) )
-				factory.s3Configuration( builder -> builder.region( Region.US_EAST_1 ) );
-			reader = factory.openReader( inputUri.toString() );
-			metadata = readMetadata( reader, treeNode, inputUri );
+			{
+				final Region region = Region.of( S3Endpoints.bucketRegion( inputUri.getHost() ) );
+				factory.s3Configuration( builder -> builder.region( region ) );
+			}
+			return factory.openReader( inputUri.toString() );
 		}
 		catch ( N5Exception e )
 		{
@@ -117,43 +218,44 @@ public class N5PyramidBackend implements PyramidBackend
 			// exception.
 			throw new StoreAccessException( inputUri.toString(), e );
 		}
-		final Multiscale multiscale = buildMultiscale( metadata, 0 );
-		final Omero omero = readOmeroMetadata( reader, treeNode );
+	}
 
-		final SpatialMetadataGroup< ? > spatialMetadata = Cast.unchecked( metadata );
-		final AffineTransform3D[] transforms = spatialMetadata.spatialTransforms3d();
-		if ( !Affine3DUtils.isScaling( transforms[ 0 ], 0.01d ) )
-			logger.warn( "The affine transform is not a strict scaling transform. This may cause problems with the image viewer." );
-		final T type = N5Utils.type( multiscale.getDataType() );
-		final String name = multiscale.getName();
-		final int numResolutionLevels = multiscale.numResolutionLevels();
+	/**
+	 * Opens a dataset as a volatile {@link CachedCellImg}, like
+	 * {@link N5Utils#openVolatile}, but with uniform cells sharing their storage
+	 * (see {@link UniformCells}) and all cells held by the
+	 * {@link SharedCellCache}, which answers with invalid cells while the
+	 * loads of the image are canceled.
+	 *
+	 * @param dataset name under which the cells are accounted in the cache
+	 * @param level index of the resolution level, under which the cache metrics are recorded
+	 */
+	private static < T extends NativeType< T >, A extends ArrayDataAccess< A > > CachedCellImg< T, A > openVolatile(
+			final N5Reader reader, final String datasetPath, final DatasetAttributes attributes, final String dataset,
+			final int level )
+	{
+		final CellGrid grid = new CellGrid( attributes.getDimensions(), attributes.getBlockSize() );
+		final T type = N5Utils.type( attributes.getDataType() );
+		final Set< AccessFlags > flags = AccessFlags.setOf( AccessFlags.VOLATILE );
+		final CacheLoader< Long, Cell< A > > loader = LoadedCellCacheLoader.get(
+				grid, new N5CellLoader<>( reader, datasetPath, attributes.getBlockSize() ), type, flags );
+		final CreateInvalid< Long, Cell< A > > invalid = Cast.unchecked( CreateInvalidVolatileCell.get( grid, type, false ) );
+		final Cache< Long, Cell< A > > cache = SharedCellCache.getInstance().levelCache( dataset, level, invalid )
+				.withLoader( UniformCells.sharing( loader ) );
+		return new CachedCellImg<>( grid, type, cache, ArrayDataAccessFactory.get( type, flags ) );
+	}
 
-		final CachedCellImg< T, ? >[] cachedCellImgs = Cast.unchecked( new CachedCellImg[ numResolutionLevels ] );
-		for ( final ResolutionLevel level : multiscale.getLevels() )
+	private static OmeNgffMetadata readMetadata( final N5Reader reader, final N5TreeNode node, final URI inputUri )
+	{
+		final List< N5MetadataParser< ? > > parsers = Collections.singletonList( new OmeNgffMetadataParser( reader ) );
+		try
 		{
-			cachedCellImgs[ level.index ] = N5Utils.openVolatile( reader, level.datasetPath );
+			N5DatasetDiscoverer.parseMetadataShallow( reader, node, parsers, parsers );
 		}
-
-		final AxisCalibration[][] axesPerLevel = new AxisCalibration[ numResolutionLevels ][];
-		for ( final ResolutionLevel level : multiscale.getLevels() )
+		catch ( N5Exception e )
 		{
-			axesPerLevel[ level.index ] = createAxisCalibrations( level );
+			throw new StoreAccessException( inputUri.toString(), e );
 		}
-
-		return PyramidContents.< T >builder()
-				.name( name )
-				.type( type )
-				.transforms( transforms )
-				.cachedCellImgs( cachedCellImgs )
-				.axesPerLevel( axesPerLevel )
-				.omero( omero )
-				.build();
-	}
-
-	private OmeNgffMetadata readMetadata( final N5Reader reader, final N5TreeNode node, final URI inputUri )
-	{
-		final List< N5MetadataParser< ? > > parsers = Collections.singletonList( new OmeNgffMetadataParser( reader ) );
-		N5DatasetDiscoverer.parseMetadataShallow( reader, node, parsers, parsers );
 		final N5Metadata n5Metadata = node.getMetadata();
 		if ( n5Metadata == null )
 		{
@@ -186,7 +288,8 @@ public class N5PyramidBackend implements PyramidBackend
 			throw new NotAMultiscaleImageException( "Multiscale metadata does not contain any children attributes." );
 		final List< ResolutionLevel > levels = new ArrayList<>();
 		for ( int i = 0; i < children.length; i++ )
-			levels.add( new ResolutionLevel( children[ i ].getPath(), i, children[ i ].getAxes(), children[ i ].getScale() ) );
+			levels.add( new ResolutionLevel( children[ i ].getPath(), i, children[ i ].getAxes(), children[ i ].getScale(),
+					children[ i ].getAttributes() ) );
 		return new Multiscale( ms.name, levels, children[ 0 ].getAttributes().getDataType() );
 	}
 
@@ -198,10 +301,35 @@ public class N5PyramidBackend implements PyramidBackend
 		return new Gson().fromJson( reader.getAttribute( node.getPath(), omeroKey, JsonElement.class ), Omero.class );
 	}
 
+	private static AffineTransform3D[] createTransforms( final OmeNgffMetadata metadata )
+	{
+		final SpatialMetadataGroup< ? > spatialMetadata = Cast.unchecked( metadata );
+		final AffineTransform3D[] transforms = spatialMetadata.spatialTransforms3d();
+		if ( !Affine3DUtils.isScaling( transforms[ 0 ], 0.01d ) )
+			logger.warn( "The affine transform is not a strict scaling transform. This may cause problems with the image viewer." );
+		return transforms;
+	}
+
+	private static long[][] createLevelDimensions( final Multiscale multiscale )
+	{
+		final long[][] levelDimensions = new long[ multiscale.numResolutionLevels() ][];
+		for ( final ResolutionLevel level : multiscale.getLevels() )
+			levelDimensions[ level.index ] = level.attributes.getDimensions();
+		return levelDimensions;
+	}
+
 	// ---------------------------------------------------------------------
 	// Axis configuration
 	// ---------------------------------------------------------------------
 
+	private static AxisCalibration[][] createAxesPerLevel( final Multiscale multiscale )
+	{
+		final AxisCalibration[][] axesPerLevel = new AxisCalibration[ multiscale.numResolutionLevels() ][];
+		for ( final ResolutionLevel level : multiscale.getLevels() )
+			axesPerLevel[ level.index ] = createAxisCalibrations( level );
+		return axesPerLevel;
+	}
+
 	private static AxisCalibration[] createAxisCalibrations( final ResolutionLevel level )
 	{
 		if ( level.axes == null )
@@ -262,12 +390,16 @@ public class N5PyramidBackend implements PyramidBackend
 
 		private final double[] scales;
 
-		private ResolutionLevel( final String datasetPath, final int index, final Axis[] axes, final double[] scales )
+		private final DatasetAttributes attributes;
+
+		private ResolutionLevel( final String datasetPath, final int index, final Axis[] axes, final double[] scales,
+				final DatasetAttributes attributes )
 		{
 			this.datasetPath = datasetPath;
 			this.index = index;
 			this.axes = axes;
 			this.scales = scales;
+			this.attributes = attributes;
 		}
 	}
 }
@@ -30,16 +30,25 @@ package ome.zarr.n5;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 import org.scijava.Context;
 
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PyramidBackend;
 import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.PyramidDescription;
 import ome.zarr.imglib2.PyramidBackendTestBase;
 import ome.zarr.ZarrTestUtils;
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
 
 class N5PyramidBackendTest implements PyramidBackendTestBase
 {
@@ -51,6 +60,18 @@ class N5PyramidBackendTest implements PyramidBackendTestBase
 		return new N5PyramidBackend().load( path.toUri() );
 	}
 
+	@Override
+	public PyramidDescription inspect( final String resource ) throws URISyntaxException
+	{
+		return new N5PyramidBackend().inspect( ZarrTestUtils.resourcePath( resource ).toUri() );
+	}
+
+	@Override
+	public PyramidBackend backend()
+	{
+		return new N5PyramidBackend();
+	}
+
 	@Test
 	void testStaticOpen() throws URISyntaxException
 	{
@@ -61,4 +82,19 @@ class N5PyramidBackendTest implements PyramidBackendTestBase
 		assertEquals( 5, contents.numDimensions() );
 		assertEquals( 2, contents.numResolutionLevels() );
 	}
+
+	@Test
+	void testLoadReportsStagesAndCanBeCanceled() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( "ome/zarr/testdata/pyramid_testing/pyramid_v5.zarr" ).toUri();
+		final LoadMonitor monitor = new LoadMonitor();
+		final List< LoadMonitor.Stage > stages = new ArrayList<>();
+		monitor.addListener( ( stage, done, total ) -> stages.add( stage ) );
+		assertNotNull( new N5PyramidBackend().load( uri, monitor ) );
+		assertEquals( Arrays.asList( LoadMonitor.Stage.values() ), stages );
+
+		final LoadMonitor canceled = new LoadMonitor();
+		canceled.addListener( ( stage, done, total ) -> canceled.cancel() );
+		assertThrows( LoadCanceledException.class, () -> new N5PyramidBackend().load( uri, canceled ) );
+	}
 }
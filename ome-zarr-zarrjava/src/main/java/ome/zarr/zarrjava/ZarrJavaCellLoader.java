@@ -29,43 +29,91 @@
 package ome.zarr.zarrjava;
 
 import dev.zarr.zarrjava.core.Array;
-import net.imglib2.Cursor;
-import net.imglib2.cache.img.CellLoader;
-import net.imglib2.cache.img.SingleCellArrayImg;
-import net.imglib2.type.NativeType;
-import net.imglib2.type.numeric.RealType;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileDoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Cast;
+
+import ome.zarr.imglib2.cache.UniformCells;
+import ome.zarr.imglib2.metrics.LevelMetrics;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+import ome.zarr.imglib2.store.MissingChunks;
 
 /**
- * An imglib2 {@link CellLoader} backed by a zarr-java {@link Array}.
+ * An imglib2 {@link CacheLoader} that creates the cells of a
+ * {@link net.imglib2.cache.img.CachedCellImg} from a zarr-java {@link Array}.
  *
  * <p>Zarr arrays use C-order (row-major, last axis fastest) while imglib2 uses
  * Fortran-order (column-major, first axis fastest). The two conventions share the
  * same flat-array layout when dimensions are reversed, so this loader simply
  * reverses the imglib2 cell offset and shape before calling
- * {@link Array#read(long[], long[])} and then copies the values element-wise via
- * an {@link ucar.ma2.IndexIterator}, which correctly interprets unsigned types.
+ * {@link Array#read(long[], long[])}.
+ *
+ * <p>The primitive storage of the decoded {@link ucar.ma2.Array} is adopted as
+ * the cell's storage without copying: zarr-java already returns a freshly
+ * allocated, contiguous array in native byte order, laid out exactly like an
+ * imglib2 cell when the cell grid matches the chunk grid. Signed and unsigned
+ * variants of a type share their Java storage type, so unsigned semantics are
+ * preserved. If the storage does not match the access of the cells, the
+ * values are copied element-wise into a new access instead.
+ *
+ * <p>Chunks missing from the store, which zarr-java fills with the fill value
+ * without decoding anything, are recognized by the {@link MissingChunks} of
+ * the store and get the storage shared by uniform cells (see
+ * {@link UniformCells}) right away, without comparing their voxels.
+ *
+ * <p>If given {@link LevelMetrics}, the loader records the time spent decoding
+ * each cell: the time to read it, less the time its thread spent in the store
+ * filters that add to {@link LoadMetrics#readNanos()}.
  *
- * @param <T> the imglib2 pixel type
+ * @param <A> the volatile access type of the cells
  */
-public class ZarrJavaCellLoader< T extends NativeType< T > & RealType< T > > implements CellLoader< T >
+public class ZarrJavaCellLoader< A extends ArrayDataAccess< A > > implements CacheLoader< Long, Cell< A > >
 {
 	private final Array zarrArray;
 
-	public ZarrJavaCellLoader( final Array zarrArray )
+	private final CellGrid grid;
+
+	private final A accessType;
+
+	private final LevelMetrics metrics;
+
+	/**
+	 * @param accessType creates the access of a cell whose values must be copied
+	 */
+	public ZarrJavaCellLoader( final Array zarrArray, final CellGrid grid, final A accessType )
+	{
+		this( zarrArray, grid, accessType, null );
+	}
+
+	/**
+	 * @param accessType creates the access of a cell whose values must be copied
+	 * @param metrics to record the decode time of each cell to, or {@code null}
+	 */
+	public ZarrJavaCellLoader( final Array zarrArray, final CellGrid grid, final A accessType, final LevelMetrics metrics )
 	{
 		this.zarrArray = zarrArray;
+		this.grid = grid;
+		this.accessType = accessType;
+		this.metrics = metrics;
 	}
 
 	@Override
-	public void load( final SingleCellArrayImg< T, ? > cell ) throws Exception
+	public Cell< A > get( final Long key ) throws Exception
 	{
-		final int n = cell.numDimensions();
+		final int n = grid.numDimensions();
 
 		// imglib2 cell min and dims are in F-order [x, y, z, ...]
 		final long[] imgMin = new long[ n ];
-		cell.min( imgMin );
-		final long[] imgDims = new long[ n ];
-		cell.dimensions( imgDims );
+		final int[] imgDims = new int[ n ];
+		grid.getCellDimensions( key, imgMin, imgDims );
 
 		// Reverse to zarr C-order [..., z, y, x]
 		final long[] zarrOffset = new long[ n ];
@@ -76,16 +124,110 @@ public class ZarrJavaCellLoader< T extends NativeType< T > & RealType< T > > imp
 			zarrShape[ i ] = imgDims[ n - 1 - i ];
 		}
 
+		final long readBefore = LoadMetrics.readNanos();
+		final long start = System.nanoTime();
+		MissingChunks.begin();
 		final ucar.ma2.Array data = zarrArray.read( zarrOffset, zarrShape );
-		final ucar.ma2.IndexIterator it = data.getIndexIterator();
-		final Cursor< T > cursor = cell.cursor();
+		if ( MissingChunks.onlyMissing() )
+			// filled with the fill value, which need not be looked at
+			return new Cell<>( imgDims, imgMin, UniformCells.shareUniform( access( data, accessType ) ) );
+		if ( metrics != null )
+			metrics.decoded( System.nanoTime() - start - ( LoadMetrics.readNanos() - readBefore ) );
+		return new Cell<>( imgDims, imgMin, access( data, accessType ) );
+	}
+
+	/**
+	 * Returns the values of {@code data} in an access of the class of
+	 * {@code accessType}: its storage as it is if that has the storage type of
+	 * {@code accessType}, or a copy otherwise.
+	 */
+	static < A extends ArrayDataAccess< A > > A access( final ucar.ma2.Array data, final A accessType )
+	{
+		// returns the backing storage without copying if it is already contiguous
+		final Object storage = data.get1DJavaArray( data.getDataType() );
+		if ( storage.getClass() == accessType.getCurrentStorageArray().getClass()
+				&& java.lang.reflect.Array.getLength( storage ) == data.getSize() )
+		{
+			final ArrayDataAccess< ? > access = wrap( storage );
+			if ( access != null && access.getClass() == accessType.getClass() )
+				return Cast.unchecked( access );
+		}
+		return copy( data, accessType );
+	}
+
+	/**
+	 * Wraps decoded primitive storage in the matching valid volatile access.
+	 *
+	 * @return {@code null} if there is no volatile access for {@code storage}
+	 */
+	static ArrayDataAccess< ? > wrap( final Object storage )
+	{
+		if ( storage instanceof byte[] )
+			return new VolatileByteArray( ( byte[] ) storage, true );
+		if ( storage instanceof short[] )
+			return new VolatileShortArray( ( short[] ) storage, true );
+		if ( storage instanceof int[] )
+			return new VolatileIntArray( ( int[] ) storage, true );
+		if ( storage instanceof long[] )
+			return new VolatileLongArray( ( long[] ) storage, true );
+		if ( storage instanceof float[] )
+			return new VolatileFloatArray( ( float[] ) storage, true );
+		if ( storage instanceof double[] )
+			return new VolatileDoubleArray( ( double[] ) storage, true );
+		return null;
+	}
 
-		// ucar.ma2.IndexIterator.getDoubleNext() correctly handles unsigned types
-		// (e.g. UBYTE returns [0, 255], not [-128, 127])
-		while ( cursor.hasNext() )
+	/**
+	 * Copies the values of {@code data} element-wise into a new access like
+	 * {@code accessType}. The C-order iteration of {@code data} visits the
+	 * values in the F-order of the reversed cell dimensions.
+	 */
+	static < A extends ArrayDataAccess< A > > A copy( final ucar.ma2.Array data, final A accessType )
+	{
+		final int size = ( int ) data.getSize();
+		final A access = accessType.createArray( size );
+		final Object dst = access.getCurrentStorageArray();
+		final ucar.ma2.IndexIterator it = data.getIndexIterator();
+		// ucar.ma2 converts unsigned values to their unsigned value (e.g. UBYTE
+		// returns [0, 255]) and casting that back keeps the bit pattern
+		if ( dst instanceof byte[] )
+		{
+			final byte[] values = ( byte[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = ( byte ) it.getLongNext();
+		}
+		else if ( dst instanceof short[] )
+		{
+			final short[] values = ( short[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = ( short ) it.getLongNext();
+		}
+		else if ( dst instanceof int[] )
+		{
+			final int[] values = ( int[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = ( int ) it.getLongNext();
+		}
+		else if ( dst instanceof long[] )
+		{
+			final long[] values = ( long[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = it.getLongNext();
+		}
+		else if ( dst instanceof float[] )
+		{
+			final float[] values = ( float[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = it.getFloatNext();
+		}
+		else if ( dst instanceof double[] )
 		{
-			cursor.fwd();
-			cursor.get().setReal( it.getDoubleNext() );
+			final double[] values = ( double[] ) dst;
+			for ( int i = 0; i < size; i++ )
+				values[ i ] = it.getDoubleNext();
 		}
+		else
+			throw new IllegalArgumentException( "Unsupported cell storage: " + dst.getClass().getSimpleName() );
+		return access;
 	}
 }
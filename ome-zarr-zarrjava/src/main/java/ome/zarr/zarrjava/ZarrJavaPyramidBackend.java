@@ -36,6 +36,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 
 import dev.zarr.zarrjava.ZarrException;
 import dev.zarr.zarrjava.core.Array;
@@ -58,16 +65,18 @@ import dev.zarr.zarrjava.store.Store;
 import dev.zarr.zarrjava.store.StoreException;
 import dev.zarr.zarrjava.store.StoreHandle;
 
-import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
-import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
-import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.exception.SdkException;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.volatiles.CreateInvalid;
 import net.imglib2.cache.img.CachedCellImg;
-import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
-import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.CreateInvalidVolatileCell;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
@@ -86,27 +95,73 @@ import net.imglib2.util.Cast;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
 import ome.zarr.imglib2.exceptions.MultiImageDatasetException;
 import ome.zarr.imglib2.exceptions.NotAMultiscaleImageException;
 import ome.zarr.imglib2.exceptions.PyramidLevelAccessException;
 import ome.zarr.imglib2.exceptions.StoreAccessException;
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PrefetchedMetadata;
 import ome.zarr.imglib2.PyramidBackend;
 import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.PyramidDescription;
+import ome.zarr.imglib2.S3ClientPool;
+import ome.zarr.imglib2.ZarrUtils;
+import ome.zarr.imglib2.cache.SharedCellCache;
+import ome.zarr.imglib2.cache.UniformCells;
 import ome.zarr.imglib2.metadata.AxisCalibration;
 import ome.zarr.imglib2.metadata.Omero;
+import ome.zarr.imglib2.metrics.LoadMetrics;
+import ome.zarr.imglib2.store.ConsolidatedMetadata;
+import ome.zarr.imglib2.store.DiskChunkCache;
+import ome.zarr.imglib2.store.FetchMetrics;
+import ome.zarr.imglib2.store.HttpReads;
+import ome.zarr.imglib2.store.MissingChunks;
+import ome.zarr.imglib2.store.ObjectReads;
+import ome.zarr.imglib2.store.PrefetchedDocuments;
+import ome.zarr.imglib2.store.RangeCoalescer;
+import ome.zarr.imglib2.store.ReadTimer;
+import ome.zarr.imglib2.store.S3Reads;
+import ome.zarr.imglib2.store.ShardIndexCache;
+import ome.zarr.imglib2.store.ShardingLayout;
+import ome.zarr.zarrjava.store.FilteredStore;
 
 /**
  * {@link PyramidBackend} that reads OME-Zarr images with the zarr-java library.
  * Supports OME-Zarr v0.4 (Zarr v2) and v0.5 (Zarr v3).
+ * <p>
+ * Remote images with consolidated metadata ({@code .zmetadata}, or the
+ * {@code consolidated_metadata} of the root {@code zarr.json}) have the
+ * metadata of all their resolution levels resolved from that single document,
+ * see {@link ConsolidatedMetadata}, so the shapes of all levels are known
+ * once loaded. Other images have only level 0 opened by {@link #load(URI)},
+ * and their other levels when first needed.
  */
 public class ZarrJavaPyramidBackend implements PyramidBackend
 {
 	private static final Logger logger = LoggerFactory.getLogger( MethodHandles.lookup().lookupClass() );
 
-	/** Location of the image being read; set for the duration of a {@link #load(URI)} call. */
-	private URI inputUri;
+	/** Maximum number of resolution levels opened at the same time, by all images. */
+	private static final int MAX_PARALLEL_LEVEL_OPENS = 8;
 
-	private StoreHandle activeHandle = null;
+	private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+	/**
+	 * Opens resolution levels, while loading and for
+	 * {@link PyramidContents#cachedCellImgs()}. Idle threads exit, so the pool
+	 * needs no shutdown.
+	 */
+	private static final ThreadPoolExecutor LEVEL_OPENERS = new ThreadPoolExecutor(
+			MAX_PARALLEL_LEVEL_OPENS, MAX_PARALLEL_LEVEL_OPENS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+				final Thread thread = new Thread( runnable, "ome-zarr-level-opener-" + THREAD_COUNT.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			} );
+
+	static
+	{
+		LEVEL_OPENERS.allowCoreThreadTimeOut( true );
+	}
 
 	/**
 	 * Convenience entry point for reading an OME-Zarr image with the zarr-java
@@ -125,56 +180,154 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	@Override
 	public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri )
 	{
-		this.inputUri = inputUri;
-		final MultiscaleImage multiscaleImage = openMultiscaleImage();
-		final MultiscalesEntry entry = readMultiscalesEntry( multiscaleImage );
-
-		final int numResolutionLevels = countResolutionLevels( multiscaleImage );
+		return load( inputUri, new LoadMonitor() );
+	}
 
-		final Array level0Array = openLevel( multiscaleImage, 0 );
-		final T type = typeForZarrDataType( level0Array.metadata().dataType().getMA2DataType() );
+	@Override
+	public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri, final LoadMonitor monitor )
+	{
+		return load( inputUri, monitor, ZarrUtils.prefetchedMetadata( inputUri ) );
+	}
 
-		// zarr shape is C-order [t, c, z, y, x]; imglib2 uses F-order [x, y, z, c, t]
-		final long[] zarrShape = level0Array.metadata().shape;
-		final long[] dimensions = reverseToLong( zarrShape );
-		final int numDimensions = dimensions.length;
+	/**
+	 * Reads the root metadata documents in {@code prefetched} from there.
+	 */
+	@Override
+	public < T extends NativeType< T > & RealType< T > > PyramidContents< T > load( final URI inputUri, final LoadMonitor monitor, final PrefetchedMetadata prefetched )
+	{
+		monitor.checkCanceled();
+		final OpenedImage opened = openMultiscaleImage( inputUri, prefetched );
+		final MultiscaleImage multiscaleImage = opened.image;
+		final MultiscalesEntry entry = opened.entry;
+		monitor.progress( LoadMonitor.Stage.METADATA, 1, 1 );
 
-		final String name = entry.name != null ? entry.name : defaultName();
-		final double[] level0Scales = getLevel0Scales( entry, numDimensions );
+		final int numResolutionLevels = countResolutionLevels( multiscaleImage );
 
-		final CachedCellImg< T, ? >[] cachedCellImgs = Cast.unchecked( new CachedCellImg[ numResolutionLevels ] );
-		for ( int level = 0; level < numResolutionLevels; level++ )
+		// level 0 is opened now for the type. The other levels are opened now
+		// only if their metadata are consolidated, which costs no requests, and
+		// otherwise when first needed; the cell images are created on first access
+		monitor.checkCanceled();
+		final Array level0Array = openLevel( multiscaleImage, 0, inputUri );
+		final Array[] levelArrays;
+		if ( opened.isConsolidated() )
+			levelArrays = openLevels( multiscaleImage, numResolutionLevels, level0Array, inputUri, monitor );
+		else
 		{
-			final Array arr = openLevel( multiscaleImage, level );
-			final long[] imgShape = reverseToLong( arr.metadata().shape );
-			final int[] imgChunk = reverseToInt( arr.metadata().chunkShape() );
-			final ReadOnlyCachedCellImgOptions opts = ReadOnlyCachedCellImgOptions.options().cellDimensions( imgChunk );
-			cachedCellImgs[ level ] = new ReadOnlyCachedCellImgFactory()
-					.create( imgShape, type, new ZarrJavaCellLoader<>( arr ), opts );
+			levelArrays = new Array[ numResolutionLevels ];
+			levelArrays[ 0 ] = level0Array;
+			monitor.progress( LoadMonitor.Stage.LEVELS, 1, 1 );
 		}
-
-		final AxisCalibration[][] axesPerLevel = new AxisCalibration[ numResolutionLevels ][];
+		final long[][] levelDimensions = new long[ numResolutionLevels ][];
 		for ( int level = 0; level < numResolutionLevels; level++ )
-		{
-			final double[] levelScales = findLevelScale( entry, level );
-			final double[] axisScales = levelScales != null ? levelScales : level0Scales;
-			axesPerLevel[ level ] = createAxisCalibrations( entry.axes, axisScales );
-		}
+			// zarr shape is C-order [t, c, z, y, x]; imglib2 uses F-order [x, y, z, c, t]
+			levelDimensions[ level ] = levelArrays[ level ] != null ? reverseToLong( levelArrays[ level ].metadata().shape ) : null;
+		final T type = Cast.unchecked( typeForZarrDataType( levelArrays[ 0 ].metadata().dataType().getMA2DataType() ) );
+		final int numDimensions = levelDimensions[ 0 ].length;
+
+		final String name = entry.name != null ? entry.name : defaultName( inputUri );
+		final double[] level0Scales = getLevel0Scales( entry, numDimensions );
+
+		final ShardIndexCache shards = opened.shards;
+		final IntFunction< CachedCellImg< T, ? > > levelOpener = level -> {
+			final Array arr = levelArrays[ level ] != null ? levelArrays[ level ] : openLevel( multiscaleImage, level, inputUri );
+			return createCachedCellImg( arr, type, findShardingLayout( entry, level, shards ), inputUri, level );
+		};
+
+		final AxisCalibration[][] axesPerLevel = createAxesPerLevel( entry, numResolutionLevels, level0Scales );
 
 		final AffineTransform3D[] transforms = createTransforms( entry, numResolutionLevels, level0Scales );
 
 		final Omero omero = convertOmero( multiscaleImage.getOmeroMetadata() );
+		monitor.progress( LoadMonitor.Stage.OMERO, 1, 1 );
 
 		return PyramidContents.< T >builder()
 				.name( name )
+				.location( inputUri.toString() )
 				.type( type )
 				.transforms( transforms )
-				.cachedCellImgs( cachedCellImgs )
+				.levelOpener( numResolutionLevels, levelOpener )
+				.levelOpeners( LEVEL_OPENERS )
+				.levelDimensions( levelDimensions )
 				.axesPerLevel( axesPerLevel )
 				.omero( omero )
+				.resource( opened::close )
 				.build();
 	}
 
+	/**
+	 * Reads the multiscales metadata and the array metadata of every level,
+	 * without creating cell images.
+	 */
+	@Override
+	public PyramidDescription inspect( final URI inputUri )
+	{
+		final OpenedImage opened = openMultiscaleImage( inputUri, ZarrUtils.prefetchedMetadata( inputUri ) );
+		try
+		{
+			final MultiscaleImage multiscaleImage = opened.image;
+			final MultiscalesEntry entry = opened.entry;
+			final int numResolutionLevels = countResolutionLevels( multiscaleImage );
+
+			final Array[] levelArrays = openLevels( multiscaleImage, numResolutionLevels, openLevel( multiscaleImage, 0, inputUri ), inputUri, new LoadMonitor() );
+			final long[][] levelDimensions = new long[ numResolutionLevels ][];
+			for ( int level = 0; level < numResolutionLevels; level++ )
+				levelDimensions[ level ] = reverseToLong( levelArrays[ level ].metadata().shape );
+			final ucar.ma2.DataType dataType = levelArrays[ 0 ].metadata().dataType().getMA2DataType();
+			final double[] level0Scales = getLevel0Scales( entry, levelDimensions[ 0 ].length );
+
+			return PyramidDescription.builder()
+					.name( entry.name != null ? entry.name : defaultName( inputUri ) )
+					.dataType( dataTypeName( dataType ) )
+					.levelDimensions( levelDimensions )
+					.transforms( createTransforms( entry, numResolutionLevels, level0Scales ) )
+					.axesPerLevel( createAxesPerLevel( entry, numResolutionLevels, level0Scales ) )
+					.omero( convertOmero( multiscaleImage.getOmeroMetadata() ) )
+					.build();
+		}
+		finally
+		{
+			// nothing is read once described
+			try
+			{
+				opened.close();
+			}
+			catch ( final Exception e )
+			{
+				logger.warn( "Cannot release the store of {}: {}", inputUri, e.getMessage() );
+			}
+		}
+	}
+
+	/**
+	 * Creates a volatile {@link CachedCellImg} whose cell grid matches the
+	 * chunk grid of {@code arr}, so that decoded chunks can be used as cell
+	 * storage as they are (see {@link ZarrJavaCellLoader}). Sharded arrays use
+	 * their inner chunks as cells rather than whole shards. Uniform cells share
+	 * their storage (see {@link UniformCells}), and all cells are held by the
+	 * {@link SharedCellCache}, which answers with invalid cells while the
+	 * loads of the image are canceled.
+	 *
+	 * @param sharding layout of {@code arr}, or {@code null} if it is not sharded
+	 * @param uri location of the image, under which the cells are accounted
+	 * @param level index of the resolution level of {@code arr}
+	 */
+	private static < T extends NativeType< T >, A extends ArrayDataAccess< A > > CachedCellImg< T, A > createCachedCellImg(
+			final Array arr, final T type, final ShardingLayout sharding, final URI uri, final int level )
+	{
+		final long[] imgShape = reverseToLong( arr.metadata().shape );
+		final int[] imgChunk = reverseToInt( sharding != null
+				? sharding.getInnerChunkShape()
+				: arr.metadata().chunkShape() );
+		final CellGrid grid = new CellGrid( imgShape, imgChunk );
+		final A accessType = ArrayDataAccessFactory.get( type, AccessFlags.setOf( AccessFlags.VOLATILE ) );
+		final String dataset = uri.toString();
+		final ZarrJavaCellLoader< A > loader = new ZarrJavaCellLoader<>( arr, grid, accessType, LoadMetrics.getInstance().level( dataset, level ) );
+		final CreateInvalid< Long, Cell< A > > invalid = Cast.unchecked( CreateInvalidVolatileCell.get( grid, type, false ) );
+		final Cache< Long, Cell< A > > cache = SharedCellCache.getInstance().levelCache( dataset, level, invalid )
+				.withLoader( UniformCells.sharing( loader ) );
+		return new CachedCellImg<>( grid, type, cache, accessType );
+	}
+
 	private static Omero convertOmero( final OmeroMetadata source )
 	{
 		if ( source == null )
@@ -235,31 +388,127 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	// Store / path helpers
 	// ---------------------------------------------------------------------
 
-	private MultiscaleImage openMultiscaleImage()
+	/**
+	 * A multiscale image opened by one {@link #load(URI)} or
+	 * {@link #inspect(URI)} call, with its store, the shard indices and the
+	 * consolidated metadata. Each call keeps its own, so that concurrent calls
+	 * of one backend do not mix up their images.
+	 */
+	private static final class OpenedImage
+	{
+		final MultiscaleImage image;
+
+		final MultiscalesEntry entry;
+
+		final Store store;
+
+		/** {@link #store} wrapped with the filters. */
+		final Store filtered;
+
+		final ShardIndexCache shards;
+
+		/** {@code null} for local images, whose metadata are cheap to read. */
+		final ConsolidatedMetadata consolidated;
+
+		OpenedImage( final MultiscaleImage image, final MultiscalesEntry entry, final Store store, final Store filtered, final ShardIndexCache shards, final ConsolidatedMetadata consolidated )
+		{
+			this.image = image;
+			this.entry = entry;
+			this.store = store;
+			this.filtered = filtered;
+			this.shards = shards;
+			this.consolidated = consolidated;
+		}
+
+		/**
+		 * Releases the store filters, with the shard indices, the metadata
+		 * documents and the remote reads, and then the store. The S3 client of
+		 * an S3 store is left open, as it belongs to the {@link S3ClientPool}.
+		 */
+		void close() throws Exception
+		{
+			FilteredStore.closeFilters( filtered );
+			if ( store instanceof AutoCloseable && !( store instanceof S3Store ) )
+				( ( AutoCloseable ) store ).close();
+		}
+
+		/**
+		 * Whether the metadata of the levels come from consolidated metadata.
+		 * Known once a level has been opened.
+		 */
+		boolean isConsolidated()
+		{
+			return consolidated != null && consolidated.isConsolidated();
+		}
+	}
+
+	/**
+	 * Opens the multiscale image at {@code inputUri} through the store filters
+	 * and reads its first multiscales entry.
+	 *
+	 * @param prefetched root metadata that need not be requested
+	 */
+	private static OpenedImage openMultiscaleImage( final URI inputUri, final PrefetchedMetadata prefetched )
 	{
 		final String scheme = inputUri.getScheme();
+		final FetchMetrics fetchMetrics = new FetchMetrics( inputUri.toString(), LoadMetrics.getInstance() );
+		final ShardIndexCache shardIndexCache = new ShardIndexCache( fetchMetrics );
+		final DiskChunkCache diskCache = DiskChunkCache.getInstance();
 		Store store;
+		// remote objects are read past the store, so that the disk cache learns
+		// which keys are missing from the status of the reads, and so that the
+		// requests in flight can be aborted when the loads are canceled
+		final ObjectReads reads;
 		if ( scheme == null || "file".equalsIgnoreCase( scheme ) )
+		{
 			store = new FilesystemStore( Paths.get( inputUri ) );
+			reads = null;
+		}
 		else if ( "http".equalsIgnoreCase( scheme ) || "https".equalsIgnoreCase( scheme ) )
+		{
 			store = new HttpStore( inputUri.toString() );
+			reads = new HttpReads( inputUri.toString() );
+		}
 		else if ( "s3".equalsIgnoreCase( scheme ) )
 		{
-			final S3Client s3 = S3Client.builder().region( Region.US_EAST_1 )
-					.credentialsProvider( AwsCredentialsProviderChain.builder()
-							.credentialsProviders( DefaultCredentialsProvider.builder().build(), AnonymousCredentialsProvider.create() )
-							.build() )
-					.build();
 			final String bucket = inputUri.getHost();
+			final S3Client s3 = S3ClientPool.getInstance().forBucket( bucket );
 			final String rawPath = inputUri.getPath();
 			final String keyPrefix = rawPath == null ? "" : rawPath.replaceFirst( "^/", "" );
 			store = new S3Store( s3, bucket, keyPrefix.isEmpty() ? null : keyPrefix );
+			reads = new S3Reads( s3, bucket, keyPrefix );
 		}
 		else
 			throw new IllegalArgumentException( "Unsupported URI scheme '" + scheme + "' for OME-Zarr location: " + inputUri );
 		try
 		{
-			return openMultiscaleImageFromHandle( store.resolve() );
+			final Store filtered;
+			final ConsolidatedMetadata consolidated = store instanceof FilesystemStore ? null : new ConsolidatedMetadata();
+			// the timer comes first, to count waits for merged reads as reading,
+			// followed by the missing chunks, to see the reads as zarr-java does,
+			// and the metrics last, to only count requests reaching the store.
+			// The disk cache comes before the metadata filters, so that it
+			// revalidates the documents they answer too
+			if ( store instanceof FilesystemStore )
+				filtered = FilteredStore.wrap( store, new ReadTimer(), new MissingChunks(), shardIndexCache, fetchMetrics );
+			else if ( diskCache.isEnabled() )
+			{
+				final DiskChunkCache.AbsenceCheck absenceCheck = keys -> ( keys.length == 1 && prefetched.isMissing( keys[ 0 ] ) )
+						|| reads.isAbsent( keys );
+				filtered = FilteredStore.wrap( store, new ReadTimer(), new MissingChunks(), shardIndexCache,
+						diskCache.forDataset( inputUri.toString(), absenceCheck, reads ), consolidated,
+						new PrefetchedDocuments( prefetched ), new RangeCoalescer(), fetchMetrics, reads );
+			}
+			else
+				filtered = FilteredStore.wrap( store, new ReadTimer(), new MissingChunks(), shardIndexCache, consolidated,
+						new PrefetchedDocuments( prefetched ), new RangeCoalescer(), fetchMetrics, reads );
+			if ( reads != null )
+				SharedCellCache.getInstance().addCancelable( inputUri.toString(), reads );
+			final StoreHandle handle = filtered.resolve();
+			final MultiscaleImage image = openMultiscaleImageFromHandle( handle, inputUri );
+			final MultiscalesEntry entry = readMultiscalesEntry( image, handle, inputUri );
+			setLevelPaths( entry, fetchMetrics );
+			return new OpenedImage( image, entry, store, filtered, shardIndexCache, consolidated );
 		}
 		catch ( StoreException | SdkException e )
 		{
@@ -268,16 +517,15 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 		}
 	}
 
-	private MultiscaleImage openMultiscaleImageFromHandle( final StoreHandle handle )
+	private static MultiscaleImage openMultiscaleImageFromHandle( final StoreHandle handle, final URI inputUri )
 	{
 		try
 		{
-			activeHandle = handle;
 			return MultiscaleImage.open( handle );
 		}
 		catch ( ZarrException | IOException e )
 		{
-			checkForBioformats2rawLayout( handle );
+			checkForBioformats2rawLayout( handle, inputUri );
 			throw new NotAMultiscaleImageException( inputUri.toString(), e );
 		}
 	}
@@ -288,7 +536,7 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	 * attribute. Called after {@link MultiscaleImage#open} fails so we never
 	 * make an extra network round-trip for datasets that open normally.
 	 */
-	private void checkForBioformats2rawLayout( final StoreHandle handle )
+	private static void checkForBioformats2rawLayout( final StoreHandle handle, final URI inputUri )
 	{
 		try
 		{
@@ -308,7 +556,7 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	}
 
 	/** Fallback dataset name when the multiscales entry has none. */
-	private String defaultName()
+	private static String defaultName( final URI inputUri )
 	{
 		if ( "file".equalsIgnoreCase( inputUri.getScheme() ) )
 			return Paths.get( inputUri ).getFileName().toString();
@@ -320,7 +568,7 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 		return slash >= 0 ? trimmed.substring( slash + 1 ) : trimmed;
 	}
 
-	private MultiscalesEntry readMultiscalesEntry( final MultiscaleImage multiscaleImage )
+	private static MultiscalesEntry readMultiscalesEntry( final MultiscaleImage multiscaleImage, final StoreHandle handle, final URI inputUri )
 	{
 		try
 		{
@@ -333,8 +581,7 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 			// or an IndexOutOfBoundsException when the array is empty
 			// surface those as a missing-metadata error rather than letting them
 			// bubble up unhandled.
-			if ( activeHandle != null )
-				checkForBioformats2rawLayout( activeHandle );
+			checkForBioformats2rawLayout( handle, inputUri );
 			throw new NotAMultiscaleImageException( "No multiscale metadata at: " + inputUri, e );
 		}
 	}
@@ -343,6 +590,20 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	// Resolution level helpers
 	// ---------------------------------------------------------------------
 
+	/**
+	 * Lets the {@link FetchMetrics} of the image tell the requests of its
+	 * levels apart.
+	 */
+	private static void setLevelPaths( final MultiscalesEntry entry, final FetchMetrics fetchMetrics )
+	{
+		if ( entry.datasets == null )
+			return;
+		final List< String > paths = new ArrayList<>( entry.datasets.size() );
+		for ( final dev.zarr.zarrjava.experimental.ome.metadata.Dataset ds : entry.datasets )
+			paths.add( ds.path != null ? ds.path : "" );
+		fetchMetrics.setLevelPaths( paths );
+	}
+
 	private static int countResolutionLevels( final MultiscaleImage multiscaleImage )
 	{
 		try
@@ -355,8 +616,20 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 		}
 	}
 
-	private Array openLevel( final MultiscaleImage multiscaleImage, final int levelIndex )
+	/**
+	 * Returns the sharding layout of a level, known to {@code shards} once the
+	 * level has been opened.
+	 */
+	private static ShardingLayout findShardingLayout( final MultiscalesEntry entry, final int level, final ShardIndexCache shards )
+	{
+		if ( entry.datasets == null || entry.datasets.size() <= level )
+			return null;
+		return shards.getLayout( entry.datasets.get( level ).path );
+	}
+
+	private static Array openLevel( final MultiscaleImage multiscaleImage, final int levelIndex, final URI inputUri )
 	{
+		final long start = System.nanoTime();
 		try
 		{
 			return multiscaleImage.openScaleLevel( levelIndex );
@@ -365,6 +638,61 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 		{
 			throw new PyramidLevelAccessException( inputUri.toString(), levelIndex, e );
 		}
+		finally
+		{
+			logger.debug( "Opened resolution level {} of {} in {} ms", levelIndex, inputUri,
+					( System.nanoTime() - start ) / 1_000_000 );
+		}
+	}
+
+	/**
+	 * Opens the resolution levels above level 0 concurrently on
+	 * {@link #LEVEL_OPENERS}, so that a remote pyramid pays
+	 * one round trip for all of its levels rather than one after another, and
+	 * returns all levels in order. Each opened
+	 * level is reported to {@code monitor} as a step of
+	 * {@link LoadMonitor.Stage#LEVELS}.
+	 *
+	 * @param level0 the opened level 0, which is not opened again
+	 * @throws PyramidLevelAccessException if a level cannot be opened
+	 * @throws LoadCanceledException if {@code monitor} is canceled
+	 */
+	private static Array[] openLevels( final MultiscaleImage multiscaleImage, final int numResolutionLevels, final Array level0, final URI inputUri, final LoadMonitor monitor )
+	{
+		final long start = System.nanoTime();
+		final List< CompletableFuture< Array > > opening = new ArrayList<>( numResolutionLevels );
+		for ( int level = 1; level < numResolutionLevels; level++ )
+		{
+			final int l = level;
+			opening.add( CompletableFuture.supplyAsync( () -> openLevel( multiscaleImage, l, inputUri ), LEVEL_OPENERS ) );
+		}
+		final Array[] levelArrays = new Array[ numResolutionLevels ];
+		levelArrays[ 0 ] = level0;
+		try
+		{
+			monitor.progress( LoadMonitor.Stage.LEVELS, 1, numResolutionLevels );
+			for ( int level = 1; level < numResolutionLevels; level++ )
+			{
+				levelArrays[ level ] = opening.get( level - 1 ).join();
+				monitor.progress( LoadMonitor.Stage.LEVELS, level + 1, numResolutionLevels );
+			}
+		}
+		catch ( final CompletionException e )
+		{
+			if ( e.getCause() instanceof RuntimeException )
+				throw ( RuntimeException ) e.getCause();
+			throw e;
+		}
+		finally
+		{
+			// levels not yet started are not needed anymore if one failed or
+			// the load was canceled
+			for ( final CompletableFuture< Array > level : opening )
+				level.cancel( false );
+		}
+		logger.debug( "Opened resolution levels 1 to {} of {} in {} ms", numResolutionLevels - 1, inputUri,
+				( System.nanoTime() - start ) / 1_000_000 );
+		return levelArrays;
 	}
 
 	// ---------------------------------------------------------------------
@@ -546,6 +874,19 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 		return zarrIndex >= 0 && zarrIndex < level0Scales.length ? level0Scales[ zarrIndex ] : 1.0;
 	}
 
+	private static AxisCalibration[][] createAxesPerLevel( final MultiscalesEntry entry,
+			final int numResolutionLevels, final double[] level0Scales )
+	{
+		final AxisCalibration[][] axesPerLevel = new AxisCalibration[ numResolutionLevels ][];
+		for ( int level = 0; level < numResolutionLevels; level++ )
+		{
+			final double[] levelScales = findLevelScale( entry, level );
+			final double[] axisScales = levelScales != null ? levelScales : level0Scales;
+			axesPerLevel[ level ] = createAxisCalibrations( entry.axes, axisScales );
+		}
+		return axesPerLevel;
+	}
+
 	private static AxisCalibration[] createAxisCalibrations( final List< Axis > zarrAxes, final double[] level0Scales )
 	{
 		if ( zarrAxes == null )
@@ -566,32 +907,37 @@ public class ZarrJavaPyramidBackend implements PyramidBackend
 	// Type mapping / utility
 	// ---------------------------------------------------------------------
 
-	@SuppressWarnings( "unchecked" )
-	private static < T extends NativeType< T > & RealType< T > > T typeForZarrDataType( final ucar.ma2.DataType dt )
+	private static RealType< ? > typeForZarrDataType( final ucar.ma2.DataType dt )
 	{
 		if ( dt == ucar.ma2.DataType.FLOAT )
-			return ( T ) new FloatType();
+			return new FloatType();
 		if ( dt == ucar.ma2.DataType.DOUBLE )
-			return ( T ) new DoubleType();
+			return new DoubleType();
 		if ( dt == ucar.ma2.DataType.BYTE )
-			return ( T ) new ByteType();
+			return new ByteType();
 		if ( dt == ucar.ma2.DataType.UBYTE )
-			return ( T ) new UnsignedByteType();
+			return new UnsignedByteType();
 		if ( dt == ucar.ma2.DataType.SHORT )
-			return ( T ) new ShortType();
+			return new ShortType();
 		if ( dt == ucar.ma2.DataType.USHORT )
-			return ( T ) new UnsignedShortType();
+			return new UnsignedShortType();
 		if ( dt == ucar.ma2.DataType.INT )
-			return ( T ) new IntType();
+			return new IntType();
 		if ( dt == ucar.ma2.DataType.UINT )
-			return ( T ) new UnsignedIntType();
+			return new UnsignedIntType();
 		if ( dt == ucar.ma2.DataType.LONG )
-			return ( T ) new LongType();
+			return new LongType();
 		if ( dt == ucar.ma2.DataType.ULONG )
-			return ( T ) new UnsignedLongType();
+			return new UnsignedLongType();
 		throw new IllegalArgumentException( "Unsupported zarr data type: " + dt );
 	}
 
+	/** Zarr name of a data type, as reported by {@link PyramidDescription#dataType}. */
+	private static String dataTypeName( final ucar.ma2.DataType dt )
+	{
+		return PyramidDescription.dataTypeName( typeForZarrDataType( dt ) );
+	}
+
 	private static long[] reverseToLong( final long[] arr )
 	{
 		final long[] out = new long[ arr.length ];
@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.zarrjava.store;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import dev.zarr.zarrjava.store.Store;
+import dev.zarr.zarrjava.store.StoreHandle;
+
+import ome.zarr.imglib2.store.StoreReadFilter;
+
+/**
+ * Decorates a zarr-java {@link Store} so that all reads and existence checks
+ * pass through a chain of {@link StoreReadFilter}s.
+ *
+ * <p>The decorator is a dynamic proxy implementing every interface of the
+ * wrapped store (e.g. {@code Store.ListableStore}), so anything that is not a
+ * read or existence check is forwarded unchanged. {@link StoreHandle}s
+ * resolved from the decorated store refer back to it, so reads issued by
+ * zarr-java arrays and codecs through their handles are filtered too.
+ *
+ * <p>The filters are released with {@link #closeFilters(Store)}.
+ */
+public final class FilteredStore implements InvocationHandler
+{
+	private final Store delegate;
+
+	private final StoreReadFilter[] filters;
+
+	private Store proxy;
+
+	private FilteredStore( final Store delegate, final StoreReadFilter[] filters )
+	{
+		this.delegate = delegate;
+		this.filters = filters;
+	}
+
+	/**
+	 * Wraps {@code store} such that its reads pass through {@code filters}, the
+	 * first filter seeing each read first.
+	 */
+	public static Store wrap( final Store store, final StoreReadFilter... filters )
+	{
+		if ( filters.length == 0 )
+			return store;
+		final FilteredStore handler = new FilteredStore( store, filters.clone() );
+		handler.proxy = ( Store ) Proxy.newProxyInstance(
+				Store.class.getClassLoader(),
+				interfaces( store.getClass() ),
+				handler );
+		return handler.proxy;
+	}
+
+	/**
+	 * Closes the filters of a store returned by {@link #wrap}, the last filter
+	 * first. The wrapped store is left open, since it may be shared, e.g. with
+	 * the client of an S3 store. Does nothing for other stores.
+	 */
+	public static void closeFilters( final Store store )
+	{
+		if ( !Proxy.isProxyClass( store.getClass() ) || !( Proxy.getInvocationHandler( store ) instanceof FilteredStore ) )
+			return;
+		final StoreReadFilter[] filters = ( ( FilteredStore ) Proxy.getInvocationHandler( store ) ).filters;
+		for ( int i = filters.length - 1; i >= 0; i-- )
+			filters[ i ].close();
+	}
+
+	@Override
+	public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable
+	{
+		final String name = method.getName();
+		final Class< ? >[] params = method.getParameterTypes();
+		if ( "get".equals( name ) && params.length > 0 && params[ 0 ] == String[].class )
+		{
+			final String[] keys = ( String[] ) args[ 0 ];
+			final long start = params.length > 1 ? ( Long ) args[ 1 ] : 0;
+			final long end = params.length > 2 ? ( Long ) args[ 2 ] : -1;
+			return read( 0, keys, start, end );
+		}
+		if ( "exists".equals( name ) && params.length == 1 && params[ 0 ] == String[].class )
+			return exists( 0, ( String[] ) args[ 0 ] );
+		if ( "resolve".equals( name ) && params.length == 1 && params[ 0 ] == String[].class )
+			return new StoreHandle( this.proxy, ( String[] ) args[ 0 ] );
+		if ( "toString".equals( name ) && params.length == 0 )
+			return "Filtered" + delegate;
+		if ( "equals".equals( name ) && params.length == 1 )
+			return proxy == args[ 0 ];
+		if ( "hashCode".equals( name ) && params.length == 0 )
+			return System.identityHashCode( proxy );
+		try
+		{
+			return method.invoke( delegate, args );
+		}
+		catch ( final InvocationTargetException e )
+		{
+			throw e.getCause();
+		}
+	}
+
+	private ByteBuffer read( final int filter, final String[] keys, final long start, final long end )
+	{
+		if ( filter < filters.length )
+			return filters[ filter ].read( keys, start, end, ( k, s, e ) -> read( filter + 1, k, s, e ) );
+		if ( end >= 0 )
+			return delegate.get( keys, start, end );
+		if ( start != 0 )
+			return delegate.get( keys, start );
+		return delegate.get( keys );
+	}
+
+	private boolean exists( final int filter, final String[] keys )
+	{
+		if ( filter < filters.length )
+			return filters[ filter ].exists( keys, k -> exists( filter + 1, k ) );
+		return delegate.exists( keys );
+	}
+
+	private static Class< ? >[] interfaces( Class< ? > type )
+	{
+		final Set< Class< ? > > interfaces = new LinkedHashSet<>();
+		interfaces.add( Store.class );
+		for ( ; type != null; type = type.getSuperclass() )
+			interfaces.addAll( Arrays.asList( type.getInterfaces() ) );
+		return interfaces.toArray( new Class< ? >[ 0 ] );
+	}
+}
@@ -0,0 +1,303 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr.zarrjava;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import dev.zarr.zarrjava.core.Array;
+import dev.zarr.zarrjava.experimental.ome.MultiscaleImage;
+import dev.zarr.zarrjava.store.FilesystemStore;
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.volatiles.VolatileAccess;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileDoubleArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileLongArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.NativeTypeFactory;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Cast;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+
+import ome.zarr.SyntheticOmeZarr;
+
+class ZarrJavaCellLoaderTest
+{
+	static Stream< Arguments > dataTypes()
+	{
+		return Stream.of( SyntheticOmeZarr.DataType.values() )
+				.flatMap( dataType -> Stream.of( SyntheticOmeZarr.Version.values() )
+						.map( version -> Arguments.of( dataType, version ) ) );
+	}
+
+	/**
+	 * Every cell of a level whose shape is no multiple of the chunks, so that
+	 * the last cell along each axis is a partial edge chunk.
+	 */
+	@ParameterizedTest
+	@MethodSource( "dataTypes" )
+	void testLoadsCellsOfEveryDataType( final SyntheticOmeZarr.DataType dataType, final SyntheticOmeZarr.Version version,
+			@TempDir final Path dir ) throws Exception
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().version( version ).axes( "zyx" )
+				.shape( 5, 7, 11 ).chunks( 2, 3, 4 ).dataType( dataType ).levels( 1 ).sparsity( 0.2 ).seed( 3 ).build();
+		assertCells( synthetic, dataType, dir );
+	}
+
+	@Test
+	void testLoadsEdgeCellsOfShardedArray( @TempDir final Path dir ) throws Exception
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().axes( "zyx" ).shape( 5, 13, 17 )
+				.chunks( 2, 3, 4 ).shards( 2, 2, 2 ).dataType( SyntheticOmeZarr.DataType.UINT16 )
+				.levels( 1 ).sparsity( 0.2 ).seed( 4 ).build();
+		assertCells( synthetic, SyntheticOmeZarr.DataType.UINT16, dir );
+	}
+
+	@Test
+	void testAdoptsMatchingStorage()
+	{
+		final short[] storage = { 1, 2, ( short ) 60000, 4, 5, 6 };
+		final ucar.ma2.Array data = ucar.ma2.Array.factory( ucar.ma2.DataType.USHORT, new int[] { 2, 3 }, storage );
+
+		final VolatileShortArray access = ZarrJavaCellLoader.access( data, new VolatileShortArray( 0, true ) );
+
+		assertSame( storage, access.getCurrentStorageArray() );
+		assertTrue( access.isValid() );
+	}
+
+	@Test
+	void testCopiesUnsignedValuesIntoWiderStorage()
+	{
+		final ucar.ma2.Array data = ucar.ma2.Array.factory( ucar.ma2.DataType.UBYTE, new int[] { 3 },
+				new byte[] { 0, ( byte ) 200, ( byte ) 255 } );
+
+		final VolatileDoubleArray access = ZarrJavaCellLoader.access( data, new VolatileDoubleArray( 0, true ) );
+
+		assertArrayEquals( new double[] { 0, 200, 255 }, access.getCurrentStorageArray() );
+	}
+
+	static Stream< Arguments > integerTypes()
+	{
+		return Stream.of(
+				Arguments.of( ucar.ma2.DataType.UBYTE, new byte[] { 0, 1, 127, ( byte ) 128, ( byte ) 200, ( byte ) 255 },
+						new VolatileByteArray( 0, true ), new UnsignedByteType() ),
+				Arguments.of( ucar.ma2.DataType.USHORT, new short[] { 0, 1, Short.MAX_VALUE, ( short ) 32768, ( short ) 60000, ( short ) 65535 },
+						new VolatileShortArray( 0, true ), new UnsignedShortType() ),
+				Arguments.of( ucar.ma2.DataType.UINT, new int[] { 0, 1, Integer.MAX_VALUE, Integer.MIN_VALUE, ( int ) 3000000000L, -1 },
+						new VolatileIntArray( 0, true ), new UnsignedIntType() ),
+				Arguments.of( ucar.ma2.DataType.LONG, new long[] { 0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40 },
+						new VolatileLongArray( 0, true ), new LongType() ) );
+	}
+
+	/**
+	 * The adopted storage and the element-wise copy of the same values read
+	 * the same voxels, unsigned values above the signed range included.
+	 */
+	@ParameterizedTest
+	@MethodSource( "integerTypes" )
+	< T extends IntegerType< T > & NativeType< T >, A extends ArrayDataAccess< A > > void testAdoptedAndCopiedStorageReadTheSameVoxels(
+			final ucar.ma2.DataType dataType, final Object storage, final A accessType, final T type )
+	{
+		final ucar.ma2.Array data = ucar.ma2.Array.factory( dataType, new int[] { 2, 3 }, storage );
+
+		final A adopted = ZarrJavaCellLoader.access( data, accessType );
+		final A copied = ZarrJavaCellLoader.copy( data, accessType );
+
+		assertSame( storage, adopted.getCurrentStorageArray() );
+		assertNotSame( storage, copied.getCurrentStorageArray() );
+		final ucar.ma2.IndexIterator expected = data.getIndexIterator();
+		final Cursor< T > a = img( adopted, type ).cursor();
+		final Cursor< T > c = img( copied, type ).cursor();
+		for ( int i = 0; i < data.getSize(); i++ )
+		{
+			final long value = expected.getLongNext();
+			final int voxel = i;
+			// getLongNext() gives the unsigned value of unsigned types, except
+			// for uint64, which is not in this set
+			assertEquals( value, a.next().getIntegerLong(), () -> dataType + " voxel " + voxel + " of the adopted storage" );
+			assertEquals( value, c.next().getIntegerLong(), () -> dataType + " voxel " + voxel + " of the copy" );
+		}
+	}
+
+	/** The values of {@code access} as a flat image of {@code type}. */
+	private static < T extends NativeType< T >, A extends ArrayDataAccess< A > > ArrayImg< T, A > img( final A access, final T type )
+	{
+		final ArrayImg< T, A > img = new ArrayImg<>( access, new long[] { access.getArrayLength() }, type.getEntitiesPerPixel() );
+		final NativeTypeFactory< T, A > factory = Cast.unchecked( type.getNativeTypeFactory() );
+		img.setLinkedType( factory.createLinkedType( img ) );
+		return img;
+	}
+
+	@Test
+	void testCopiesSectionInCellOrder() throws Exception
+	{
+		final ucar.ma2.Array whole = ucar.ma2.Array.factory( ucar.ma2.DataType.SHORT, new int[] { 3, 4 },
+				new short[] { 0, 1, 2, 3, 10, 11, 12, 13, 20, 21, 22, 23 } );
+		// rows 1-2 and columns 1-2, not contiguous in the storage of whole
+		final ucar.ma2.Array data = whole.section( new int[] { 1, 1 }, new int[] { 2, 2 } );
+
+		final VolatileShortArray access = ZarrJavaCellLoader.access( data, new VolatileShortArray( 0, true ) );
+
+		assertArrayEquals( new short[] { 11, 12, 21, 22 }, access.getCurrentStorageArray() );
+	}
+
+	private static < A extends ArrayDataAccess< A > > void assertCells( final SyntheticOmeZarr synthetic, final SyntheticOmeZarr.DataType dataType, final Path dir ) throws Exception
+	{
+		final Path root = synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		final Array array = MultiscaleImage.open( new FilesystemStore( root.toString() ).resolve() ).openScaleLevel( 0 );
+		final long[] shape = synthetic.shape( 0 );
+		final int[] chunks = synthetic.chunks( 0 );
+		final int n = shape.length;
+		final long[] imgShape = new long[ n ];
+		final int[] imgChunks = new int[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			imgShape[ d ] = shape[ n - 1 - d ];
+			imgChunks[ d ] = chunks[ n - 1 - d ];
+		}
+		final CellGrid grid = new CellGrid( imgShape, imgChunks );
+		final A accessType = ArrayDataAccessFactory.get( type( dataType ).getNativeTypeFactory(), AccessFlags.setOf( AccessFlags.VOLATILE ) );
+		final ZarrJavaCellLoader< A > loader = new ZarrJavaCellLoader<>( array, grid, accessType );
+
+		final long[] cellPosition = new long[ n ];
+		final long[] min = new long[ n ];
+		final int[] dims = new int[ n ];
+		final int[] cellDims = new int[ n ];
+		final long[] position = new long[ n ];
+		final long[] zarrPosition = new long[ n ];
+		final long numCells = Intervals.numElements( grid.getGridDimensions() );
+		for ( long index = 0; index < numCells; index++ )
+		{
+			final Cell< A > cell = loader.get( index );
+			grid.getCellGridPositionFlat( index, cellPosition );
+			grid.getCellDimensions( index, min, dims );
+			cell.dimensions( cellDims );
+			assertArrayEquals( dims, cellDims, () -> "dimensions of cell " + Arrays.toString( cellPosition ) );
+			assertTrue( ( ( VolatileAccess ) cell.getData() ).isValid() );
+
+			final Object storage = cell.getData().getCurrentStorageArray();
+			assertEquals( cell.size(), java.lang.reflect.Array.getLength( storage ), () -> "size of cell " + Arrays.toString( cellPosition ) );
+			for ( int i = 0; i < cell.size(); i++ )
+			{
+				IntervalIndexer.indexToPositionWithOffset( i, dims, min, position );
+				for ( int d = 0; d < n; d++ )
+					zarrPosition[ d ] = position[ n - 1 - d ];
+				final int pixel = i;
+				assertEquals( synthetic.expectedValue( 0, zarrPosition ), value( dataType, storage, i ),
+						() -> "pixel " + pixel + " of cell " + Arrays.toString( cellPosition ) );
+			}
+		}
+	}
+
+	/** The value at {@code i} of the storage of a cell, as a {@link net.imglib2.type.numeric.RealType} would read it. */
+	private static double value( final SyntheticOmeZarr.DataType dataType, final Object storage, final int i )
+	{
+		switch ( dataType )
+		{
+		case INT8:
+			return ( ( byte[] ) storage )[ i ];
+		case UINT8:
+			return ( ( byte[] ) storage )[ i ] & 0xff;
+		case INT16:
+			return ( ( short[] ) storage )[ i ];
+		case UINT16:
+			return ( ( short[] ) storage )[ i ] & 0xffff;
+		case INT32:
+			return ( ( int[] ) storage )[ i ];
+		case UINT32:
+			return ( ( int[] ) storage )[ i ] & 0xffffffffL;
+		case INT64:
+		case UINT64:
+			return ( ( long[] ) storage )[ i ];
+		case FLOAT32:
+			return ( ( float[] ) storage )[ i ];
+		default:
+			return ( ( double[] ) storage )[ i ];
+		}
+	}
+
+	private static NativeType< ? > type( final SyntheticOmeZarr.DataType dataType )
+	{
+		switch ( dataType )
+		{
+		case INT8:
+			return new ByteType();
+		case UINT8:
+			return new UnsignedByteType();
+		case INT16:
+			return new ShortType();
+		case UINT16:
+			return new UnsignedShortType();
+		case INT32:
+			return new IntType();
+		case UINT32:
+			return new UnsignedIntType();
+		case INT64:
+			return new LongType();
+		case UINT64:
+			return new UnsignedLongType();
+		case FLOAT32:
+			return new FloatType();
+		default:
+			return new DoubleType();
+		}
+	}
+}
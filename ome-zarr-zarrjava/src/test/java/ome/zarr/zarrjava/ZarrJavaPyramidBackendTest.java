@@ -30,16 +30,39 @@ package ome.zarr.zarrjava;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.scijava.Context;
 
+import net.imglib2.Cursor;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.view.Views;
+
+import ome.zarr.imglib2.LoadMonitor;
+import ome.zarr.imglib2.PyramidBackend;
 import ome.zarr.imglib2.PyramidContents;
+import ome.zarr.imglib2.PyramidDescription;
 import ome.zarr.imglib2.PyramidBackendTestBase;
+import ome.zarr.imglib2.S3Endpoints;
+import ome.zarr.imglib2.ZarrUtils;
+import ome.zarr.imglib2.cache.UniformCells;
+import ome.zarr.SyntheticOmeZarr;
+import ome.zarr.ZarrTestServer;
 import ome.zarr.ZarrTestUtils;
+import ome.zarr.imglib2.exceptions.LoadCanceledException;
 
 class ZarrJavaPyramidBackendTest implements PyramidBackendTestBase
 {
@@ -51,6 +74,18 @@ class ZarrJavaPyramidBackendTest implements PyramidBackendTestBase
 		return new ZarrJavaPyramidBackend().load( path.toUri() );
 	}
 
+	@Override
+	public PyramidDescription inspect( final String resource ) throws URISyntaxException
+	{
+		return new ZarrJavaPyramidBackend().inspect( ZarrTestUtils.resourcePath( resource ).toUri() );
+	}
+
+	@Override
+	public PyramidBackend backend()
+	{
+		return new ZarrJavaPyramidBackend();
+	}
+
 	@Test
 	void testStaticOpen() throws URISyntaxException
 	{
@@ -61,4 +96,198 @@ class ZarrJavaPyramidBackendTest implements PyramidBackendTestBase
 		assertEquals( 5, contents.numDimensions() );
 		assertEquals( 2, contents.numResolutionLevels() );
 	}
+
+	@Test
+	void testConcurrentLoadsKeepTheirOwnImages() throws URISyntaxException
+	{
+		final URI image2d = ZarrTestUtils.resourcePath( "ome/zarr/testdata/2d_testing/2d_dataset_v5.ome.zarr" ).toUri();
+		final URI image5d = ZarrTestUtils.resourcePath( "ome/zarr/testdata/5d_testing/5d_dataset_v4.ome.zarr" ).toUri();
+		final ZarrJavaPyramidBackend backend = new ZarrJavaPyramidBackend();
+		final List< CompletableFuture< ? extends PyramidContents< ? > > > loads = new ArrayList<>();
+		for ( int i = 0; i < 8; i++ )
+			loads.add( backend.loadAsync( i % 2 == 0 ? image2d : image5d, new LoadMonitor() ) );
+
+		for ( int i = 0; i < loads.size(); i++ )
+		{
+			final PyramidContents< ? > contents = loads.get( i ).join();
+			assertEquals( ( i % 2 == 0 ? image2d : image5d ).toString(), contents.location );
+			assertEquals( i % 2 == 0 ? 2 : 5, contents.numDimensions() );
+			assertNotNull( contents.cachedCellImg( 0 ) );
+		}
+	}
+
+	@Test
+	void testLoadReportsStagesAndCanBeCanceled() throws URISyntaxException
+	{
+		final URI uri = ZarrTestUtils.resourcePath( "ome/zarr/testdata/pyramid_testing/pyramid_v5.zarr" ).toUri();
+		final LoadMonitor monitor = new LoadMonitor();
+		final List< LoadMonitor.Stage > stages = new ArrayList<>();
+		monitor.addListener( ( stage, done, total ) -> stages.add( stage ) );
+		assertNotNull( new ZarrJavaPyramidBackend().load( uri, monitor ) );
+		assertEquals( Arrays.asList( LoadMonitor.Stage.values() ), stages );
+
+		final LoadMonitor canceled = new LoadMonitor();
+		canceled.addListener( ( stage, done, total ) -> canceled.cancel() );
+		assertThrows( LoadCanceledException.class, () -> new ZarrJavaPyramidBackend().load( uri, canceled ) );
+	}
+
+	@Test
+	void testShardedSyntheticContent( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().axes( "czyx" ).shape( 2, 20, 50, 60 )
+				.chunks( 1, 4, 16, 16 ).shards( 1, 2, 2, 2 ).dataType( SyntheticOmeZarr.DataType.UINT16 )
+				.levels( 3 ).sparsity( 0.3 ).seed( 5 ).build();
+		PyramidBackendTestBase.assertSyntheticContent( new ZarrJavaPyramidBackend(), synthetic, dir );
+	}
+
+	@Test
+	void testMissingChunksShareTheirStorage( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().axes( "zyx" ).shape( 4, 64, 64 ).chunks( 2, 16, 16 )
+				.dataType( SyntheticOmeZarr.DataType.UINT16 ).levels( 1 ).sparsity( 0.5 ).seed( 6 ).build();
+		final Path root = synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( root.toUri() ))
+		{
+			assertMissingChunksAreUniform( contents.cachedCellImg( 0 ), synthetic );
+			synthetic.assertContent( 0, contents.cachedCellImg( 0 ), 200 );
+		}
+	}
+
+	private static < A > void assertMissingChunksAreUniform( final CachedCellImg< ?, A > img, final SyntheticOmeZarr synthetic )
+	{
+		final Cursor< Cell< A > > cells = Views.flatIterable( img.getCells() ).cursor();
+		final long[] position = new long[ cells.numDimensions() ];
+		while ( cells.hasNext() )
+		{
+			final Cell< A > cell = cells.next();
+			cells.localize( position );
+			// cell positions are in F-order, chunk positions in C-order
+			final boolean written = synthetic.isChunkWritten( 0, position[ 2 ], position[ 1 ], position[ 0 ] );
+			assertEquals( !written, UniformCells.isUniform( cell.getData() ), () -> "cell " + Arrays.toString( position ) );
+		}
+	}
+
+	@Test
+	void testProbedRootMetadataIsNotFetchedAgain( @TempDir final Path dir ) throws IOException
+	{
+		SyntheticOmeZarr.builder().levels( 2 ).build().write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			final URI uri = server.httpUri( "image.ome.zarr" );
+			assertTrue( ZarrUtils.isZarr( uri ) );
+			try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( uri, new LoadMonitor(), ZarrUtils.prefetchedMetadata( uri ) ))
+			{
+				assertEquals( 2, contents.numResolutionLevels() );
+			}
+			assertEquals( 1, server.count( request -> request.key.equals( "image.ome.zarr/zarr.json" ) ), () -> server.requests().toString() );
+		}
+		finally
+		{
+			ZarrUtils.clearProbeCache();
+		}
+	}
+
+	@Test
+	void testCloseReleasesTheStore( @TempDir final Path dir ) throws IOException
+	{
+		SyntheticOmeZarr.builder().axes( "zyx" ).shape( 4, 64, 64 ).chunks( 2, 16, 16 ).levels( 1 ).build()
+				.write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			final PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( server.httpUri( "image.ome.zarr" ) );
+			final CachedCellImg< ?, ? > img = contents.cachedCellImg( 0 );
+			contents.close();
+			final int requests = server.requests().size();
+
+			// the cell is loaded again through the closed store filters, which
+			// no longer read from the server
+			assertTrue( UniformCells.isUniform( img.getCells().randomAccess().get().getData() ) );
+			assertEquals( requests, server.requests().size(), () -> server.requests().toString() );
+		}
+	}
+
+	@Test
+	void testShapesOfConsolidatedLevelsAreKnownWithoutFurtherRequests( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().version( SyntheticOmeZarr.Version.V0_4 )
+				.axes( "zyx" ).shape( 8, 64, 96 ).levels( 3 ).consolidated( true ).build();
+		synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( server.httpUri( "image.ome.zarr" ) ))
+			{
+				final int requests = server.requests().size();
+				for ( int level = 0; level < synthetic.numResolutionLevels(); level++ )
+					assertEquals( synthetic.shape( level )[ 2 ], contents.dimensions( level )[ 0 ] );
+				contents.selectResolutionLevel( 40 );
+				assertEquals( requests, server.requests().size(), () -> server.requests().toString() );
+			}
+		}
+	}
+
+	@Test
+	void testEachConsolidatedLevelIsReported( @TempDir final Path dir ) throws IOException
+	{
+		SyntheticOmeZarr.builder().version( SyntheticOmeZarr.Version.V0_4 ).levels( 3 ).consolidated( true ).build()
+				.write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			final LoadMonitor monitor = new LoadMonitor();
+			final List< String > levels = new ArrayList<>();
+			monitor.addListener( ( stage, done, total ) -> {
+				if ( stage == LoadMonitor.Stage.LEVELS )
+					levels.add( done + "/" + total );
+			} );
+			try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( server.httpUri( "image.ome.zarr" ), monitor ))
+			{
+				assertEquals( Arrays.asList( "1/3", "2/3", "3/3" ), levels );
+			}
+		}
+	}
+
+	@Test
+	void testLevelsWithoutConsolidatedMetadataAreOpenedWhenNeeded( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().axes( "zyx" ).shape( 8, 64, 96 ).levels( 3 ).build();
+		synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( server.httpUri( "image.ome.zarr" ) ))
+			{
+				assertEquals( 0, server.count( request -> request.key.matches( "image.ome.zarr/[12]/zarr.json" ) ), () -> server.requests().toString() );
+				for ( int level = 0; level < synthetic.numResolutionLevels(); level++ )
+					assertEquals( synthetic.shape( level )[ 2 ], contents.dimensions( level )[ 0 ] );
+				assertTrue( server.count( request -> request.key.equals( "image.ome.zarr/1/zarr.json" ) ) > 0 );
+				assertTrue( server.count( request -> request.key.equals( "image.ome.zarr/2/zarr.json" ) ) > 0 );
+			}
+		}
+	}
+
+	@Test
+	void testReadsFromS3Endpoint( @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().axes( "czyx" ).shape( 2, 8, 40, 50 )
+				.chunks( 1, 4, 16, 16 ).shards( 1, 2, 2, 2 ).dataType( SyntheticOmeZarr.DataType.UINT16 )
+				.levels( 2 ).sparsity( 0.25 ).seed( 8 ).build();
+		synthetic.write( dir.resolve( "image.ome.zarr" ) );
+		final String endpoint = System.getProperty( S3Endpoints.ENDPOINT_PROPERTY );
+		try (ZarrTestServer server = ZarrTestServer.serve( dir ))
+		{
+			System.setProperty( S3Endpoints.ENDPOINT_PROPERTY, server.s3Endpoint() );
+			try (PyramidContents< ? > contents = new ZarrJavaPyramidBackend().load( server.s3Uri( "image.ome.zarr" ) ))
+			{
+				assertEquals( 0, server.count( request -> request.key.contains( "/c/" ) ) );
+				for ( int level = 0; level < synthetic.numResolutionLevels(); level++ )
+					synthetic.assertContent( level, contents.cachedCellImg( level ), 200 );
+			}
+			assertTrue( server.requests().stream().allMatch( request -> request.s3 ) );
+		}
+		finally
+		{
+			if ( endpoint == null )
+				System.clearProperty( S3Endpoints.ENDPOINT_PROPERTY );
+			else
+				System.setProperty( S3Endpoints.ENDPOINT_PROPERTY, endpoint );
+		}
+	}
 }
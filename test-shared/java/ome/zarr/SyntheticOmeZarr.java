@@ -0,0 +1,1106 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Writes reproducible synthetic OME-Zarr datasets, for benchmarks and tests
+ * that need more data, more levels or other encodings than the datasets in
+ * {@code test-shared/resources}.
+ * <p>
+ * A dataset is described by its OME-Zarr version, axes, level-0 shape, data
+ * type, chunk shape, optional shards (v0.5 only), codec, number of resolution
+ * levels, sparsity, seed and whether its metadata are consolidated, and is written chunk by chunk, so gigabyte-sized
+ * pyramids do not need to fit into memory:
+ * <pre>
+ * SyntheticOmeZarr.builder()
+ * 		.version( SyntheticOmeZarr.Version.V0_5 )
+ * 		.axes( "czyx" ).shape( 2, 512, 2048, 2048 )
+ * 		.dataType( SyntheticOmeZarr.DataType.UINT16 )
+ * 		.chunks( 1, 64, 128, 128 ).shards( 1, 2, 4, 4 )
+ * 		.levels( 5 )
+ * 		.build()
+ * 		.write( dir );
+ * </pre>
+ * <p>
+ * The value of every pixel is a hash of its position, so the content is
+ * random-looking, i.e. hard to compress, yet any pixel can be checked without
+ * reading the others, see {@link #expectedValue(int, long...)} and
+ * {@link #assertContent(int, RandomAccessibleInterval, int)}. A level holds
+ * every {@code 2^level}-th pixel of level 0 along the spatial axes, like a
+ * nearest-neighbour downsampling. With a sparsity {@code > 0}, that fraction
+ * of the chunks is left unwritten, so they read as the fill value {@code 0}.
+ * <p>
+ * Positions and shapes are given in the Zarr (C) order of the axes, e.g.
+ * {@code t, c, z, y, x}; the images of the backends have the reverse order.
+ * <p>
+ * Only codecs available without native libraries are written, see
+ * {@link Codec}. Datasets with other codecs, e.g. zstd or blosc, come from
+ * the Python scripts next to the test data.
+ * <p>
+ * Can also be run from the command line, e.g. to create data for the
+ * benchmarks, see {@link #main(String[])}.
+ */
+public final class SyntheticOmeZarr
+{
+	/** OME-Zarr version, and with it the Zarr format. */
+	public enum Version
+	{
+		/** OME-Zarr 0.4, stored as Zarr v2. */
+		V0_4,
+		/** OME-Zarr 0.5, stored as Zarr v3. */
+		V0_5
+	}
+
+	/**
+	 * Pixel type. The 64-bit integer types only hold values below
+	 * {@code 2^52}, so that every value is exact as a {@code double}.
+	 */
+	public enum DataType
+	{
+		INT8( 1, "|i1", "int8" ),
+		UINT8( 1, "|u1", "uint8" ),
+		INT16( 2, "<i2", "int16" ),
+		UINT16( 2, "<u2", "uint16" ),
+		INT32( 4, "<i4", "int32" ),
+		UINT32( 4, "<u4", "uint32" ),
+		INT64( 8, "<i8", "int64" ),
+		UINT64( 8, "<u8", "uint64" ),
+		FLOAT32( 4, "<f4", "float32" ),
+		FLOAT64( 8, "<f8", "float64" );
+
+		public final int bytes;
+
+		/** Zarr v2 {@code dtype}. */
+		final String v2;
+
+		/** Zarr v3 {@code data_type}. */
+		final String v3;
+
+		DataType( final int bytes, final String v2, final String v3 )
+		{
+			this.bytes = bytes;
+			this.v2 = v2;
+			this.v3 = v3;
+		}
+
+		boolean isFloat()
+		{
+			return this == FLOAT32 || this == FLOAT64;
+		}
+	}
+
+	/** Compression of the chunks. */
+	public enum Codec
+	{
+		/** Uncompressed. */
+		RAW,
+		/**
+		 * Deflate: the numcodecs {@code zlib} compressor for Zarr v2, the
+		 * {@code gzip} codec for Zarr v3.
+		 */
+		DEFLATE
+	}
+
+	private static final int DEFLATE_LEVEL = 5;
+
+	/** Index entry of a missing chunk in a shard. */
+	private static final long MISSING = -1L;
+
+	/** Minimal gzip header: deflate, no flags, no time, unknown OS. */
+	private static final byte[] GZIP_HEADER = { 0x1f, ( byte ) 0x8b, 8, 0, 0, 0, 0, 0, 0, ( byte ) 0xff };
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	private final Version version;
+
+	private final String axes;
+
+	private final long[] shape;
+
+	private final DataType dataType;
+
+	private final int[] chunks;
+
+	/** Chunks per shard along each axis, or {@code null} if not sharded. */
+	private final int[] shards;
+
+	private final Codec codec;
+
+	private final int levels;
+
+	private final double sparsity;
+
+	private final long seed;
+
+	private final String name;
+
+	private final boolean consolidated;
+
+	/** Strides of level 0, for the position hash. */
+	private final long[] strides;
+
+	private SyntheticOmeZarr( final Builder builder )
+	{
+		version = builder.version;
+		axes = builder.axes;
+		shape = builder.shape.clone();
+		dataType = builder.dataType;
+		chunks = builder.chunks.clone();
+		shards = builder.shards == null ? null : builder.shards.clone();
+		codec = builder.codec;
+		levels = builder.levels;
+		sparsity = builder.sparsity;
+		seed = builder.seed;
+		name = builder.name;
+		consolidated = builder.consolidated;
+		strides = new long[ shape.length ];
+		long stride = 1;
+		for ( int d = shape.length - 1; d >= 0; d-- )
+		{
+			strides[ d ] = stride;
+			stride *= shape[ d ];
+		}
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public int numResolutionLevels()
+	{
+		return levels;
+	}
+
+	/**
+	 * Shape of a resolution level, in the Zarr order of the axes: the spatial
+	 * axes are halved per level, rounding up.
+	 */
+	public long[] shape( final int level )
+	{
+		final long[] levelShape = new long[ shape.length ];
+		for ( int d = 0; d < shape.length; d++ )
+			levelShape[ d ] = isSpatial( d ) ? ( ( shape[ d ] - 1 ) >> level ) + 1 : shape[ d ];
+		return levelShape;
+	}
+
+	/**
+	 * Chunk shape of a resolution level: the configured one, but no larger
+	 * than the level.
+	 */
+	public int[] chunks( final int level )
+	{
+		final long[] levelShape = shape( level );
+		final int[] levelChunks = new int[ chunks.length ];
+		for ( int d = 0; d < chunks.length; d++ )
+			levelChunks[ d ] = ( int ) Math.min( chunks[ d ], levelShape[ d ] );
+		return levelChunks;
+	}
+
+	/**
+	 * Returns whether the chunk at {@code chunkPosition} of a level is
+	 * written, or left to read as the fill value because of the sparsity.
+	 */
+	public boolean isChunkWritten( final int level, final long... chunkPosition )
+	{
+		if ( sparsity <= 0 )
+			return true;
+		final long[] grid = grid( shape( level ), chunks( level ) );
+		long index = 0;
+		for ( int d = 0; d < grid.length; d++ )
+			index = index * grid[ d ] + chunkPosition[ d ];
+		final long hash = mix( mix( ~seed + level ) + index );
+		return ( hash >>> 11 ) * 0x1.0p-53 >= sparsity;
+	}
+
+	/**
+	 * Keys of all chunks of a level, or of all shards if sharded, relative to
+	 * the dataset root, e.g. {@code "0/c/0/1"}, including those left
+	 * unwritten. These are what a backend reads when it loads the level.
+	 */
+	public Set< String > blockKeys( final int level )
+	{
+		final int[] levelChunks = chunks( level );
+		final long[] grid = grid( shape( level ), shards == null ? levelChunks : multiply( levelChunks, shards ) );
+		final long numBlocks = Arrays.stream( grid ).reduce( 1, ( a, b ) -> a * b );
+		final Set< String > keys = new HashSet<>();
+		for ( long index = 0; index < numBlocks; index++ )
+			keys.add( level + "/" + chunkKey( unravel( index, grid ) ) );
+		return keys;
+	}
+
+	/**
+	 * The value of the pixel at {@code position} of a level, in the Zarr
+	 * order of the axes, as returned by {@link RealType#getRealDouble()}.
+	 */
+	public double expectedValue( final int level, final long... position )
+	{
+		final int[] levelChunks = chunks( level );
+		final long[] chunkPosition = new long[ position.length ];
+		for ( int d = 0; d < position.length; d++ )
+			chunkPosition[ d ] = position[ d ] / levelChunks[ d ];
+		if ( !isChunkWritten( level, chunkPosition ) )
+			return 0;
+		final long raw = rawValue( level, position );
+		switch ( dataType )
+		{
+		case FLOAT32:
+			return Float.intBitsToFloat( ( int ) raw );
+		case FLOAT64:
+			return Double.longBitsToDouble( raw );
+		default:
+			return raw;
+		}
+	}
+
+	/**
+	 * Checks a level read by a backend: its dimensions, its corners and
+	 * {@code samples} pixels at positions drawn from the seed.
+	 *
+	 * @param img the level, in the imglib2 (reversed) order of the axes
+	 */
+	public void assertContent( final int level, final RandomAccessibleInterval< ? extends RealType< ? > > img, final int samples )
+	{
+		final long[] levelShape = shape( level );
+		final int n = levelShape.length;
+		final long[] dimensions = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			dimensions[ d ] = img.dimension( n - 1 - d );
+		assertArrayEquals( levelShape, dimensions, "dimensions of level " + level );
+
+		final RandomAccess< ? extends RealType< ? > > access = img.randomAccess();
+		final long[] position = new long[ n ];
+		final long[] imgPosition = new long[ n ];
+		final Random random = new Random( seed + level );
+		for ( int i = -2; i < samples; i++ )
+		{
+			for ( int d = 0; d < n; d++ )
+			{
+				if ( i == -2 )
+					position[ d ] = 0;
+				else if ( i == -1 )
+					position[ d ] = levelShape[ d ] - 1;
+				else
+					position[ d ] = ( long ) ( random.nextDouble() * levelShape[ d ] );
+				imgPosition[ n - 1 - d ] = img.min( n - 1 - d ) + position[ d ];
+			}
+			access.setPosition( imgPosition );
+			assertEquals( expectedValue( level, position ), access.get().getRealDouble(),
+					"level " + level + " at " + Arrays.toString( position ) );
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "OME-Zarr " + ( version == Version.V0_4 ? "0.4" : "0.5" ) + " " + axes + Arrays.toString( shape )
+				+ " " + dataType.v3 + " chunks " + Arrays.toString( chunks )
+				+ ( shards == null ? "" : " shards " + Arrays.toString( shards ) )
+				+ " " + codec.name().toLowerCase() + ", " + levels + " levels, sparsity " + sparsity + ", seed " + seed
+				+ ( consolidated ? ", consolidated" : "" );
+	}
+
+	/**
+	 * Writes the dataset to the directory {@code root}, which is created if
+	 * needed, and returns {@code root}.
+	 */
+	public Path write( final Path root ) throws IOException
+	{
+		Files.createDirectories( root );
+		final JsonObject multiscale = multiscale();
+		if ( version == Version.V0_4 )
+		{
+			final JsonObject zgroup = new JsonObject();
+			zgroup.addProperty( "zarr_format", 2 );
+			writeJson( root.resolve( ".zgroup" ), zgroup );
+			multiscale.addProperty( "version", "0.4" );
+			final JsonObject zattrs = new JsonObject();
+			zattrs.add( "multiscales", array( multiscale ) );
+			writeJson( root.resolve( ".zattrs" ), zattrs );
+			if ( consolidated )
+			{
+				final JsonObject documents = new JsonObject();
+				documents.add( ".zgroup", zgroup );
+				documents.add( ".zattrs", zattrs );
+				for ( int level = 0; level < levels; level++ )
+					documents.add( level + "/.zarray", zarray( shape( level ), chunks( level ) ) );
+				final JsonObject zmetadata = new JsonObject();
+				zmetadata.addProperty( "zarr_consolidated_format", 1 );
+				zmetadata.add( "metadata", documents );
+				writeJson( root.resolve( ".zmetadata" ), zmetadata );
+			}
+		}
+		else
+		{
+			final JsonObject ome = new JsonObject();
+			ome.addProperty( "version", "0.5" );
+			ome.add( "multiscales", array( multiscale ) );
+			final JsonObject attributes = new JsonObject();
+			attributes.add( "ome", ome );
+			final JsonObject zarrJson = new JsonObject();
+			zarrJson.addProperty( "zarr_format", 3 );
+			zarrJson.addProperty( "node_type", "group" );
+			zarrJson.add( "attributes", attributes );
+			if ( consolidated )
+			{
+				final JsonObject nodes = new JsonObject();
+				for ( int level = 0; level < levels; level++ )
+					nodes.add( Integer.toString( level ), zarrJson( shape( level ), chunks( level ) ) );
+				final JsonObject consolidatedMetadata = new JsonObject();
+				consolidatedMetadata.addProperty( "kind", "inline" );
+				consolidatedMetadata.addProperty( "must_understand", false );
+				consolidatedMetadata.add( "metadata", nodes );
+				zarrJson.add( "consolidated_metadata", consolidatedMetadata );
+			}
+			writeJson( root.resolve( "zarr.json" ), zarrJson );
+		}
+		for ( int level = 0; level < levels; level++ )
+			writeLevel( root.resolve( Integer.toString( level ) ), level );
+		return root;
+	}
+
+	private void writeLevel( final Path dir, final int level ) throws IOException
+	{
+		Files.createDirectories( dir );
+		final long[] levelShape = shape( level );
+		final int[] levelChunks = chunks( level );
+		if ( version == Version.V0_4 )
+			writeJson( dir.resolve( ".zarray" ), zarray( levelShape, levelChunks ) );
+		else
+			writeJson( dir.resolve( "zarr.json" ), zarrJson( levelShape, levelChunks ) );
+
+		// a chunk or shard, as stored
+		final int[] blocks = shards == null ? levelChunks : multiply( levelChunks, shards );
+		final long[] grid = grid( levelShape, blocks );
+		final long numBlocks = Arrays.stream( grid ).reduce( 1, ( a, b ) -> a * b );
+		try
+		{
+			LongStream.range( 0, numBlocks ).parallel().forEach( index -> {
+				final long[] blockPosition = unravel( index, grid );
+				final byte[] bytes = shards == null
+						? chunkBytes( level, levelShape, levelChunks, blockPosition )
+						: shardBytes( level, levelShape, levelChunks, blockPosition );
+				if ( bytes != null )
+					write( dir.resolve( chunkKey( blockPosition ) ), bytes );
+			} );
+		}
+		catch ( final UncheckedIOException e )
+		{
+			throw e.getCause();
+		}
+	}
+
+	/** The encoded chunk, or {@code null} if it is left unwritten. */
+	private byte[] chunkBytes( final int level, final long[] levelShape, final int[] levelChunks, final long[] chunkPosition )
+	{
+		if ( !isChunkWritten( level, chunkPosition ) )
+			return null;
+		return encode( chunkData( level, levelShape, levelChunks, chunkPosition ), version == Version.V0_4 );
+	}
+
+	/**
+	 * The shard with the chunks at {@code shardPosition}, followed by its
+	 * index and the CRC32C of the index, or {@code null} if it holds no chunk.
+	 */
+	private byte[] shardBytes( final int level, final long[] levelShape, final int[] levelChunks, final long[] shardPosition )
+	{
+		final long[] chunkGrid = grid( levelShape, levelChunks );
+		final long[] inner = new long[ shards.length ];
+		for ( int d = 0; d < shards.length; d++ )
+			inner[ d ] = shards[ d ];
+		final int numChunks = ( int ) Arrays.stream( inner ).reduce( 1, ( a, b ) -> a * b );
+		final ByteBuffer index = ByteBuffer.allocate( numChunks * 16 ).order( ByteOrder.LITTLE_ENDIAN );
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final long[] chunkPosition = new long[ shards.length ];
+		for ( int i = 0; i < numChunks; i++ )
+		{
+			final long[] local = unravel( i, inner );
+			boolean inside = true;
+			for ( int d = 0; d < shards.length; d++ )
+			{
+				chunkPosition[ d ] = shardPosition[ d ] * shards[ d ] + local[ d ];
+				inside &= chunkPosition[ d ] < chunkGrid[ d ];
+			}
+			if ( !inside || !isChunkWritten( level, chunkPosition ) )
+			{
+				index.putLong( MISSING ).putLong( MISSING );
+				continue;
+			}
+			final byte[] chunk = encode( chunkData( level, levelShape, levelChunks, chunkPosition ), false );
+			index.putLong( data.size() ).putLong( chunk.length );
+			data.write( chunk, 0, chunk.length );
+		}
+		if ( data.size() == 0 )
+			return null;
+		final byte[] indexBytes = index.array();
+		final int crc = Crc32c.compute( indexBytes );
+		data.write( indexBytes, 0, indexBytes.length );
+		final ByteBuffer checksum = ByteBuffer.allocate( 4 ).order( ByteOrder.LITTLE_ENDIAN ).putInt( crc );
+		data.write( checksum.array(), 0, 4 );
+		return data.toByteArray();
+	}
+
+	/**
+	 * The raw, little-endian pixels of a chunk in C order; the part beyond
+	 * the level is left at the fill value.
+	 */
+	private byte[] chunkData( final int level, final long[] levelShape, final int[] levelChunks, final long[] chunkPosition )
+	{
+		final int n = levelShape.length;
+		final long[] local = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			local[ d ] = levelChunks[ d ];
+		final int numElements = ( int ) Arrays.stream( local ).reduce( 1, ( a, b ) -> a * b );
+		final ByteBuffer buffer = ByteBuffer.allocate( numElements * dataType.bytes ).order( ByteOrder.LITTLE_ENDIAN );
+		final long[] position = new long[ n ];
+		for ( int d = 0; d < n; d++ )
+			position[ d ] = chunkPosition[ d ] * levelChunks[ d ];
+		final long[] origin = position.clone();
+		for ( int i = 0; i < numElements; i++ )
+		{
+			boolean inside = true;
+			for ( int d = 0; d < n; d++ )
+				inside &= position[ d ] < levelShape[ d ];
+			if ( inside )
+				put( buffer, i * dataType.bytes, rawValue( level, position ) );
+			// next position in C order
+			for ( int d = n - 1; d >= 0; d-- )
+			{
+				if ( ++position[ d ] < origin[ d ] + local[ d ] )
+					break;
+				position[ d ] = origin[ d ];
+			}
+		}
+		return buffer.array();
+	}
+
+	private void put( final ByteBuffer buffer, final int at, final long raw )
+	{
+		switch ( dataType.bytes )
+		{
+		case 1:
+			buffer.put( at, ( byte ) raw );
+			break;
+		case 2:
+			buffer.putShort( at, ( short ) raw );
+			break;
+		case 4:
+			buffer.putInt( at, ( int ) raw );
+			break;
+		default:
+			buffer.putLong( at, raw );
+		}
+	}
+
+	/**
+	 * The value at {@code position} of a level, as stored: the integer value,
+	 * or the bits of the float value.
+	 */
+	private long rawValue( final int level, final long[] position )
+	{
+		long index = 0;
+		for ( int d = 0; d < position.length; d++ )
+			index += ( isSpatial( d ) ? position[ d ] << level : position[ d ] ) * strides[ d ];
+		final long hash = mix( seed + index * 0x9E3779B97F4A7C15L );
+		switch ( dataType )
+		{
+		case INT8:
+			return ( byte ) hash;
+		case UINT8:
+			return hash & 0xFF;
+		case INT16:
+			return ( short ) hash;
+		case UINT16:
+			return hash & 0xFFFF;
+		case INT32:
+			return ( int ) hash;
+		case UINT32:
+			return hash & 0xFFFFFFFFL;
+		case INT64:
+			return ( hash >> 12 );
+		case UINT64:
+			return hash >>> 12;
+		case FLOAT32:
+			return Float.floatToIntBits( ( hash >>> 40 ) * 0x1.0p-24f );
+		default:
+			return Double.doubleToLongBits( ( hash >>> 11 ) * 0x1.0p-53 );
+		}
+	}
+
+	private byte[] encode( final byte[] raw, final boolean zarrV2 )
+	{
+		if ( codec == Codec.RAW )
+			return raw;
+		final ByteArrayOutputStream encoded = new ByteArrayOutputStream( raw.length / 2 );
+		final Deflater deflater = new Deflater( DEFLATE_LEVEL, !zarrV2 );
+		try
+		{
+			if ( zarrV2 )
+			{
+				// zlib stream
+				try (DeflaterOutputStream out = new DeflaterOutputStream( encoded, deflater ))
+				{
+					out.write( raw );
+				}
+			}
+			else
+			{
+				// gzip member: header, raw deflate stream, CRC32 and size
+				final CRC32 crc = new CRC32();
+				crc.update( raw );
+				encoded.write( GZIP_HEADER );
+				try (DeflaterOutputStream out = new DeflaterOutputStream( new NonClosing( encoded ), deflater ))
+				{
+					out.write( raw );
+				}
+				final ByteBuffer trailer = ByteBuffer.allocate( 8 ).order( ByteOrder.LITTLE_ENDIAN );
+				trailer.putInt( ( int ) crc.getValue() ).putInt( raw.length );
+				encoded.write( trailer.array() );
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+		finally
+		{
+			deflater.end();
+		}
+		return encoded.toByteArray();
+	}
+
+	private String chunkKey( final long[] position )
+	{
+		final StringBuilder key = new StringBuilder( version == Version.V0_4 ? "" : "c/" );
+		for ( int d = 0; d < position.length; d++ )
+			key.append( d == 0 ? "" : "/" ).append( position[ d ] );
+		return key.toString();
+	}
+
+	private JsonObject multiscale()
+	{
+		final JsonArray axesJson = new JsonArray();
+		for ( final char axis : axes.toCharArray() )
+		{
+			final JsonObject json = new JsonObject();
+			json.addProperty( "name", String.valueOf( axis ) );
+			json.addProperty( "type", axis == 't' ? "time" : axis == 'c' ? "channel" : "space" );
+			axesJson.add( json );
+		}
+		final JsonArray datasets = new JsonArray();
+		for ( int level = 0; level < levels; level++ )
+		{
+			final JsonArray scale = new JsonArray();
+			for ( int d = 0; d < shape.length; d++ )
+				scale.add( isSpatial( d ) ? ( double ) ( 1L << level ) : 1.0 );
+			final JsonObject transform = new JsonObject();
+			transform.addProperty( "type", "scale" );
+			transform.add( "scale", scale );
+			final JsonObject dataset = new JsonObject();
+			dataset.addProperty( "path", Integer.toString( level ) );
+			dataset.add( "coordinateTransformations", array( transform ) );
+			datasets.add( dataset );
+		}
+		final JsonObject multiscale = new JsonObject();
+		multiscale.addProperty( "name", name );
+		multiscale.add( "axes", axesJson );
+		multiscale.add( "datasets", datasets );
+		return multiscale;
+	}
+
+	private JsonObject zarray( final long[] levelShape, final int[] levelChunks )
+	{
+		final JsonObject zarray = new JsonObject();
+		zarray.addProperty( "zarr_format", 2 );
+		zarray.add( "shape", GSON.toJsonTree( levelShape ) );
+		zarray.add( "chunks", GSON.toJsonTree( levelChunks ) );
+		zarray.addProperty( "dtype", dataType.v2 );
+		if ( codec == Codec.RAW )
+			zarray.add( "compressor", JsonNull.INSTANCE );
+		else
+		{
+			final JsonObject compressor = new JsonObject();
+			compressor.addProperty( "id", "zlib" );
+			compressor.addProperty( "level", DEFLATE_LEVEL );
+			zarray.add( "compressor", compressor );
+		}
+		zarray.add( "fill_value", fillValue() );
+		zarray.addProperty( "order", "C" );
+		zarray.add( "filters", JsonNull.INSTANCE );
+		zarray.addProperty( "dimension_separator", "/" );
+		return zarray;
+	}
+
+	private JsonObject zarrJson( final long[] levelShape, final int[] levelChunks )
+	{
+		final JsonArray chunkCodecs = new JsonArray();
+		chunkCodecs.add( bytesCodec() );
+		if ( codec == Codec.DEFLATE )
+		{
+			final JsonObject configuration = new JsonObject();
+			configuration.addProperty( "level", DEFLATE_LEVEL );
+			chunkCodecs.add( codec( "gzip", configuration ) );
+		}
+
+		final JsonArray codecs;
+		final int[] gridChunks;
+		if ( shards == null )
+		{
+			codecs = chunkCodecs;
+			gridChunks = levelChunks;
+		}
+		else
+		{
+			final JsonArray indexCodecs = new JsonArray();
+			indexCodecs.add( bytesCodec() );
+			indexCodecs.add( codec( "crc32c", null ) );
+			final JsonObject configuration = new JsonObject();
+			configuration.add( "chunk_shape", GSON.toJsonTree( levelChunks ) );
+			configuration.add( "codecs", chunkCodecs );
+			configuration.add( "index_codecs", indexCodecs );
+			configuration.addProperty( "index_location", "end" );
+			codecs = array( codec( "sharding_indexed", configuration ) );
+			gridChunks = multiply( levelChunks, shards );
+		}
+
+		final JsonObject gridConfiguration = new JsonObject();
+		gridConfiguration.add( "chunk_shape", GSON.toJsonTree( gridChunks ) );
+		final JsonObject keyConfiguration = new JsonObject();
+		keyConfiguration.addProperty( "separator", "/" );
+
+		final JsonObject zarrJson = new JsonObject();
+		zarrJson.addProperty( "zarr_format", 3 );
+		zarrJson.addProperty( "node_type", "array" );
+		zarrJson.add( "shape", GSON.toJsonTree( levelShape ) );
+		zarrJson.addProperty( "data_type", dataType.v3 );
+		zarrJson.add( "chunk_grid", codec( "regular", gridConfiguration ) );
+		zarrJson.add( "chunk_key_encoding", codec( "default", keyConfiguration ) );
+		zarrJson.add( "fill_value", fillValue() );
+		zarrJson.add( "codecs", codecs );
+		zarrJson.add( "attributes", new JsonObject() );
+		zarrJson.add( "dimension_names", GSON.toJsonTree( axes.split( "" ) ) );
+		return zarrJson;
+	}
+
+	private JsonElement fillValue()
+	{
+		return dataType.isFloat() ? GSON.toJsonTree( 0.0 ) : GSON.toJsonTree( 0 );
+	}
+
+	private static JsonObject bytesCodec()
+	{
+		final JsonObject configuration = new JsonObject();
+		configuration.addProperty( "endian", "little" );
+		return codec( "bytes", configuration );
+	}
+
+	/** A {@code name} and {@code configuration} object, as used for codecs. */
+	private static JsonObject codec( final String name, final JsonObject configuration )
+	{
+		final JsonObject json = new JsonObject();
+		json.addProperty( "name", name );
+		if ( configuration != null )
+			json.add( "configuration", configuration );
+		return json;
+	}
+
+	private boolean isSpatial( final int d )
+	{
+		final char axis = axes.charAt( d );
+		return axis == 'x' || axis == 'y' || axis == 'z';
+	}
+
+	private static JsonArray array( final JsonElement element )
+	{
+		final JsonArray array = new JsonArray();
+		array.add( element );
+		return array;
+	}
+
+	private static int[] multiply( final int[] a, final int[] b )
+	{
+		final int[] product = new int[ a.length ];
+		for ( int d = 0; d < a.length; d++ )
+			product[ d ] = a[ d ] * b[ d ];
+		return product;
+	}
+
+	/** Number of blocks of {@code blockShape} along each axis. */
+	private static long[] grid( final long[] shape, final int[] blockShape )
+	{
+		final long[] grid = new long[ shape.length ];
+		for ( int d = 0; d < shape.length; d++ )
+			grid[ d ] = ( shape[ d ] + blockShape[ d ] - 1 ) / blockShape[ d ];
+		return grid;
+	}
+
+	/** Position of the {@code index}-th element of {@code shape} in C order. */
+	private static long[] unravel( long index, final long[] shape )
+	{
+		final long[] position = new long[ shape.length ];
+		for ( int d = shape.length - 1; d >= 0; d-- )
+		{
+			position[ d ] = index % shape[ d ];
+			index /= shape[ d ];
+		}
+		return position;
+	}
+
+	/** The SplitMix64 finalizer. */
+	private static long mix( long z )
+	{
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		return z ^ ( z >>> 31 );
+	}
+
+	private static void writeJson( final Path path, final JsonElement json ) throws IOException
+	{
+		Files.write( path, GSON.toJson( json ).getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	private static void write( final Path path, final byte[] bytes )
+	{
+		try
+		{
+			Files.createDirectories( path.getParent() );
+			Files.write( path, bytes );
+		}
+		catch ( final IOException e )
+		{
+			throw new UncheckedIOException( e );
+		}
+	}
+
+	/** Keeps the chunk buffer open when the deflate stream is closed. */
+	private static final class NonClosing extends FilterOutputStream
+	{
+		NonClosing( final OutputStream out )
+		{
+			super( out );
+		}
+
+		@Override
+		public void write( final byte[] b, final int off, final int len ) throws IOException
+		{
+			out.write( b, off, len );
+		}
+
+		@Override
+		public void close()
+		{}
+	}
+
+	/** CRC32C (Castagnoli), as {@code java.util.zip.CRC32C} is not in Java 8. */
+	private static final class Crc32c
+	{
+		private static final int[] TABLE = new int[ 256 ];
+
+		static
+		{
+			for ( int i = 0; i < 256; i++ )
+			{
+				int crc = i;
+				for ( int k = 0; k < 8; k++ )
+					crc = ( crc & 1 ) != 0 ? ( crc >>> 1 ) ^ 0x82F63B78 : crc >>> 1;
+				TABLE[ i ] = crc;
+			}
+		}
+
+		static int compute( final byte[] bytes )
+		{
+			int crc = ~0;
+			for ( final byte b : bytes )
+				crc = ( crc >>> 8 ) ^ TABLE[ ( crc ^ b ) & 0xFF ];
+			return ~crc;
+		}
+	}
+
+	/**
+	 * Configures a {@link SyntheticOmeZarr}. The defaults are a 2D
+	 * {@code uint8} image of 256 x 256 pixels in OME-Zarr 0.5, in chunks of
+	 * 64 x 64, deflated, with 3 levels and no empty chunks.
+	 */
+	public static final class Builder
+	{
+		private Version version = Version.V0_5;
+
+		private String axes = "yx";
+
+		private long[] shape = { 256, 256 };
+
+		private DataType dataType = DataType.UINT8;
+
+		private int[] chunks = { 64, 64 };
+
+		private int[] shards;
+
+		private Codec codec = Codec.DEFLATE;
+
+		private int levels = 3;
+
+		private double sparsity = 0;
+
+		private long seed = 0;
+
+		private String name = ZarrTestUtils.IMAGE_NAME;
+
+		private boolean consolidated = false;
+
+		private Builder()
+		{}
+
+		public Builder version( final Version version )
+		{
+			this.version = version;
+			return this;
+		}
+
+		/**
+		 * The axes in storage order, a subsequence of {@code "tczyx"}, e.g.
+		 * {@code "czyx"}.
+		 */
+		public Builder axes( final String axes )
+		{
+			this.axes = axes;
+			return this;
+		}
+
+		/** Shape of level 0, in the order of the {@link #axes(String)}. */
+		public Builder shape( final long... shape )
+		{
+			this.shape = shape;
+			return this;
+		}
+
+		public Builder dataType( final DataType dataType )
+		{
+			this.dataType = dataType;
+			return this;
+		}
+
+		/** Chunk shape, in the order of the {@link #axes(String)}. */
+		public Builder chunks( final int... chunks )
+		{
+			this.chunks = chunks;
+			return this;
+		}
+
+		/**
+		 * Number of chunks per shard along each axis, or {@code null} for no
+		 * sharding. OME-Zarr 0.5 only.
+		 */
+		public Builder shards( final int... chunksPerShard )
+		{
+			this.shards = chunksPerShard;
+			return this;
+		}
+
+		public Builder codec( final Codec codec )
+		{
+			this.codec = codec;
+			return this;
+		}
+
+		/** Number of resolution levels. */
+		public Builder levels( final int levels )
+		{
+			this.levels = levels;
+			return this;
+		}
+
+		/** Fraction of the chunks left unwritten, from 0 to 1. */
+		public Builder sparsity( final double sparsity )
+		{
+			this.sparsity = sparsity;
+			return this;
+		}
+
+		/** Seed of the pixel values and of the unwritten chunks. */
+		public Builder seed( final long seed )
+		{
+			this.seed = seed;
+			return this;
+		}
+
+		public Builder name( final String name )
+		{
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * Whether the metadata of all levels are also consolidated into the
+		 * root: a {@code .zmetadata} document in OME-Zarr 0.4, the
+		 * {@code consolidated_metadata} of the root {@code zarr.json} in 0.5.
+		 */
+		public Builder consolidated( final boolean consolidated )
+		{
+			this.consolidated = consolidated;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if the settings do not describe a
+		 *   valid dataset
+		 */
+		public SyntheticOmeZarr build()
+		{
+			if ( !axes.matches( "t?c?z?y?x?" ) || axes.length() < 2 )
+				throw new IllegalArgumentException( "Axes must be a subsequence of tczyx with x and y: " + axes );
+			if ( !axes.endsWith( "yx" ) )
+				throw new IllegalArgumentException( "Axes must end with yx: " + axes );
+			if ( shape.length != axes.length() || chunks.length != axes.length() )
+				throw new IllegalArgumentException( "Shape and chunks need one value per axis of " + axes );
+			for ( int d = 0; d < shape.length; d++ )
+				if ( shape[ d ] < 1 || chunks[ d ] < 1 )
+					throw new IllegalArgumentException( "Shape and chunks must be positive" );
+			if ( shards != null )
+			{
+				if ( version != Version.V0_5 )
+					throw new IllegalArgumentException( "Sharding needs OME-Zarr 0.5" );
+				if ( shards.length != axes.length() || Arrays.stream( shards ).anyMatch( s -> s < 1 ) )
+					throw new IllegalArgumentException( "Shards need a positive number of chunks per axis of " + axes );
+			}
+			if ( levels < 1 || levels > 62 )
+				throw new IllegalArgumentException( "Invalid number of levels: " + levels );
+			if ( sparsity < 0 || sparsity > 1 )
+				throw new IllegalArgumentException( "Sparsity must be between 0 and 1: " + sparsity );
+			return new SyntheticOmeZarr( this );
+		}
+	}
+
+	/**
+	 * Writes a dataset from the command line:
+	 * <pre>
+	 * SyntheticOmeZarr &lt;directory&gt; [key=value ...]
+	 * </pre>
+	 * with the keys {@code version} ({@code 0.4}, {@code 0.5}), {@code axes},
+	 * {@code shape}, {@code chunks}, {@code shards} (comma-separated),
+	 * {@code dtype} (e.g. {@code uint16}), {@code codec} ({@code raw},
+	 * {@code deflate}), {@code levels}, {@code sparsity}, {@code seed} and
+	 * {@code consolidated} ({@code true}, {@code false}).
+	 * From a module, e.g.:
+	 * <pre>
+	 * mvn -pl ome-zarr-imglib2 test-compile exec:java -Dexec.classpathScope=test \
+	 *     -Dexec.mainClass=ome.zarr.SyntheticOmeZarr \
+	 *     -Dexec.args="/tmp/big.ome.zarr axes=czyx shape=2,512,4096,4096 chunks=1,64,256,256 shards=1,4,4,4 dtype=uint16 levels=6"
+	 * </pre>
+	 */
+	public static void main( final String[] args ) throws IOException
+	{
+		if ( args.length == 0 )
+		{
+			System.err.println( "Usage: SyntheticOmeZarr <directory> [key=value ...]" );
+			System.exit( 1 );
+		}
+		final Builder builder = builder();
+		for ( int i = 1; i < args.length; i++ )
+		{
+			final String[] keyValue = args[ i ].split( "=", 2 );
+			if ( keyValue.length != 2 )
+				throw new IllegalArgumentException( "Expected key=value: " + args[ i ] );
+			final String value = keyValue[ 1 ];
+			switch ( keyValue[ 0 ] )
+			{
+			case "version":
+				builder.version( Version.valueOf( "V" + value.replace( '.', '_' ) ) );
+				break;
+			case "axes":
+				builder.axes( value );
+				break;
+			case "shape":
+				builder.shape( Arrays.stream( value.split( "," ) ).mapToLong( Long::parseLong ).toArray() );
+				break;
+			case "chunks":
+				builder.chunks( Arrays.stream( value.split( "," ) ).mapToInt( Integer::parseInt ).toArray() );
+				break;
+			case "shards":
+				builder.shards( Arrays.stream( value.split( "," ) ).mapToInt( Integer::parseInt ).toArray() );
+				break;
+			case "dtype":
+				builder.dataType( DataType.valueOf( value.toUpperCase() ) );
+				break;
+			case "codec":
+				builder.codec( Codec.valueOf( value.toUpperCase() ) );
+				break;
+			case "levels":
+				builder.levels( Integer.parseInt( value ) );
+				break;
+			case "sparsity":
+				builder.sparsity( Double.parseDouble( value ) );
+				break;
+			case "seed":
+				builder.seed( Long.parseLong( value ) );
+				break;
+			case "consolidated":
+				builder.consolidated( Boolean.parseBoolean( value ) );
+				break;
+			default:
+				throw new IllegalArgumentException( "Unknown key: " + keyValue[ 0 ] );
+			}
+		}
+		final Path written = builder.build().write( Paths.get( args[ 0 ] ) );
+		System.out.println( "Wrote " + written.toAbsolutePath() );
+	}
+}
@@ -0,0 +1,721 @@
+/*-
+ * #%L
+ * OME-Zarr extras for Fiji
+ * %%
+ * Copyright (C) 2022 - 2026 SciJava developers
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package ome.zarr;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves a directory on the loopback interface, both as a plain HTTP server
+ * and as a minimal path-style S3 endpoint, so that the remote code paths of
+ * {@code ZarrUtils.isZarr} and of the backends can be tested and benchmarked
+ * without a network:
+ * <pre>
+ * try ( ZarrTestServer server = ZarrTestServer.serve( dir ).latency( 50 ).bandwidth( 10_000_000 ) )
+ * {
+ * 	PyramidContents&lt;?&gt; contents = backend.load( server.httpUri( "" ) );
+ * 	assertEquals( 2, server.count( r -&gt; r.key.endsWith( "zarr.json" ) ) );
+ * }
+ * </pre>
+ * <p>
+ * The HTTP server answers {@code GET} and {@code HEAD} requests for the files
+ * below the directory, with single byte ranges, {@code ETag} and
+ * {@code Last-Modified}, answering {@code If-None-Match} and
+ * {@code If-Modified-Since} with 304 Not Modified, and lists directories as
+ * HTML links. The S3 endpoint
+ * holds the directory as bucket {@value #BUCKET}: it answers {@code HEAD} on
+ * the bucket with its region, {@code GET} and {@code HEAD} on objects, and
+ * {@code ListObjects} (v1 and v2) with prefix and delimiter. It accepts any
+ * credentials and checks no signatures; point clients at it with
+ * {@link #s3Endpoint()}, e.g. through the system property
+ * {@code ome.zarr.s3.endpoint}.
+ * <p>
+ * Every request, on either server, is first held back by the
+ * {@linkplain #latency(long) latency}, then may be failed with a
+ * {@code 503} at the {@linkplain #errorRate(double, long) error rate}, and has
+ * its body sent no faster than the {@linkplain #bandwidth(long) bandwidth}.
+ * The settings can be changed while the server is running. All requests are
+ * recorded, see {@link #requests()} and {@link #count(Predicate)}.
+ * <p>
+ * There is no HTTPS: the JDK cannot create a certificate at runtime.
+ */
+public final class ZarrTestServer implements AutoCloseable
+{
+	/** Name of the bucket holding the directory on the S3 endpoint. */
+	public static final String BUCKET = "test-bucket";
+
+	/** Region reported for {@link #BUCKET}. */
+	public static final String REGION = "us-east-1";
+
+	/** Size of the slices a throttled body is sent in. */
+	private static final int SLICE = 16 * 1024;
+
+	private static final String S3_NAMESPACE = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+	/** A request as recorded by the server. */
+	public static final class Request
+	{
+		/** Whether the request was made to the S3 endpoint. */
+		public final boolean s3;
+
+		public final String method;
+
+		/**
+		 * Path of the requested file relative to the served directory, e.g.
+		 * {@code "0/c/0/0"}, empty for the directory itself and, on the S3
+		 * endpoint, for the bucket.
+		 */
+		public final String key;
+
+		/** The {@code Range} header, or {@code null}. */
+		public final String range;
+
+		/** The query of a bucket listing, or {@code null}. */
+		public final String query;
+
+		Request( final boolean s3, final String method, final String key, final String range, final String query )
+		{
+			this.s3 = s3;
+			this.method = method;
+			this.key = key;
+			this.range = range;
+			this.query = query;
+		}
+
+		@Override
+		public String toString()
+		{
+			return ( s3 ? "s3 " : "" ) + method + " " + key
+					+ ( query != null ? "?" + query : "" )
+					+ ( range != null ? " (" + range + ")" : "" );
+		}
+	}
+
+	private final Path root;
+
+	private final ExecutorService handlers = Executors.newCachedThreadPool( runnable -> {
+		final Thread thread = new Thread( runnable, "zarr-test-server" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	private final HttpServer http;
+
+	private final HttpServer s3;
+
+	private volatile long latencyMillis = 0;
+
+	/** Bytes per second, {@code 0} for unlimited. */
+	private volatile long bandwidth = 0;
+
+	private volatile double errorRate = 0;
+
+	/** Guarded by {@link #requests}. */
+	private Random errors = new Random( 0 );
+
+	/** Guarded by itself. */
+	private final List< Request > requests = new ArrayList<>();
+
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	private ZarrTestServer( final Path root ) throws IOException
+	{
+		this.root = root.toAbsolutePath().normalize();
+		http = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		http.setExecutor( handlers );
+		http.createContext( "/", this::handleHttp );
+		s3 = HttpServer.create( new InetSocketAddress( "127.0.0.1", 0 ), 0 );
+		s3.setExecutor( handlers );
+		s3.createContext( "/", this::handleS3 );
+	}
+
+	/**
+	 * Starts serving the directory {@code root}. {@link #close() Close} the
+	 * server once done.
+	 */
+	public static ZarrTestServer serve( final Path root ) throws IOException
+	{
+		final ZarrTestServer server = new ZarrTestServer( root );
+		server.http.start();
+		server.s3.start();
+		return server;
+	}
+
+	/**
+	 * Holds back every request for {@code millis} before answering it, like
+	 * the round trip to a remote server.
+	 */
+	public ZarrTestServer latency( final long millis )
+	{
+		latencyMillis = Math.max( 0, millis );
+		return this;
+	}
+
+	/**
+	 * Sends response bodies at no more than {@code bytesPerSecond} each, or as
+	 * fast as possible if {@code 0}.
+	 */
+	public ZarrTestServer bandwidth( final long bytesPerSecond )
+	{
+		bandwidth = Math.max( 0, bytesPerSecond );
+		return this;
+	}
+
+	/**
+	 * Fails the given fraction of the requests with a {@code 503}, chosen
+	 * pseudo-randomly from {@code seed}.
+	 */
+	public ZarrTestServer errorRate( final double rate, final long seed )
+	{
+		synchronized ( requests )
+		{
+			errors = new Random( seed );
+			errorRate = rate;
+		}
+		return this;
+	}
+
+	/** The URI of {@code path} below the served directory on the HTTP server. */
+	public URI httpUri( final String path )
+	{
+		return URI.create( "http://127.0.0.1:" + http.getAddress().getPort() + "/" + path );
+	}
+
+	/** The URI of {@code path} below the served directory in {@link #BUCKET}. */
+	public URI s3Uri( final String path )
+	{
+		return URI.create( "s3://" + BUCKET + "/" + path );
+	}
+
+	/** The endpoint to send the requests for {@link #s3Uri(String)} to. */
+	public String s3Endpoint()
+	{
+		return "http://127.0.0.1:" + s3.getAddress().getPort();
+	}
+
+	/** All requests since the start or the last {@link #resetCounts()}, in order. */
+	public List< Request > requests()
+	{
+		synchronized ( requests )
+		{
+			return new ArrayList<>( requests );
+		}
+	}
+
+	/** Number of requests since the start or the last {@link #resetCounts()}. */
+	public int count()
+	{
+		synchronized ( requests )
+		{
+			return requests.size();
+		}
+	}
+
+	/** Number of requests matching {@code filter}. */
+	public int count( final Predicate< Request > filter )
+	{
+		return ( int ) requests().stream().filter( filter ).count();
+	}
+
+	/** Number of body bytes sent since the start or the last {@link #resetCounts()}. */
+	public long bytesSent()
+	{
+		return bytesSent.get();
+	}
+
+	public void resetCounts()
+	{
+		synchronized ( requests )
+		{
+			requests.clear();
+			bytesSent.set( 0 );
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		http.stop( 0 );
+		s3.stop( 0 );
+		handlers.shutdownNow();
+	}
+
+	private void handleHttp( final HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			final String key = key( exchange.getRequestURI().getRawPath() );
+			if ( !begin( exchange, false, key, null ) )
+				return;
+			final Path path = resolve( key );
+			if ( path == null || !Files.exists( path ) )
+				send( exchange, 404, null, null );
+			else if ( Files.isDirectory( path ) )
+				send( exchange, 200, "text/html; charset=utf-8", listing( path ) );
+			else
+				sendFile( exchange, path );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	private void handleS3( final HttpExchange exchange ) throws IOException
+	{
+		try
+		{
+			final String rawPath = exchange.getRequestURI().getRawPath();
+			final String bucketAndKey = key( rawPath );
+			final int slash = bucketAndKey.indexOf( '/' );
+			final String bucket = slash < 0 ? bucketAndKey : bucketAndKey.substring( 0, slash );
+			final String key = slash < 0 ? "" : bucketAndKey.substring( slash + 1 );
+			final String query = exchange.getRequestURI().getRawQuery();
+			if ( !begin( exchange, true, key, key.isEmpty() ? query : null ) )
+				return;
+			if ( !BUCKET.equals( bucket ) )
+			{
+				sendS3Error( exchange, 404, "NoSuchBucket" );
+				return;
+			}
+			exchange.getResponseHeaders().set( "x-amz-bucket-region", REGION );
+			if ( key.isEmpty() )
+			{
+				if ( "HEAD".equals( exchange.getRequestMethod() ) )
+					send( exchange, 200, null, null );
+				else
+					send( exchange, 200, "application/xml", listObjects( parseQuery( query ) ) );
+				return;
+			}
+			final Path path = resolve( key );
+			if ( path == null || !Files.isRegularFile( path ) )
+				sendS3Error( exchange, 404, "NoSuchKey" );
+			else
+				sendFile( exchange, path );
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Records the request and applies the latency and the error rate. Returns
+	 * whether the request is to be answered.
+	 */
+	private boolean begin( final HttpExchange exchange, final boolean isS3, final String key, final String query ) throws IOException
+	{
+		final String method = exchange.getRequestMethod();
+		final boolean fail;
+		synchronized ( requests )
+		{
+			requests.add( new Request( isS3, method, key, exchange.getRequestHeaders().getFirst( "Range" ), query ) );
+			fail = errorRate > 0 && errors.nextDouble() < errorRate;
+		}
+		final long latency = latencyMillis;
+		if ( latency > 0 )
+		{
+			try
+			{
+				Thread.sleep( latency );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		if ( !"GET".equals( method ) && !"HEAD".equals( method ) )
+		{
+			send( exchange, 405, null, null );
+			return false;
+		}
+		if ( fail )
+		{
+			if ( isS3 )
+				sendS3Error( exchange, 503, "SlowDown" );
+			else
+				send( exchange, 503, null, null );
+			return false;
+		}
+		return true;
+	}
+
+	private void sendFile( final HttpExchange exchange, final Path path ) throws IOException
+	{
+		final long size = Files.size( path );
+		final long modified = Files.getLastModifiedTime( path ).toMillis();
+		exchange.getResponseHeaders().set( "ETag", etag( size, modified ) );
+		exchange.getResponseHeaders().set( "Last-Modified", httpDate( modified ) );
+		exchange.getResponseHeaders().set( "Accept-Ranges", "bytes" );
+		if ( isNotModified( exchange, etag( size, modified ), modified ) )
+		{
+			send( exchange, 304, null, null );
+			return;
+		}
+
+		long from = 0;
+		long to = size;
+		int code = 200;
+		final String range = exchange.getRequestHeaders().getFirst( "Range" );
+		if ( range != null )
+		{
+			final long[] bounds = parseRange( range, size );
+			if ( bounds == null )
+			{
+				exchange.getResponseHeaders().set( "Content-Range", "bytes */" + size );
+				send( exchange, 416, null, null );
+				return;
+			}
+			from = bounds[ 0 ];
+			to = bounds[ 1 ];
+			code = 206;
+			exchange.getResponseHeaders().set( "Content-Range", "bytes " + from + "-" + ( to - 1 ) + "/" + size );
+		}
+
+		final String name = path.getFileName().toString();
+		final boolean json = name.endsWith( ".json" ) || name.startsWith( ".z" );
+		exchange.getResponseHeaders().set( "Content-Type", json ? "application/json" : "application/octet-stream" );
+		final byte[] body = new byte[ ( int ) ( to - from ) ];
+		try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+		{
+			final ByteBuffer buffer = ByteBuffer.wrap( body );
+			while ( buffer.hasRemaining() && channel.read( buffer, from + buffer.position() ) >= 0 )
+				;
+		}
+		send( exchange, code, null, body );
+	}
+
+	private static boolean isNotModified( final HttpExchange exchange, final String etag, final long modified )
+	{
+		final String ifNoneMatch = exchange.getRequestHeaders().getFirst( "If-None-Match" );
+		if ( ifNoneMatch != null )
+			return ifNoneMatch.equals( etag );
+		final String ifModifiedSince = exchange.getRequestHeaders().getFirst( "If-Modified-Since" );
+		return ifModifiedSince != null && ifModifiedSince.equals( httpDate( modified ) );
+	}
+
+	/**
+	 * Sends the response, with the body throttled to the bandwidth. A
+	 * {@code null} body sends no body; {@code HEAD} requests get the headers
+	 * of the body only.
+	 */
+	private void send( final HttpExchange exchange, final int code, final String contentType, final byte[] body ) throws IOException
+	{
+		if ( contentType != null )
+			exchange.getResponseHeaders().set( "Content-Type", contentType );
+		if ( body == null )
+		{
+			exchange.sendResponseHeaders( code, -1 );
+			return;
+		}
+		if ( "HEAD".equals( exchange.getRequestMethod() ) )
+		{
+			exchange.getResponseHeaders().set( "Content-Length", Long.toString( body.length ) );
+			exchange.sendResponseHeaders( code, -1 );
+			return;
+		}
+		exchange.sendResponseHeaders( code, body.length == 0 ? -1 : body.length );
+		final OutputStream out = exchange.getResponseBody();
+		final long start = System.nanoTime();
+		for ( int offset = 0; offset < body.length; offset += SLICE )
+		{
+			final int length = Math.min( SLICE, body.length - offset );
+			throttle( start, offset + length );
+			out.write( body, offset, length );
+			bytesSent.addAndGet( length );
+		}
+		out.flush();
+	}
+
+	/** Waits until {@code bytes} may have been sent since {@code start}. */
+	private void throttle( final long start, final long bytes ) throws IOException
+	{
+		final long limit = bandwidth;
+		if ( limit <= 0 )
+			return;
+		final long due = start + bytes * TimeUnit.SECONDS.toNanos( 1 ) / limit;
+		final long wait = due - System.nanoTime();
+		if ( wait <= 0 )
+			return;
+		try
+		{
+			TimeUnit.NANOSECONDS.sleep( wait );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while throttling", e );
+		}
+	}
+
+	private void sendS3Error( final HttpExchange exchange, final int code, final String error ) throws IOException
+	{
+		final String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Error><Code>" + error + "</Code><Message>"
+				+ error + "</Message></Error>";
+		if ( "HEAD".equals( exchange.getRequestMethod() ) )
+			send( exchange, code, null, null );
+		else
+			send( exchange, code, "application/xml", xml.getBytes( StandardCharsets.UTF_8 ) );
+	}
+
+	/**
+	 * The {@code ListObjects} (v1) or {@code ListObjectsV2} result for
+	 * {@code prefix}, {@code delimiter}, {@code max-keys} and
+	 * {@code start-after}, {@code continuation-token} or {@code marker}.
+	 */
+	private byte[] listObjects( final Map< String, String > query ) throws IOException
+	{
+		final boolean v2 = "2".equals( query.get( "list-type" ) );
+		final String prefix = query.getOrDefault( "prefix", "" );
+		final String delimiter = query.get( "delimiter" );
+		final int maxKeys = Integer.parseInt( query.getOrDefault( "max-keys", "1000" ) );
+		String after = v2 ? query.get( "continuation-token" ) : query.get( "marker" );
+		if ( after == null )
+			after = query.get( "start-after" );
+
+		// files below the directory holding the prefix, or its direct children with a delimiter
+		final int lastSlash = prefix.lastIndexOf( '/' );
+		final Path base = resolve( lastSlash < 0 ? "" : prefix.substring( 0, lastSlash ) );
+		final List< String > keys = new ArrayList<>();
+		final List< String > prefixes = new ArrayList<>();
+		if ( base != null && Files.isDirectory( base ) )
+		{
+			try ( Stream< Path > paths = "/".equals( delimiter ) ? Files.list( base ) : Files.walk( base ) )
+			{
+				for ( final Path path : paths.collect( Collectors.toList() ) )
+				{
+					final String key = root.relativize( path ).toString().replace( '\\', '/' );
+					if ( !key.startsWith( prefix ) )
+						continue;
+					if ( Files.isRegularFile( path ) )
+						keys.add( key );
+					else if ( "/".equals( delimiter ) )
+						prefixes.add( key + "/" );
+				}
+			}
+		}
+		final List< String > entries = new ArrayList<>( keys );
+		entries.addAll( prefixes );
+		entries.sort( null );
+		final String skip = after;
+		if ( skip != null )
+			entries.removeIf( entry -> entry.compareTo( skip ) <= 0 );
+		final boolean truncated = entries.size() > maxKeys;
+		final List< String > page = truncated ? entries.subList( 0, maxKeys ) : entries;
+
+		final StringBuilder xml = new StringBuilder( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" );
+		xml.append( "<ListBucketResult xmlns=\"" ).append( S3_NAMESPACE ).append( "\">" );
+		element( xml, "Name", BUCKET );
+		element( xml, "Prefix", prefix );
+		if ( delimiter != null )
+			element( xml, "Delimiter", delimiter );
+		element( xml, "MaxKeys", Integer.toString( maxKeys ) );
+		element( xml, "IsTruncated", Boolean.toString( truncated ) );
+		if ( v2 )
+		{
+			element( xml, "KeyCount", Integer.toString( page.size() ) );
+			if ( truncated )
+				element( xml, "NextContinuationToken", page.get( page.size() - 1 ) );
+		}
+		else if ( truncated )
+			element( xml, "NextMarker", page.get( page.size() - 1 ) );
+		for ( final String entry : page )
+		{
+			if ( entry.endsWith( "/" ) )
+			{
+				xml.append( "<CommonPrefixes>" );
+				element( xml, "Prefix", entry );
+				xml.append( "</CommonPrefixes>" );
+				continue;
+			}
+			final Path path = root.resolve( entry );
+			final long size = Files.size( path );
+			final long modified = Files.getLastModifiedTime( path ).toMillis();
+			xml.append( "<Contents>" );
+			element( xml, "Key", entry );
+			element( xml, "LastModified", isoDate( modified ) );
+			element( xml, "ETag", etag( size, modified ) );
+			element( xml, "Size", Long.toString( size ) );
+			element( xml, "StorageClass", "STANDARD" );
+			xml.append( "</Contents>" );
+		}
+		xml.append( "</ListBucketResult>" );
+		return xml.toString().getBytes( StandardCharsets.UTF_8 );
+	}
+
+	private static byte[] listing( final Path directory ) throws IOException
+	{
+		final StringBuilder html = new StringBuilder( "<!DOCTYPE html>\n<html><body><ul>\n" );
+		try ( Stream< Path > children = Files.list( directory ) )
+		{
+			for ( final Path child : children.sorted().collect( Collectors.toList() ) )
+			{
+				final String name = escape( child.getFileName().toString() ) + ( Files.isDirectory( child ) ? "/" : "" );
+				html.append( "<li><a href=\"" ).append( name ).append( "\">" ).append( name ).append( "</a></li>\n" );
+			}
+		}
+		html.append( "</ul></body></html>\n" );
+		return html.toString().getBytes( StandardCharsets.UTF_8 );
+	}
+
+	/**
+	 * The start (inclusive) and end (exclusive) of a single byte range, or
+	 * {@code null} if unsatisfiable or not understood.
+	 */
+	private static long[] parseRange( final String range, final long size )
+	{
+		if ( !range.startsWith( "bytes=" ) || range.indexOf( ',' ) >= 0 )
+			return null;
+		final String spec = range.substring( "bytes=".length() ).trim();
+		final int dash = spec.indexOf( '-' );
+		if ( dash < 0 )
+			return null;
+		try
+		{
+			if ( dash == 0 )
+			{
+				final long suffix = Long.parseLong( spec.substring( 1 ) );
+				return suffix <= 0 || size == 0 ? null : new long[] { Math.max( 0, size - suffix ), size };
+			}
+			final long from = Long.parseLong( spec.substring( 0, dash ) );
+			final long to = dash == spec.length() - 1 ? size : Math.min( size, Long.parseLong( spec.substring( dash + 1 ) ) + 1 );
+			return from >= size || to <= from ? null : new long[] { from, to };
+		}
+		catch ( final NumberFormatException e )
+		{
+			return null;
+		}
+	}
+
+	private static Map< String, String > parseQuery( final String query )
+	{
+		final Map< String, String > parameters = new HashMap<>();
+		if ( query == null )
+			return parameters;
+		for ( final String parameter : query.split( "&" ) )
+		{
+			final int equals = parameter.indexOf( '=' );
+			final String name = equals < 0 ? parameter : parameter.substring( 0, equals );
+			parameters.put( decode( name ), equals < 0 ? "" : decode( parameter.substring( equals + 1 ) ) );
+		}
+		return parameters;
+	}
+
+	/** The decoded request path without leading and trailing slashes. */
+	private static String key( final String rawPath )
+	{
+		String path = decode( rawPath == null ? "" : rawPath );
+		while ( path.startsWith( "/" ) )
+			path = path.substring( 1 );
+		while ( path.endsWith( "/" ) )
+			path = path.substring( 0, path.length() - 1 );
+		return path;
+	}
+
+	/** The file of {@code key}, or {@code null} if outside of the served directory. */
+	private Path resolve( final String key )
+	{
+		final Path path = root.resolve( key ).normalize();
+		return path.startsWith( root ) ? path : null;
+	}
+
+	private static String decode( final String encoded )
+	{
+		try
+		{
+			return URLDecoder.decode( encoded.replace( "+", "%2B" ), "UTF-8" );
+		}
+		catch ( final UnsupportedEncodingException e )
+		{
+			throw new AssertionError( e );
+		}
+	}
+
+	private static String etag( final long size, final long modified )
+	{
+		return "\"" + Long.toHexString( size ) + "-" + Long.toHexString( modified ) + "\"";
+	}
+
+	private static String httpDate( final long millis )
+	{
+		return format( "EEE, dd MMM yyyy HH:mm:ss 'GMT'", millis );
+	}
+
+	private static String isoDate( final long millis )
+	{
+		return format( "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", millis );
+	}
+
+	private static String format( final String pattern, final long millis )
+	{
+		final SimpleDateFormat format = new SimpleDateFormat( pattern, Locale.US );
+		format.setTimeZone( TimeZone.getTimeZone( "GMT" ) );
+		return format.format( new Date( millis ) );
+	}
+
+	private static void element( final StringBuilder xml, final String name, final String value )
+	{
+		xml.append( '<' ).append( name ).append( '>' ).append( escape( value ) ).append( "</" ).append( name ).append( '>' );
+	}
+
+	private static String escape( final String text )
+	{
+		return text.replace( "&", "&amp;" ).replace( "<", "&lt;" ).replace( ">", "&gt;" ).replace( "\"", "&quot;" );
+	}
+}
@@ -37,16 +37,25 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.img.cell.Cell;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.util.Cast;
 
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.scijava.Context;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import ome.zarr.SyntheticOmeZarr;
+import ome.zarr.ZarrTestServer;
 import ome.zarr.ZarrTestUtils;
 import ome.zarr.imglib2.exceptions.NoMatchingResolutionException;
 import ome.zarr.imglib2.metadata.AxisCalibration;
@@ -95,9 +104,28 @@ public interface PyramidBackendTestBase
 		);
 	}
 
+	static Stream< SyntheticOmeZarr > syntheticExamples()
+	{
+		return Stream.of(
+				SyntheticOmeZarr.builder().version( SyntheticOmeZarr.Version.V0_4 ).axes( "tczyx" ).shape( 2, 2, 9, 37, 45 )
+						.chunks( 1, 1, 4, 16, 16 ).dataType( SyntheticOmeZarr.DataType.UINT16 ).levels( 3 ).sparsity( 0.25 ).seed( 1 ).build(),
+				SyntheticOmeZarr.builder().version( SyntheticOmeZarr.Version.V0_4 ).axes( "zyx" ).shape( 12, 30, 20 )
+						.chunks( 5, 16, 16 ).dataType( SyntheticOmeZarr.DataType.INT32 ).codec( SyntheticOmeZarr.Codec.RAW ).levels( 2 ).seed( 2 ).build(),
+				SyntheticOmeZarr.builder().axes( "czyx" ).shape( 2, 10, 33, 31 ).chunks( 1, 5, 16, 16 )
+						.dataType( SyntheticOmeZarr.DataType.FLOAT32 ).codec( SyntheticOmeZarr.Codec.RAW ).levels( 2 ).seed( 3 ).build(),
+				SyntheticOmeZarr.builder().axes( "yx" ).shape( 100, 70 ).chunks( 32, 32 )
+						.dataType( SyntheticOmeZarr.DataType.INT8 ).levels( 4 ).sparsity( 0.5 ).seed( 4 ).build()
+		);
+	}
+
 	PyramidContents< ? > load( String resource, Context context )
 			throws URISyntaxException;
 
+	/** The backend under test, for datasets outside the test resources. */
+	PyramidBackend backend();
+
+	PyramidDescription inspect( String resource ) throws URISyntaxException;
+
 	@ParameterizedTest
 	@MethodSource( "ome.zarr.imglib2.PyramidBackendTestBase#omeZarrExamples" )
 	default void testNumDimensions( String resource ) throws URISyntaxException
@@ -353,6 +381,111 @@ public interface PyramidBackendTestBase
 		}
 	}
 
+	@ParameterizedTest
+	@MethodSource( "ome.zarr.imglib2.PyramidBackendTestBase#omeZarrExamples" )
+	default void testInspectMatchesLoad( String resource ) throws URISyntaxException
+	{
+		try (Context context = new Context())
+		{
+			final PyramidDescription description = inspect( resource );
+			final PyramidContents< ? > contents = load( resource, context );
+			assertEquals( contents.name, description.name );
+			assertEquals( "uint8", description.dataType );
+			assertEquals( contents.numDimensions(), description.numDimensions() );
+			assertEquals( contents.numResolutionLevels(), description.numResolutionLevels() );
+			for ( int level = 0; level < contents.numResolutionLevels(); level++ )
+			{
+				assertArrayEquals( contents.asImg( level ).dimensionsAsLongArray(), description.dimensions( level ) );
+				assertArrayEquals( contents.transforms[ level ].getRowPackedCopy(), description.transforms[ level ].getRowPackedCopy() );
+				assertEquals( contents.axesPerLevel[ level ].length, description.axesPerLevel[ level ].length );
+			}
+			if ( resource.contains( "5d_testing" ) ) // dataset with omero properties
+				assertEquals( 1, description.omero.rdefs.defaultT );
+		}
+	}
+
+	@ParameterizedTest
+	@MethodSource( "ome.zarr.imglib2.PyramidBackendTestBase#syntheticExamples" )
+	default void testSyntheticContent( final SyntheticOmeZarr synthetic, @TempDir final Path dir ) throws IOException
+	{
+		assertSyntheticContent( backend(), synthetic, dir );
+	}
+
+	/**
+	 * Writes {@code synthetic} to {@code dir} and checks the levels read by
+	 * {@code backend}.
+	 */
+	static void assertSyntheticContent( final PyramidBackend backend, final SyntheticOmeZarr synthetic, final Path dir ) throws IOException
+	{
+		try (PyramidContents< ? > contents = backend.load( synthetic.write( dir ).toUri() ))
+		{
+			assertEquals( synthetic.numResolutionLevels(), contents.numResolutionLevels() );
+			for ( int level = 0; level < contents.numResolutionLevels(); level++ )
+				synthetic.assertContent( level, contents.cachedCellImg( level ), 200 );
+		}
+	}
+
+	/**
+	 * Opening a dataset over HTTP reads its metadata but no chunk, a first pass
+	 * over the cells of a level fetches each of its chunks once, and a second
+	 * pass sends no request at all.
+	 */
+	@ParameterizedTest
+	@EnumSource( SyntheticOmeZarr.Version.class )
+	default void testRemoteRequests( final SyntheticOmeZarr.Version version, @TempDir final Path dir ) throws IOException
+	{
+		final SyntheticOmeZarr synthetic = SyntheticOmeZarr.builder().version( version ).axes( "zyx" ).shape( 6, 40, 50 )
+				.chunks( 3, 16, 16 ).levels( 2 ).sparsity( 0.25 ).seed( 6 ).build();
+		final String image = "image.ome.zarr";
+		synthetic.write( dir.resolve( image ) );
+		final Set< String > allBlocks = new HashSet<>();
+		for ( int level = 0; level < synthetic.numResolutionLevels(); level++ )
+			allBlocks.addAll( serverKeys( image, synthetic.blockKeys( level ) ) );
+
+		try (ZarrTestServer server = ZarrTestServer.serve( dir );
+				PyramidContents< ? > contents = backend().load( server.httpUri( image ) ))
+		{
+			assertEquals( 0, server.count( request -> allBlocks.contains( request.key ) ), () -> "chunks read on open: " + server.requests() );
+
+			for ( int level = 0; level < synthetic.numResolutionLevels(); level++ )
+			{
+				// opening the level may read its array metadata, which is not counted
+				contents.cachedCellImg( level );
+				server.resetCounts();
+				for ( final Cell< ? > cell : contents.cachedCellImg( level ).getCells() )
+					assertNotNull( cell.getData() );
+				final Set< String > levelBlocks = serverKeys( image, synthetic.blockKeys( level ) );
+				final Set< String > fetched = new HashSet<>();
+				int gets = 0;
+				for ( final ZarrTestServer.Request request : server.requests() )
+				{
+					if ( !allBlocks.contains( request.key ) )
+						continue;
+					fetched.add( request.key );
+					if ( "GET".equals( request.method ) )
+						gets++;
+				}
+				assertEquals( levelBlocks, fetched );
+				assertEquals( levelBlocks.size(), gets, () -> "chunks fetched more than once: " + server.requests() );
+				synthetic.assertContent( level, contents.cachedCellImg( level ), 100 );
+
+				server.resetCounts();
+				for ( final Cell< ? > cell : contents.cachedCellImg( level ).getCells() )
+					assertNotNull( cell.getData() );
+				assertEquals( 0, server.count(), () -> "requests for cached cells: " + server.requests() );
+			}
+		}
+	}
+
+	/** Prefixes the keys with the path of their dataset on the server. */
+	static Set< String > serverKeys( final String dataset, final Set< String > keys )
+	{
+		final Set< String > serverKeys = new HashSet<>();
+		for ( final String key : keys )
+			serverKeys.add( dataset + "/" + key );
+		return serverKeys;
+	}
+
 	static int valueAt( final PyramidContents< ? > contents, final int level, final long... position )
 	{
 		final RandomAccess< ? > randomAccess = contents.asImg( level ).randomAccess();